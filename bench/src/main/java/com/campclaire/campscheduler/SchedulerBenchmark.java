@@ -0,0 +1,253 @@
+package com.campclaire.campscheduler;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the phases of {@link ScheduleCreator} over synthetic rosters, so
+ * changes to the engine can be judged with numbers. Each phase is measured on
+ * its own: its state's per-invocation setup resets the creator, shuffles the
+ * campers and runs the phases before it, untimed, and only the phase itself is
+ * timed. Rosters and catalogs are made by {@link RosterGenerator}, one for
+ * every combination of the {@code campers} and {@code classes} parameters.
+ *
+ * Per-invocation setup costs a timestamp around every operation, which is
+ * noticeable for the shortest phases on the smallest rosters; compare those
+ * between runs rather than with other phases. {@code -prof gc} reports bytes
+ * allocated per operation including the setup, so a phase's figure also holds
+ * the phases its setup ran; compare it between runs of the same phase.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBenchmark {
+    /**
+     * A creator over a synthetic roster, reset and shuffled before every
+     * operation. Subclasses run further phases after the shuffle.
+     */
+    @State(Scope.Thread)
+    public static class Shuffled {
+        /** The number of campers in the roster. */
+        @Param({ "50", "500", "5000", "50000" })
+        public int campers;
+
+        /** The number of classes in the catalog. */
+        @Param({ "8", "20", "40" })
+        public int classes;
+
+        /** The seed of the synthetic roster and the shuffles. */
+        @Param({ "1" })
+        public long seed;
+
+        /** The Zipf exponent of class popularity, see {@link RosterGenerator#setPopularitySkew(double)}. */
+        @Param({ "1.0" })
+        public double zipf;
+
+        ScheduleCreator creator;
+        private Random random;
+
+        /**
+         * Generates the roster and builds the creator. One full run leaves the
+         * creator in the state every later run starts from.
+         */
+        @Setup(Level.Trial)
+        public void build() {
+            RosterGenerator generator = new RosterGenerator(this.seed);
+            generator.setPopularitySkew(this.zipf);
+            ArrayList<ClassClass> catalog = generator.generateCatalog(this.classes, this.campers);
+            this.creator = new ScheduleCreator(catalog, generator.generateCampers(catalog, this.campers));
+            this.creator.run();
+            this.random = new Random(this.seed);
+        }
+
+        /**
+         * Resets the creator, shuffles the campers and runs the phases before
+         * the measured one.
+         */
+        @Setup(Level.Invocation)
+        public void prepare() {
+            this.creator.clearCamperScheduleAndFinalChoices();
+            this.creator.clearEliminatedClasses();
+            this.creator.shuffleCampers(this.random);
+            this.advance();
+        }
+
+        /**
+         * Runs the phases before the measured one; none for this state.
+         */
+        protected void advance() {
+        }
+    }
+
+    /**
+     * A creator whose campers' choices have been found.
+     */
+    @State(Scope.Thread)
+    public static class ChoicesFound extends Shuffled {
+        /**
+         * Finds the campers' choices.
+         */
+        @Override
+        protected void advance() {
+            super.advance();
+            this.creator.findCamperChoices();
+        }
+    }
+
+    /**
+     * A creator whose class slots have been counted and laid out empty.
+     */
+    @State(Scope.Thread)
+    public static class SlotsInitialized extends ChoicesFound {
+        /**
+         * Counts the classes and lays out their slots.
+         */
+        @Override
+        protected void advance() {
+            super.advance();
+            this.creator.initializeClassCount();
+            this.creator.findCamperChoices();
+            this.creator.calculateNumberPeriods();
+            this.creator.initializeClassSlots();
+        }
+    }
+
+    /**
+     * A creator whose class slots have been filled and unpopular classes
+     * eliminated.
+     */
+    @State(Scope.Thread)
+    public static class SlotsFilled extends SlotsInitialized {
+        /**
+         * Fills the class slots and eliminates unpopular classes.
+         */
+        @Override
+        protected void advance() {
+            super.advance();
+            this.creator.fillClassSlots();
+            this.creator.findEliminatedClasses();
+            this.creator.adjustClassPeriodCounts();
+        }
+    }
+
+    /**
+     * A creator whose campers have been enrolled in their essential classes.
+     */
+    @State(Scope.Thread)
+    public static class EssentialEnrolled extends SlotsFilled {
+        /**
+         * Enrolls the campers in their essential classes.
+         */
+        @Override
+        protected void advance() {
+            super.advance();
+            this.creator.addCampersToEssentialClasses();
+        }
+    }
+
+    /**
+     * A finished schedule, for measuring scoring.
+     */
+    @State(Scope.Thread)
+    public static class Scheduled extends Shuffled {
+        Schedule schedule;
+
+        /**
+         * Runs the creator to a finished schedule.
+         */
+        @Override
+        protected void advance() {
+            super.advance();
+            this.schedule = this.creator.run();
+        }
+    }
+
+    /**
+     * Measures {@link ScheduleCreator#findCamperChoices()}.
+     *
+     * @param state the shuffled creator
+     */
+    @Benchmark
+    public void findCamperChoices(Shuffled state) {
+        state.creator.findCamperChoices();
+    }
+
+    /**
+     * Measures {@link ScheduleCreator#initializeClassCount()}.
+     *
+     * @param state the creator with choices found
+     */
+    @Benchmark
+    public void initializeClassCount(ChoicesFound state) {
+        state.creator.initializeClassCount();
+    }
+
+    /**
+     * Measures {@link ScheduleCreator#fillClassSlots()}.
+     *
+     * @param state the creator with empty class slots
+     * @return the filled slots
+     */
+    @Benchmark
+    public ClassSlot[] fillClassSlots(SlotsInitialized state) {
+        return state.creator.fillClassSlots();
+    }
+
+    /**
+     * Measures {@link ScheduleCreator#addCampersToEssentialClasses()}.
+     *
+     * @param state the creator with filled class slots
+     */
+    @Benchmark
+    public void addCampersToEssentialClasses(SlotsFilled state) {
+        state.creator.addCampersToEssentialClasses();
+    }
+
+    /**
+     * Measures {@link ScheduleCreator#addCampersToOtherClasses()}.
+     *
+     * @param state the creator with essential classes enrolled
+     */
+    @Benchmark
+    public void addCampersToOtherClasses(EssentialEnrolled state) {
+        state.creator.addCampersToOtherClasses();
+    }
+
+    /**
+     * Measures scoring a finished {@link Schedule}.
+     *
+     * @param state the finished schedule
+     * @return the score
+     */
+    @Benchmark
+    public int calculateScheduleScore(Scheduled state) {
+        return state.schedule.calculateScheduleScore();
+    }
+
+    /**
+     * Measures a full {@link ScheduleCreator#run()}.
+     *
+     * @param state the shuffled creator
+     * @return the schedule
+     */
+    @Benchmark
+    public Schedule run(Shuffled state) {
+        return state.creator.run();
+    }
+}
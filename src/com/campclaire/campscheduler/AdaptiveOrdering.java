@@ -0,0 +1,132 @@
+package com.campclaire.campscheduler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Chooses the order campers are enrolled in from how they fared in earlier
+ * attempts, in the manner of squeaky-wheel optimization. Each camper has a
+ * priority. After an attempt, each camper is blamed for their share of its
+ * score (see {@link ColumnarScheduleCreator#getDissatisfaction(int)} and
+ * {@link ColumnarScheduleCreator#getImbalanceBlame(int)}); blamed campers gain
+ * priority in proportion and every priority decays a little. The next attempt
+ * enrolls campers in order of priority plus Gumbel noise, which samples a
+ * Plackett-Luce ranking: higher priority campers tend to go earlier, but every
+ * order stays possible. With all priorities equal, as before the first
+ * attempt, the order is a uniform shuffle.
+ *
+ * Only attempts that score within a small margin of the best so far are
+ * learned from, so the priorities follow good orders rather than chasing
+ * every poor one.
+ */
+final class AdaptiveOrdering {
+    /** The share of a priority kept from one learned attempt to the next. */
+    private static final double DECAY = 0.95;
+
+    /** How far above the best score, as a fraction, an attempt may be and still be learned from. */
+    private static final double ELITE_MARGIN = 0.05;
+
+    private final double[] priorities;
+    private final double[] blame;
+    private final long[] keys;
+    private int bestScore = Integer.MAX_VALUE;
+
+    /**
+     * Constructs an ordering with equal priorities.
+     *
+     * @param numberCampers the number of campers
+     */
+    AdaptiveOrdering(int numberCampers) {
+        this.priorities = new double[numberCampers];
+        this.blame = new double[numberCampers];
+        this.keys = new long[numberCampers];
+    }
+
+    /**
+     * Fills an order for the next attempt.
+     *
+     * @param order  receives the camper ids, in enrollment order
+     * @param random the attempt's generator
+     */
+    void arrange(int[] order, SplittableRandom random) {
+        for (int id = 0; id < this.keys.length; id++) {
+            double gumbel = -Math.log(-Math.log(random.nextDouble(Double.MIN_NORMAL, 1.0)));
+            // Sorting ascending on the negated key puts the highest key first; the id rides in the low bits
+            this.keys[id] = ((long) sortableBits((float) -(this.priorities[id] + gumbel)) << 32) | id;
+        }
+        Arrays.sort(this.keys);
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (int) this.keys[i];
+        }
+    }
+
+    /**
+     * Maps a float to an int that sorts in the same order.
+     *
+     * @param value the float
+     * @return the sortable bits
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
+    /**
+     * Learns from the attempt the creator last made. Blame is scaled so the
+     * most blamed camper gains one unit of priority, which keeps the noise in
+     * {@link #arrange(int[], SplittableRandom)} meaningful whatever the size
+     * of the camp's scores.
+     *
+     * @param creator the creator that made the attempt
+     * @param score   the attempt's score
+     */
+    void learn(ColumnarScheduleCreator creator, int score) {
+        if (score < this.bestScore) {
+            this.bestScore = score;
+        }
+        if (score > this.bestScore + this.bestScore * ELITE_MARGIN) {
+            return;
+        }
+        double most = 1;
+        for (int id = 0; id < this.priorities.length; id++) {
+            this.blame[id] = creator.getDissatisfaction(id) + creator.getImbalanceBlame(id);
+            most = Math.max(most, this.blame[id]);
+        }
+        for (int id = 0; id < this.priorities.length; id++) {
+            this.priorities[id] = DECAY * this.priorities[id] + this.blame[id] / most;
+        }
+    }
+
+    /**
+     * Writes the priorities and the best score to a checkpoint.
+     *
+     * @param out the checkpoint stream
+     * @throws IOException if the stream cannot be written
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(this.bestScore);
+        for (double priority : this.priorities) {
+            out.writeDouble(priority);
+        }
+    }
+
+    /**
+     * Reads an ordering's priorities and best score from a checkpoint.
+     *
+     * @param in            the checkpoint stream
+     * @param numberCampers the number of campers
+     * @return the ordering
+     * @throws IOException if the stream cannot be read
+     */
+    static AdaptiveOrdering readFrom(DataInputStream in, int numberCampers) throws IOException {
+        AdaptiveOrdering ordering = new AdaptiveOrdering(numberCampers);
+        ordering.bestScore = in.readInt();
+        for (int id = 0; id < numberCampers; id++) {
+            ordering.priorities[id] = in.readDouble();
+        }
+        return ordering;
+    }
+}
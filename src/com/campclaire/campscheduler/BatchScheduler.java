@@ -0,0 +1,427 @@
+package com.campclaire.campscheduler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Schedules several independent sessions, such as camp sessions or age
+ * divisions, in one go. Each session has its own class list and roster and is
+ * searched by its own {@link ScheduleSearch}; the searches share the threads of
+ * a {@link ForkJoinPool}, the common pool unless another is given.
+ *
+ * Searches take turns: each round, every unfinished search runs for a time
+ * slice as a task on the pool, so small sessions finish early and large ones
+ * get an even share of the processors while they run. A search run in slices
+ * makes exactly the attempts of one run straight through, so a seeded session
+ * finds the same schedule as it would scheduled on its own. Each search's
+ * engine is given its session's class list, so sessions need not share a
+ * catalog.
+ *
+ * Usage: {@code BatchScheduler [--jobs dir] [--attempts n] [--seed n]
+ * [--slice ms] [--threads n] [--profiles true] [--adaptive true]}. Every
+ * subdirectory of the jobs directory laid out as a {@link SchedulerDaemon} job
+ * is a session. The best schedule of each is exported as CSV into its
+ * {@code schedule} directory, and one report covering every session is
+ * printed.
+ */
+public class BatchScheduler {
+    /** The default number of attempts per session. */
+    public static final int DEFAULT_ATTEMPTS = 1000;
+    /** The default time a search runs before the next one gets a turn. */
+    public static final long DEFAULT_SLICE_MILLIS = 50;
+
+    private final ForkJoinPool pool;
+    private int attempts = DEFAULT_ATTEMPTS;
+    private boolean seeded;
+    private long seed;
+    private long sliceNanos = DEFAULT_SLICE_MILLIS * 1000000L;
+    private boolean profileCompression;
+    private boolean adaptiveOrdering;
+
+    /**
+     * A session to schedule.
+     */
+    public static final class Session {
+        private final String name;
+        private final ArrayList<ClassClass> catalog;
+        private final ArrayList<Camper> roster;
+
+        /**
+         * Constructs a session. The campers must have been created while the
+         * catalog was the current class list.
+         *
+         * @param name    the name the session is reported under
+         * @param catalog the session's class list
+         * @param roster  the session's campers
+         */
+        public Session(String name, List<ClassClass> catalog, List<Camper> roster) {
+            this.name = name;
+            this.catalog = new ArrayList<ClassClass>(catalog);
+            this.roster = new ArrayList<Camper>(roster);
+        }
+
+        /**
+         * Returns the name of the session.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Returns the session's class list.
+         *
+         * @return a copy of the class list
+         */
+        public ArrayList<ClassClass> getCatalog() {
+            return new ArrayList<ClassClass>(this.catalog);
+        }
+    }
+
+    /**
+     * The outcome of scheduling one session.
+     */
+    public static final class Result {
+        private final Session session;
+        private ScheduleSearch search;
+        private CompactSchedule best;
+        private Exception failure;
+        private long runNanos;
+        private long finishNanos;
+
+        /**
+         * Constructs the result of a session not yet scheduled.
+         *
+         * @param session the session
+         */
+        private Result(Session session) {
+            this.session = session;
+        }
+
+        /**
+         * Returns the session.
+         *
+         * @return the session
+         */
+        public Session getSession() {
+            return this.session;
+        }
+
+        /**
+         * Returns the session's search.
+         *
+         * @return the search, or null if it could not be constructed
+         */
+        public ScheduleSearch getSearch() {
+            return this.search;
+        }
+
+        /**
+         * Returns the best schedule found for the session.
+         *
+         * @return the best schedule, or null if the session failed
+         */
+        public CompactSchedule getBest() {
+            return this.failure == null ? this.best : null;
+        }
+
+        /**
+         * Returns the error the session failed with.
+         *
+         * @return the error, or null if the session was scheduled
+         */
+        public Exception getFailure() {
+            return this.failure;
+        }
+
+        /**
+         * Returns the time the session's search spent running, summed over its
+         * slices.
+         *
+         * @return the run time in nanoseconds
+         */
+        public long getRunNanos() {
+            return this.runNanos;
+        }
+
+        /**
+         * Returns the time from the start of the batch until the session
+         * finished.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getFinishNanos() {
+            return this.finishNanos;
+        }
+
+        /**
+         * Checks whether the session has finished, successfully or not.
+         *
+         * @return true if the session needs no more slices
+         */
+        private boolean isFinished() {
+            return this.failure != null || (this.search != null && this.search.isDone());
+        }
+    }
+
+    /**
+     * Constructs a batch scheduler on the common fork-join pool.
+     */
+    public BatchScheduler() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a batch scheduler on the specified pool.
+     *
+     * @param pool the pool searches run on
+     */
+    public BatchScheduler(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of attempts made for each session.
+     *
+     * @param attempts the number of attempts
+     */
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * Seeds every session's search, making the batch reproducible.
+     *
+     * @param seed the seed of the camper shuffles
+     */
+    public void setSeed(long seed) {
+        this.seeded = true;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets how long a search runs before the next one gets a turn.
+     *
+     * @param millis the time slice in milliseconds
+     */
+    public void setSliceMillis(long millis) {
+        this.sliceNanos = millis * 1000000L;
+    }
+
+    /**
+     * Sets whether sessions are searched with profile compression.
+     *
+     * @param profileCompression true to schedule profiles of identical campers
+     * @see ScheduleSearch#setProfileCompression(boolean)
+     */
+    public void setProfileCompression(boolean profileCompression) {
+        this.profileCompression = profileCompression;
+    }
+
+    /**
+     * Sets whether sessions are searched with adaptive camper ordering.
+     *
+     * @param adaptiveOrdering true to adapt camper orders to earlier attempts
+     * @see ScheduleSearch#setAdaptiveOrdering(boolean)
+     */
+    public void setAdaptiveOrdering(boolean adaptiveOrdering) {
+        this.adaptiveOrdering = adaptiveOrdering;
+    }
+
+    /**
+     * Schedules every session, returning once all have finished. A session
+     * that fails does not stop the others.
+     *
+     * @param sessions the sessions
+     * @return the results, in session order
+     */
+    public List<Result> run(List<Session> sessions) {
+        long batchStart = System.nanoTime();
+        ArrayList<Result> results = new ArrayList<Result>();
+        for (Session session : sessions) {
+            results.add(new Result(session));
+        }
+        ArrayList<Result> running = new ArrayList<Result>(results);
+        while (!running.isEmpty()) {
+            ArrayList<Callable<Void>> slices = new ArrayList<Callable<Void>>();
+            for (Result result : running) {
+                slices.add(() -> {
+                    this.runSlice(result, batchStart);
+                    return null;
+                });
+            }
+            this.pool.invokeAll(slices);
+            running.removeIf(Result::isFinished);
+        }
+        return results;
+    }
+
+    /**
+     * Runs one slice of a session's search on the current thread, constructing
+     * the search on its first slice.
+     *
+     * @param result     the session's result, updated in place
+     * @param batchStart the time the batch started
+     */
+    private void runSlice(Result result, long batchStart) {
+        long start = System.nanoTime();
+        try {
+            if (result.search == null) {
+                result.search = this.seeded
+                        ? new ScheduleSearch(result.session.catalog, result.session.roster, this.attempts, this.seed)
+                        : new ScheduleSearch(result.session.catalog, result.session.roster, this.attempts);
+                result.search.setProfileCompression(this.profileCompression);
+                result.search.setAdaptiveOrdering(this.adaptiveOrdering);
+            }
+            result.best = result.search.runFor(this.sliceNanos);
+        } catch (IOException | RuntimeException e) {
+            result.failure = e;
+        } finally {
+            long end = System.nanoTime();
+            result.runNanos += end - start;
+            if (result.isFinished()) {
+                result.finishNanos = end - batchStart;
+            }
+        }
+    }
+
+    /**
+     * Formats a report of a batch, one line per session.
+     *
+     * @param results the results of the batch
+     * @return the report
+     */
+    public static String formatReport(List<Result> results) {
+        StringBuffer out = new StringBuffer();
+        out.append(String.format(Locale.ROOT, "%-24s %8s %8s %9s %10s %10s %8s %10s %10s%n", "Session", "Campers",
+                "Classes", "Attempts", "Best", "Ideal", "Gap", "Run ms", "Done ms"));
+        long runNanos = 0;
+        for (Result result : results) {
+            runNanos += result.runNanos;
+            String name = result.session.name;
+            if (result.getBest() == null) {
+                out.append(String.format(Locale.ROOT, "%-24s failed: %s%n", name, result.failure));
+                continue;
+            }
+            ScheduleSearch search = result.search;
+            int ideal = search.getIdealScore();
+            int best = result.best.getScore();
+            out.append(String.format(Locale.ROOT, "%-24s %8d %8d %9d %10d %10d %7.1f%% %10d %10d%n", name,
+                    result.session.roster.size(), result.session.catalog.size(), search.getAttempt(), best, ideal,
+                    ideal <= 0 ? 0.0 : Math.max(0, best - ideal) * 100.0 / ideal, result.runNanos / 1000000,
+                    result.finishNanos / 1000000));
+        }
+        long finishNanos = 0;
+        for (Result result : results) {
+            finishNanos = Math.max(finishNanos, result.finishNanos);
+        }
+        out.append(String.format(Locale.ROOT, "%d sessions in %d ms, %d ms of search time%n", results.size(),
+                finishNanos / 1000000, runNanos / 1000000));
+        return out.toString();
+    }
+
+    /**
+     * Schedules every job in a jobs directory from the command line.
+     *
+     * @param args the command-line options
+     * @throws IOException if the jobs directory cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String jobs = "jobs";
+        int attempts = DEFAULT_ATTEMPTS;
+        Long seed = null;
+        long sliceMillis = DEFAULT_SLICE_MILLIS;
+        int threads = 0;
+        boolean profiles = false;
+        boolean adaptive = false;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--jobs":
+                    jobs = args[i + 1];
+                    break;
+                case "--attempts":
+                    attempts = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--slice":
+                    sliceMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--profiles":
+                    profiles = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--adaptive":
+                    adaptive = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        Path jobsDirectory = Paths.get(jobs);
+        if (!Files.isDirectory(jobsDirectory)) {
+            System.err.println("Not a directory: " + jobs);
+            System.exit(2);
+        }
+        List<Path> jobDirectories;
+        try (Stream<Path> entries = Files.list(jobsDirectory)) {
+            jobDirectories = entries.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+        ArrayList<Session> sessions = new ArrayList<Session>();
+        ArrayList<Path> sessionDirectories = new ArrayList<Path>();
+        for (Path job : jobDirectories) {
+            try {
+                ArrayList<ClassClass> catalog = new ArrayList<ClassClass>();
+                ArrayList<Camper> roster = SchedulerDaemon.loadJob(job, catalog);
+                sessions.add(new Session(job.getFileName().toString(), catalog, roster));
+                sessionDirectories.add(job);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Skipping " + job.getFileName() + ": " + e.getMessage());
+            }
+        }
+
+        SchedulerMetrics.setEnabled(true);
+        BatchScheduler scheduler = threads > 0 ? new BatchScheduler(new ForkJoinPool(threads))
+                : new BatchScheduler();
+        scheduler.setAttempts(attempts);
+        if (seed != null) {
+            scheduler.setSeed(seed);
+        }
+        scheduler.setSliceMillis(sliceMillis);
+        scheduler.setProfileCompression(profiles);
+        scheduler.setAdaptiveOrdering(adaptive);
+        List<Result> results = scheduler.run(sessions);
+
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            if (result.getBest() == null) {
+                failed++;
+                continue;
+            }
+            ArrayList<ClassClass> catalog = result.session.catalog;
+            new ScheduleExporter(result.best.expand(result.search.getCamperOrder(), catalog))
+                    .exportAll(sessionDirectories.get(i).resolve("schedule"), ScheduleExporter.Format.CSV);
+        }
+        System.out.print(formatReport(results));
+        System.out.println();
+        System.out.print(SchedulerMetrics.format());
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
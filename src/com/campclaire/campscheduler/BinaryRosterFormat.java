@@ -0,0 +1,365 @@
+package com.campclaire.campscheduler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes the versioned binary roster format read by {@link MappedRoster}, and
+ * converts between it and the JSON class list and roster files.
+ *
+ * A binary roster holds the class catalog followed by one fixed-size record per
+ * camper, so it can be memory-mapped and read without parsing. All values are
+ * big-endian:
+ *
+ * <pre>
+ * header (32 bytes)
+ *   int   magic "CCRB"
+ *   short format version
+ *   short number of classes
+ *   int   number of campers
+ *   int   offset of the class catalog
+ *   int   offset of the camper records
+ *   int   size of a camper record
+ *   int   offset of the name table
+ *   int   reserved
+ * class catalog, per class
+ *   UTF   title
+ *   byte  flags (double period, required, 10+, consecutive, swim level)
+ *   short single period cutoff
+ *   byte  number of restricted periods, then one byte per period
+ *   short number of concurrent restrictions, then one UTF title each
+ * camper records, per camper
+ *   byte  age
+ *   byte  swim level
+ *   byte  class id at each rank, best first (the rank matrix row)
+ * name table
+ *   int   offset of each name in the name bytes, plus the end offset
+ *   bytes UTF-8 names
+ * </pre>
+ */
+public class BinaryRosterFormat {
+    /** The magic number identifying a binary roster, "CCRB". */
+    public static final int MAGIC = 0x43435242;
+    /** The current format version. */
+    public static final short VERSION = 1;
+    /** The size of the fixed header. */
+    public static final int HEADER_SIZE = 32;
+    /** The largest number of classes a byte rank matrix can hold. */
+    public static final int MAX_CLASSES = 255;
+
+    static final int FLAG_DOUBLE_PERIOD = 1;
+    static final int FLAG_REQUIRED = 1 << 1;
+    static final int FLAG_10_PLUS = 1 << 2;
+    static final int FLAG_CONSECUTIVE = 1 << 3;
+    static final int FLAG_SWIM_LEVEL = 1 << 4;
+
+    /** The size of the buffer camper records are staged in before being written. */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes a binary roster incrementally: the catalog is written up front, then
+     * campers are appended one at a time through the {@link RosterImporter.CamperSink}
+     * interface, and {@link #close()} finishes the name table and header. The file
+     * is written to a temporary path and moved into place on close.
+     */
+    public static class Writer implements RosterImporter.CamperSink, AutoCloseable {
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final int numberClasses;
+        private final int recordSize;
+        private final int recordsOffset;
+        private final ByteBuffer records;
+        private final ByteArrayOutputStream names;
+        private int[] nameOffsets;
+        private int numberCampers;
+
+        /**
+         * Opens a writer and writes the class catalog.
+         *
+         * @param target  the file to write
+         * @param catalog the class catalog, in class id order
+         * @throws IOException if the file cannot be written
+         */
+        public Writer(Path target, List<ClassClass> catalog) throws IOException {
+            if (catalog.size() > MAX_CLASSES) {
+                throw new IOException("Binary rosters hold at most " + MAX_CLASSES + " classes");
+            }
+            this.target = target;
+            Path parent = target.toAbsolutePath().getParent();
+            this.temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+            this.channel = FileChannel.open(this.temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.numberClasses = catalog.size();
+            this.recordSize = 2 + this.numberClasses;
+            this.names = new ByteArrayOutputStream();
+            this.nameOffsets = new int[1024];
+            this.records = ByteBuffer.allocate(Math.max(WRITE_BUFFER_SIZE, this.recordSize));
+
+            ByteBuffer encodedCatalog = encodeCatalog(catalog);
+            this.recordsOffset = HEADER_SIZE + encodedCatalog.capacity();
+            this.channel.position(HEADER_SIZE);
+            writeFully(this.channel, encodedCatalog);
+        }
+
+        /**
+         * Appends a camper record.
+         *
+         * @param name           the camper's name
+         * @param age            the camper's age
+         * @param swimLevel      the camper's swim level
+         * @param rankedClassIds the class id at each rank, best first
+         * @throws IOException if the record cannot be written
+         */
+        @Override
+        public void accept(String name, int age, int swimLevel, int[] rankedClassIds) throws IOException {
+            if (rankedClassIds.length != this.numberClasses) {
+                throw new IOException("Camper \"" + name + "\" does not rank every class");
+            }
+            if (this.records.remaining() < this.recordSize) {
+                this.flushRecords();
+            }
+            this.records.put((byte) age).put((byte) swimLevel);
+            for (int classId : rankedClassIds) {
+                this.records.put((byte) classId);
+            }
+            if (this.numberCampers == this.nameOffsets.length) {
+                this.nameOffsets = Arrays.copyOf(this.nameOffsets, this.nameOffsets.length * 2);
+            }
+            this.nameOffsets[this.numberCampers++] = this.names.size();
+            this.names.write(name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Appends a camper record taken from a camper object.
+         *
+         * @param camper  the camper to append
+         * @param catalog the class catalog the writer was opened with
+         * @throws IOException if the record cannot be written
+         */
+        public void accept(Camper camper, List<ClassClass> catalog) throws IOException {
+            ClassClass[] choices = camper.getTotalClassChoices();
+            int[] rankedClassIds = new int[choices.length];
+            for (int i = 0; i < choices.length; i++) {
+                rankedClassIds[i] = catalog.indexOf(choices[i]);
+            }
+            this.accept(camper.getName(), camper.getAge(), camper.getSwimLevel(), rankedClassIds);
+        }
+
+        /**
+         * Writes the name table and header and moves the file into place.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                this.flushRecords();
+                long namesOffset = this.channel.position();
+                ByteBuffer table = ByteBuffer.allocate((this.numberCampers + 1) * 4);
+                for (int i = 0; i < this.numberCampers; i++) {
+                    table.putInt(this.nameOffsets[i]);
+                }
+                table.putInt(this.names.size()).flip();
+                writeFully(this.channel, table);
+                writeFully(this.channel, ByteBuffer.wrap(this.names.toByteArray()));
+                if (this.channel.position() > Integer.MAX_VALUE) {
+                    throw new IOException("Roster too large for the binary format");
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putShort(VERSION).putShort((short) this.numberClasses)
+                        .putInt(this.numberCampers).putInt(HEADER_SIZE).putInt(this.recordsOffset)
+                        .putInt(this.recordSize).putInt((int) namesOffset).putInt(0).flip();
+                this.channel.position(0);
+                writeFully(this.channel, header);
+                this.channel.force(false);
+            } finally {
+                this.channel.close();
+            }
+            Files.move(this.temp, this.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Writes the staged camper records to the file.
+         *
+         * @throws IOException if the records cannot be written
+         */
+        private void flushRecords() throws IOException {
+            this.records.flip();
+            writeFully(this.channel, this.records);
+            this.records.clear();
+        }
+    }
+
+    /**
+     * Writes a class catalog and roster to a binary roster file.
+     *
+     * @param target  the file to write
+     * @param catalog the class catalog
+     * @param roster  the campers
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path target, List<ClassClass> catalog, List<Camper> roster) throws IOException {
+        try (Writer writer = new Writer(target, catalog)) {
+            for (Camper camper : roster) {
+                writer.accept(camper, catalog);
+            }
+        }
+    }
+
+    /**
+     * Converts a JSON class list and roster to a binary roster. The roster is
+     * streamed, so it is never held in memory as camper objects.
+     *
+     * @param classesJson the JSON class list
+     * @param rosterJson  the JSON roster, or null to write the catalog only
+     * @param target      the binary roster to write
+     * @return the number of campers converted
+     * @throws IOException if a file cannot be read or written
+     */
+    public static int fromJson(File classesJson, File rosterJson, Path target) throws IOException {
+        ArrayList<ClassClass> catalog = readCatalog(classesJson);
+        try (Writer writer = new Writer(target, catalog)) {
+            return rosterJson == null ? 0 : new RosterImporter(catalog).importRoster(rosterJson, writer);
+        }
+    }
+
+    /**
+     * Converts a binary roster back to a JSON class list and roster, in the same
+     * formats written by "Save Classes" and "Save Roster".
+     *
+     * @param source      the binary roster to read
+     * @param classesJson the JSON class list to write
+     * @param rosterJson  the JSON roster to write
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void toJson(Path source, File classesJson, File rosterJson) throws IOException {
+        MappedRoster roster = MappedRoster.open(source);
+        ArrayList<ClassClass> catalog = roster.getCatalog();
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.writeValue(classesJson, catalog);
+
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(rosterJson, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartArray();
+            for (int i = 0; i < roster.getNumberCampers(); i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("age", roster.getAge(i));
+                generator.writeStringField("name", roster.getName(i));
+                generator.writeNumberField("swimLevel", roster.getSwimLevel(i));
+                generator.writeArrayFieldStart("totalClassChoices");
+                for (int rank = 0; rank < roster.getNumberClasses(); rank++) {
+                    mapper.writeValue(generator, catalog.get(roster.getRankedClassId(i, rank)));
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Reads a JSON class list.
+     *
+     * @param classesJson the JSON class list
+     * @return the classes, in file order
+     * @throws IOException if the file cannot be read
+     */
+    static ArrayList<ClassClass> readCatalog(File classesJson) throws IOException {
+        return new ObjectMapper().readValue(classesJson, new TypeReference<ArrayList<ClassClass>>() {
+        });
+    }
+
+    /**
+     * Encodes the class catalog section.
+     *
+     * @param catalog the class catalog
+     * @return a buffer holding the encoded catalog, ready to be written
+     */
+    private static ByteBuffer encodeCatalog(List<ClassClass> catalog) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (ClassClass class_ : catalog) {
+                out.writeUTF(class_.getTitle());
+                int flags = (class_.isDoublePeriod() ? FLAG_DOUBLE_PERIOD : 0)
+                        | (class_.isRequired() ? FLAG_REQUIRED : 0) | (class_.is10Plus() ? FLAG_10_PLUS : 0)
+                        | (class_.mustBeConsecutive() ? FLAG_CONSECUTIVE : 0)
+                        | (class_.requiresSwimLevel() ? FLAG_SWIM_LEVEL : 0);
+                out.writeByte(flags);
+                out.writeShort(class_.getSinglePeriodCutoff());
+                int[] restricted = class_.getRestrictedPeriods() == null ? new int[0] : class_.getRestrictedPeriods();
+                out.writeByte(restricted.length);
+                for (int period : restricted) {
+                    out.writeByte(period);
+                }
+                ArrayList<String> concurrent = class_.getRestrictedConcurrentClasses();
+                out.writeShort(concurrent.size());
+                for (String title : concurrent) {
+                    out.writeUTF(title);
+                }
+            }
+        } catch (IOException e) {
+            // Writing to a byte array cannot fail
+            throw new IllegalStateException(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Writes the whole buffer to the channel at its current position.
+     *
+     * @param channel the channel to write to
+     * @param buffer  the buffer to write
+     * @throws IOException if the buffer cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Converts between JSON and binary rosters from the command line.
+     *
+     * <pre>
+     * encode classes.json [roster.json] out.ccr
+     * decode in.ccr classes.json roster.json
+     * </pre>
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("encode")) {
+            File roster = args.length > 3 ? new File(args[2]) : null;
+            int campers = fromJson(new File(args[1]), roster, Paths.get(args[args.length - 1]));
+            System.out.println("Encoded " + campers + " campers");
+        } else if (args.length == 4 && args[0].equals("decode")) {
+            toJson(Paths.get(args[1]), new File(args[2]), new File(args[3]));
+        } else {
+            System.err.println("Usage: BinaryRosterFormat encode classes.json [roster.json] out.ccr");
+            System.err.println("       BinaryRosterFormat decode in.ccr classes.json roster.json");
+            System.exit(2);
+        }
+    }
+}
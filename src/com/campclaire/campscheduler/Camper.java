@@ -3,6 +3,7 @@ package com.campclaire.campscheduler;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -14,8 +15,8 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Camper extends CampResident implements Comparable<Object> {
-    /** The total number of classes available. */
-    final int TOTAL_CLASSES = ScheduleDriver.getClassList().size();
+    /** The rank returned by {@link #findRankOfChoice(ClassClass)} for a class that is not ranked. */
+    public static final int NOT_RANKED = -1;
     private ClassClass[] totalClassChoices;
     private ClassClass[] topClassChoices;
     private HashMap<ClassClass, Integer> finalChoicesBuffer;
@@ -27,12 +28,13 @@ public class Camper extends CampResident implements Comparable<Object> {
     private int numEnrolledClasses;
 
     /**
-     * Default constructor for camper, initializing default values.
+     * Default constructor for camper, initializing default values. The camper
+     * ranks no classes.
      */
     public Camper() {
         super();
 
-        this.totalClassChoices = new ClassClass[TOTAL_CLASSES];
+        this.totalClassChoices = new ClassClass[0];
         this.topClassChoices = new ClassClass[3];
         this.finalChoicesBuffer = new HashMap<ClassClass, Integer>(3);
         this.finalChoices = new ClassClass[3];
@@ -44,15 +46,17 @@ public class Camper extends CampResident implements Comparable<Object> {
     }
 
     /**
-     * Constructs a camper with specified age, name, and swim level.
+     * Constructs a camper with specified age, name, and swim level, to be given
+     * a rank for each class with {@link #addClassChoice(ClassClass, int)}.
      *
-     * @param age       the age of the camper
-     * @param name      the name of the camper
-     * @param swimLevel the swim level of the camper
+     * @param age           the age of the camper
+     * @param name          the name of the camper
+     * @param swimLevel     the swim level of the camper
+     * @param numberClasses the number of classes in the catalog
      */
-    public Camper(int age, String name, int swimLevel) {
+    public Camper(int age, String name, int swimLevel, int numberClasses) {
         super(age, name);
-        this.totalClassChoices = new ClassClass[TOTAL_CLASSES];
+        this.totalClassChoices = new ClassClass[numberClasses];
         this.topClassChoices = new ClassClass[3];
         this.finalChoicesBuffer = new HashMap<ClassClass, Integer>(3);
         this.finalChoices = new ClassClass[3];
@@ -297,7 +301,7 @@ public class Camper extends CampResident implements Comparable<Object> {
      * @throws IndexOutOfBoundsException if the rank is out of range
      */
     public ClassClass getChoiceOfRank(int rank) {
-        if (rank > 12) {
+        if (rank > this.totalClassChoices.length) {
             throw new IndexOutOfBoundsException("Specified Rank Out of Range");
         } else {
             return this.totalClassChoices[rank - 1];
@@ -312,14 +316,29 @@ public class Camper extends CampResident implements Comparable<Object> {
      * @throws NoSuchElementException if the class choice is not present
      */
     public int getRankOfChoice(ClassClass choice) {
+        int rank = this.findRankOfChoice(choice);
+        if (rank == NOT_RANKED) {
+            throw new NoSuchElementException("Specified Choice not Present in Class Selections");
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the rank of a specified class choice without throwing when the
+     * class is not ranked.
+     *
+     * @param choice the class choice to find the rank of
+     * @return the rank of the class choice, or {@link #NOT_RANKED}
+     */
+    public int findRankOfChoice(ClassClass choice) {
         int i = 0;
         for (ClassClass current : this.totalClassChoices) {
-            if (current.equals(choice)) {
+            if (current != null && current.equals(choice)) {
                 return i + 1;
             }
             i++;
         }
-        throw new NoSuchElementException("Specified Choice not Present in Class Selections");
+        return NOT_RANKED;
     }
 
     /**
@@ -557,8 +576,11 @@ public class Camper extends CampResident implements Comparable<Object> {
     /**
      * Configures the final class choices based on the highest and lowest ranked 
      * classes in the final choices buffer.
+     *
+     * @param catalog the class catalog, searched for the required class of
+     *                campers who need swim lessons
      */
-    public void configureFinalChoices() {
+    public void configureFinalChoices(List<ClassClass> catalog) {
         // first find highest (lowest int value) ranked class
         int highestRank = Integer.MAX_VALUE;
         ClassClass highestRankedChoice = null;
@@ -597,7 +619,7 @@ public class Camper extends CampResident implements Comparable<Object> {
         if (!this.requiresSwimLessons()) {
             this.finalChoices[2] = lowestRankedChoice;
         } else {
-            for (ClassClass class_ : ScheduleDriver.getClassList()) {
+            for (ClassClass class_ : catalog) {
                 if (class_.isRequired()) {
                     this.finalChoices[2] = class_;
                     break;
@@ -618,7 +640,7 @@ public class Camper extends CampResident implements Comparable<Object> {
      * @return true if the class choice is successfully added, false otherwise
      */
     public boolean addClassChoice(ClassClass choice, int rank) {
-        if (rank > TOTAL_CLASSES) {
+        if (rank > this.totalClassChoices.length) {
             return false;
         } else {
             if (rank >= 1 && rank <= 3) {
@@ -649,50 +671,42 @@ public class Camper extends CampResident implements Comparable<Object> {
     }
 
     /**
-     * Un-enrolls the camper from a specified class period.
+     * Un-enrolls the camper from a specified class period. The period is matched
+     * by identity, since its hash code changes as its roster changes.
      *
      * @param classPeriod the class period to un-enroll from
      */
     public void unEnroll(ClassPeriod classPeriod) {
-        this.schedule.remove(classPeriod);
-        this.numEnrolledClasses--;
+        if (this.schedule.removeIf(period -> period == classPeriod)) {
+            this.numEnrolledClasses--;
+        }
     }
 
     /**
-     * Finds the next ranked class after a specified class.
+     * Finds the next ranked class after a specified class that the camper can
+     * take. Unranked classes and running out of ranks are reported to
+     * {@link SchedulerDiagnostics}.
      *
      * @param class_ the class to start searching from
-     * @return the next ranked class choice
+     * @return the next ranked class choice, or null if there is none
      */
     public ClassClass findNextRankedClass(ClassClass class_) {
-        int rank = -1;
-        try {
-            rank = this.getRankOfChoice(class_);
-        } catch (NoSuchElementException e) {
-            e.printStackTrace();
+        int rank = this.findRankOfChoice(class_);
+        if (rank == NOT_RANKED) {
+            SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.RANK_NOT_FOUND, this, class_);
+            return null;
         }
         if (rank > 10) {
-            System.out.println("HMM");
+            SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.DEEP_RANK_WALK, this, class_);
         }
 
-        ClassClass choice = null;
-        while (choice == null) {
-            if (rank < this.totalClassChoices.length) {
-                if (this.canTakeClass(this.totalClassChoices[rank])) {
-                    choice = this.totalClassChoices[rank];
-                } else {
-                    rank++;
-                }
-            } else {
-                break;
+        for (; rank < this.totalClassChoices.length; rank++) {
+            if (this.canTakeClass(this.totalClassChoices[rank])) {
+                return this.totalClassChoices[rank];
             }
         }
-
-        if (choice == null) {
-            System.out.println("PROBLEMM");
-        }
-        return choice;
-
+        SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.RANKS_EXHAUSTED, this, class_);
+        return null;
     }
 
     /**
@@ -0,0 +1,160 @@
+package com.campclaire.campscheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Groups a roster into profiles: campers with the same rankings who are both
+ * or neither 10 plus and both or neither in need of swim lessons. The engine
+ * treats the campers of a profile identically, so a profile can be scheduled as
+ * a count of campers instead of one camper at a time.
+ *
+ * Each profile is represented by its first camper in roster order, and its
+ * members are kept as indices into the roster so a schedule of counts can be
+ * expanded back to individual campers.
+ */
+public class CamperProfiles {
+    private final ArrayList<Camper> representatives;
+    private final int[] weights;
+    private final int[][] members;
+    private final int[][] choices;
+    private final int[][] ranks;
+    private final boolean[][] canTake;
+
+    /**
+     * Groups a roster into profiles.
+     *
+     * @param campers the roster, in the order member indices refer to
+     * @param catalog the class catalog, in class id order
+     */
+    public CamperProfiles(List<Camper> campers, List<ClassClass> catalog) {
+        HashMap<ClassClass, Integer> classIds = CompactSchedule.classIds(catalog);
+        HashMap<String, Integer> profileIds = new HashMap<String, Integer>();
+        ArrayList<ArrayList<Integer>> groups = new ArrayList<ArrayList<Integer>>();
+        this.representatives = new ArrayList<Camper>();
+        StringBuffer key = new StringBuffer();
+        for (int i = 0; i < campers.size(); i++) {
+            Camper camper = campers.get(i);
+            key.setLength(0);
+            key.append(camper.is10Plus() ? 'A' : 'Y').append(camper.requiresSwimLessons() ? 'S' : 'N');
+            for (ClassClass class_ : camper.getTotalClassChoices()) {
+                key.append(',').append(class_ == null ? -1 : classIds.get(class_));
+            }
+            Integer profile = profileIds.get(key.toString());
+            if (profile == null) {
+                profile = groups.size();
+                profileIds.put(key.toString(), profile);
+                groups.add(new ArrayList<Integer>());
+                this.representatives.add(camper);
+            }
+            groups.get(profile).add(i);
+        }
+
+        int numberProfiles = groups.size();
+        this.weights = new int[numberProfiles];
+        this.members = new int[numberProfiles][];
+        this.choices = new int[numberProfiles][];
+        this.ranks = new int[numberProfiles][catalog.size()];
+        this.canTake = new boolean[numberProfiles][catalog.size()];
+        for (int g = 0; g < numberProfiles; g++) {
+            Camper representative = this.representatives.get(g);
+            this.weights[g] = groups.get(g).size();
+            this.members[g] = groups.get(g).stream().mapToInt(Integer::intValue).toArray();
+            ClassClass[] ranked = representative.getTotalClassChoices();
+            this.choices[g] = new int[ranked.length];
+            for (int r = 0; r < ranked.length; r++) {
+                this.choices[g][r] = ranked[r] == null ? CompactSchedule.NO_CLASS : classIds.get(ranked[r]);
+            }
+            for (int c = 0; c < catalog.size(); c++) {
+                this.ranks[g][c] = representative.findRankOfChoice(catalog.get(c));
+                this.canTake[g][c] = representative.canTakeClass(catalog.get(c));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of profiles.
+     *
+     * @return the number of profiles
+     */
+    public int size() {
+        return this.representatives.size();
+    }
+
+    /**
+     * Returns the first camper of each profile, in profile order.
+     *
+     * @return a copy of the representatives
+     */
+    public ArrayList<Camper> getRepresentatives() {
+        return new ArrayList<Camper>(this.representatives);
+    }
+
+    /**
+     * Maps each representative to the number of campers in its profile.
+     *
+     * @return the weight of each representative, keyed by identity
+     */
+    public IdentityHashMap<Camper, Integer> getWeightMap() {
+        IdentityHashMap<Camper, Integer> out = new IdentityHashMap<Camper, Integer>(this.weights.length * 2);
+        for (int g = 0; g < this.weights.length; g++) {
+            out.put(this.representatives.get(g), this.weights[g]);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the number of campers in a profile.
+     *
+     * @param profile the profile index
+     * @return the number of campers
+     */
+    public int getWeight(int profile) {
+        return this.weights[profile];
+    }
+
+    /**
+     * Returns the roster indices of the campers in a profile.
+     *
+     * @param profile the profile index
+     * @return the member indices, not copied
+     */
+    int[] getMembers(int profile) {
+        return this.members[profile];
+    }
+
+    /**
+     * Returns the class ids of a profile's rankings, best first.
+     *
+     * @param profile the profile index
+     * @return the ranked class ids, not copied; unranked positions hold
+     *         {@link CompactSchedule#NO_CLASS}
+     */
+    int[] getChoices(int profile) {
+        return this.choices[profile];
+    }
+
+    /**
+     * Returns the rank a profile gives a class.
+     *
+     * @param profile the profile index
+     * @param classId the class id
+     * @return the rank, from 1, or {@link Camper#NOT_RANKED}
+     */
+    int getRank(int profile, int classId) {
+        return this.ranks[profile][classId];
+    }
+
+    /**
+     * Checks whether the campers of a profile can take a class.
+     *
+     * @param profile the profile index
+     * @param classId the class id
+     * @return true if the class is open to the profile's age and swim level
+     */
+    boolean canTake(int profile, int classId) {
+        return this.canTake[profile][classId];
+    }
+}
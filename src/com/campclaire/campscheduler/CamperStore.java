@@ -0,0 +1,376 @@
+package com.campclaire.campscheduler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Holds a roster as columns of primitives for {@link ColumnarScheduleCreator}:
+ * each camper is a dense id, and their age, swim level, rankings and final
+ * choices are rows of flat arrays indexed by that id. An attempt then streams
+ * through a few contiguous arrays instead of following each camper's maps and
+ * sets around the heap.
+ *
+ * The two camper by class matrices, the rank of each class and the class at
+ * each rank, hold a byte per entry and are by far the largest part of a store.
+ * They can be kept on the heap, in direct memory, or in a memory-mapped file
+ * (see {@link Storage}), so a roster of hundreds of thousands of campers need
+ * not grow the heap the garbage collector manages. Heap stores read plain
+ * arrays, which is measurably faster than reading through a buffer. A store is
+ * never changed once built, so searches on several threads can share one.
+ *
+ * The {@link Camper} objects the store was built from remain the API-facing
+ * view of each camper; the engine only reaches for them to name a camper in a
+ * diagnostic.
+ *
+ * Final choices depend only on the roster and the catalog, never on the order
+ * campers are enrolled in, so they are computed once with the engine's own
+ * rules when the store is built. Both the choices made before unpopular classes
+ * are eliminated, which decide how classes are counted, and those made after,
+ * which decide enrollment, are kept.
+ */
+public class CamperStore {
+    /** The largest catalog a store can rank, since ranks are held in bytes. */
+    public static final int MAX_CLASSES = 255;
+    private static final int NUMBER_PERIODS = 3;
+    private static final byte NO_CHOICE = (byte) 0xFF;
+
+    /**
+     * Where a store keeps its rank matrices.
+     */
+    public enum Storage {
+        /** In a heap byte array. */
+        HEAP,
+        /** In direct memory, outside the heap. */
+        DIRECT,
+        /** In a memory-mapped scratch file, paged in and out by the OS. */
+        MAPPED
+    }
+
+    private final ArrayList<Camper> views;
+    private final int size;
+    private final int numberClasses;
+    private final byte[] ages;
+    private final byte[] swimLevels;
+    private final byte[] ranks;
+    private final byte[] choices;
+    private final ByteBuffer directRanks;
+    private final ByteBuffer directChoices;
+    private final short[] countedChoices;
+    private final short[] finalChoices;
+    private final int[] twins;
+
+    /**
+     * Builds a store over a roster, keeping its rank matrices on the heap. The
+     * campers' final choices and schedules are cleared afterwards.
+     *
+     * @param campers the roster, in the order camper ids refer to
+     * @param catalog the class catalog, in class id order
+     * @throws IllegalArgumentException if the catalog has more than
+     *                                  {@link #MAX_CLASSES} classes or the
+     *                                  matrices would exceed 2 GB
+     */
+    public CamperStore(List<Camper> campers, List<ClassClass> catalog) {
+        this(campers, catalog, null, matrixSize(campers, catalog));
+    }
+
+    /**
+     * Builds a store over a roster, keeping its rank matrices where specified.
+     * The campers' final choices and schedules are cleared afterwards.
+     *
+     * @param campers    the roster, in the order camper ids refer to
+     * @param catalog    the class catalog, in class id order
+     * @param storage    where to keep the rank matrices
+     * @param mappedFile the scratch file for {@link Storage#MAPPED}, created or
+     *                   replaced and deleted again once mapped; ignored otherwise
+     * @return the store
+     * @throws IOException              if the scratch file cannot be mapped
+     * @throws IllegalArgumentException if the catalog has more than
+     *                                  {@link #MAX_CLASSES} classes or the
+     *                                  matrices would exceed 2 GB
+     */
+    public static CamperStore create(List<Camper> campers, List<ClassClass> catalog, Storage storage,
+            Path mappedFile) throws IOException {
+        int size = matrixSize(campers, catalog);
+        switch (storage) {
+            case DIRECT:
+                return new CamperStore(campers, catalog, ByteBuffer.allocateDirect(size), size);
+            case MAPPED:
+                // The mapping outlives the channel, so the file can go as soon as it is mapped
+                try (FileChannel channel = FileChannel.open(mappedFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE)) {
+                    return new CamperStore(campers, catalog, channel.map(FileChannel.MapMode.READ_WRITE, 0, size),
+                            size);
+                }
+            default:
+                return new CamperStore(campers, catalog);
+        }
+    }
+
+    /**
+     * Checks whether a store can be built over a roster: the catalog has at
+     * most {@link #MAX_CLASSES} classes and the rank matrices fit in 2 GB.
+     *
+     * @param campers the roster
+     * @param catalog the class catalog
+     * @return true if a store can hold the roster
+     */
+    public static boolean fits(List<Camper> campers, List<ClassClass> catalog) {
+        return catalog.size() <= MAX_CLASSES && 2L * campers.size() * catalog.size() <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Computes the size of a roster's rank matrices.
+     *
+     * @param campers the roster
+     * @param catalog the class catalog
+     * @return the size in bytes
+     * @throws IllegalArgumentException if the catalog has more than
+     *                                  {@link #MAX_CLASSES} classes or the
+     *                                  matrices would exceed 2 GB
+     */
+    private static int matrixSize(List<Camper> campers, List<ClassClass> catalog) {
+        if (catalog.size() > MAX_CLASSES) {
+            throw new IllegalArgumentException(
+                    "A camper store ranks at most " + MAX_CLASSES + " classes, not " + catalog.size());
+        }
+        long size = 2L * campers.size() * catalog.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The rank matrices of " + campers.size() + " campers and "
+                    + catalog.size() + " classes exceed 2 GB");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Builds a store over a roster in the specified matrix memory.
+     *
+     * @param campers    the roster, in the order camper ids refer to
+     * @param catalog    the class catalog, in class id order
+     * @param matrices   off-heap memory for both rank matrices, or null to keep
+     *                   them in heap arrays
+     * @param matrixSize the size of both rank matrices, from
+     *                   {@link #matrixSize(List, List)}
+     */
+    private CamperStore(List<Camper> campers, List<ClassClass> catalog, ByteBuffer matrices, int matrixSize) {
+        HashMap<ClassClass, Integer> classIds = CompactSchedule.classIds(catalog);
+        this.views = new ArrayList<Camper>(campers);
+        this.size = campers.size();
+        this.numberClasses = catalog.size();
+        this.ages = new byte[this.size];
+        this.swimLevels = new byte[this.size];
+        if (matrices == null) {
+            this.ranks = new byte[matrixSize / 2];
+            this.choices = new byte[matrixSize / 2];
+            this.directRanks = null;
+            this.directChoices = null;
+        } else {
+            this.ranks = null;
+            this.choices = null;
+            this.directRanks = matrices.duplicate().position(0).limit(matrixSize / 2).slice();
+            this.directChoices = matrices.duplicate().position(matrixSize / 2).limit(matrixSize).slice();
+        }
+        this.countedChoices = new short[this.size * NUMBER_PERIODS];
+        this.finalChoices = new short[this.size * NUMBER_PERIODS];
+        this.twins = new int[this.size];
+        for (int i = 0; i < matrixSize / 2; i++) {
+            this.putMatrixByte(this.ranks, this.directRanks, i, (byte) 0);
+            this.putMatrixByte(this.choices, this.directChoices, i, NO_CHOICE);
+        }
+
+        HashMap<Camper, Integer> lastTwin = new HashMap<Camper, Integer>(this.size * 2);
+        for (int id = 0; id < this.size; id++) {
+            Camper camper = this.views.get(id);
+            this.ages[id] = (byte) Math.min(camper.getAge(), Byte.MAX_VALUE);
+            this.swimLevels[id] = (byte) Math.min(camper.getSwimLevel(), Byte.MAX_VALUE);
+            ClassClass[] ranked = camper.getTotalClassChoices();
+            for (int r = 0; r < ranked.length && r < this.numberClasses; r++) {
+                if (ranked[r] != null) {
+                    int classId = classIds.get(ranked[r]);
+                    this.putMatrixByte(this.choices, this.directChoices, id * this.numberClasses + r, (byte) classId);
+                    if (this.getRank(id, classId) == Camper.NOT_RANKED) {
+                        this.putMatrixByte(this.ranks, this.directRanks, id * this.numberClasses + classId,
+                                (byte) (r + 1));
+                    }
+                }
+            }
+            // Campers equal by name and age share class period rosters, so they are linked in a ring
+            Integer twin = lastTwin.put(camper, id);
+            if (twin == null) {
+                this.twins[id] = id;
+            } else {
+                this.twins[id] = this.twins[twin];
+                this.twins[twin] = id;
+            }
+        }
+
+        ScheduleCreator creator = new ScheduleCreator(catalog, this.views);
+        creator.findCamperChoices();
+        this.readFinalChoices(this.countedChoices, classIds);
+        creator.initializeClassCount();
+        creator.findCamperChoices();
+        this.readFinalChoices(this.finalChoices, classIds);
+        creator.clearCamperScheduleAndFinalChoices();
+    }
+
+    /**
+     * Writes a byte of a rank matrix, wherever it is kept.
+     *
+     * @param heap   the matrix array, or null if it is off the heap
+     * @param direct the matrix buffer, used if the array is null
+     * @param index  the byte index
+     * @param value  the byte
+     */
+    private void putMatrixByte(byte[] heap, ByteBuffer direct, int index, byte value) {
+        if (heap != null) {
+            heap[index] = value;
+        } else {
+            direct.put(index, value);
+        }
+    }
+
+    /**
+     * Copies each camper's final choices into a column.
+     *
+     * @param column   the column to fill, three entries per camper
+     * @param classIds the class ids
+     */
+    private void readFinalChoices(short[] column, HashMap<ClassClass, Integer> classIds) {
+        for (int id = 0; id < this.size; id++) {
+            ClassClass[] chosen = this.views.get(id).getFinalChoices();
+            for (int i = 0; i < NUMBER_PERIODS; i++) {
+                column[id * NUMBER_PERIODS + i] = (short) (chosen[i] == null ? CompactSchedule.NO_CLASS
+                        : classIds.get(chosen[i]));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of campers.
+     *
+     * @return the number of campers
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of classes in the catalog.
+     *
+     * @return the number of classes
+     */
+    public int getNumberClasses() {
+        return this.numberClasses;
+    }
+
+    /**
+     * Checks whether the rank matrices are kept outside the heap.
+     *
+     * @return true for {@link Storage#DIRECT} and {@link Storage#MAPPED} stores
+     */
+    public boolean isOffHeap() {
+        return this.ranks == null;
+    }
+
+    /**
+     * Returns the camper with an id.
+     *
+     * @param id the camper id
+     * @return the camper
+     */
+    public Camper getCamper(int id) {
+        return this.views.get(id);
+    }
+
+    /**
+     * Returns the age of a camper.
+     *
+     * @param id the camper id
+     * @return the age
+     */
+    public int getAge(int id) {
+        return this.ages[id];
+    }
+
+    /**
+     * Returns the swim level of a camper.
+     *
+     * @param id the camper id
+     * @return the swim level
+     */
+    public int getSwimLevel(int id) {
+        return this.swimLevels[id];
+    }
+
+    /**
+     * Returns the rank a camper gives a class.
+     *
+     * @param id      the camper id
+     * @param classId the class id
+     * @return the rank, from 1, or {@link Camper#NOT_RANKED}
+     */
+    int getRank(int id, int classId) {
+        int index = id * this.numberClasses + classId;
+        int rank = (this.ranks != null ? this.ranks[index] : this.directRanks.get(index)) & 0xFF;
+        return rank == 0 ? Camper.NOT_RANKED : rank;
+    }
+
+    /**
+     * Returns the class a camper ranked at a rank.
+     *
+     * @param id   the camper id
+     * @param rank the rank, from 1
+     * @return the class id, or {@link CompactSchedule#NO_CLASS} if the rank is
+     *         empty or past the last class
+     */
+    int getChoice(int id, int rank) {
+        if (rank > this.numberClasses) {
+            return CompactSchedule.NO_CLASS;
+        }
+        int index = id * this.numberClasses + rank - 1;
+        byte classId = this.choices != null ? this.choices[index] : this.directChoices.get(index);
+        return classId == NO_CHOICE ? CompactSchedule.NO_CLASS : classId & 0xFF;
+    }
+
+    /**
+     * Returns a camper's final choices before unpopular classes were
+     * eliminated, which are the ones classes are counted by.
+     *
+     * @param id    the camper id
+     * @param index the choice index, 0 to 2
+     * @return the class id, or {@link CompactSchedule#NO_CLASS}
+     */
+    int getCountedChoice(int id, int index) {
+        return this.countedChoices[id * NUMBER_PERIODS + index];
+    }
+
+    /**
+     * Returns a camper's final choices, which are the ones they are enrolled by.
+     *
+     * @param id    the camper id
+     * @param index the choice index, 0 to 2
+     * @return the class id, or {@link CompactSchedule#NO_CLASS}
+     */
+    int getFinalChoice(int id, int index) {
+        return this.finalChoices[id * NUMBER_PERIODS + index];
+    }
+
+    /**
+     * Returns the next camper equal to a camper by name and age. Such campers
+     * cannot share a class period, as a period's roster holds equal campers
+     * once.
+     *
+     * @param id the camper id
+     * @return the id of the next equal camper, or the camper's own id if it has
+     *         none
+     */
+    int getTwin(int id) {
+        return this.twins[id];
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Objects;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * Represents a class in the camp, including its properties such as periods, 
@@ -124,6 +125,7 @@ public class ClassClass {
      *
      * @return true if the class is for campers 10 years and older, false otherwise
      */
+    @JsonProperty("is10Plus")
     public boolean is10Plus() {
         return is10Plus;
     }
@@ -142,6 +144,7 @@ public class ClassClass {
      *
      * @return true if the class periods must be consecutive, false otherwise
      */
+    @JsonProperty("mustBeConsecutive")
     public boolean mustBeConsecutive() {
         return mustBeConsecutive;
     }
@@ -288,6 +291,7 @@ public class ClassClass {
      *
      * @return true if the class requires a swim level, false otherwise
      */
+    @JsonProperty("requiresSwimLevel")
     public boolean requiresSwimLevel() {
         return requiresSwimLevel;
     }
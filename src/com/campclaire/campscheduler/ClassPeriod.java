@@ -160,6 +160,15 @@ public class ClassPeriod {
         return this.class_.getTitle();
     }
 
+    /**
+     * Returns a copy of the campers enrolled in this class period.
+     *
+     * @return a copy of the roster
+     */
+    public ArrayList<Camper> getRoster() {
+        return new ArrayList<Camper>(this.roster);
+    }
+
     /**
      * Returns the current enrollment capacity.
      *
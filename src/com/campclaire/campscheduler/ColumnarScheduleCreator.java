@@ -0,0 +1,868 @@
+package com.campclaire.campscheduler;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Runs schedule attempts over a {@link CamperStore}, producing the same
+ * schedules as {@link ScheduleCreator#run()} over the same camper order without
+ * touching a {@link Camper} or building a {@link ClassPeriod} roster.
+ *
+ * Class layout is left to a {@link ScheduleCreator} holding no campers. It is
+ * given the top-3 vote counts of the store's campers, added to the count map in
+ * the order the shuffled campers would add them: the map's iteration order
+ * breaks ties between classes when slots are filled, so this keeps the layout
+ * identical. Enrollment then follows
+ * {@link ScheduleCreator#addCampersToEssentialClasses()} and
+ * {@link ScheduleCreator#addCampersToOtherClasses()} rule for rule over the
+ * store's columns and an array of period sizes per class.
+ *
+ * Each creator keeps the period assignments of its campers itself, four bytes
+ * per camper: the class of each period, and the number of classes with a flag
+ * for campers enrolled over a class's capacity. They are
+ * kept in direct memory when the store is, and in a heap array otherwise,
+ * which the JIT reads fastest. Several creators on different threads can share
+ * one store.
+ */
+public class ColumnarScheduleCreator {
+    private static final int NUMBER_PERIODS = 3;
+    private static final int NONE = -1;
+    private static final int ASSIGNMENT_SIZE = 4;
+    // No class in any period and no classes enrolled, as the four assignment bytes of a camper
+    private static final int UNASSIGNED = 0xFFFFFF00;
+    private static final byte UNASSIGNED_CLASS = (byte) 0xFF;
+    private static final int OVERRIDDEN = 0x40;
+    private static final int COUNT_MASK = 0x3F;
+
+    private final ArrayList<ClassClass> catalog;
+    private final HashMap<ClassClass, Integer> classIds;
+    private final CamperStore store;
+    private final ScheduleCreator creator;
+    private final int numberClasses;
+    private final boolean[] required;
+    private final boolean[] doublePeriod;
+    private final boolean[] tenPlus;
+    private final boolean[] requiresSwimLevel;
+    private final int[] capacity;
+    private final int[] titleIds;
+    private final int[] voteCounts;
+    private final int numberVotedClasses;
+    private final boolean[] counted;
+    private final boolean[] eliminated;
+    private final boolean[][] offered;
+    private final int[][] sizes;
+    private final int[] numberPeriods;
+    private final byte[] assignments;
+    private final ByteBuffer directAssignments;
+    private int fallbackWalks;
+    private int fallbackSteps;
+    private int overrideEnrollments;
+    private int emptyPeriods;
+    private int rankSum;
+    private int balanceSpread;
+    private int worstCamperRank;
+
+    /**
+     * Constructs a creator over a roster.
+     *
+     * @param catalog the class catalog, in class id order
+     * @param store   the roster
+     */
+    public ColumnarScheduleCreator(List<ClassClass> catalog, CamperStore store) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+        this.classIds = CompactSchedule.classIds(this.catalog);
+        this.store = store;
+        this.creator = new ScheduleCreator(this.catalog);
+        this.creator.setNumberCampers(store.size());
+
+        this.numberClasses = this.catalog.size();
+        this.required = new boolean[this.numberClasses];
+        this.doublePeriod = new boolean[this.numberClasses];
+        this.tenPlus = new boolean[this.numberClasses];
+        this.requiresSwimLevel = new boolean[this.numberClasses];
+        this.capacity = new int[this.numberClasses];
+        this.titleIds = new int[this.numberClasses];
+        HashMap<String, Integer> titles = new HashMap<String, Integer>(this.numberClasses * 2);
+        for (int c = 0; c < this.numberClasses; c++) {
+            ClassClass class_ = this.catalog.get(c);
+            this.required[c] = class_.isRequired();
+            this.doublePeriod[c] = class_.isDoublePeriod();
+            this.tenPlus[c] = class_.is10Plus();
+            this.requiresSwimLevel[c] = class_.requiresSwimLevel();
+            this.capacity[c] = class_.getSinglePeriodCutoff();
+            // Campers are enrolled in a class once by title, as Camper.isEnrolled compares titles
+            Integer titleId = titles.putIfAbsent(class_.getTitle(), c);
+            this.titleIds[c] = titleId == null ? c : titleId;
+        }
+
+        this.voteCounts = new int[this.numberClasses];
+        int voted = 0;
+        for (int id = 0; id < store.size(); id++) {
+            for (int i = 0; i < NUMBER_PERIODS; i++) {
+                int c = store.getCountedChoice(id, i);
+                if (c != CompactSchedule.NO_CLASS && this.voteCounts[c]++ == 0) {
+                    voted++;
+                }
+            }
+        }
+        this.numberVotedClasses = voted;
+        this.counted = new boolean[this.numberClasses];
+        this.eliminated = new boolean[this.numberClasses];
+        this.offered = new boolean[NUMBER_PERIODS][this.numberClasses];
+        this.sizes = new int[NUMBER_PERIODS][this.numberClasses];
+        this.numberPeriods = new int[this.numberClasses];
+        if (store.isOffHeap()) {
+            this.assignments = null;
+            this.directAssignments = ByteBuffer.allocateDirect(store.size() * ASSIGNMENT_SIZE);
+        } else {
+            this.assignments = new byte[store.size() * ASSIGNMENT_SIZE];
+            this.directAssignments = null;
+        }
+    }
+
+    /**
+     * Returns the creator that lays out classes. It holds no campers; its
+     * counters and eliminated classes are those of the last attempt.
+     *
+     * @return the layout creator
+     */
+    public ScheduleCreator getCreator() {
+        return this.creator;
+    }
+
+    /**
+     * Returns the roster this creator schedules.
+     *
+     * @return the camper store
+     */
+    public CamperStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Returns the number of classes eliminated in the last attempt.
+     *
+     * @return the number of eliminated classes
+     */
+    public int getNumberEliminatedClasses() {
+        return this.creator.getEliminatedClasses().size();
+    }
+
+    /**
+     * Runs one schedule attempt, enrolling campers in the specified order.
+     * Phases are timed and recorded like {@link ScheduleCreator#run()}, and the
+     * assignments are kept until the next attempt.
+     *
+     * @param order the camper ids, in enrollment order
+     * @return the score of the schedule, as {@link Schedule} would compute it
+     */
+    public int run(int[] order) {
+        long runStart = SchedulerMetrics.start();
+        long phaseStart = this.creator.layOutClasses(this.countVotes(order), runStart);
+        this.readLayout();
+        this.clearAssignments();
+        this.fallbackWalks = 0;
+        this.fallbackSteps = 0;
+        this.overrideEnrollments = 0;
+        this.addCampersToEssentialClasses(order);
+        phaseStart = this.creator.endPhase(SchedulerMetrics.Phase.ADD_CAMPERS_TO_ESSENTIAL_CLASSES, phaseStart);
+        this.addCampersToOtherClasses(order);
+        phaseStart = this.creator.endPhase(SchedulerMetrics.Phase.ADD_CAMPERS_TO_OTHER_CLASSES, phaseStart);
+        this.creator.addEnrollmentCounts(this.fallbackWalks, this.overrideEnrollments);
+        SchedulerMetrics.add(SchedulerMetrics.Counter.FALLBACK_WALKS, this.fallbackWalks);
+        SchedulerMetrics.add(SchedulerMetrics.Counter.FALLBACK_STEPS, this.fallbackSteps);
+        SchedulerMetrics.add(SchedulerMetrics.Counter.OVERRIDE_ENROLLMENTS, this.overrideEnrollments);
+        int score = this.calculateScore();
+        this.creator.endRun(phaseStart, runStart);
+        return score;
+    }
+
+    /**
+     * Enrolls the campers again over another layout of the classes, skipping
+     * the layout phases, so that layouts can be compared quickly. Classes the
+     * last run of {@link #run(int[])} eliminated stay eliminated. Phases are not
+     * timed or recorded, and the assignments are kept until the next attempt.
+     *
+     * @param order   the camper ids, in enrollment order
+     * @param periods the periods each class is offered in, by class id, with
+     *                bit 0 for the first period; eliminated classes must have
+     *                none
+     * @return the score of the schedule, as {@link Schedule} would compute it
+     * @see #getPeriods(int)
+     */
+    public int enroll(int[] order, int[] periods) {
+        for (int c = 0; c < this.numberClasses; c++) {
+            this.numberPeriods[c] = Integer.bitCount(periods[c]);
+            for (int p = 0; p < NUMBER_PERIODS; p++) {
+                this.offered[p][c] = (periods[c] & (1 << p)) != 0;
+                this.sizes[p][c] = 0;
+            }
+        }
+        this.clearAssignments();
+        this.fallbackWalks = 0;
+        this.fallbackSteps = 0;
+        this.overrideEnrollments = 0;
+        this.addCampersToEssentialClasses(order);
+        this.addCampersToOtherClasses(order);
+        return this.calculateScore();
+    }
+
+    /**
+     * Returns the periods a class was offered in by the last attempt.
+     *
+     * @param classId the class id
+     * @return the periods, with bit 0 for the first period, or 0 if the class
+     *         was eliminated
+     */
+    public int getPeriods(int classId) {
+        int periods = 0;
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (this.offered[p][classId]) {
+                periods |= 1 << p;
+            }
+        }
+        return periods;
+    }
+
+    /**
+     * Returns the number of camper periods the last attempt left without a
+     * class. They add nothing to the score.
+     *
+     * @return the number of empty periods
+     */
+    public int getEmptyPeriods() {
+        return this.emptyPeriods;
+    }
+
+    /**
+     * Returns the part of the last attempt's score owed to the ranks of the
+     * classes campers got.
+     *
+     * @return the rank sum
+     * @see ParetoArchive.Objective#RANK_SUM
+     */
+    public int getRankSum() {
+        return this.rankSum;
+    }
+
+    /**
+     * Returns the part of the last attempt's score owed to unbalanced periods.
+     *
+     * @return the balance spread
+     * @see ParetoArchive.Objective#BALANCE_SPREAD
+     */
+    public int getBalanceSpread() {
+        return this.balanceSpread;
+    }
+
+    /**
+     * Returns the worst rank any camper was given in the last attempt.
+     *
+     * @return the worst camper rank
+     * @see ParetoArchive.Objective#WORST_CAMPER_RANK
+     */
+    public int getWorstCamperRank() {
+        return this.worstCamperRank;
+    }
+
+    /**
+     * Builds the top-3 vote counts, adding each class when the first camper in
+     * order votes for it, as {@link ScheduleCreator#initializeClassCount()}
+     * does. Only the campers up to the last class's first vote are visited.
+     *
+     * @param order the camper ids, in enrollment order
+     * @return the vote count of each class voted for
+     */
+    private HashMap<ClassClass, Integer> countVotes(int[] order) {
+        HashMap<ClassClass, Integer> out = new HashMap<ClassClass, Integer>();
+        Arrays.fill(this.counted, false);
+        for (int i = 0; i < order.length && out.size() < this.numberVotedClasses; i++) {
+            for (int k = 0; k < NUMBER_PERIODS; k++) {
+                int c = this.store.getCountedChoice(order[i], k);
+                if (c != CompactSchedule.NO_CLASS && !this.counted[c]) {
+                    this.counted[c] = true;
+                    out.put(this.catalog.get(c), this.voteCounts[c]);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Reads the class layout from the layout creator and empties every period.
+     */
+    private void readLayout() {
+        HashSet<ClassClass> eliminatedClasses = this.creator.getEliminatedClasses();
+        for (int c = 0; c < this.numberClasses; c++) {
+            this.eliminated[c] = eliminatedClasses.contains(this.catalog.get(c));
+            this.numberPeriods[c] = 0;
+        }
+        ClassSlot[] slots = this.creator.getClassSlots();
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            Arrays.fill(this.offered[p], false);
+            Arrays.fill(this.sizes[p], 0);
+            for (ClassPeriod period : slots[p].getSlots()) {
+                int classId = this.classIds.get(period.getClass_());
+                this.offered[p][classId] = true;
+                this.numberPeriods[classId]++;
+            }
+        }
+    }
+
+    /**
+     * Enrolls campers in their required and double period classes, following
+     * {@link ScheduleCreator#addCampersToEssentialClasses()}.
+     *
+     * @param order the camper ids, in enrollment order
+     */
+    private void addCampersToEssentialClasses(int[] order) {
+        for (int id : order) {
+            for (int i = 0; i < NUMBER_PERIODS; i++) {
+                int choice = this.store.getFinalChoice(id, i);
+                if (choice == CompactSchedule.NO_CLASS) {
+                    continue;
+                }
+                if (this.required[choice]) {
+                    int period = this.findLeastFullPeriod(choice);
+                    if (period != NONE) {
+                        this.addCamper(id, choice, period, false);
+                    }
+                } else if (this.doublePeriod[choice]) {
+                    for (int p = 0; p < NUMBER_PERIODS; p++) {
+                        if (this.offered[p][choice]) {
+                            this.addCamper(id, choice, p, false);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Enrolls campers in their remaining classes in three passes, following
+     * {@link ScheduleCreator#addCampersToOtherClasses()}.
+     *
+     * @param order the camper ids, in enrollment order
+     */
+    private void addCampersToOtherClasses(int[] order) {
+        for (int i = 0; i < 3; i++) {
+            for (int id : order) {
+                int numberEnrolled = this.getNumberEnrolled(id);
+                if (numberEnrolled < 2) {
+                    this.enrollRankedClass(id);
+                } else if (numberEnrolled < 3) {
+                    this.enrollLastPeriod(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Enrolls a camper enrolled in fewer than two classes in the final choice
+     * offered in the fewest periods, in its least full period with room, or else
+     * in the next ranked class that has one.
+     *
+     * @param id the camper id
+     */
+    private void enrollRankedClass(int id) {
+        int attempt = this.findClassFirstLowestAvailableSlots(id);
+        if (attempt == NONE) {
+            return;
+        }
+        int leastFull = this.findLeastFullPeriod(attempt);
+        if (leastFull == NONE) {
+            return;
+        }
+        while (!this.addCamper(id, attempt, leastFull, false)) {
+            int periods = this.numberPeriods[attempt];
+            if (periods > 1) {
+                int secondLeastFull = this.findSecondLeastFullPeriod(attempt);
+                if (secondLeastFull != NONE && this.addCamper(id, attempt, secondLeastFull, false)) {
+                    return;
+                } else if (periods > 2) {
+                    int mostFull = this.findMostFullPeriod(attempt);
+                    if (mostFull != NONE && this.addCamper(id, attempt, mostFull, false)) {
+                        return;
+                    }
+                }
+            }
+            this.fallbackWalks++;
+            do {
+                int nextUp = this.findNextRankedClass(id, attempt);
+                while (nextUp != NONE && (this.eliminated[nextUp] || this.isEnrolled(id, nextUp))) {
+                    this.fallbackSteps++;
+                    nextUp = this.findNextRankedClass(id, nextUp);
+                }
+                this.fallbackSteps++;
+                attempt = nextUp;
+                leastFull = nextUp == NONE ? NONE : this.findLeastFullPeriod(attempt);
+            } while (leastFull == NONE && attempt != NONE);
+            if (attempt == NONE) {
+                // Out of ranked classes; later passes fill the period over capacity
+                return;
+            }
+        }
+    }
+
+    /**
+     * Enrolls a camper enrolled in two classes in the best ranked open class in
+     * their free period, or the best ranked class over capacity if none is open.
+     *
+     * @param id the camper id
+     */
+    private void enrollLastPeriod(int id) {
+        int period = NONE;
+        for (int p = 0; p < NUMBER_PERIODS && period == NONE; p++) {
+            if (this.getAssignment(id, p) == CompactSchedule.NO_CLASS) {
+                period = p;
+            }
+        }
+        if (period == NONE) {
+            return;
+        }
+        int best = this.findHighestRankedUnenrolledClass(id, period, true);
+        if (best != NONE) {
+            this.addCamper(id, best, period, false);
+        } else {
+            best = this.findHighestRankedUnenrolledClass(id, period, false);
+            if (best != NONE) {
+                this.addCamper(id, best, period, true);
+                this.overrideEnrollments++;
+            }
+        }
+    }
+
+    /**
+     * Finds the best ranked class offered in a period that is not required and
+     * the camper is not enrolled in.
+     *
+     * @param id       the camper id
+     * @param period   the period index
+     * @param openOnly true to consider only classes with room
+     * @return the class id, or {@code NONE}
+     */
+    private int findHighestRankedUnenrolledClass(int id, int period, boolean openOnly) {
+        int best = NONE;
+        int bestRank = Integer.MAX_VALUE;
+        for (int c = 0; c < this.numberClasses; c++) {
+            if (this.offered[period][c] && !this.required[c]
+                    && (!openOnly || this.sizes[period][c] < this.capacity[c])) {
+                int rank = this.store.getRank(id, c);
+                if (rank != Camper.NOT_RANKED && rank < bestRank && !this.isEnrolled(id, c)) {
+                    best = c;
+                    bestRank = rank;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the camper's final choice offered in the fewest periods, among those
+     * that are not required, eliminated or already taken.
+     *
+     * @param id the camper id
+     * @return the class id, or {@code NONE}
+     */
+    private int findClassFirstLowestAvailableSlots(int id) {
+        int lowestAvailable = NONE;
+        for (int i = 0; i < NUMBER_PERIODS; i++) {
+            int c = this.store.getFinalChoice(id, i);
+            if (c != CompactSchedule.NO_CLASS && !this.required[c] && !this.isEnrolled(id, c)
+                    && !this.eliminated[c]) {
+                if (this.numberPeriods[c] == 1) {
+                    return c;
+                }
+                if (lowestAvailable == NONE || this.numberPeriods[c] < this.numberPeriods[lowestAvailable]) {
+                    lowestAvailable = c;
+                }
+            }
+        }
+        return lowestAvailable;
+    }
+
+    /**
+     * Finds the next ranked class after a class that a camper can take, reporting
+     * the same diagnostics as {@link Camper#findNextRankedClass(ClassClass)}.
+     *
+     * @param id      the camper id
+     * @param classId the class to start after
+     * @return the class id, or {@code NONE}
+     */
+    private int findNextRankedClass(int id, int classId) {
+        int rank = this.store.getRank(id, classId);
+        if (rank == Camper.NOT_RANKED) {
+            SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.RANK_NOT_FOUND, this.store.getCamper(id),
+                    this.catalog.get(classId));
+            return NONE;
+        }
+        if (rank > 10) {
+            SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.DEEP_RANK_WALK, this.store.getCamper(id),
+                    this.catalog.get(classId));
+        }
+        for (; rank < this.numberClasses; rank++) {
+            int next = this.store.getChoice(id, rank + 1);
+            if (next != CompactSchedule.NO_CLASS && this.canTake(id, next)) {
+                return next;
+            }
+        }
+        SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.RANKS_EXHAUSTED, this.store.getCamper(id),
+                this.catalog.get(classId));
+        return NONE;
+    }
+
+    /**
+     * Checks whether a camper's age and swim level let them take a class, as
+     * {@link Camper#canTakeClass(ClassClass)} does.
+     *
+     * @param id      the camper id
+     * @param classId the class id
+     * @return true if the camper can take the class
+     */
+    private boolean canTake(int id, int classId) {
+        return !(this.tenPlus[classId] && this.store.getAge(id) <= 9)
+                && !(this.requiresSwimLevel[classId] && this.store.getSwimLevel(id) <= 3);
+    }
+
+    /**
+     * Finds the least full period of a class, preferring earlier periods.
+     *
+     * @param classId the class id
+     * @return the period index, or {@code NONE}
+     */
+    private int findLeastFullPeriod(int classId) {
+        if (this.eliminated[classId]) {
+            return NONE;
+        }
+        int leastFull = NONE;
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (this.offered[p][classId]
+                    && (leastFull == NONE || this.sizes[p][classId] < this.sizes[leastFull][classId])) {
+                leastFull = p;
+            }
+        }
+        if (leastFull == NONE) {
+            SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.MISSING_CLASS_PERIOD, null,
+                    this.catalog.get(classId));
+        }
+        return leastFull;
+    }
+
+    /**
+     * Finds the second least full period of a class, with the tie-breaking of
+     * {@link ScheduleCreator#findSecondLeastFullPeriod(ClassClass)}.
+     *
+     * @param classId the class id
+     * @return the period index, or {@code NONE}
+     */
+    private int findSecondLeastFullPeriod(int classId) {
+        int leastFull = this.findLeastFullPeriod(classId);
+        if (leastFull == NONE) {
+            return NONE;
+        }
+        if (this.numberPeriods[classId] > 2) {
+            int first = leastFull == 0 ? 1 : 0;
+            int second = leastFull == 2 ? 1 : 2;
+            return this.sizes[first][classId] < this.sizes[second][classId] ? first : second;
+        }
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (p != leastFull && this.offered[p][classId]) {
+                return p;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds the most full period of a class, preferring earlier periods.
+     *
+     * @param classId the class id
+     * @return the period index, or {@code NONE}
+     */
+    private int findMostFullPeriod(int classId) {
+        if (this.eliminated[classId]) {
+            return NONE;
+        }
+        int mostFull = NONE;
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (this.offered[p][classId]
+                    && (mostFull == NONE || this.sizes[p][classId] > this.sizes[mostFull][classId])) {
+                mostFull = p;
+            }
+        }
+        if (mostFull == NONE) {
+            SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.MISSING_CLASS_PERIOD, null,
+                    this.catalog.get(classId));
+        }
+        return mostFull;
+    }
+
+    /**
+     * Enrolls a camper in a class period, with the checks of
+     * {@link ClassPeriod#addCamper(Camper)}.
+     *
+     * @param id       the camper id
+     * @param classId  the class id
+     * @param period   the period index
+     * @param override true to enroll over capacity, as
+     *                 {@link ClassPeriod#addCamperOverride(Camper)} does
+     * @return true if the camper was enrolled
+     */
+    private boolean addCamper(int id, int classId, int period, boolean override) {
+        if (this.twinEnrolled(id, classId, period)
+                || this.getAssignment(id, period) != CompactSchedule.NO_CLASS || this.isEnrolled(id, classId)
+                || (!override && this.sizes[period][classId] >= this.capacity[classId])) {
+            return false;
+        }
+        this.setAssignmentByte(id * ASSIGNMENT_SIZE + period, (byte) classId);
+        int countIndex = id * ASSIGNMENT_SIZE + NUMBER_PERIODS;
+        int count = (this.getAssignmentByte(countIndex) + 1) | (override ? OVERRIDDEN : 0);
+        this.setAssignmentByte(countIndex, (byte) count);
+        this.sizes[period][classId]++;
+        return true;
+    }
+
+    /**
+     * Returns the class a camper is assigned during a period in the last
+     * attempt.
+     *
+     * @param id     the camper id
+     * @param period the period index, from 0
+     * @return the class id, or {@link CompactSchedule#NO_CLASS}
+     */
+    int getAssignment(int id, int period) {
+        byte classId = this.getAssignmentByte(id * ASSIGNMENT_SIZE + period);
+        return classId == UNASSIGNED_CLASS ? CompactSchedule.NO_CLASS : classId & 0xFF;
+    }
+
+    /**
+     * Returns the number of classes a camper is enrolled in.
+     *
+     * @param id the camper id
+     * @return the number of classes
+     */
+    private int getNumberEnrolled(int id) {
+        return this.getAssignmentByte(id * ASSIGNMENT_SIZE + NUMBER_PERIODS) & COUNT_MASK;
+    }
+
+    /**
+     * Measures a camper's part in the imbalance of their classes in the last
+     * attempt: for each class they sit in its fullest period, the class's
+     * contribution to the score's balance term. Those campers could have
+     * balanced the class had they been enrolled before the campers whose
+     * choices pinned its other periods.
+     *
+     * @param id the camper id
+     * @return zero for a camper in no over-full period, more the worse the imbalance
+     */
+    int getImbalanceBlame(int id) {
+        int blame = 0;
+        for (int period = 0; period < NUMBER_PERIODS; period++) {
+            int classId = this.getAssignment(id, period);
+            if (classId == CompactSchedule.NO_CLASS || this.eliminated[classId]) {
+                continue;
+            }
+            int smallest = Integer.MAX_VALUE;
+            int largest = 0;
+            for (int other = 0; other < NUMBER_PERIODS; other++) {
+                if (this.offered[other][classId]) {
+                    smallest = Math.min(smallest, this.sizes[other][classId]);
+                    largest = Math.max(largest, this.sizes[other][classId]);
+                }
+            }
+            if (this.sizes[period][classId] == largest && largest > smallest) {
+                blame += this.capacity[classId] * (largest - smallest);
+            }
+        }
+        return blame;
+    }
+
+    /**
+     * Measures how badly a camper fared in the last attempt: how far the ranks
+     * of their classes fall short of their best choices, with a penalty for
+     * each period left empty and for being enrolled over a class's capacity.
+     *
+     * @param id the camper id
+     * @return zero for a camper in their best choices, more the worse they fared
+     */
+    int getDissatisfaction(int id) {
+        int rankSum = 0;
+        int taken = 0;
+        int dissatisfaction = 0;
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            int classId = this.getAssignment(id, p);
+            if (classId == CompactSchedule.NO_CLASS) {
+                dissatisfaction += this.numberClasses;
+            } else if (!this.required[classId]) {
+                rankSum += this.store.getRank(id, classId);
+                taken++;
+            }
+        }
+        // The best a camper taking some classes can do is their first choices in rank order
+        dissatisfaction += Math.max(0, rankSum - taken * (taken + 1) / 2);
+        if ((this.getAssignmentByte(id * ASSIGNMENT_SIZE + NUMBER_PERIODS) & OVERRIDDEN) != 0) {
+            dissatisfaction += this.numberClasses;
+        }
+        return dissatisfaction;
+    }
+
+    /**
+     * Reads a byte of the assignments, wherever they are kept.
+     *
+     * @param index the byte index
+     * @return the byte
+     */
+    private byte getAssignmentByte(int index) {
+        return this.assignments != null ? this.assignments[index] : this.directAssignments.get(index);
+    }
+
+    /**
+     * Writes a byte of the assignments, wherever they are kept.
+     *
+     * @param index the byte index
+     * @param value the byte
+     */
+    private void setAssignmentByte(int index, byte value) {
+        if (this.assignments != null) {
+            this.assignments[index] = value;
+        } else {
+            this.directAssignments.put(index, value);
+        }
+    }
+
+    /**
+     * Clears every camper's assignments for a new attempt.
+     */
+    private void clearAssignments() {
+        for (int id = 0; id < this.store.size(); id++) {
+            if (this.assignments != null) {
+                int base = id * ASSIGNMENT_SIZE;
+                this.assignments[base] = UNASSIGNED_CLASS;
+                this.assignments[base + 1] = UNASSIGNED_CLASS;
+                this.assignments[base + 2] = UNASSIGNED_CLASS;
+                this.assignments[base + NUMBER_PERIODS] = 0;
+            } else {
+                this.directAssignments.putInt(id * ASSIGNMENT_SIZE, UNASSIGNED);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a camper equal to a camper by name and age is already on a
+     * class period's roster.
+     *
+     * @param id      the camper id
+     * @param classId the class id
+     * @param period  the period index
+     * @return true if an equal camper holds the period
+     */
+    private boolean twinEnrolled(int id, int classId, int period) {
+        for (int twin = this.store.getTwin(id); twin != id; twin = this.store.getTwin(twin)) {
+            if (this.getAssignment(twin, period) == classId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a camper is enrolled in a class, with the double period
+     * rule of {@link Camper#isEnrolled(ClassClass)}.
+     *
+     * @param id      the camper id
+     * @param classId the class id
+     * @return true if the camper is enrolled in the class
+     */
+    private boolean isEnrolled(int id, int classId) {
+        boolean enrolledDoublePeriod = false;
+        int periods = 0;
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            int assigned = this.getAssignment(id, p);
+            if (assigned != CompactSchedule.NO_CLASS) {
+                enrolledDoublePeriod |= this.doublePeriod[assigned];
+                if (this.titleIds[assigned] == this.titleIds[classId]) {
+                    periods++;
+                }
+            }
+        }
+        return enrolledDoublePeriod ? periods > 1 : periods > 0;
+    }
+
+    /**
+     * Scores the schedule, as {@link Schedule#calculateScheduleScore()} scores
+     * it.
+     *
+     * @return the score
+     */
+    private int calculateScore() {
+        int score = 0;
+        this.emptyPeriods = 0;
+        this.worstCamperRank = 0;
+        int unranked = this.numberClasses + 1;
+        for (int id = 0; id < this.store.size(); id++) {
+            for (int p = 0; p < NUMBER_PERIODS; p++) {
+                int classId = this.getAssignment(id, p);
+                if (classId == CompactSchedule.NO_CLASS) {
+                    this.emptyPeriods++;
+                    this.worstCamperRank = unranked;
+                } else if (this.required[classId]) {
+                    score += 3;
+                } else {
+                    int rank = this.store.getRank(id, classId);
+                    score += rank;
+                    this.worstCamperRank = Math.max(this.worstCamperRank, rank == Camper.NOT_RANKED ? unranked : rank);
+                }
+            }
+        }
+        this.rankSum = score;
+        for (int c = 0; c < this.numberClasses; c++) {
+            if (!this.eliminated[c]) {
+                int lowestEnrolled = Integer.MAX_VALUE;
+                int highestEnrolled = Integer.MIN_VALUE;
+                for (int p = 0; p < NUMBER_PERIODS; p++) {
+                    if (this.offered[p][c]) {
+                        lowestEnrolled = Math.min(lowestEnrolled, this.sizes[p][c]);
+                        highestEnrolled = Math.max(highestEnrolled, this.sizes[p][c]);
+                    }
+                }
+                score += this.capacity[c] * (highestEnrolled - lowestEnrolled);
+            }
+        }
+        this.balanceSpread = score - this.rankSum;
+        return score;
+    }
+
+    /**
+     * Snapshots the last attempt as a compact schedule.
+     *
+     * @param score the score returned by {@link #run(int[])}
+     * @return the compact schedule, indexed by camper id
+     */
+    public CompactSchedule toCompactSchedule(int score) {
+        int[][] layout = new int[NUMBER_PERIODS][];
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            int offeredCount = 0;
+            for (boolean isOffered : this.offered[p]) {
+                offeredCount += isOffered ? 1 : 0;
+            }
+            layout[p] = new int[offeredCount];
+            int i = 0;
+            for (int c = 0; c < this.numberClasses; c++) {
+                if (this.offered[p][c]) {
+                    layout[p][i++] = c;
+                }
+            }
+        }
+        int[] assigned = new int[this.store.size() * NUMBER_PERIODS];
+        for (int id = 0; id < this.store.size(); id++) {
+            for (int p = 0; p < NUMBER_PERIODS; p++) {
+                assigned[id * NUMBER_PERIODS + p] = this.getAssignment(id, p);
+            }
+        }
+        return new CompactSchedule(layout, assigned, score);
+    }
+}
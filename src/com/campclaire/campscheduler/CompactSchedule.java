@@ -0,0 +1,280 @@
+package com.campclaire.campscheduler;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A compact, self-contained snapshot of a {@link Schedule}. Classes are stored
+ * as ids (their index in the class catalog) and campers as their index in a
+ * fixed camper order, so a snapshot holds only primitive arrays and can be
+ * retained, written to disk, and later expanded back into a full schedule.
+ *
+ * Unlike a {@link Schedule}, a snapshot is not affected when the engine later
+ * clears and re-enrolls the same camper objects.
+ *
+ * A snapshot taken by {@link ScheduleSearch} remembers the attempt that found
+ * it, which with the search's seed is enough to find it again. The attempt is
+ * not part of the stream format, so snapshots read back from a stream do not
+ * know it.
+ */
+public class CompactSchedule {
+    /** Marks a period in which a camper has no class. */
+    public static final int NO_CLASS = -1;
+    /** Marks a snapshot whose attempt is not known. */
+    public static final int NO_ATTEMPT = -1;
+
+    private final int[][] layout;
+    private final int[] assignments;
+    private final int score;
+    private final int attempt;
+
+    /**
+     * Constructs a compact schedule from its raw arrays.
+     *
+     * @param layout      the class ids offered in each of the three periods
+     * @param assignments the class id of each camper in each period, indexed by
+     *                    {@code camper * 3 + (period - 1)}
+     * @param score       the score of the schedule
+     */
+    public CompactSchedule(int[][] layout, int[] assignments, int score) {
+        this(layout, assignments, score, NO_ATTEMPT);
+    }
+
+    /**
+     * Constructs a compact schedule from its raw arrays and the attempt that
+     * found it.
+     *
+     * @param layout      the class ids offered in each of the three periods
+     * @param assignments the class id of each camper in each period
+     * @param score       the score of the schedule
+     * @param attempt     the index of the attempt, or {@link #NO_ATTEMPT}
+     */
+    private CompactSchedule(int[][] layout, int[] assignments, int score, int attempt) {
+        this.layout = layout;
+        this.assignments = assignments;
+        this.score = score;
+        this.attempt = attempt;
+    }
+
+    /**
+     * Returns this snapshot marked with the attempt that found it. The arrays
+     * are shared, as neither snapshot changes them.
+     *
+     * @param attempt the index of the attempt
+     * @return the marked snapshot
+     */
+    public CompactSchedule withAttempt(int attempt) {
+        return new CompactSchedule(this.layout, this.assignments, this.score, attempt);
+    }
+
+    /**
+     * Takes a snapshot of a schedule. Enrollments are read from the rosters of the
+     * schedule's class periods rather than from the campers, since the campers may
+     * have been re-enrolled by a later attempt.
+     *
+     * @param schedule the schedule to snapshot
+     * @param campers  the camper order used to index campers
+     * @param catalog  the class catalog used to index classes
+     * @return the compact schedule
+     */
+    public static CompactSchedule of(Schedule schedule, List<Camper> campers, List<ClassClass> catalog) {
+        HashMap<ClassClass, Integer> classIds = classIds(catalog);
+        IdentityHashMap<Camper, Integer> camperIds = new IdentityHashMap<Camper, Integer>(campers.size() * 2);
+        for (int i = 0; i < campers.size(); i++) {
+            camperIds.put(campers.get(i), i);
+        }
+        int[] assignments = new int[campers.size() * 3];
+        Arrays.fill(assignments, NO_CLASS);
+        ClassSlot[] slots = schedule.getClassSlots();
+        int[][] layout = new int[slots.length][];
+        for (int p = 0; p < slots.length; p++) {
+            ArrayList<Integer> offered = new ArrayList<Integer>();
+            for (ClassPeriod period : slots[p].getSlots()) {
+                int classId = classIds.get(period.getClass_());
+                offered.add(classId);
+                for (Camper camper : period.getRoster()) {
+                    Integer camperId = camperIds.get(camper);
+                    if (camperId != null) {
+                        assignments[camperId * 3 + period.getPeriod() - 1] = classId;
+                    }
+                }
+            }
+            offered.sort(null);
+            layout[p] = offered.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new CompactSchedule(layout, assignments, schedule.getScore());
+    }
+
+    /**
+     * Expands this snapshot back into a full schedule, clearing and re-enrolling
+     * the specified campers.
+     *
+     * @param campers the camper order the snapshot was taken with
+     * @param catalog the class catalog the snapshot was taken with
+     * @return the expanded schedule
+     */
+    public Schedule expand(List<Camper> campers, List<ClassClass> catalog) {
+        ClassSlot[] slots = new ClassSlot[this.layout.length];
+        ClassPeriod[][] periods = new ClassPeriod[this.layout.length][catalog.size()];
+        HashSet<ClassClass> eliminated = new HashSet<ClassClass>(catalog);
+        for (int p = 0; p < this.layout.length; p++) {
+            slots[p] = new ClassSlot(p + 1, this.layout[p].length);
+            for (int classId : this.layout[p]) {
+                ClassClass class_ = catalog.get(classId);
+                periods[p][classId] = new ClassPeriod(class_, p + 1);
+                slots[p].addClassPeriod(periods[p][classId]);
+                eliminated.remove(class_);
+            }
+        }
+        for (int i = 0; i < campers.size(); i++) {
+            Camper camper = campers.get(i);
+            camper.clearScheduleAndFinalChoices();
+            for (int p = 0; p < this.layout.length; p++) {
+                int classId = this.assignments[i * 3 + p];
+                if (classId != NO_CLASS) {
+                    periods[p][classId].addCamperOverride(camper);
+                }
+            }
+        }
+        return new Schedule(new ArrayList<Camper>(campers), slots, eliminated, catalog);
+    }
+
+    /**
+     * Estimates the heap the snapshot occupies, assuming compressed references
+     * and 8-byte alignment.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getRetainedBytes() {
+        long bytes = align(12 + 4 + 4 + 4 + 4) + align(16 + 4L * this.assignments.length)
+                + align(16 + 4L * this.layout.length);
+        for (int[] offered : this.layout) {
+            bytes += align(16 + 4L * offered.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Rounds a size up to the JVM's object alignment.
+     *
+     * @param bytes the unaligned size
+     * @return the aligned size
+     */
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns the score of the snapshotted schedule.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Returns the index of the search attempt that found the schedule.
+     *
+     * @return the attempt index, or {@link #NO_ATTEMPT} if it is not known
+     * @see ScheduleSearch#replayAttempt(int)
+     */
+    public int getAttempt() {
+        return this.attempt;
+    }
+
+    /**
+     * Returns the number of campers in the snapshot.
+     *
+     * @return the number of campers
+     */
+    public int getNumberCampers() {
+        return this.assignments.length / 3;
+    }
+
+    /**
+     * Returns the class id the camper is enrolled in during a period.
+     *
+     * @param camper the camper index
+     * @param period the period, from 1 to 3
+     * @return the class id, or {@link #NO_CLASS}
+     */
+    public int getAssignment(int camper, int period) {
+        return this.assignments[camper * 3 + period - 1];
+    }
+
+    /**
+     * Returns the class ids offered during a period.
+     *
+     * @param period the period, from 1 to 3
+     * @return a copy of the class ids offered
+     */
+    public int[] getLayout(int period) {
+        return this.layout[period - 1].clone();
+    }
+
+    /**
+     * Writes this snapshot to a data stream.
+     *
+     * @param out the stream to write to
+     * @throws IOException if an error occurs while writing
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(this.score);
+        out.writeByte(this.layout.length);
+        for (int[] offered : this.layout) {
+            out.writeShort(offered.length);
+            for (int classId : offered) {
+                out.writeShort(classId);
+            }
+        }
+        out.writeInt(this.assignments.length);
+        for (int classId : this.assignments) {
+            out.writeShort(classId);
+        }
+    }
+
+    /**
+     * Reads a snapshot previously written with {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in the stream to read from
+     * @return the snapshot
+     * @throws IOException if an error occurs while reading
+     */
+    public static CompactSchedule readFrom(DataInputStream in) throws IOException {
+        int score = in.readInt();
+        int[][] layout = new int[in.readByte()][];
+        for (int p = 0; p < layout.length; p++) {
+            layout[p] = new int[in.readShort()];
+            for (int i = 0; i < layout[p].length; i++) {
+                layout[p][i] = in.readShort();
+            }
+        }
+        int[] assignments = new int[in.readInt()];
+        for (int i = 0; i < assignments.length; i++) {
+            assignments[i] = in.readShort();
+        }
+        return new CompactSchedule(layout, assignments, score);
+    }
+
+    /**
+     * Maps each class in the catalog to its id.
+     *
+     * @param catalog the class catalog
+     * @return a map from class to class id
+     */
+    static HashMap<ClassClass, Integer> classIds(List<ClassClass> catalog) {
+        HashMap<ClassClass, Integer> out = new HashMap<ClassClass, Integer>(catalog.size() * 2);
+        for (int i = 0; i < catalog.size(); i++) {
+            out.put(catalog.get(i), i);
+        }
+        return out;
+    }
+}
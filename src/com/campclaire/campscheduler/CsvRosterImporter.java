@@ -0,0 +1,444 @@
+package com.campclaire.campscheduler;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Imports a camper roster from a spreadsheet or form CSV export. The header row
+ * names the columns: a name column, an age column, a swim level column, and one
+ * column per class whose header is the class title (or contains it in square
+ * brackets, as form exports do, e.g. {@code "Rank your classes [Archery]"}).
+ * Each class column holds the camper's rank for that class.
+ *
+ * The file is memory-mapped and split into chunks at line boundaries which are
+ * parsed in parallel. Rows are validated the same way the GUI validates typed
+ * rankings, and invalid rows are collected into an error report instead of
+ * stopping the import. Quoted fields may contain commas but not line breaks.
+ */
+public class CsvRosterImporter {
+    /** The smallest chunk worth parsing on its own thread. */
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final List<ClassClass> catalog;
+
+    /**
+     * An error found in a single row of the CSV file.
+     */
+    public static class RowError {
+        private final int row;
+        private final String message;
+
+        /**
+         * Constructs a row error.
+         *
+         * @param row     the one-based line number of the row
+         * @param message the description of the error
+         */
+        public RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        /**
+         * Returns the one-based line number of the row.
+         *
+         * @return the line number
+         */
+        public int getRow() {
+            return this.row;
+        }
+
+        /**
+         * Returns the description of the error.
+         *
+         * @return the error message
+         */
+        public String getMessage() {
+            return this.message;
+        }
+
+        /**
+         * Returns the error as "Row n: message".
+         *
+         * @return a string representation of the error
+         */
+        @Override
+        public String toString() {
+            return "Row " + this.row + ": " + this.message;
+        }
+    }
+
+    /**
+     * The result of an import: the campers from every valid row, in file order,
+     * and an error for every invalid row.
+     */
+    public static class Result {
+        private final ArrayList<Camper> campers;
+        private final ArrayList<RowError> errors;
+
+        /**
+         * Constructs an import result.
+         *
+         * @param campers the imported campers
+         * @param errors  the row errors
+         */
+        Result(ArrayList<Camper> campers, ArrayList<RowError> errors) {
+            this.campers = campers;
+            this.errors = errors;
+        }
+
+        /**
+         * Returns the campers imported from valid rows.
+         *
+         * @return the campers, in file order
+         */
+        public ArrayList<Camper> getCampers() {
+            return this.campers;
+        }
+
+        /**
+         * Returns the errors found in invalid rows.
+         *
+         * @return the row errors, in file order
+         */
+        public ArrayList<RowError> getErrors() {
+            return this.errors;
+        }
+
+        /**
+         * Returns the error report, one error per line.
+         *
+         * @return the error report
+         */
+        public String getErrorReport() {
+            StringBuffer out = new StringBuffer();
+            for (RowError error : this.errors) {
+                out.append(error).append('\n');
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * The columns of the CSV file that the importer reads.
+     */
+    private static class Columns {
+        int name = -1;
+        int age = -1;
+        int swimLevel = -1;
+        int[] classColumns;
+    }
+
+    /**
+     * The rows parsed from one chunk of the file.
+     */
+    private static class ChunkResult {
+        final ArrayList<Camper> campers = new ArrayList<Camper>();
+        final ArrayList<RowError> errors = new ArrayList<RowError>();
+        int lines;
+    }
+
+    /**
+     * Constructs an importer that matches columns against the specified catalog.
+     *
+     * @param catalog the class catalog, in class id order
+     */
+    public CsvRosterImporter(List<ClassClass> catalog) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+    }
+
+    /**
+     * Imports a CSV roster.
+     *
+     * @param csvFile the CSV file
+     * @return the imported campers and row errors
+     * @throws IOException if the file cannot be read or its header is unusable
+     */
+    public Result importRoster(Path csvFile) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int limit = buffer.limit();
+        int start = 0;
+        if (limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+                && buffer.get(2) == (byte) 0xBF) {
+            start = 3;
+        }
+        int headerEnd = findLineEnd(buffer, start, limit);
+        if (headerEnd == start) {
+            throw new IOException("CSV file has no header row");
+        }
+        Columns columns = this.readHeader(splitLine(decode(buffer, start, headerEnd)));
+        int bodyStart = Math.min(headerEnd + 1, limit);
+
+        // Split the body into chunks that each begin at the start of a line
+        int numberChunks = Math.max(1,
+                Math.min(Runtime.getRuntime().availableProcessors() * 4, (limit - bodyStart) / MIN_CHUNK_SIZE));
+        int[] bounds = new int[numberChunks + 1];
+        bounds[0] = bodyStart;
+        for (int i = 1; i < numberChunks; i++) {
+            int guess = Math.max(bounds[i - 1], bodyStart + (int) ((long) (limit - bodyStart) * i / numberChunks));
+            bounds[i] = Math.min(findLineEnd(buffer, guess, limit) + 1, limit);
+        }
+        bounds[numberChunks] = limit;
+
+        List<ChunkResult> chunks = IntStream.range(0, numberChunks).parallel()
+                .mapToObj(i -> this.parseChunk(buffer, bounds[i], bounds[i + 1], columns))
+                .collect(Collectors.toList());
+
+        // Chunk row numbers are local; offset them by the lines in earlier chunks
+        ArrayList<Camper> campers = new ArrayList<Camper>();
+        ArrayList<RowError> errors = new ArrayList<RowError>();
+        int firstLine = 2;
+        for (ChunkResult chunk : chunks) {
+            campers.addAll(chunk.campers);
+            for (RowError error : chunk.errors) {
+                errors.add(new RowError(error.getRow() + firstLine, error.getMessage()));
+            }
+            firstLine += chunk.lines;
+        }
+        return new Result(campers, errors);
+    }
+
+    /**
+     * Maps header names to the name, age, swim level and class columns.
+     *
+     * @param header the header fields
+     * @return the column mapping
+     * @throws IOException if a required column is missing
+     */
+    private Columns readHeader(ArrayList<String> header) throws IOException {
+        Columns columns = new Columns();
+        columns.classColumns = new int[this.catalog.size()];
+        HashMap<String, Integer> classIds = new HashMap<String, Integer>();
+        for (int i = 0; i < this.catalog.size(); i++) {
+            classIds.put(normalize(this.catalog.get(i).getTitle()), i);
+            columns.classColumns[i] = -1;
+        }
+        for (int i = 0; i < header.size(); i++) {
+            String field = normalize(header.get(i));
+            int open = field.lastIndexOf('[');
+            int close = field.lastIndexOf(']');
+            if (open >= 0 && close > open) {
+                field = field.substring(open + 1, close).trim();
+            }
+            Integer classId = classIds.get(field);
+            if (classId != null && columns.classColumns[classId] == -1) {
+                columns.classColumns[classId] = i;
+            } else if (columns.name == -1 && (field.equals("name") || field.equals("camper")
+                    || field.equals("camper name") || field.equals("full name"))) {
+                columns.name = i;
+            } else if (columns.age == -1 && (field.equals("age") || field.equals("camper age"))) {
+                columns.age = i;
+            } else if (columns.swimLevel == -1 && (field.equals("swim level") || field.equals("swim")
+                    || field.equals("swimlevel"))) {
+                columns.swimLevel = i;
+            }
+        }
+        StringBuffer missing = new StringBuffer();
+        if (columns.name == -1) {
+            missing.append("Name, ");
+        }
+        if (columns.age == -1) {
+            missing.append("Age, ");
+        }
+        if (columns.swimLevel == -1) {
+            missing.append("Swim Level, ");
+        }
+        for (int i = 0; i < this.catalog.size(); i++) {
+            if (columns.classColumns[i] == -1) {
+                missing.append(this.catalog.get(i).getTitle()).append(", ");
+            }
+        }
+        if (missing.length() > 0) {
+            missing.setLength(missing.length() - 2);
+            throw new IOException("CSV header is missing columns: " + missing);
+        }
+        return columns;
+    }
+
+    /**
+     * Parses and validates the rows of one chunk.
+     *
+     * @param buffer  the mapped file
+     * @param start   the offset of the first byte of the chunk
+     * @param end     the offset just past the last byte of the chunk
+     * @param columns the column mapping
+     * @return the campers and errors of the chunk, with chunk-local row numbers
+     */
+    private ChunkResult parseChunk(MappedByteBuffer buffer, int start, int end, Columns columns) {
+        ChunkResult out = new ChunkResult();
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = findLineEnd(buffer, lineStart, end);
+            String line = decode(buffer, lineStart, lineEnd);
+            if (!line.isBlank()) {
+                String error = this.parseRow(line, columns, out.campers);
+                if (error != null) {
+                    out.errors.add(new RowError(out.lines, error));
+                }
+            }
+            out.lines++;
+            lineStart = lineEnd + 1;
+        }
+        return out;
+    }
+
+    /**
+     * Parses and validates a single row, adding the camper if it is valid.
+     *
+     * @param line    the row text
+     * @param columns the column mapping
+     * @param campers the list to add the camper to
+     * @return a description of the error, or null if the row is valid
+     */
+    private String parseRow(String line, Columns columns, ArrayList<Camper> campers) {
+        ArrayList<String> fields = splitLine(line);
+        if (fields == null) {
+            return "Unterminated quoted field";
+        }
+        String name = field(fields, columns.name);
+        if (name.isEmpty()) {
+            return "Name is blank";
+        }
+        int age;
+        int swimLevel;
+        try {
+            age = Integer.parseInt(field(fields, columns.age));
+        } catch (NumberFormatException e) {
+            return "Incorrectly formatted age for " + name;
+        }
+        try {
+            swimLevel = Integer.parseInt(field(fields, columns.swimLevel));
+        } catch (NumberFormatException e) {
+            return "Incorrectly formatted swim level for " + name;
+        }
+        ArrayList<Integer> ranks = new ArrayList<Integer>(this.catalog.size());
+        ClassClass[] choices = new ClassClass[this.catalog.size()];
+        for (int classId = 0; classId < this.catalog.size(); classId++) {
+            int rank;
+            try {
+                rank = Integer.parseInt(field(fields, columns.classColumns[classId]));
+            } catch (NumberFormatException e) {
+                return "One or more class ranks incorrectly formatted for " + name;
+            }
+            if (rank < 1 || rank > this.catalog.size()) {
+                return "Rank " + rank + " for " + this.catalog.get(classId).getTitle() + " is out of range for "
+                        + name;
+            }
+            ranks.add(rank);
+            choices[rank - 1] = this.catalog.get(classId);
+        }
+        if (Utility.containsDuplicateInteger(ranks)) {
+            return "One or more class ranks duplicated for " + name;
+        }
+        campers.add(new Camper(age, name, swimLevel, choices));
+        return null;
+    }
+
+    /**
+     * Returns a trimmed field, or an empty string if the row is too short.
+     *
+     * @param fields the row fields
+     * @param index  the field index
+     * @return the field value
+     */
+    private static String field(ArrayList<String> fields, int index) {
+        return index < fields.size() ? fields.get(index).trim() : "";
+    }
+
+    /**
+     * Splits a CSV line into fields, honoring double-quoted fields and doubled
+     * quotes within them.
+     *
+     * @param line the line to split
+     * @return the fields, or null if a quoted field is not terminated
+     */
+    static ArrayList<String> splitLine(String line) {
+        ArrayList<String> out = new ArrayList<String>();
+        StringBuffer field = new StringBuffer();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        out.add(field.toString());
+        return out;
+    }
+
+    /**
+     * Finds the end of the line starting at an offset.
+     *
+     * @param buffer the mapped file
+     * @param from   the offset to search from
+     * @param limit  the offset to stop searching at
+     * @return the offset of the line's newline, or the limit if there is none
+     */
+    private static int findLineEnd(MappedByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Decodes a line of UTF-8 text, dropping a trailing carriage return.
+     *
+     * @param buffer the mapped file
+     * @param start  the offset of the first byte of the line
+     * @param end    the offset just past the last byte of the line
+     * @return the decoded line
+     */
+    private static String decode(MappedByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Normalizes a header or title for matching.
+     *
+     * @param text the text to normalize
+     * @return the trimmed, lower-case text
+     */
+    private static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,542 @@
+package com.campclaire.campscheduler;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Searches for schedules with a genetic algorithm over camper orders. The
+ * engine is greedy, so an order of the campers determines the schedule it
+ * finds, and an order serves as a chromosome. Each generation keeps its best
+ * orders unchanged (elitism) and breeds the rest: parents are picked by
+ * tournament, combined by order crossover, and mutated by swapping two campers
+ * or moving one to another place in the order.
+ *
+ * The first generation is the first attempts of a {@link ScheduleSearch} with
+ * the same seed, so the genetic search starts from the same random restarts
+ * it is compared against. Each generation is evaluated in parallel by
+ * {@link ColumnarScheduleCreator}s sharing one {@link CamperStore}, one per
+ * task on the pool, so the catalog may have at most
+ * {@link CamperStore#MAX_CLASSES} classes. Breeding draws from a single generator on the calling
+ * thread and schedules are offered to the retainer in population order, so
+ * the search finds the same schedules whatever the number of threads.
+ *
+ * The budget is counted in evaluations, attempts of the engine, so a genetic
+ * search and a random restart search with the same number of attempts can be
+ * compared. Elites carried into the next generation are not evaluated again.
+ *
+ * Usage: {@code GeneticSearch [--job dir] [--campers n] [--classes n]
+ * [--attempts n] [--seed n] [--population n] [--threads n]} compares the two
+ * searches on a {@link SchedulerDaemon} job or a synthetic roster.
+ */
+public class GeneticSearch {
+    /** The default number of orders in a generation. */
+    public static final int DEFAULT_POPULATION_SIZE = 32;
+    /** The default number of orders each tournament draws. */
+    public static final int DEFAULT_TOURNAMENT_SIZE = 3;
+    /** The default number of best orders carried unchanged into the next generation. */
+    public static final int DEFAULT_ELITES = 2;
+    /** The default chance a child is bred by crossover rather than copied from one parent. */
+    public static final double DEFAULT_CROSSOVER_RATE = 0.9;
+    /** The default chance a child is mutated. */
+    public static final double DEFAULT_MUTATION_RATE = 0.5;
+    private static final int WARMUP_ATTEMPTS = 300;
+
+    private final ArrayList<ClassClass> catalog;
+    private final ArrayList<Camper> camperOrder;
+    private final int maxAttempts;
+    private final long seed;
+    private final ForkJoinPool pool;
+    private final TopKSchedules topSchedules;
+    private CamperStore store;
+    private ColumnarScheduleCreator[] creators;
+    private int populationSize = DEFAULT_POPULATION_SIZE;
+    private int tournamentSize = DEFAULT_TOURNAMENT_SIZE;
+    private int elites = DEFAULT_ELITES;
+    private double crossoverRate = DEFAULT_CROSSOVER_RATE;
+    private double mutationRate = DEFAULT_MUTATION_RATE;
+    private ScheduleSearch.ProgressListener progressListener;
+    // Published for monitoring threads; written once per generation
+    private volatile int attempt;
+    private volatile int generation;
+    private volatile CompactSchedule best;
+
+    /**
+     * Constructs a search on the common fork-join pool.
+     *
+     * @param catalog     the class catalog
+     * @param roster      the campers to schedule
+     * @param maxAttempts the number of orders to evaluate
+     * @param seed        the seed of the first generation and of breeding
+     * @throws IllegalArgumentException if the roster does not fit a
+     *                                  {@link CamperStore}
+     */
+    public GeneticSearch(List<ClassClass> catalog, List<Camper> roster, int maxAttempts, long seed) {
+        this(catalog, roster, maxAttempts, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a search evaluating generations on the specified pool.
+     *
+     * @param catalog     the class catalog
+     * @param roster      the campers to schedule
+     * @param maxAttempts the number of orders to evaluate
+     * @param seed        the seed of the first generation and of breeding
+     * @param pool        the pool generations are evaluated on
+     * @throws IllegalArgumentException if the roster does not fit a
+     *                                  {@link CamperStore}
+     */
+    public GeneticSearch(List<ClassClass> catalog, List<Camper> roster, int maxAttempts, long seed,
+            ForkJoinPool pool) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+        // The same canonical order as a search with this seed, so stores and snapshots are interchangeable
+        this.camperOrder = new ScheduleFingerprint(this.catalog, roster, seed, maxAttempts).getCanonicalOrder();
+        if (!CamperStore.fits(this.camperOrder, this.catalog)) {
+            throw new IllegalArgumentException("Genetic search needs a camper store, which holds at most "
+                    + CamperStore.MAX_CLASSES + " classes, not " + this.catalog.size());
+        }
+        this.maxAttempts = maxAttempts;
+        this.seed = seed;
+        this.pool = pool;
+        this.topSchedules = new TopKSchedules(ScheduleSearch.DEFAULT_TOP_K);
+    }
+
+    /**
+     * Sets the number of orders in a generation.
+     *
+     * @param populationSize the population size, at least 2
+     * @throws IllegalArgumentException if the size is less than 2
+     */
+    public void setPopulationSize(int populationSize) {
+        if (populationSize < 2) {
+            throw new IllegalArgumentException("Population size must be at least 2, was " + populationSize);
+        }
+        this.populationSize = populationSize;
+    }
+
+    /**
+     * Sets the number of orders each tournament draws. Larger tournaments
+     * favour the best orders more strongly.
+     *
+     * @param tournamentSize the tournament size, at least 1
+     * @throws IllegalArgumentException if the size is less than 1
+     */
+    public void setTournamentSize(int tournamentSize) {
+        if (tournamentSize < 1) {
+            throw new IllegalArgumentException("Tournament size must be at least 1, was " + tournamentSize);
+        }
+        this.tournamentSize = tournamentSize;
+    }
+
+    /**
+     * Sets the number of best orders carried unchanged into the next
+     * generation.
+     *
+     * @param elites the number of elites, less than the population size
+     * @throws IllegalArgumentException if the number is negative or leaves no
+     *                                  room for children
+     */
+    public void setElites(int elites) {
+        if (elites < 0 || elites >= this.populationSize) {
+            throw new IllegalArgumentException("Elites must be from 0 to " + (this.populationSize - 1) + ", was "
+                    + elites);
+        }
+        this.elites = elites;
+    }
+
+    /**
+     * Sets the chance a child is bred by crossover rather than copied from
+     * its first parent.
+     *
+     * @param crossoverRate the chance, from 0 to 1
+     */
+    public void setCrossoverRate(double crossoverRate) {
+        this.crossoverRate = crossoverRate;
+    }
+
+    /**
+     * Sets the chance a child is mutated, by a swap or an insertion with equal
+     * chance.
+     *
+     * @param mutationRate the chance, from 0 to 1
+     */
+    public void setMutationRate(double mutationRate) {
+        this.mutationRate = mutationRate;
+    }
+
+    /**
+     * Sets the camper store evaluations run over, for instance one kept off the
+     * heap. Without one, a store on the heap is built when the search runs.
+     * Must be set before the search runs.
+     *
+     * @param store a store built over {@link #getCamperOrder()}
+     * @throws IllegalArgumentException if the store holds other campers
+     */
+    public void setCamperStore(CamperStore store) {
+        if (store.size() != this.camperOrder.size()) {
+            throw new IllegalArgumentException(
+                    "Store holds " + store.size() + " campers, search has " + this.camperOrder.size());
+        }
+        for (int i = 0; i < this.camperOrder.size(); i++) {
+            if (store.getCamper(i) != this.camperOrder.get(i)) {
+                throw new IllegalArgumentException("Store is not built over this search's camper order");
+            }
+        }
+        this.store = store;
+        this.creators = null;
+    }
+
+    /**
+     * Sets the listener notified after every generation.
+     *
+     * @param progressListener the listener, or null for none
+     */
+    public void setProgressListener(ScheduleSearch.ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns the camper order compact schedules of this search are indexed by.
+     *
+     * @return a copy of the camper order
+     */
+    public ArrayList<Camper> getCamperOrder() {
+        return new ArrayList<Camper>(this.camperOrder);
+    }
+
+    /**
+     * Returns the best schedules found so far. A schedule's attempt is the
+     * index of the evaluation that found it.
+     *
+     * @return the retained schedules
+     */
+    public TopKSchedules getTopSchedules() {
+        return this.topSchedules;
+    }
+
+    /**
+     * Returns the number of orders evaluated so far. Safe to call from any
+     * thread while the search runs.
+     *
+     * @return the number of evaluations
+     */
+    public int getAttempt() {
+        return this.attempt;
+    }
+
+    /**
+     * Returns the number of generations evaluated so far, the first included.
+     * Safe to call from any thread while the search runs.
+     *
+     * @return the number of generations
+     */
+    public int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Returns the best schedule found so far. Safe to call from any thread
+     * while the search runs.
+     *
+     * @return the best schedule, or null if no generation has been evaluated
+     */
+    public CompactSchedule getBest() {
+        return this.best;
+    }
+
+    /**
+     * Runs the search until the budget of evaluations is spent.
+     *
+     * @return the best schedule found
+     */
+    public CompactSchedule run() {
+        if (this.store == null) {
+            this.store = new CamperStore(this.camperOrder, this.catalog);
+        }
+        int numberCampers = this.camperOrder.size();
+        int size = Math.min(this.populationSize, this.maxAttempts);
+        int[][] population = new int[size][numberCampers];
+        int[][] offspring = new int[size][numberCampers];
+        int[] scores = new int[size];
+        int[] offspringScores = new int[size];
+        // Marks the campers a crossover child already holds, by child number, so it is never cleared
+        int[] taken = new int[numberCampers];
+        int children = 0;
+        Integer[] ranking = new Integer[size];
+        SplittableRandom random = new SplittableRandom(this.seed);
+
+        for (int i = 0; i < size; i++) {
+            ScheduleSearch.shuffle(population[i], ScheduleSearch.attemptRandom(this.seed, i));
+        }
+        this.evaluate(population, scores, 0, size);
+        while (this.attempt < this.maxAttempts) {
+            for (int i = 0; i < size; i++) {
+                ranking[i] = i;
+            }
+            int[] ranked = scores;
+            Arrays.sort(ranking, (a, b) -> Integer.compare(ranked[a], ranked[b]));
+            int carried = Math.min(this.elites, size);
+            for (int i = 0; i < carried; i++) {
+                System.arraycopy(population[ranking[i]], 0, offspring[i], 0, numberCampers);
+                offspringScores[i] = scores[ranking[i]];
+            }
+            int bred = Math.min(size - carried, this.maxAttempts - this.attempt);
+            for (int i = carried; i < carried + bred; i++) {
+                int[] first = population[this.tournament(scores, size, random)];
+                if (random.nextDouble() < this.crossoverRate) {
+                    int[] second = population[this.tournament(scores, size, random)];
+                    crossover(first, second, offspring[i], taken, ++children, random);
+                } else {
+                    System.arraycopy(first, 0, offspring[i], 0, numberCampers);
+                }
+                if (random.nextDouble() < this.mutationRate) {
+                    mutate(offspring[i], random);
+                }
+            }
+            this.evaluate(offspring, offspringScores, carried, carried + bred);
+            size = carried + bred;
+            int[][] swap = population;
+            population = offspring;
+            offspring = swap;
+            int[] swapScores = scores;
+            scores = offspringScores;
+            offspringScores = swapScores;
+        }
+        return this.topSchedules.getBest();
+    }
+
+    /**
+     * Picks a parent by tournament: the best of several orders drawn at
+     * random, the first drawn winning ties.
+     *
+     * @param scores the scores of the population
+     * @param size   the number of orders in the population
+     * @param random the breeding generator
+     * @return the index of the winner
+     */
+    private int tournament(int[] scores, int size, SplittableRandom random) {
+        int winner = random.nextInt(size);
+        for (int i = 1; i < this.tournamentSize; i++) {
+            int challenger = random.nextInt(size);
+            if (scores[challenger] < scores[winner]) {
+                winner = challenger;
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Breeds a child by order crossover: the child takes a random run of
+     * positions from the first parent, and the remaining campers in the order
+     * they have in the second parent, starting after the run.
+     *
+     * @param first  the first parent
+     * @param second the second parent
+     * @param child  receives the child
+     * @param taken  the marks of campers the child holds, by child number
+     * @param mark   the number of this child, unique for the search
+     * @param random the breeding generator
+     */
+    private static void crossover(int[] first, int[] second, int[] child, int[] taken, int mark,
+            SplittableRandom random) {
+        int length = first.length;
+        int start = random.nextInt(length);
+        int end = start + random.nextInt(length - start) + 1;
+        for (int i = start; i < end; i++) {
+            child[i] = first[i];
+            taken[first[i]] = mark;
+        }
+        int position = end % length;
+        for (int i = 0; i < length; i++) {
+            int camper = second[(end + i) % length];
+            if (taken[camper] != mark) {
+                child[position] = camper;
+                position = (position + 1) % length;
+            }
+        }
+    }
+
+    /**
+     * Mutates an order by swapping two campers or by moving one camper to
+     * another position, with equal chance.
+     *
+     * @param order  the order to mutate
+     * @param random the breeding generator
+     */
+    private static void mutate(int[] order, SplittableRandom random) {
+        int from = random.nextInt(order.length);
+        int to = random.nextInt(order.length);
+        int camper = order[from];
+        if (random.nextBoolean()) {
+            order[from] = order[to];
+            order[to] = camper;
+        } else if (from < to) {
+            System.arraycopy(order, from + 1, order, from, to - from);
+            order[to] = camper;
+        } else {
+            System.arraycopy(order, to, order, to + 1, from - to);
+            order[to] = camper;
+        }
+    }
+
+    /**
+     * Evaluates a run of orders in parallel, then offers the schedules that
+     * would be retained in order, and publishes progress.
+     *
+     * @param orders the orders
+     * @param scores receives the score of each order evaluated
+     * @param from   the first order to evaluate
+     * @param to     the end of the run of orders to evaluate
+     */
+    private void evaluate(int[][] orders, int[] scores, int from, int to) {
+        int parallelism = this.pool.getParallelism();
+        if (this.creators == null) {
+            this.creators = new ColumnarScheduleCreator[parallelism];
+        }
+        CompactSchedule[] snapshots = new CompactSchedule[to - from];
+        int tasks = Math.min(parallelism, to - from);
+        ArrayList<Callable<Void>> slices = new ArrayList<Callable<Void>>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            int task = t;
+            int sliceFrom = from + (to - from) * t / tasks;
+            int sliceTo = from + (to - from) * (t + 1) / tasks;
+            slices.add(() -> {
+                this.evaluateSlice(task, orders, scores, snapshots, from, sliceFrom, sliceTo);
+                return null;
+            });
+        }
+        // The retainer is only read while slices run, and only written here between generations
+        this.pool.invokeAll(slices);
+        for (int i = from; i < to; i++) {
+            if (snapshots[i - from] != null) {
+                this.topSchedules.offer(snapshots[i - from].withAttempt(this.attempt + i - from));
+            }
+        }
+        this.attempt += to - from;
+        this.generation++;
+        this.best = this.topSchedules.getBest();
+        if (this.progressListener != null) {
+            this.progressListener.progress(this.attempt, this.maxAttempts, this.best);
+        }
+    }
+
+    /**
+     * Evaluates one task's share of a run of orders on the current thread,
+     * snapshotting the schedules the retainer would admit.
+     *
+     * @param task      the task number, which picks the creator
+     * @param orders    the orders
+     * @param scores    receives the score of each order evaluated
+     * @param snapshots receives the snapshots, indexed from the start of the run
+     * @param from      the first order of the run
+     * @param sliceFrom the first order of this task's share
+     * @param sliceTo   the end of this task's share
+     */
+    private void evaluateSlice(int task, int[][] orders, int[] scores, CompactSchedule[] snapshots, int from,
+            int sliceFrom, int sliceTo) {
+        if (this.creators[task] == null) {
+            this.creators[task] = new ColumnarScheduleCreator(this.catalog, this.store);
+        }
+        ColumnarScheduleCreator creator = this.creators[task];
+        for (int i = sliceFrom; i < sliceTo; i++) {
+            scores[i] = creator.run(orders[i]);
+            if (this.topSchedules.admits(scores[i])) {
+                snapshots[i - from] = creator.toCompactSchedule(scores[i]);
+            }
+        }
+    }
+
+    /**
+     * Compares a genetic search with a random restart search of the same
+     * seed and number of attempts, printing each one's best score, run time
+     * and attempts per second, and how long the genetic search took to match
+     * the random restarts' best. Both searches are warmed up first.
+     *
+     * @param args the command line options
+     * @throws IOException if the job cannot be loaded
+     */
+    public static void main(String[] args) throws IOException {
+        String job = null;
+        int numberCampers = 1000;
+        int numberClasses = 20;
+        int attempts = SchedulerDaemon.DEFAULT_ATTEMPTS;
+        long seed = 1;
+        int population = DEFAULT_POPULATION_SIZE;
+        int threads = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--job":
+                    job = args[i + 1];
+                    break;
+                case "--campers":
+                    numberCampers = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--classes":
+                    numberClasses = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--attempts":
+                    attempts = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--population":
+                    population = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        ArrayList<ClassClass> catalog;
+        ArrayList<Camper> roster;
+        if (job != null) {
+            catalog = new ArrayList<ClassClass>();
+            roster = SchedulerDaemon.loadJob(Paths.get(job), catalog);
+        } else {
+            RosterGenerator generator = new RosterGenerator(seed);
+            catalog = generator.generateCatalog(numberClasses, numberCampers);
+            roster = generator.generateCampers(catalog, numberCampers);
+        }
+
+        ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+        // Both searches are run once untimed, so neither is charged for compiling the engine
+        int warmup = Math.min(attempts, WARMUP_ATTEMPTS);
+        new ScheduleSearch(catalog, roster, warmup, seed + 1).run();
+        new GeneticSearch(catalog, roster, warmup, seed + 1, pool).run();
+
+        ScheduleSearch restarts = new ScheduleSearch(catalog, roster, attempts, seed);
+        long start = System.nanoTime();
+        int restartsBest = restarts.run().getScore();
+        long restartsNanos = System.nanoTime() - start;
+
+        GeneticSearch genetic = new GeneticSearch(catalog, roster, attempts, seed, pool);
+        genetic.setPopulationSize(population);
+        long geneticStart = System.nanoTime();
+        long[] matchNanos = { -1 };
+        genetic.setProgressListener((attempt, maxAttempts, best) -> {
+            if (matchNanos[0] < 0 && best.getScore() <= restartsBest) {
+                matchNanos[0] = System.nanoTime() - geneticStart;
+            }
+        });
+        int geneticBest = genetic.run().getScore();
+        long geneticNanos = System.nanoTime() - geneticStart;
+
+        System.out.printf("%-16s %10s %10s %14s%n", "search", "best", "seconds", "attempts/sec");
+        System.out.printf("%-16s %10d %10.2f %14.1f%n", "random restarts", restartsBest, restartsNanos / 1e9,
+                attempts * 1e9 / restartsNanos);
+        System.out.printf("%-16s %10d %10.2f %14.1f%n", "genetic", geneticBest, geneticNanos / 1e9,
+                attempts * 1e9 / geneticNanos);
+        System.out.println(matchNanos[0] < 0 ? "The genetic search did not match the random restarts' best"
+                : String.format("The genetic search matched the random restarts' best after %.2f seconds, on %d"
+                        + " threads", matchNanos[0] / 1e9, pool.getParallelism()));
+    }
+}
@@ -0,0 +1,482 @@
+package com.campclaire.campscheduler;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Improves a {@link WorkingSchedule} by large neighbourhood search. Each
+ * iteration frees a set of campers' classes and enrolls the campers again
+ * greedily against what the other campers leave: the freed classes are taken
+ * in random order, and each goes to the class the camper can take with room
+ * that raises the score least. The new schedule is kept or undone under the
+ * chosen {@link Acceptance}. The schedule is left in the best state found.
+ *
+ * Classes are freed in one of three ways, chosen at random each iteration:
+ * the campers of one class in every period it is offered, random campers in
+ * one period, or the campers with the worst ranked classes. The number freed
+ * adapts to the time iterations take, growing while they are well under the
+ * target time and shrinking when they are over it; each iteration frees a
+ * number drawn log-uniformly up to that size, so small repairs stay as
+ * frequent as sweeping ones.
+ *
+ * Like {@link LocalSearch}, the search never frees required or double-period
+ * classes, and only exceeds a class's single period cutoff when a camper can
+ * take no class with room. A freed class is always filled again, so no camper
+ * loses a period.
+ *
+ * Usage: {@code LargeNeighbourhoodSearch [--job dir] [--campers n]
+ * [--classes n] [--attempts n] [--seed n] [--time ms]
+ * [--acceptance improving|non_worsening|annealing]} improves the best
+ * schedule of a seeded search on a {@link SchedulerDaemon} job or a synthetic
+ * roster, and compares it with {@link LocalSearch} given the same time.
+ */
+public class LargeNeighbourhoodSearch {
+    /** The default time an iteration should take. */
+    public static final long DEFAULT_TARGET_ITERATION_NANOS = 50000;
+    /** The fewest classes an iteration frees. */
+    public static final int MIN_NEIGHBOURHOOD_SIZE = 2;
+    private static final int INITIAL_NEIGHBOURHOOD_SIZE = 8;
+    private static final int WORST_RANK_TOURNAMENT_SIZE = 4;
+    // Iterations timed together before the neighbourhood size is adapted
+    private static final int ADAPT_INTERVAL = 32;
+
+    /**
+     * Decides which rebuilt schedules are kept.
+     */
+    public enum Acceptance {
+        /** Keeps only schedules that score lower. */
+        IMPROVING,
+        /** Keeps schedules that score no higher, so the search can drift across plateaus. */
+        NON_WORSENING,
+        /**
+         * Keeps schedules that score higher with a probability that falls as
+         * the temperature cools, as {@link LocalSearch} does.
+         */
+        ANNEALING
+    }
+
+    /**
+     * The ways of choosing the classes an iteration frees.
+     */
+    private enum Destroy {
+        SHARED_CLASS, SHARED_PERIOD, WORST_RANKS
+    }
+
+    private final WorkingSchedule schedule;
+    private final Random random;
+    private Acceptance acceptance = Acceptance.NON_WORSENING;
+    private double startTemperature = LocalSearch.DEFAULT_START_TEMPERATURE;
+    private double endTemperature = LocalSearch.DEFAULT_END_TEMPERATURE;
+    private long targetIterationNanos = DEFAULT_TARGET_ITERATION_NANOS;
+    private int neighbourhoodSize = INITIAL_NEIGHBOURHOOD_SIZE;
+    private int size;
+    private long iterations;
+    private long improvements;
+    // The freed classes of the current iteration: camper, period and the class they had
+    private int[] freedCampers = new int[0];
+    private int[] freedPeriods = new int[0];
+    private int[] freedClasses = new int[0];
+    private int numberFreed;
+    // Marks freed camper periods by destroy number, so the marks are never cleared
+    private long[] freedMarks = new long[0];
+    private long destroys;
+
+    /**
+     * Constructs a large neighbourhood search over a schedule.
+     *
+     * @param schedule the schedule to improve in place
+     * @param random   the source of randomness
+     */
+    public LargeNeighbourhoodSearch(WorkingSchedule schedule, Random random) {
+        this.schedule = schedule;
+        this.random = random;
+    }
+
+    /**
+     * Sets which rebuilt schedules are kept.
+     *
+     * @param acceptance the acceptance criterion
+     */
+    public void setAcceptance(Acceptance acceptance) {
+        this.acceptance = acceptance;
+    }
+
+    /**
+     * Sets the temperatures of {@link Acceptance#ANNEALING}.
+     *
+     * @param startTemperature the temperature of the first iteration
+     * @param endTemperature   the temperature of the last iteration
+     * @see LocalSearch#setTemperatures(double, double)
+     */
+    public void setTemperatures(double startTemperature, double endTemperature) {
+        this.startTemperature = startTemperature;
+        this.endTemperature = endTemperature;
+    }
+
+    /**
+     * Sets the time an iteration should take, which the neighbourhood size
+     * adapts to.
+     *
+     * @param nanos the target time in nanoseconds
+     */
+    public void setTargetIterationNanos(long nanos) {
+        this.targetIterationNanos = nanos;
+    }
+
+    /**
+     * Returns the number of iterations taken by the last run.
+     *
+     * @return the number of iterations
+     */
+    public long getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Returns the number of iterations of the last run that found a new best
+     * schedule.
+     *
+     * @return the number of improvements
+     */
+    public long getImprovements() {
+        return this.improvements;
+    }
+
+    /**
+     * Returns the number of classes an iteration frees, as last adapted.
+     *
+     * @return the neighbourhood size
+     */
+    public int getNeighbourhoodSize() {
+        return this.neighbourhoodSize;
+    }
+
+    /**
+     * Improves the schedule until either budget runs out. Under
+     * {@link Acceptance#ANNEALING} the temperature follows whichever budget is
+     * further spent, as in {@link LocalSearch#anneal(long, long)}.
+     *
+     * @param maxIterations   the maximum number of iterations
+     * @param timeLimitMillis the maximum running time in milliseconds
+     * @return the best score found, which is the schedule's score on return
+     */
+    public int improve(long maxIterations, long timeLimitMillis) {
+        int numberCampers = this.schedule.getNumberCampers();
+        this.iterations = 0;
+        this.improvements = 0;
+        if (numberCampers == 0) {
+            return this.schedule.getScore();
+        }
+        if (this.freedMarks.length < numberCampers * WorkingSchedule.NUMBER_PERIODS) {
+            this.freedMarks = new long[numberCampers * WorkingSchedule.NUMBER_PERIODS];
+        }
+        long start = System.nanoTime();
+        long timeLimitNanos = timeLimitMillis * 1000000L;
+        long windowStart = start;
+        double ratio = this.endTemperature / this.startTemperature;
+        double temperature = this.startTemperature;
+        int bestScore = this.schedule.getScore();
+        int[] best = this.schedule.copyAssignments();
+        while (this.iterations < maxIterations) {
+            if (this.iterations % ADAPT_INTERVAL == 0) {
+                long now = System.nanoTime();
+                if (now - start >= timeLimitNanos) {
+                    break;
+                }
+                if (this.iterations > 0) {
+                    this.adaptNeighbourhoodSize((now - windowStart) / ADAPT_INTERVAL, numberCampers);
+                }
+                windowStart = now;
+                double progress = Math.max((double) this.iterations / maxIterations,
+                        (double) (now - start) / timeLimitNanos);
+                temperature = this.startTemperature * Math.pow(ratio, Math.min(progress, 1));
+            }
+            this.iterations++;
+            int before = this.schedule.getScore();
+            this.destroy(numberCampers);
+            if (!this.repair() || !this.accept(this.schedule.getScore() - before, temperature)) {
+                this.undo();
+            } else if (this.schedule.getScore() < bestScore) {
+                bestScore = this.schedule.getScore();
+                best = this.schedule.copyAssignments();
+                this.improvements++;
+            }
+        }
+        this.schedule.restoreAssignments(best);
+        return this.schedule.getScore();
+    }
+
+    /**
+     * Grows the neighbourhood while iterations are well under the target time
+     * and shrinks it while they are over.
+     *
+     * @param iterationNanos the mean time of the last iterations
+     * @param numberCampers  the number of campers
+     */
+    private void adaptNeighbourhoodSize(long iterationNanos, int numberCampers) {
+        if (iterationNanos > this.targetIterationNanos) {
+            this.neighbourhoodSize = Math.max(MIN_NEIGHBOURHOOD_SIZE, this.neighbourhoodSize * 3 / 4);
+        } else if (iterationNanos < this.targetIterationNanos / 2) {
+            this.neighbourhoodSize = Math.min(numberCampers * WorkingSchedule.NUMBER_PERIODS,
+                    this.neighbourhoodSize + 1 + this.neighbourhoodSize / 4);
+        }
+    }
+
+    /**
+     * Frees the classes of the iteration, chosen one of the three ways at
+     * random.
+     *
+     * @param numberCampers the number of campers
+     */
+    private void destroy(int numberCampers) {
+        this.numberFreed = 0;
+        this.destroys++;
+        this.size = (int) Math.round(MIN_NEIGHBOURHOOD_SIZE
+                * Math.pow((double) this.neighbourhoodSize / MIN_NEIGHBOURHOOD_SIZE, this.random.nextDouble()));
+        if (this.freedCampers.length < this.neighbourhoodSize) {
+            this.freedCampers = new int[this.neighbourhoodSize];
+            this.freedPeriods = new int[this.neighbourhoodSize];
+            this.freedClasses = new int[this.neighbourhoodSize];
+        }
+        Destroy destroy = Destroy.values()[this.random.nextInt(Destroy.values().length)];
+        if (destroy == Destroy.SHARED_CLASS) {
+            this.freeSharedClass(numberCampers);
+        } else if (destroy == Destroy.SHARED_PERIOD) {
+            int period = 1 + this.random.nextInt(WorkingSchedule.NUMBER_PERIODS);
+            for (int tries = 0; tries < 2 * this.size && this.numberFreed < this.size; tries++) {
+                this.free(this.random.nextInt(numberCampers), period);
+            }
+        } else {
+            for (int tries = 0; tries < 2 * this.size && this.numberFreed < this.size; tries++) {
+                this.freeWorstOf(numberCampers);
+            }
+        }
+    }
+
+    /**
+     * Frees the classes of campers in one class, in every period it is
+     * offered, chosen from a random camper's class. The campers are visited
+     * from a random place onwards, so a large class loses different campers
+     * each time.
+     *
+     * @param numberCampers the number of campers
+     */
+    private void freeSharedClass(int numberCampers) {
+        int camper = this.random.nextInt(numberCampers);
+        int period = 1 + this.random.nextInt(WorkingSchedule.NUMBER_PERIODS);
+        if (!this.schedule.isMovable(camper, period)) {
+            return;
+        }
+        int classId = this.schedule.getAssignment(camper, period);
+        int first = this.random.nextInt(numberCampers);
+        for (int i = 0; i < numberCampers && this.numberFreed < this.size; i++) {
+            int other = (first + i) % numberCampers;
+            for (int p = 1; p <= WorkingSchedule.NUMBER_PERIODS; p++) {
+                if (this.schedule.getAssignment(other, p) == classId && this.numberFreed < this.size) {
+                    this.free(other, p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees the worst ranked of a few random camper periods.
+     *
+     * @param numberCampers the number of campers
+     */
+    private void freeWorstOf(int numberCampers) {
+        int worstCamper = -1;
+        int worstPeriod = 0;
+        int worstCost = Integer.MIN_VALUE;
+        for (int i = 0; i < WORST_RANK_TOURNAMENT_SIZE; i++) {
+            int camper = this.random.nextInt(numberCampers);
+            int period = 1 + this.random.nextInt(WorkingSchedule.NUMBER_PERIODS);
+            if (this.schedule.isMovable(camper, period)) {
+                int cost = this.schedule.getCost(camper, this.schedule.getAssignment(camper, period));
+                if (cost > worstCost) {
+                    worstCamper = camper;
+                    worstPeriod = period;
+                    worstCost = cost;
+                }
+            }
+        }
+        if (worstCamper >= 0) {
+            this.free(worstCamper, worstPeriod);
+        }
+    }
+
+    /**
+     * Frees a camper's class during a period, if it is movable and not freed
+     * already.
+     *
+     * @param camper the camper index
+     * @param period the period, from 1 to 3
+     */
+    private void free(int camper, int period) {
+        int slot = camper * WorkingSchedule.NUMBER_PERIODS + period - 1;
+        if (!this.schedule.isMovable(camper, period) || this.freedMarks[slot] == this.destroys) {
+            return;
+        }
+        this.freedMarks[slot] = this.destroys;
+        this.freedCampers[this.numberFreed] = camper;
+        this.freedPeriods[this.numberFreed] = period;
+        this.freedClasses[this.numberFreed] = this.schedule.getAssignment(camper, period);
+        this.numberFreed++;
+        this.schedule.assign(camper, period, WorkingSchedule.NO_CLASS);
+    }
+
+    /**
+     * Enrolls the freed campers again in random order, each in the class with
+     * room that raises the score least. The class a camper had is open to
+     * them even when full; if they can take no class with room, they go over
+     * the cutoff of the class that raises the score least.
+     *
+     * @return true if every freed camper was enrolled, false if one could take
+     *         no class at all
+     */
+    private boolean repair() {
+        for (int i = this.numberFreed; i > 1; i--) {
+            int j = this.random.nextInt(i);
+            int k = i - 1;
+            int camper = this.freedCampers[k];
+            int period = this.freedPeriods[k];
+            int classId = this.freedClasses[k];
+            this.freedCampers[k] = this.freedCampers[j];
+            this.freedPeriods[k] = this.freedPeriods[j];
+            this.freedClasses[k] = this.freedClasses[j];
+            this.freedCampers[j] = camper;
+            this.freedPeriods[j] = period;
+            this.freedClasses[j] = classId;
+        }
+        for (int i = 0; i < this.numberFreed; i++) {
+            int camper = this.freedCampers[i];
+            int period = this.freedPeriods[i];
+            int best = WorkingSchedule.NO_CLASS;
+            int bestDelta = Integer.MAX_VALUE;
+            boolean bestHasRoom = false;
+            for (int classId : this.schedule.getOffered(period)) {
+                if (!this.schedule.canTake(camper, period, classId)) {
+                    continue;
+                }
+                boolean room = classId == this.freedClasses[i] || this.schedule.hasRoom(period, classId);
+                int delta = this.schedule.moveDelta(camper, period, classId);
+                if ((room && !bestHasRoom) || (room == bestHasRoom && delta < bestDelta)) {
+                    best = classId;
+                    bestDelta = delta;
+                    bestHasRoom = room;
+                }
+            }
+            if (best == WorkingSchedule.NO_CLASS) {
+                return false;
+            }
+            this.schedule.assign(camper, period, best);
+        }
+        return true;
+    }
+
+    /**
+     * Puts the freed campers back in the classes they had.
+     */
+    private void undo() {
+        for (int i = 0; i < this.numberFreed; i++) {
+            this.schedule.assign(this.freedCampers[i], this.freedPeriods[i], this.freedClasses[i]);
+        }
+    }
+
+    /**
+     * Decides whether to keep a rebuilt schedule under the acceptance
+     * criterion.
+     *
+     * @param delta       the change in score of the rebuild
+     * @param temperature the current temperature
+     * @return true if the rebuilt schedule should be kept
+     */
+    private boolean accept(int delta, double temperature) {
+        switch (this.acceptance) {
+            case IMPROVING:
+                return delta < 0;
+            case NON_WORSENING:
+                return delta <= 0;
+            default:
+                return delta <= 0 || this.random.nextDouble() < Math.exp(-delta / temperature);
+        }
+    }
+
+    /**
+     * Runs a seeded search, then improves its best schedule by large
+     * neighbourhood search and, from the same start, by annealing for the
+     * same time, printing the scores and how fast the iterations ran.
+     *
+     * @param args the command line options
+     * @throws IOException if the job cannot be loaded
+     */
+    public static void main(String[] args) throws IOException {
+        String job = null;
+        int numberCampers = 1000;
+        int numberClasses = 20;
+        int attempts = SchedulerDaemon.DEFAULT_ATTEMPTS;
+        long seed = 1;
+        long timeMillis = 2000;
+        Acceptance acceptance = Acceptance.NON_WORSENING;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--job":
+                    job = args[i + 1];
+                    break;
+                case "--campers":
+                    numberCampers = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--classes":
+                    numberClasses = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--attempts":
+                    attempts = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--time":
+                    timeMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--acceptance":
+                    acceptance = Acceptance.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        ArrayList<ClassClass> catalog;
+        ArrayList<Camper> roster;
+        if (job != null) {
+            catalog = new ArrayList<ClassClass>();
+            roster = SchedulerDaemon.loadJob(Paths.get(job), catalog);
+        } else {
+            RosterGenerator generator = new RosterGenerator(seed);
+            catalog = generator.generateCatalog(numberClasses, numberCampers);
+            roster = generator.generateCampers(catalog, numberCampers);
+        }
+        ScheduleSearch search = new ScheduleSearch(catalog, roster, attempts, seed);
+        CompactSchedule start = search.run();
+
+        WorkingSchedule schedule = WorkingSchedule.of(start, search.getCamperOrder(), catalog);
+        LargeNeighbourhoodSearch lns = new LargeNeighbourhoodSearch(schedule, new Random(seed));
+        lns.setAcceptance(acceptance);
+        long lnsStart = System.nanoTime();
+        int lnsScore = lns.improve(Long.MAX_VALUE, timeMillis);
+        long lnsNanos = System.nanoTime() - lnsStart;
+
+        WorkingSchedule annealed = WorkingSchedule.of(start, search.getCamperOrder(), catalog);
+        LocalSearch localSearch = new LocalSearch(annealed, new Random(seed));
+        int annealedScore = localSearch.anneal(Long.MAX_VALUE, timeMillis);
+
+        System.out.println("Best of " + attempts + " attempts: " + start.getScore());
+        System.out.printf("Large neighbourhood search: %d after %d iterations, %.1f us each, %d improvements,"
+                + " neighbourhood up to %d%n", lnsScore, lns.getIterations(), lnsNanos / 1e3 / lns.getIterations(),
+                lns.getImprovements(), lns.getNeighbourhoodSize());
+        System.out.println("Annealing: " + annealedScore + " after " + localSearch.getIterations() + " steps");
+    }
+}
@@ -0,0 +1,225 @@
+package com.campclaire.campscheduler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values, such as durations in
+ * nanoseconds, in the style of an HDR histogram. Values below 32 get a bucket
+ * each; above that every power of two is split into 16 buckets, so any
+ * recorded value is known to within about 6% while the whole range of a long
+ * fits in under a thousand buckets.
+ *
+ * Any number of threads may record at once. Each recording is a few atomic
+ * increments and never blocks, so worker threads can share one histogram.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    /** The number of buckets: the linear ones plus 16 per doubling up to 2^63. */
+    static final int NUMBER_BUCKETS = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts;
+    private final LongAdder sum;
+    private final LongAccumulator min;
+    private final LongAccumulator max;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(NUMBER_BUCKETS);
+        this.sum = new LongAdder();
+        this.min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value the value
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        this.counts.getAndIncrement(bucketOf(clamped));
+        this.sum.add(clamped);
+        this.min.accumulate(clamped);
+        this.max.accumulate(clamped);
+    }
+
+    /**
+     * Clears the histogram. Values recorded while the reset runs may be kept or
+     * lost.
+     */
+    public void reset() {
+        for (int i = 0; i < NUMBER_BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+        this.sum.reset();
+        this.min.reset();
+        this.max.reset();
+    }
+
+    /**
+     * Takes a copy of the histogram's current counts.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[NUMBER_BUCKETS];
+        for (int i = 0; i < NUMBER_BUCKETS; i++) {
+            copy[i] = this.counts.get(i);
+        }
+        return new Snapshot(copy, this.sum.sum(), this.min.get(), this.max.get());
+    }
+
+    /**
+     * Returns the bucket a value falls in.
+     *
+     * @param value the value, at least 0
+     * @return the bucket index
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >>> shift) - SUB_BUCKET_HALF;
+    }
+
+    /**
+     * Returns the largest value that falls in a bucket.
+     *
+     * @param bucket the bucket index
+     * @return the bucket's upper bound, inclusive
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int offset = bucket - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * A point-in-time copy of a histogram.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        /**
+         * Constructs a snapshot.
+         *
+         * @param counts the count of each bucket
+         * @param sum    the sum of the recorded values
+         * @param min    the smallest recorded value
+         * @param max    the largest recorded value
+         */
+        Snapshot(long[] counts, long sum, long min, long max) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.sum = sum;
+            this.min = total == 0 ? 0 : min;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Returns the sum of the recorded values.
+         *
+         * @return the sum
+         */
+        public long getSum() {
+            return this.sum;
+        }
+
+        /**
+         * Returns the smallest recorded value.
+         *
+         * @return the minimum, or 0 if nothing was recorded
+         */
+        public long getMin() {
+            return this.min;
+        }
+
+        /**
+         * Returns the largest recorded value.
+         *
+         * @return the maximum, or 0 if nothing was recorded
+         */
+        public long getMax() {
+            return this.max;
+        }
+
+        /**
+         * Returns the mean of the recorded values.
+         *
+         * @return the mean, or 0 if nothing was recorded
+         */
+        public double getMean() {
+            return this.count == 0 ? 0 : (double) this.sum / this.count;
+        }
+
+        /**
+         * Returns the value below which a percentage of the recorded values fall,
+         * to the histogram's precision.
+         *
+         * @param percentile the percentile, from 0 to 100
+         * @return the value, or 0 if nothing was recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (this.count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= target) {
+                    return Math.min(highestValueOf(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+        /**
+         * Returns the number of recorded values no greater than a bound, to the
+         * histogram's precision: values in the bucket holding the bound count as
+         * below it.
+         *
+         * @param bound the bound
+         * @return the number of values at or below the bound
+         */
+        public long getCountAtOrBelow(long bound) {
+            if (bound < 0) {
+                return 0;
+            }
+            int last = bucketOf(bound);
+            long out = 0;
+            for (int i = 0; i <= last && i < this.counts.length; i++) {
+                out += this.counts[i];
+            }
+            return out;
+        }
+    }
+}
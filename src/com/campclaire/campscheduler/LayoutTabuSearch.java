@@ -0,0 +1,517 @@
+package com.campclaire.campscheduler;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Improves the class layout of an attempt by tabu search. The engine lays out
+ * classes once with the heuristic of {@link ScheduleCreator#fillClassSlots()}
+ * and never moves an offering afterwards; this search moves them. A move
+ * shifts one offering of a class to another period, or swaps two offerings
+ * between periods. Each iteration draws a sample of feasible moves, enrolls
+ * the attempt's campers again over each resulting layout with
+ * {@link ColumnarScheduleCreator#enroll(int[], int[])}, and makes the best
+ * move that is not tabu, even if it raises the score. Once a class leaves a
+ * period it may not return to it for a number of iterations, the tenure,
+ * which keeps the search from cycling; a tabu move is still made if it beats
+ * the best layout found.
+ *
+ * Layout rules are compiled into bit masks before the search starts: the
+ * periods each class may be offered in, the classes each class may not run
+ * concurrently with, and the classes offered in each period. A move is checked
+ * with a few mask operations. Double-period classes and classes whose periods
+ * must be consecutive keep their offerings in consecutive periods. No move
+ * breaks a rule, though the heuristic's layout may break some to begin with.
+ * Classes the attempt eliminated stay eliminated, and no layout is accepted
+ * that leaves more camper periods without a class than the attempt did.
+ *
+ * Usage: {@code LayoutTabuSearch [--job dir] [--campers n] [--classes n]
+ * [--attempts n] [--seed n] [--time ms] [--tenure n]} improves the layout of
+ * the best attempt of a seeded search on a {@link SchedulerDaemon} job or a
+ * synthetic roster.
+ */
+public class LayoutTabuSearch {
+    /** The default number of iterations a class may not return to a period it left. */
+    public static final int DEFAULT_TENURE = 7;
+    /** The default number of moves evaluated each iteration. */
+    public static final int DEFAULT_CANDIDATES = 32;
+    private static final int NUMBER_PERIODS = 3;
+    private static final int ALL_PERIODS = (1 << NUMBER_PERIODS) - 1;
+    // Periods of a class offered in two consecutive periods
+    private static final int FIRST_TWO_PERIODS = 0b011;
+    private static final int LAST_TWO_PERIODS = 0b110;
+
+    private final ArrayList<ClassClass> catalog;
+    private final ColumnarScheduleCreator creator;
+    private final int[] order;
+    private final Random random;
+    private final int numberClasses;
+    private final int words;
+    private final int[] allowedPeriods;
+    private final boolean[] consecutive;
+    private final long[][] conflicts;
+    private final long[][] periodClasses;
+    private final int[] periods;
+    private final int[] tabuUntil;
+    private final int startScore;
+    private final int startEmptyPeriods;
+    private int[] bestPeriods;
+    private int bestScore;
+    private int tenure = DEFAULT_TENURE;
+    private int candidates = DEFAULT_CANDIDATES;
+    private long iterations;
+    private long evaluations;
+    // The offerings of the current layout as class id times the number of periods plus period
+    private int[] offerings;
+    private int numberOfferings;
+
+    /**
+     * Constructs a search over the layout an attempt would get. The attempt is
+     * made once to find its layout and score.
+     *
+     * @param catalog the class catalog, in class id order
+     * @param creator the engine to enroll campers with
+     * @param order   the camper ids of the attempt, in enrollment order
+     * @param random  the source of randomness
+     */
+    public LayoutTabuSearch(List<ClassClass> catalog, ColumnarScheduleCreator creator, int[] order, Random random) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+        this.creator = creator;
+        this.order = order.clone();
+        this.random = random;
+        this.numberClasses = this.catalog.size();
+        this.words = (this.numberClasses + 63) / 64;
+
+        this.allowedPeriods = new int[this.numberClasses];
+        this.consecutive = new boolean[this.numberClasses];
+        this.conflicts = new long[this.numberClasses][this.words];
+        HashMap<String, ArrayList<Integer>> titles = new HashMap<String, ArrayList<Integer>>();
+        for (int c = 0; c < this.numberClasses; c++) {
+            titles.computeIfAbsent(this.catalog.get(c).getTitle(), title -> new ArrayList<Integer>()).add(c);
+        }
+        for (int c = 0; c < this.numberClasses; c++) {
+            ClassClass class_ = this.catalog.get(c);
+            // Restricted periods are the only periods a class may be offered in
+            int allowed = class_.hasRestrictedPeriods() ? 0 : ALL_PERIODS;
+            if (class_.hasRestrictedPeriods()) {
+                for (int period : class_.getRestrictedPeriods()) {
+                    if (period >= 1 && period <= NUMBER_PERIODS) {
+                        allowed |= 1 << (period - 1);
+                    }
+                }
+            }
+            this.allowedPeriods[c] = allowed;
+            this.consecutive[c] = class_.isDoublePeriod() || class_.mustBeConsecutive();
+            for (String title : class_.getRestrictedConcurrentClasses()) {
+                for (int other : titles.getOrDefault(title, new ArrayList<Integer>())) {
+                    // Either class listing the other keeps them apart
+                    this.conflicts[c][other >>> 6] |= 1L << other;
+                    this.conflicts[other][c >>> 6] |= 1L << c;
+                }
+            }
+        }
+
+        this.startScore = creator.run(this.order);
+        this.startEmptyPeriods = creator.getEmptyPeriods();
+        this.periods = new int[this.numberClasses];
+        this.periodClasses = new long[NUMBER_PERIODS][this.words];
+        for (int c = 0; c < this.numberClasses; c++) {
+            this.periods[c] = creator.getPeriods(c);
+            for (int p = 0; p < NUMBER_PERIODS; p++) {
+                if ((this.periods[c] & (1 << p)) != 0) {
+                    this.periodClasses[p][c >>> 6] |= 1L << c;
+                }
+            }
+        }
+        this.tabuUntil = new int[this.numberClasses * NUMBER_PERIODS];
+        this.bestPeriods = this.periods.clone();
+        this.bestScore = this.startScore;
+        this.offerings = new int[this.numberClasses * NUMBER_PERIODS];
+    }
+
+    /**
+     * Sets the number of iterations a class may not return to a period it left.
+     *
+     * @param tenure the tabu tenure
+     */
+    public void setTenure(int tenure) {
+        this.tenure = tenure;
+    }
+
+    /**
+     * Sets the number of moves evaluated each iteration.
+     *
+     * @param candidates the number of candidate moves
+     */
+    public void setCandidates(int candidates) {
+        this.candidates = candidates;
+    }
+
+    /**
+     * Returns the score of the attempt over its own layout.
+     *
+     * @return the starting score
+     */
+    public int getStartScore() {
+        return this.startScore;
+    }
+
+    /**
+     * Returns the number of iterations taken by the last run.
+     *
+     * @return the number of iterations
+     */
+    public long getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Returns the number of layouts enrolled by the last run.
+     *
+     * @return the number of evaluations
+     */
+    public long getEvaluations() {
+        return this.evaluations;
+    }
+
+    /**
+     * Returns the periods of each class in the best layout found.
+     *
+     * @return the periods by class id, with bit 0 for the first period
+     */
+    public int[] getBestPeriods() {
+        return this.bestPeriods.clone();
+    }
+
+    /**
+     * Searches until either budget runs out, then enrolls the campers over the
+     * best layout found, so the engine holds that schedule.
+     *
+     * @param maxIterations   the maximum number of iterations
+     * @param timeLimitMillis the maximum running time in milliseconds
+     * @return the best score found
+     */
+    public int search(long maxIterations, long timeLimitMillis) {
+        long start = System.nanoTime();
+        long timeLimitNanos = timeLimitMillis * 1000000L;
+        this.iterations = 0;
+        this.evaluations = 0;
+        while (this.iterations < maxIterations) {
+            if (System.nanoTime() - start >= timeLimitNanos) {
+                break;
+            }
+            this.iterations++;
+            if (!this.step()) {
+                break;
+            }
+        }
+        this.creator.enroll(this.order, this.bestPeriods);
+        return this.bestScore;
+    }
+
+    /**
+     * Snapshots the schedule of the best layout found, once
+     * {@link #search(long, long)} has returned.
+     *
+     * @return the compact schedule, indexed by camper id
+     */
+    public CompactSchedule toCompactSchedule() {
+        return this.creator.toCompactSchedule(this.bestScore);
+    }
+
+    /**
+     * Evaluates a sample of moves and makes the best one allowed.
+     *
+     * @return false if no feasible move was found
+     */
+    private boolean step() {
+        this.numberOfferings = 0;
+        for (int c = 0; c < this.numberClasses; c++) {
+            for (int p = 0; p < NUMBER_PERIODS; p++) {
+                if ((this.periods[c] & (1 << p)) != 0) {
+                    this.offerings[this.numberOfferings++] = c * NUMBER_PERIODS + p;
+                }
+            }
+        }
+        if (this.numberOfferings == 0) {
+            return false;
+        }
+        int bestMove = -1;
+        int bestOther = -1;
+        int bestTarget = -1;
+        int bestMoveScore = Integer.MAX_VALUE;
+        for (int i = 0; i < this.candidates; i++) {
+            int move = this.offerings[this.random.nextInt(this.numberOfferings)];
+            int other = -1;
+            int target;
+            if (this.random.nextBoolean()) {
+                target = (move % NUMBER_PERIODS + 1 + this.random.nextInt(NUMBER_PERIODS - 1)) % NUMBER_PERIODS;
+            } else {
+                other = this.offerings[this.random.nextInt(this.numberOfferings)];
+                target = other % NUMBER_PERIODS;
+                if (target == move % NUMBER_PERIODS || other / NUMBER_PERIODS == move / NUMBER_PERIODS) {
+                    continue;
+                }
+            }
+            if (!this.apply(move, other, target)) {
+                continue;
+            }
+            int score = this.creator.enroll(this.order, this.periods);
+            this.evaluations++;
+            if (this.creator.getEmptyPeriods() > this.startEmptyPeriods) {
+                // An empty period scores nothing, so leaving more campers without a class is no improvement
+                this.revert(move, other, target);
+                continue;
+            }
+            boolean tabu = this.isTabu(move / NUMBER_PERIODS, target)
+                    || (other >= 0 && this.isTabu(other / NUMBER_PERIODS, move % NUMBER_PERIODS));
+            if ((!tabu || score < this.bestScore) && score < bestMoveScore) {
+                bestMove = move;
+                bestOther = other;
+                bestTarget = target;
+                bestMoveScore = score;
+            }
+            this.revert(move, other, target);
+        }
+        if (bestMove < 0) {
+            return true;
+        }
+        this.apply(bestMove, bestOther, bestTarget);
+        int limit = (int) Math.min(Integer.MAX_VALUE, this.iterations + this.tenure);
+        this.tabuUntil[bestMove] = limit;
+        if (bestOther >= 0) {
+            this.tabuUntil[bestOther] = limit;
+        }
+        if (bestMoveScore < this.bestScore) {
+            this.bestScore = bestMoveScore;
+            this.bestPeriods = this.periods.clone();
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a class may not return to a period yet.
+     *
+     * @param classId the class id
+     * @param period  the period index, from 0
+     * @return true if the move is tabu
+     */
+    private boolean isTabu(int classId, int period) {
+        return this.tabuUntil[classId * NUMBER_PERIODS + period] > this.iterations;
+    }
+
+    /**
+     * Makes a move if it is feasible: shifts an offering to another period, or
+     * swaps it with an offering of another class in that period.
+     *
+     * @param move   the offering to move
+     * @param other  the offering to swap with, or -1 to shift
+     * @param target the period index the moved offering goes to
+     * @return true if the move was made, false if it breaks a layout rule
+     */
+    private boolean apply(int move, int other, int target) {
+        int classId = move / NUMBER_PERIODS;
+        int period = move % NUMBER_PERIODS;
+        this.remove(classId, period);
+        if (other >= 0) {
+            this.remove(other / NUMBER_PERIODS, target);
+        }
+        boolean fits = this.fits(classId, target) && (other < 0 || this.fits(other / NUMBER_PERIODS, period));
+        if (fits) {
+            this.add(classId, target);
+            if (other >= 0) {
+                this.add(other / NUMBER_PERIODS, period);
+            }
+        } else {
+            if (other >= 0) {
+                this.add(other / NUMBER_PERIODS, target);
+            }
+            this.add(classId, period);
+        }
+        return fits;
+    }
+
+    /**
+     * Undoes a move made by {@link #apply(int, int, int)}.
+     *
+     * @param move   the offering that was moved
+     * @param other  the offering it was swapped with, or -1
+     * @param target the period index the moved offering went to
+     */
+    private void revert(int move, int other, int target) {
+        int classId = move / NUMBER_PERIODS;
+        int period = move % NUMBER_PERIODS;
+        this.remove(classId, target);
+        if (other >= 0) {
+            this.remove(other / NUMBER_PERIODS, period);
+            this.add(other / NUMBER_PERIODS, target);
+        }
+        this.add(classId, period);
+    }
+
+    /**
+     * Checks whether a class could be offered in a period: the period is one
+     * it may run in and does not offer it already, no class it may not run
+     * concurrently with is offered then, and a class that needs consecutive
+     * periods would have them.
+     *
+     * @param classId the class id
+     * @param period  the period index, from 0
+     * @return true if the class fits
+     */
+    private boolean fits(int classId, int period) {
+        int bit = 1 << period;
+        if ((this.allowedPeriods[classId] & bit) == 0 || (this.periods[classId] & bit) != 0) {
+            return false;
+        }
+        for (int w = 0; w < this.words; w++) {
+            if ((this.conflicts[classId][w] & this.periodClasses[period][w]) != 0) {
+                return false;
+            }
+        }
+        int after = this.periods[classId] | bit;
+        return !this.consecutive[classId] || Integer.bitCount(after) != 2 || after == FIRST_TWO_PERIODS
+                || after == LAST_TWO_PERIODS;
+    }
+
+    /**
+     * Offers a class in a period.
+     *
+     * @param classId the class id
+     * @param period  the period index, from 0
+     */
+    private void add(int classId, int period) {
+        this.periods[classId] |= 1 << period;
+        this.periodClasses[period][classId >>> 6] |= 1L << classId;
+    }
+
+    /**
+     * Stops offering a class in a period.
+     *
+     * @param classId the class id
+     * @param period  the period index, from 0
+     */
+    private void remove(int classId, int period) {
+        this.periods[classId] &= ~(1 << period);
+        this.periodClasses[period][classId >>> 6] &= ~(1L << classId);
+    }
+
+    /**
+     * Runs a seeded search, then improves the layout of its best attempt,
+     * printing the scores, the speed of evaluations and the offerings moved.
+     *
+     * @param args the command line options
+     * @throws IOException if the job cannot be loaded
+     */
+    public static void main(String[] args) throws IOException {
+        String job = null;
+        int numberCampers = 1000;
+        int numberClasses = 20;
+        int attempts = SchedulerDaemon.DEFAULT_ATTEMPTS;
+        long seed = 1;
+        long timeMillis = 2000;
+        int tenure = DEFAULT_TENURE;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--job":
+                    job = args[i + 1];
+                    break;
+                case "--campers":
+                    numberCampers = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--classes":
+                    numberClasses = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--attempts":
+                    attempts = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--time":
+                    timeMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--tenure":
+                    tenure = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        ArrayList<ClassClass> catalog;
+        ArrayList<Camper> roster;
+        if (job != null) {
+            catalog = new ArrayList<ClassClass>();
+            roster = SchedulerDaemon.loadJob(Paths.get(job), catalog);
+        } else {
+            RosterGenerator generator = new RosterGenerator(seed);
+            catalog = generator.generateCatalog(numberClasses, numberCampers);
+            roster = generator.generateCampers(catalog, numberCampers);
+        }
+        ScheduleSearch search = new ScheduleSearch(catalog, roster, attempts, seed);
+        CompactSchedule best = search.run();
+
+        // The best attempt's camper order, drawn as the search drew it
+        int[] order = new int[roster.size()];
+        ScheduleSearch.shuffle(order, ScheduleSearch.attemptRandom(seed, best.getAttempt()));
+        ColumnarScheduleCreator creator = new ColumnarScheduleCreator(catalog,
+                new CamperStore(search.getCamperOrder(), catalog));
+        LayoutTabuSearch tabu = new LayoutTabuSearch(catalog, creator, order, new Random(seed));
+        tabu.setTenure(tenure);
+        long start = System.nanoTime();
+        int score = tabu.search(Long.MAX_VALUE, timeMillis);
+        long nanos = System.nanoTime() - start;
+
+        System.out.println("Best of " + attempts + " attempts: " + tabu.getStartScore());
+        System.out.printf("Tabu search: %d after %d iterations, %d layouts enrolled at %.1f us each%n", score,
+                tabu.getIterations(), tabu.getEvaluations(), nanos / 1e3 / Math.max(1, tabu.getEvaluations()));
+        int[] periods = tabu.getBestPeriods();
+        for (int c = 0; c < catalog.size(); c++) {
+            int before = layoutPeriods(best, c);
+            if (periods[c] != before) {
+                System.out.println("  " + catalog.get(c).getTitle() + ": periods " + describe(before) + " -> "
+                        + describe(periods[c]));
+            }
+        }
+    }
+
+    /**
+     * Returns the periods a class is offered in by a compact schedule.
+     *
+     * @param schedule the schedule
+     * @param classId  the class id
+     * @return the periods, with bit 0 for the first period
+     */
+    private static int layoutPeriods(CompactSchedule schedule, int classId) {
+        int out = 0;
+        for (int p = 1; p <= NUMBER_PERIODS; p++) {
+            for (int offered : schedule.getLayout(p)) {
+                if (offered == classId) {
+                    out |= 1 << (p - 1);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Lists the periods in a period mask, for printing.
+     *
+     * @param periods the periods, with bit 0 for the first period
+     * @return the period numbers, such as "1,3"
+     */
+    private static String describe(int periods) {
+        StringBuffer out = new StringBuffer();
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if ((periods & (1 << p)) != 0) {
+                out.append(out.length() == 0 ? "" : ",").append(p + 1);
+            }
+        }
+        return out.length() == 0 ? "none" : out.toString();
+    }
+}
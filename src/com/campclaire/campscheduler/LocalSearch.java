@@ -0,0 +1,173 @@
+package com.campclaire.campscheduler;
+
+import java.util.Random;
+
+/**
+ * Improves a {@link WorkingSchedule} by simulated annealing. Each step proposes
+ * one of three moves: moving a camper to another class in the same period,
+ * exchanging two campers' classes in a period, or exchanging a camper's classes
+ * between two periods. Moves that lower the score are always taken; moves that
+ * raise it are taken with a probability that falls as the temperature cools.
+ * The schedule is left in the best state found.
+ *
+ * Moves never exceed a class's single period cutoff and never move campers into
+ * or out of required or double-period classes.
+ */
+public class LocalSearch {
+    /** The default starting temperature, in score units. */
+    public static final double DEFAULT_START_TEMPERATURE = 4.0;
+    /** The default final temperature, in score units. */
+    public static final double DEFAULT_END_TEMPERATURE = 0.05;
+    private static final int CLOCK_CHECK_INTERVAL = 4096;
+
+    private final WorkingSchedule schedule;
+    private final Random random;
+    private double startTemperature;
+    private double endTemperature;
+    private long iterations;
+
+    /**
+     * Constructs a local search over a schedule.
+     *
+     * @param schedule the schedule to improve in place
+     * @param random   the source of randomness
+     */
+    public LocalSearch(WorkingSchedule schedule, Random random) {
+        this.schedule = schedule;
+        this.random = random;
+        this.startTemperature = DEFAULT_START_TEMPERATURE;
+        this.endTemperature = DEFAULT_END_TEMPERATURE;
+    }
+
+    /**
+     * Sets the annealing temperatures. A start temperature equal to the end
+     * temperature gives a fixed-temperature search; an end temperature near zero
+     * makes the last steps a plain descent.
+     *
+     * @param startTemperature the temperature of the first step
+     * @param endTemperature   the temperature of the last step
+     */
+    public void setTemperatures(double startTemperature, double endTemperature) {
+        this.startTemperature = startTemperature;
+        this.endTemperature = endTemperature;
+    }
+
+    /**
+     * Returns the number of steps taken by the last run.
+     *
+     * @return the number of steps
+     */
+    public long getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Anneals the schedule until either budget runs out. The temperature follows
+     * whichever budget is further spent, so a run cut short by the time limit
+     * still finishes cold.
+     *
+     * @param maxIterations   the maximum number of steps
+     * @param timeLimitMillis the maximum running time in milliseconds
+     * @return the best score found, which is the schedule's score on return
+     */
+    public int anneal(long maxIterations, long timeLimitMillis) {
+        int numberCampers = this.schedule.getNumberCampers();
+        if (numberCampers == 0) {
+            return this.schedule.getScore();
+        }
+        long start = System.nanoTime();
+        long timeLimitNanos = timeLimitMillis * 1000000L;
+        double ratio = this.endTemperature / this.startTemperature;
+        double progress = 0;
+        double temperature = this.startTemperature;
+        int bestScore = this.schedule.getScore();
+        int[] best = this.schedule.copyAssignments();
+        this.iterations = 0;
+        while (progress < 1) {
+            if (this.iterations % CLOCK_CHECK_INTERVAL == 0) {
+                double elapsed = (double) (System.nanoTime() - start) / timeLimitNanos;
+                progress = Math.max((double) this.iterations / maxIterations, elapsed);
+                temperature = this.startTemperature * Math.pow(ratio, Math.min(progress, 1));
+            }
+            this.iterations++;
+            this.step(numberCampers, temperature);
+            if (this.schedule.getScore() < bestScore) {
+                bestScore = this.schedule.getScore();
+                best = this.schedule.copyAssignments();
+            }
+            if (this.iterations >= maxIterations) {
+                break;
+            }
+        }
+        this.schedule.restoreAssignments(best);
+        return this.schedule.getScore();
+    }
+
+    /**
+     * Proposes one random move and applies it if accepted.
+     *
+     * @param numberCampers the number of campers
+     * @param temperature   the current temperature
+     */
+    private void step(int numberCampers, double temperature) {
+        int camper = this.random.nextInt(numberCampers);
+        int period = 1 + this.random.nextInt(WorkingSchedule.NUMBER_PERIODS);
+        if (!this.schedule.isMovable(camper, period)) {
+            return;
+        }
+        int move = this.random.nextInt(3);
+        if (move == 0) {
+            int[] offered = this.schedule.getOffered(period);
+            int classId = offered[this.random.nextInt(offered.length)];
+            if (classId == this.schedule.getAssignment(camper, period)
+                    || !this.schedule.canTake(camper, period, classId) || !this.schedule.hasRoom(period, classId)) {
+                return;
+            }
+            if (this.accept(this.schedule.moveDelta(camper, period, classId), temperature)) {
+                this.schedule.assign(camper, period, classId);
+            }
+        } else if (move == 1) {
+            int other = this.random.nextInt(numberCampers);
+            int a = this.schedule.getAssignment(camper, period);
+            int b = this.schedule.getAssignment(other, period);
+            if (a == b || !this.schedule.isMovable(other, period) || !this.schedule.canTake(camper, period, b)
+                    || !this.schedule.canTake(other, period, a)) {
+                return;
+            }
+            if (this.accept(this.schedule.swapDelta(camper, other, period), temperature)) {
+                this.schedule.swap(camper, other, period);
+            }
+        } else {
+            int otherPeriod = 1 + (period + this.random.nextInt(2)) % WorkingSchedule.NUMBER_PERIODS;
+            if (!this.schedule.isMovable(camper, otherPeriod)) {
+                return;
+            }
+            int a = this.schedule.getAssignment(camper, period);
+            int b = this.schedule.getAssignment(camper, otherPeriod);
+            if (!this.schedule.isOffered(period, b) || !this.schedule.isOffered(otherPeriod, a)
+                    || !this.schedule.hasRoom(period, b) || !this.schedule.hasRoom(otherPeriod, a)) {
+                return;
+            }
+            int before = this.schedule.getScore();
+            this.schedule.assign(camper, period, WorkingSchedule.NO_CLASS);
+            this.schedule.assign(camper, otherPeriod, a);
+            this.schedule.assign(camper, period, b);
+            if (!this.accept(this.schedule.getScore() - before, temperature)) {
+                this.schedule.assign(camper, period, WorkingSchedule.NO_CLASS);
+                this.schedule.assign(camper, otherPeriod, b);
+                this.schedule.assign(camper, period, a);
+            }
+        }
+    }
+
+    /**
+     * Decides whether to take a move by the Metropolis criterion.
+     *
+     * @param delta       the change in score the move would cause
+     * @param temperature the current temperature
+     * @return true if the move should be taken
+     */
+    private boolean accept(int delta, double temperature) {
+        return delta <= 0 || this.random.nextDouble() < Math.exp(-delta / temperature);
+    }
+}
@@ -0,0 +1,247 @@
+package com.campclaire.campscheduler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * A read-only view of a binary roster (see {@link BinaryRosterFormat}) backed by
+ * a {@link MappedByteBuffer}. Camper fields are read straight from the mapped
+ * file, so a roster can be loaded and scanned without creating {@link Camper}
+ * objects; the engine can read the rank matrix directly through
+ * {@link #getRankMatrix()}.
+ */
+public class MappedRoster {
+    private final MappedByteBuffer buffer;
+    private final ArrayList<ClassClass> catalog;
+    private final int numberClasses;
+    private final int numberCampers;
+    private final int recordsOffset;
+    private final int recordSize;
+    private final int namesOffset;
+    private final int nameBytesOffset;
+
+    /**
+     * Constructs a view over a mapped binary roster.
+     *
+     * @param buffer the mapped file
+     * @throws IOException if the file is not a supported binary roster
+     */
+    private MappedRoster(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < BinaryRosterFormat.HEADER_SIZE || buffer.getInt(0) != BinaryRosterFormat.MAGIC) {
+            throw new IOException("Not a binary roster");
+        }
+        short version = buffer.getShort(4);
+        if (version != BinaryRosterFormat.VERSION) {
+            throw new IOException("Unsupported binary roster version " + version);
+        }
+        this.numberClasses = buffer.getShort(6) & 0xFFFF;
+        this.numberCampers = buffer.getInt(8);
+        int catalogOffset = buffer.getInt(12);
+        this.recordsOffset = buffer.getInt(16);
+        this.recordSize = buffer.getInt(20);
+        this.namesOffset = buffer.getInt(24);
+        this.nameBytesOffset = this.namesOffset + (this.numberCampers + 1) * 4;
+        if (this.recordSize != 2 + this.numberClasses
+                || (long) this.recordsOffset + (long) this.recordSize * this.numberCampers > this.namesOffset
+                || this.nameBytesOffset > buffer.capacity()) {
+            throw new IOException("Corrupt binary roster");
+        }
+        this.catalog = decodeCatalog(buffer, catalogOffset, this.numberClasses);
+    }
+
+    /**
+     * Maps a binary roster file.
+     *
+     * @param file the file to map
+     * @return the roster view
+     * @throws IOException if the file cannot be mapped or is not a binary roster
+     */
+    public static MappedRoster open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedRoster(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the class catalog stored in the roster.
+     *
+     * @return a copy of the catalog, in class id order
+     */
+    public ArrayList<ClassClass> getCatalog() {
+        return new ArrayList<ClassClass>(this.catalog);
+    }
+
+    /**
+     * Returns the number of classes in the catalog.
+     *
+     * @return the number of classes
+     */
+    public int getNumberClasses() {
+        return this.numberClasses;
+    }
+
+    /**
+     * Returns the number of campers in the roster.
+     *
+     * @return the number of campers
+     */
+    public int getNumberCampers() {
+        return this.numberCampers;
+    }
+
+    /**
+     * Returns a camper's age.
+     *
+     * @param camper the camper index
+     * @return the age
+     */
+    public int getAge(int camper) {
+        return this.buffer.get(this.recordsOffset + camper * this.recordSize) & 0xFF;
+    }
+
+    /**
+     * Returns a camper's swim level.
+     *
+     * @param camper the camper index
+     * @return the swim level
+     */
+    public int getSwimLevel(int camper) {
+        return this.buffer.get(this.recordsOffset + camper * this.recordSize + 1) & 0xFF;
+    }
+
+    /**
+     * Returns the id of the class a camper ranked at a given position.
+     *
+     * @param camper the camper index
+     * @param rank   the zero-based rank, 0 being the camper's first choice
+     * @return the class id
+     */
+    public int getRankedClassId(int camper, int rank) {
+        return this.buffer.get(this.recordsOffset + camper * this.recordSize + 2 + rank) & 0xFF;
+    }
+
+    /**
+     * Returns a camper's name, decoding it from the name table.
+     *
+     * @param camper the camper index
+     * @return the name
+     */
+    public String getName(int camper) {
+        int start = this.buffer.getInt(this.namesOffset + camper * 4);
+        int end = this.buffer.getInt(this.namesOffset + camper * 4 + 4);
+        byte[] bytes = new byte[end - start];
+        this.buffer.get(this.nameBytesOffset + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a read-only view of the camper records. Record {@code i} starts at
+     * {@code i * getRecordSize()}; its first two bytes are the age and swim
+     * level and the remaining bytes are the class ids in rank order. The view has
+     * its own position, so each thread can use its own view.
+     *
+     * @return a read-only view of the rank matrix
+     */
+    public ByteBuffer getRankMatrix() {
+        return this.buffer.asReadOnlyBuffer().position(this.recordsOffset)
+                .limit(this.recordsOffset + this.recordSize * this.numberCampers).slice();
+    }
+
+    /**
+     * Returns the size of a camper record in the rank matrix.
+     *
+     * @return the record size in bytes
+     */
+    public int getRecordSize() {
+        return this.recordSize;
+    }
+
+    /**
+     * Streams every camper record into a sink, without creating camper objects.
+     *
+     * @param sink the sink receiving each record
+     * @throws IOException if the sink rejects a record
+     */
+    public void forEachCamper(RosterImporter.CamperSink sink) throws IOException {
+        int[] rankedClassIds = new int[this.numberClasses];
+        for (int i = 0; i < this.numberCampers; i++) {
+            for (int rank = 0; rank < this.numberClasses; rank++) {
+                rankedClassIds[rank] = this.getRankedClassId(i, rank);
+            }
+            sink.accept(this.getName(i), this.getAge(i), this.getSwimLevel(i), rankedClassIds);
+        }
+    }
+
+    /**
+     * Creates camper objects for the whole roster. The campers share the class
+     * objects of {@link #getCatalog()}, which must be the active class list.
+     *
+     * @return the campers, in file order
+     */
+    public ArrayList<Camper> toCampers() {
+        ArrayList<Camper> out = new ArrayList<Camper>(this.numberCampers);
+        for (int i = 0; i < this.numberCampers; i++) {
+            ClassClass[] choices = new ClassClass[this.numberClasses];
+            for (int rank = 0; rank < this.numberClasses; rank++) {
+                choices[rank] = this.catalog.get(this.getRankedClassId(i, rank));
+            }
+            out.add(new Camper(this.getAge(i), this.getName(i), this.getSwimLevel(i), choices));
+        }
+        return out;
+    }
+
+    /**
+     * Decodes the class catalog section.
+     *
+     * @param buffer        the mapped file
+     * @param offset        the offset of the catalog
+     * @param numberClasses the number of classes
+     * @return the decoded classes
+     */
+    private static ArrayList<ClassClass> decodeCatalog(ByteBuffer buffer, int offset, int numberClasses) {
+        ByteBuffer in = buffer.duplicate().position(offset);
+        ArrayList<ClassClass> out = new ArrayList<ClassClass>(numberClasses);
+        for (int i = 0; i < numberClasses; i++) {
+            String title = readUTF(in);
+            int flags = in.get();
+            int singlePeriodCutoff = in.getShort();
+            int[] restrictedPeriods = new int[in.get()];
+            for (int j = 0; j < restrictedPeriods.length; j++) {
+                restrictedPeriods[j] = in.get();
+            }
+            ClassClass class_ = new ClassClass(title, restrictedPeriods,
+                    (flags & BinaryRosterFormat.FLAG_DOUBLE_PERIOD) != 0,
+                    (flags & BinaryRosterFormat.FLAG_REQUIRED) != 0, (flags & BinaryRosterFormat.FLAG_10_PLUS) != 0,
+                    (flags & BinaryRosterFormat.FLAG_CONSECUTIVE) != 0,
+                    (flags & BinaryRosterFormat.FLAG_SWIM_LEVEL) != 0, singlePeriodCutoff);
+            ArrayList<String> concurrent = new ArrayList<String>();
+            int numberConcurrent = in.getShort();
+            for (int j = 0; j < numberConcurrent; j++) {
+                concurrent.add(readUTF(in));
+            }
+            class_.setRestrictedConcurrentClasses(concurrent);
+            out.add(class_);
+        }
+        return out;
+    }
+
+    /**
+     * Reads a string written with {@link java.io.DataOutput#writeUTF(String)}.
+     * Titles are plain text, so standard UTF-8 decoding is used.
+     *
+     * @param in the buffer to read from
+     * @return the string
+     */
+    private static String readUTF(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,232 @@
+package com.campclaire.campscheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the scheduler's metrics at {@code /metrics} in the Prometheus text
+ * exposition format, using the JDK's built-in HTTP server.
+ *
+ * The page is rendered on a timer by a background thread into a byte array,
+ * and scrapes are answered with the latest rendering. A scrape never reads
+ * engine state itself, so scraping cannot slow the search threads or contend
+ * with them, and a burst of scrapes costs one rendering per interval.
+ *
+ * The engine's {@link SchedulerMetrics} phase histograms and counters and the
+ * {@link SchedulerDiagnostics} counts are always exported. Other components add
+ * their own series through {@link Source}.
+ */
+public class MetricsServer implements AutoCloseable {
+    /** The default port, in the range commonly used by Prometheus exporters. */
+    public static final int DEFAULT_PORT = 9464;
+    /** The default time between renderings. */
+    public static final long DEFAULT_RENDER_INTERVAL_MILLIS = 1000;
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    /** The upper bounds of the phase latency histogram buckets, in seconds. */
+    private static final double[] LATENCY_BUCKETS = { 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025,
+            0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    /**
+     * Contributes series to the metrics page. Sources are called on the rendering
+     * thread, so they must only read state that is safe to read from another
+     * thread.
+     */
+    public interface Source {
+        /**
+         * Appends series in the text exposition format.
+         *
+         * @param out the page being rendered
+         */
+        void render(StringBuffer out);
+    }
+
+    private final HttpServer server;
+    private final ScheduledExecutorService renderer;
+    private final ArrayList<Source> sources;
+    private volatile byte[] page;
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param port                 the port to listen on, or 0 for any free port
+     * @param renderIntervalMillis the time between renderings
+     * @param sources              additional series to export
+     * @throws IOException if the port cannot be bound
+     */
+    public MetricsServer(int port, long renderIntervalMillis, List<Source> sources) throws IOException {
+        this.sources = new ArrayList<Source>(sources);
+        this.page = new byte[0];
+        this.render();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/metrics", this::handle);
+        this.server.setExecutor(null);
+        this.renderer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.renderer.scheduleAtFixedRate(this::render, renderIntervalMillis, renderIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        this.server.start();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server and the renderer.
+     */
+    @Override
+    public void close() {
+        this.renderer.shutdownNow();
+        this.server.stop(0);
+    }
+
+    /**
+     * Answers a scrape with the latest rendering.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = this.page;
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders the metrics page. Failures keep the previous page.
+     */
+    private void render() {
+        try {
+            StringBuffer out = new StringBuffer(8192);
+            renderEngine(out);
+            for (Source source : this.sources) {
+                source.render(out);
+            }
+            this.page = out.toString().getBytes(StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            // Keep serving the last good page; the next interval tries again
+        }
+    }
+
+    /**
+     * Renders the engine's phase histograms, counters and diagnostic counts.
+     *
+     * @param out the page being rendered
+     */
+    private static void renderEngine(StringBuffer out) {
+        header(out, "campscheduler_phase_duration_seconds", "histogram",
+                "Time spent in each phase of a schedule attempt");
+        for (SchedulerMetrics.Phase phase : SchedulerMetrics.Phase.values()) {
+            LatencyHistogram.Snapshot timings = SchedulerMetrics.getTimings(phase);
+            String label = "phase=\"" + phase.getDisplayName() + "\"";
+            for (double bound : LATENCY_BUCKETS) {
+                sample(out, "campscheduler_phase_duration_seconds_bucket",
+                        label + ",le=\"" + formatValue(bound) + "\"",
+                        timings.getCountAtOrBelow((long) (bound * 1e9)));
+            }
+            sample(out, "campscheduler_phase_duration_seconds_bucket", label + ",le=\"+Inf\"", timings.getCount());
+            sample(out, "campscheduler_phase_duration_seconds_sum", label, timings.getSum() / 1e9);
+            sample(out, "campscheduler_phase_duration_seconds_count", label, timings.getCount());
+        }
+        for (SchedulerMetrics.Counter counter : SchedulerMetrics.Counter.values()) {
+            String name = "campscheduler_" + snakeCase(counter.getDisplayName()) + "_total";
+            header(out, name, "counter", counter.getDescription());
+            sample(out, name, null, SchedulerMetrics.getCount(counter));
+        }
+        header(out, "campscheduler_diagnostics_total", "counter", "Unusual conditions the engine worked around");
+        for (SchedulerDiagnostics.Condition condition : SchedulerDiagnostics.Condition.values()) {
+            sample(out, "campscheduler_diagnostics_total", "condition=\"" + condition.getDisplayName() + "\"",
+                    SchedulerDiagnostics.getCount(condition));
+        }
+    }
+
+    /**
+     * Appends the HELP and TYPE lines of a metric.
+     *
+     * @param out  the page being rendered
+     * @param name the metric name
+     * @param type the metric type
+     * @param help the help text
+     */
+    public static void header(StringBuffer out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Appends a sample.
+     *
+     * @param out    the page being rendered
+     * @param name   the series name
+     * @param labels the label pairs without braces, or null
+     * @param value  the value
+     */
+    public static void sample(StringBuffer out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    /**
+     * Formats a sample value, writing whole numbers without a fraction.
+     *
+     * @param value the value
+     * @return the formatted value
+     */
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.9g", value).replaceAll("0+(e|$)", "$1").replaceAll("\\.(e|$)", "$1");
+    }
+
+    /**
+     * Converts a camel-case name to snake case.
+     *
+     * @param name the camel-case name
+     * @return the snake-case name
+     */
+    private static String snakeCase(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,143 @@
+package com.campclaire.campscheduler;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Locale;
+
+/**
+ * Shows the engine's {@link SchedulerMetrics} in a window: a table of phase
+ * timings in milliseconds, a table of counters and {@link SchedulerDiagnostics}
+ * counts, and the latest sampled diagnostic traces, refreshed every second
+ * while the window is open. Collection and trace sampling can be switched on
+ * and off and everything cleared from the window.
+ */
+public class MetricsView extends JFrame {
+    private static final long serialVersionUID = 1L;
+    private static final int REFRESH_MILLIS = 1000;
+    /** One diagnostic in this many is traced when sampling is switched on here. */
+    private static final int TRACE_SAMPLE_INTERVAL = 100;
+    private final DefaultTableModel phaseTableModel;
+    private final DefaultTableModel counterTableModel;
+    private final JTextArea traceArea;
+    private final Timer refreshTimer;
+
+    /**
+     * Constructs the metrics window.
+     */
+    public MetricsView() {
+        setTitle("Scheduler Metrics");
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        String[] phaseColumns = { "Phase", "Count", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms" };
+        phaseTableModel = new DefaultTableModel(phaseColumns, 0) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        String[] counterColumns = { "Counter", "Count" };
+        counterTableModel = new DefaultTableModel(counterColumns, 0) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable phaseTable = new JTable(phaseTableModel);
+        JTable counterTable = new JTable(counterTableModel);
+        JScrollPane phaseScrollPane = new JScrollPane(phaseTable);
+        phaseScrollPane.setBorder(BorderFactory.createTitledBorder("Phase Timings"));
+        phaseScrollPane.setPreferredSize(new Dimension(640, 220));
+        JScrollPane counterScrollPane = new JScrollPane(counterTable);
+        counterScrollPane.setBorder(BorderFactory.createTitledBorder("Counters"));
+        counterScrollPane.setPreferredSize(new Dimension(640, 230));
+
+        traceArea = new JTextArea(8, 60);
+        traceArea.setEditable(false);
+        traceArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JScrollPane traceScrollPane = new JScrollPane(traceArea);
+        traceScrollPane.setBorder(BorderFactory.createTitledBorder("Diagnostic Traces"));
+
+        JPanel tablePanel = new JPanel();
+        tablePanel.setLayout(new BoxLayout(tablePanel, BoxLayout.Y_AXIS));
+        tablePanel.add(phaseScrollPane);
+        tablePanel.add(counterScrollPane);
+        tablePanel.add(traceScrollPane);
+        add(tablePanel, BorderLayout.CENTER);
+
+        JCheckBox enabledCheckBox = new JCheckBox("Collect metrics", SchedulerMetrics.isEnabled());
+        enabledCheckBox.addActionListener(e -> SchedulerMetrics.setEnabled(enabledCheckBox.isSelected()));
+        JCheckBox traceCheckBox = new JCheckBox("Sample traces", SchedulerDiagnostics.getTraceSampleInterval() > 0);
+        traceCheckBox.addActionListener(e -> SchedulerDiagnostics
+                .setTraceSampleInterval(traceCheckBox.isSelected() ? TRACE_SAMPLE_INTERVAL : 0));
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            SchedulerMetrics.reset();
+            SchedulerDiagnostics.reset();
+            refresh();
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttonPanel.add(enabledCheckBox);
+        buttonPanel.add(traceCheckBox);
+        buttonPanel.add(resetButton);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                refreshTimer.stop();
+            }
+        });
+        refresh();
+        refreshTimer.start();
+
+        pack();
+        setLocationRelativeTo(null);
+    }
+
+    /**
+     * Reloads the tables and traces from the current metrics.
+     */
+    private void refresh() {
+        phaseTableModel.setRowCount(0);
+        for (SchedulerMetrics.Phase phase : SchedulerMetrics.Phase.values()) {
+            LatencyHistogram.Snapshot timings = SchedulerMetrics.getTimings(phase);
+            phaseTableModel.addRow(new Object[] { phase.getDisplayName(), timings.getCount(),
+                    millis(timings.getMean()), millis(timings.getValueAtPercentile(50)),
+                    millis(timings.getValueAtPercentile(90)), millis(timings.getValueAtPercentile(99)),
+                    millis(timings.getMax()) });
+        }
+        counterTableModel.setRowCount(0);
+        for (SchedulerMetrics.Counter counter : SchedulerMetrics.Counter.values()) {
+            counterTableModel.addRow(new Object[] { counter.getDisplayName(), SchedulerMetrics.getCount(counter) });
+        }
+        for (SchedulerDiagnostics.Condition condition : SchedulerDiagnostics.Condition.values()) {
+            counterTableModel
+                    .addRow(new Object[] { condition.getDisplayName(), SchedulerDiagnostics.getCount(condition) });
+        }
+        StringBuffer traces = new StringBuffer();
+        for (SchedulerDiagnostics.Trace trace : SchedulerDiagnostics.getTraces()) {
+            traces.append(trace).append('\n');
+        }
+        traceArea.setText(traces.toString());
+    }
+
+    /**
+     * Formats a duration in nanoseconds as milliseconds.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the formatted duration
+     */
+    private static String millis(double nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
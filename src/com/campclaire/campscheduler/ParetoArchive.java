@@ -0,0 +1,331 @@
+package com.campclaire.campscheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Retains schedules that no other schedule found beats on every count, so that
+ * a director can trade camper preferences against period balance rather than
+ * take the single schedule with the lowest score. A schedule is measured by
+ * its rank sum, its balance spread and the worst rank any camper got (see
+ * {@link Objective}), all lower is better; the score adds the first two
+ * together. A schedule dominates another if it is no worse on all three and
+ * differs on one, and the archive keeps only schedules no archived schedule
+ * dominates or equals.
+ *
+ * The objectives are kept in plain arrays, so checking whether a schedule
+ * would be archived is a scan of a few ints per archived schedule, and a
+ * schedule is only snapshotted once it is known to be archived. When the
+ * archive is full, the schedule in the most crowded part of the front is
+ * dropped; the best schedule on each objective and the best score are always
+ * kept. A dropped schedule can leave room for one it dominated, so a full
+ * archive approximates the front rather than holding all of it.
+ */
+public class ParetoArchive {
+    /**
+     * A count schedules are measured by, lower is better.
+     */
+    public enum Objective {
+        /** The score, the rank sum plus the balance spread. */
+        SCORE,
+        /** The sum of the ranks of every camper's classes, required classes counting as 3. */
+        RANK_SUM,
+        /** The sum over classes of their capacity times the spread of their period enrollments. */
+        BALANCE_SPREAD,
+        /**
+         * The worst rank any camper gave a class they were enrolled in, as
+         * {@link Schedule#getWorstChoiceAndCamper()} finds it. Required
+         * classes are not counted. An empty period or an unranked class counts
+         * as one rank below the last, the number of classes in the catalog
+         * plus one, so leaving a camper unscheduled never looks better.
+         */
+        WORST_CAMPER_RANK
+    }
+
+    private final int capacity;
+    private final ArrayList<CompactSchedule> schedules;
+    private final int[] rankSums;
+    private final int[] balanceSpreads;
+    private final int[] worstCamperRanks;
+
+    /**
+     * Constructs an empty archive.
+     *
+     * @param capacity the maximum number of schedules to retain, at least 4 so
+     *                 that the best on each objective fits
+     * @throws IllegalArgumentException if the capacity is below 4
+     */
+    public ParetoArchive(int capacity) {
+        if (capacity < Objective.values().length) {
+            throw new IllegalArgumentException(
+                    "Pareto archive capacity must be at least " + Objective.values().length + ": " + capacity);
+        }
+        this.capacity = capacity;
+        this.schedules = new ArrayList<CompactSchedule>(capacity + 1);
+        this.rankSums = new int[capacity + 1];
+        this.balanceSpreads = new int[capacity + 1];
+        this.worstCamperRanks = new int[capacity + 1];
+    }
+
+    /**
+     * Checks whether a schedule with the specified objectives would be
+     * archived, that is whether no archived schedule dominates or equals it.
+     *
+     * @param rankSum          the schedule's rank sum
+     * @param balanceSpread    the schedule's balance spread
+     * @param worstCamperRank  the worst rank any camper got
+     * @return true if the schedule would be archived
+     */
+    public boolean admits(int rankSum, int balanceSpread, int worstCamperRank) {
+        for (int i = 0; i < this.schedules.size(); i++) {
+            if (this.rankSums[i] <= rankSum && this.balanceSpreads[i] <= balanceSpread
+                    && this.worstCamperRanks[i] <= worstCamperRank) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Offers a snapshot, archiving it if no archived schedule dominates or
+     * equals it and dropping the archived schedules it dominates.
+     *
+     * @param schedule         the snapshot to offer
+     * @param rankSum          the schedule's rank sum
+     * @param balanceSpread    the schedule's balance spread
+     * @param worstCamperRank  the worst rank any camper got
+     * @return true if the snapshot was archived
+     */
+    public boolean offer(CompactSchedule schedule, int rankSum, int balanceSpread, int worstCamperRank) {
+        if (!this.admits(rankSum, balanceSpread, worstCamperRank)) {
+            return false;
+        }
+        int kept = 0;
+        for (int i = 0; i < this.schedules.size(); i++) {
+            boolean dominated = rankSum <= this.rankSums[i] && balanceSpread <= this.balanceSpreads[i]
+                    && worstCamperRank <= this.worstCamperRanks[i];
+            if (!dominated) {
+                this.move(i, kept++);
+            }
+        }
+        while (this.schedules.size() > kept) {
+            this.schedules.remove(this.schedules.size() - 1);
+        }
+        this.schedules.add(schedule);
+        this.rankSums[kept] = rankSum;
+        this.balanceSpreads[kept] = balanceSpread;
+        this.worstCamperRanks[kept] = worstCamperRank;
+        if (this.schedules.size() > this.capacity) {
+            this.remove(this.mostCrowded());
+        }
+        return true;
+    }
+
+    /**
+     * Moves an archived schedule to a lower position, over whatever was there.
+     *
+     * @param from the position of the schedule
+     * @param to   the position to move it to
+     */
+    private void move(int from, int to) {
+        if (from != to) {
+            this.schedules.set(to, this.schedules.get(from));
+            this.rankSums[to] = this.rankSums[from];
+            this.balanceSpreads[to] = this.balanceSpreads[from];
+            this.worstCamperRanks[to] = this.worstCamperRanks[from];
+        }
+    }
+
+    /**
+     * Drops an archived schedule.
+     *
+     * @param index the position of the schedule
+     */
+    private void remove(int index) {
+        int last = this.schedules.size() - 1;
+        this.move(last, index);
+        this.schedules.remove(last);
+    }
+
+    /**
+     * Finds the archived schedule with the smallest crowding distance: the sum
+     * over objectives of the gap between its neighbours on that objective,
+     * relative to the objective's range. The worst schedule on an objective
+     * counts twice the gap to its one neighbour. The best schedule on each
+     * objective and the best score are never chosen.
+     *
+     * @return the position of the most crowded schedule
+     */
+    private int mostCrowded() {
+        int size = this.schedules.size();
+        double[] distances = new double[size];
+        long[] keys = new long[size];
+        for (int[] values : new int[][] { this.rankSums, this.balanceSpreads, this.worstCamperRanks }) {
+            for (int i = 0; i < size; i++) {
+                // Objectives are never negative, so sorting the packed keys sorts by value with the index alongside
+                keys[i] = ((long) values[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            double range = Math.max(1, values[(int) keys[size - 1]] - values[(int) keys[0]]);
+            distances[(int) keys[0]] = Double.POSITIVE_INFINITY;
+            int worst = (int) keys[size - 1];
+            distances[worst] += 2 * (values[worst] - values[(int) keys[size - 2]]) / range;
+            for (int k = 1; k < size - 1; k++) {
+                distances[(int) keys[k]] += (values[(int) keys[k + 1]] - values[(int) keys[k - 1]]) / range;
+            }
+        }
+        distances[this.indexOf(Objective.SCORE)] = Double.POSITIVE_INFINITY;
+        int crowded = 0;
+        for (int i = 1; i < size; i++) {
+            if (distances[i] < distances[crowded]) {
+                crowded = i;
+            }
+        }
+        return crowded;
+    }
+
+    /**
+     * Returns the value of an objective for an archived schedule.
+     *
+     * @param index     the position of the schedule, as in {@link #getSchedules()}
+     * @param objective the objective
+     * @return the schedule's value of the objective
+     */
+    public int getValue(int index, Objective objective) {
+        switch (objective) {
+            case RANK_SUM:
+                return this.rankSums[index];
+            case BALANCE_SPREAD:
+                return this.balanceSpreads[index];
+            case WORST_CAMPER_RANK:
+                return this.worstCamperRanks[index];
+            default:
+                return this.schedules.get(index).getScore();
+        }
+    }
+
+    /**
+     * Picks the archived schedule that is best on an objective, breaking ties
+     * by score and then by the other objectives in order.
+     *
+     * @param objective the objective to pick by
+     * @return the schedule, or null if none has been archived
+     */
+    public CompactSchedule pick(Objective objective) {
+        int index = this.indexOf(objective);
+        return index < 0 ? null : this.schedules.get(index);
+    }
+
+    /**
+     * Orders the archived schedules by an objective, breaking ties as
+     * {@link #pick(Objective)} does.
+     *
+     * @param objective the objective to order by
+     * @return the positions of the schedules, as in {@link #getSchedules()},
+     *         best first
+     */
+    public int[] orderBy(Objective objective) {
+        ArrayList<Integer> indexes = new ArrayList<Integer>();
+        for (int i = 0; i < this.schedules.size(); i++) {
+            indexes.add(i);
+        }
+        indexes.sort((first, second) -> this.compare(first, second, objective));
+        int[] order = new int[indexes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = indexes.get(i);
+        }
+        return order;
+    }
+
+    /**
+     * Finds the position of the archived schedule that is best on an objective.
+     *
+     * @param objective the objective
+     * @return the position, or -1 if none has been archived
+     * @see #pick(Objective)
+     */
+    private int indexOf(Objective objective) {
+        int best = -1;
+        for (int i = 0; i < this.schedules.size(); i++) {
+            if (best < 0 || this.compare(i, best, objective) < 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Compares two archived schedules on an objective, then by score, then by
+     * the other objectives in order.
+     *
+     * @param first     the position of one schedule
+     * @param second    the position of the other
+     * @param objective the objective to compare by first
+     * @return a negative number if the first is better, positive if the second
+     *         is, or 0 if they tie on everything
+     */
+    private int compare(int first, int second, Objective objective) {
+        int difference = Integer.compare(this.getValue(first, objective), this.getValue(second, objective));
+        for (Objective next : Objective.values()) {
+            if (difference != 0) {
+                break;
+            }
+            difference = Integer.compare(this.getValue(first, next), this.getValue(second, next));
+        }
+        return difference;
+    }
+
+    /**
+     * Returns the archived schedules, in no particular order.
+     *
+     * @return a copy of the archived schedules
+     */
+    public ArrayList<CompactSchedule> getSchedules() {
+        return new ArrayList<CompactSchedule>(this.schedules);
+    }
+
+    /**
+     * Describes an archived schedule's objectives, for choosing between them.
+     *
+     * @param index the position of the schedule, as in {@link #getSchedules()}
+     * @return the description, such as "score 4210: rank sum 4100, balance
+     *         spread 110, worst camper rank 12"
+     */
+    public String describe(int index) {
+        return "score " + this.getValue(index, Objective.SCORE) + ": rank sum " + this.rankSums[index]
+                + ", balance spread " + this.balanceSpreads[index] + ", worst camper rank "
+                + this.worstCamperRanks[index];
+    }
+
+    /**
+     * Returns the maximum number of schedules retained.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of schedules archived.
+     *
+     * @return the number of schedules
+     */
+    public int size() {
+        return this.schedules.size();
+    }
+
+    /**
+     * Estimates the heap occupied by the archived schedules.
+     *
+     * @return the estimated size in bytes
+     * @see CompactSchedule#getRetainedBytes()
+     */
+    public long getRetainedBytes() {
+        long bytes = 0;
+        for (CompactSchedule schedule : this.schedules) {
+            bytes += schedule.getRetainedBytes();
+        }
+        return bytes;
+    }
+}
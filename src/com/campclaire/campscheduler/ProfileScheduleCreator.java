@@ -0,0 +1,794 @@
+package com.campclaire.campscheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Runs a schedule attempt over {@link CamperProfiles} instead of individual
+ * campers, so the cost of an attempt grows with the number of distinct
+ * profiles rather than the number of campers.
+ *
+ * Class layout is done by a {@link ScheduleCreator} over one representative
+ * camper per profile, with each representative counting as its whole profile.
+ * Shuffling that creator's campers shuffles the order profiles are enrolled in;
+ * the campers of a profile are always enrolled one after another, which breaks
+ * the symmetry between them. Enrollment then follows the same rules as
+ * {@link ScheduleCreator#addCampersToEssentialClasses()} and
+ * {@link ScheduleCreator#addCampersToOtherClasses()}, but on cohorts: counts of
+ * campers of one profile who have been enrolled identically so far. A cohort
+ * is split only when the rules would send some of its campers elsewhere, and
+ * the size of each split is found by searching for the point where the
+ * decision changes, assuming decisions change monotonically as a period fills.
+ *
+ * The schedule is held as counts until {@link #toCompactSchedule(int)} assigns
+ * the members of each profile to its cohorts.
+ */
+public class ProfileScheduleCreator {
+    private static final int NUMBER_PERIODS = 3;
+    private static final int NONE = -1;
+
+    /**
+     * Campers of one profile who have been enrolled identically so far.
+     */
+    private static final class Cohort {
+        private final int profile;
+        private final int count;
+        private final int[] assigned;
+        private int enrolled;
+
+        /**
+         * Constructs an unenrolled cohort.
+         *
+         * @param profile the profile index
+         * @param count   the number of campers
+         */
+        private Cohort(int profile, int count) {
+            this.profile = profile;
+            this.count = count;
+            this.assigned = new int[NUMBER_PERIODS];
+            Arrays.fill(this.assigned, CompactSchedule.NO_CLASS);
+        }
+
+        /**
+         * Constructs a cohort enrolled like another, with a different count.
+         *
+         * @param copy  the cohort to copy enrollments from
+         * @param count the number of campers
+         */
+        private Cohort(Cohort copy, int count) {
+            this.profile = copy.profile;
+            this.count = count;
+            this.assigned = copy.assigned.clone();
+            this.enrolled = copy.enrolled;
+        }
+
+        /**
+         * Enrolls the cohort in a class during a period.
+         *
+         * @param classId the class id
+         * @param period  the period index, from 0
+         */
+        private void enroll(int classId, int period) {
+            this.assigned[period] = classId;
+            this.enrolled++;
+        }
+    }
+
+    private final ArrayList<ClassClass> catalog;
+    private final HashMap<ClassClass, Integer> classIds;
+    private final CamperProfiles profiles;
+    private final ScheduleCreator creator;
+    private final IdentityHashMap<Camper, Integer> profileIds;
+    private final int numberCampers;
+    private final boolean[] required;
+    private final boolean[] doublePeriod;
+    private final int[] capacity;
+    private final boolean[] eliminated;
+    private final boolean[][] offered;
+    private final int[][] sizes;
+    private final int[] numberPeriods;
+    private final int[][] finalChoices;
+    private ArrayList<Cohort> cohorts;
+    private int fallbackWalks;
+    private int fallbackSteps;
+    private int overrideEnrollments;
+    private int rankSum;
+    private int balanceSpread;
+    private int worstCamperRank;
+    // Side results of the last decision
+    private int decisionWalks;
+    private int decisionSteps;
+    private boolean decisionOverride;
+
+    /**
+     * Constructs a creator over a roster.
+     *
+     * @param catalog the class catalog, in class id order
+     * @param campers the roster, in the order compact schedules are indexed by
+     */
+    public ProfileScheduleCreator(List<ClassClass> catalog, List<Camper> campers) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+        this.classIds = CompactSchedule.classIds(this.catalog);
+        this.profiles = new CamperProfiles(campers, this.catalog);
+        this.creator = new ScheduleCreator(this.catalog, this.profiles.getRepresentatives());
+        this.creator.setCamperWeights(this.profiles.getWeightMap());
+        this.profileIds = new IdentityHashMap<Camper, Integer>(this.profiles.size() * 2);
+        ArrayList<Camper> representatives = this.profiles.getRepresentatives();
+        for (int g = 0; g < representatives.size(); g++) {
+            this.profileIds.put(representatives.get(g), g);
+        }
+        this.numberCampers = campers.size();
+
+        int numberClasses = this.catalog.size();
+        this.required = new boolean[numberClasses];
+        this.doublePeriod = new boolean[numberClasses];
+        this.capacity = new int[numberClasses];
+        for (int c = 0; c < numberClasses; c++) {
+            ClassClass class_ = this.catalog.get(c);
+            this.required[c] = class_.isRequired();
+            this.doublePeriod[c] = class_.isDoublePeriod();
+            this.capacity[c] = class_.getSinglePeriodCutoff();
+        }
+        this.eliminated = new boolean[numberClasses];
+        this.offered = new boolean[NUMBER_PERIODS][numberClasses];
+        this.sizes = new int[NUMBER_PERIODS][numberClasses];
+        this.numberPeriods = new int[numberClasses];
+        this.finalChoices = new int[this.profiles.size()][NUMBER_PERIODS];
+        this.cohorts = new ArrayList<Cohort>();
+    }
+
+    /**
+     * Returns the creator that lays out classes over the profile
+     * representatives. Its campers are the representatives, in the order
+     * profiles will be enrolled.
+     *
+     * @return the layout creator
+     */
+    public ScheduleCreator getCreator() {
+        return this.creator;
+    }
+
+    /**
+     * Returns the profiles the roster was grouped into.
+     *
+     * @return the profiles
+     */
+    public CamperProfiles getProfiles() {
+        return this.profiles;
+    }
+
+    /**
+     * Runs one schedule attempt in the creator's current profile order. Phases
+     * are timed and recorded like {@link ScheduleCreator#run()}.
+     *
+     * @return the score of the schedule, as {@link Schedule} would compute it
+     */
+    public int run() {
+        long runStart = SchedulerMetrics.start();
+        long phaseStart = this.creator.layOutClasses(runStart);
+        this.readLayout();
+        this.fallbackWalks = 0;
+        this.fallbackSteps = 0;
+        this.overrideEnrollments = 0;
+        this.cohorts = new ArrayList<Cohort>(this.profiles.size() * 2);
+        for (Camper representative : this.creator.getCampers()) {
+            int profile = this.profileIds.get(representative);
+            this.cohorts.add(new Cohort(profile, this.profiles.getWeight(profile)));
+        }
+        this.addCohortsToEssentialClasses();
+        phaseStart = this.creator.endPhase(SchedulerMetrics.Phase.ADD_CAMPERS_TO_ESSENTIAL_CLASSES, phaseStart);
+        this.addCohortsToOtherClasses();
+        phaseStart = this.creator.endPhase(SchedulerMetrics.Phase.ADD_CAMPERS_TO_OTHER_CLASSES, phaseStart);
+        this.creator.addEnrollmentCounts(this.fallbackWalks, this.overrideEnrollments);
+        SchedulerMetrics.add(SchedulerMetrics.Counter.FALLBACK_WALKS, this.fallbackWalks);
+        SchedulerMetrics.add(SchedulerMetrics.Counter.FALLBACK_STEPS, this.fallbackSteps);
+        SchedulerMetrics.add(SchedulerMetrics.Counter.OVERRIDE_ENROLLMENTS, this.overrideEnrollments);
+        int score = this.calculateScore();
+        this.creator.endRun(phaseStart, runStart);
+        return score;
+    }
+
+    /**
+     * Returns the number of cohorts the last attempt ended with.
+     *
+     * @return the number of cohorts
+     */
+    public int getNumberCohorts() {
+        return this.cohorts.size();
+    }
+
+    /**
+     * Returns the number of classes eliminated in the last attempt.
+     *
+     * @return the number of eliminated classes
+     */
+    public int getNumberEliminatedClasses() {
+        return this.creator.getEliminatedClasses().size();
+    }
+
+    /**
+     * Returns the part of the last attempt's score owed to the ranks of the
+     * classes campers got.
+     *
+     * @return the rank sum
+     * @see ParetoArchive.Objective#RANK_SUM
+     */
+    public int getRankSum() {
+        return this.rankSum;
+    }
+
+    /**
+     * Returns the part of the last attempt's score owed to unbalanced periods.
+     *
+     * @return the balance spread
+     * @see ParetoArchive.Objective#BALANCE_SPREAD
+     */
+    public int getBalanceSpread() {
+        return this.balanceSpread;
+    }
+
+    /**
+     * Returns the worst rank any camper was given in the last attempt.
+     *
+     * @return the worst camper rank
+     * @see ParetoArchive.Objective#WORST_CAMPER_RANK
+     */
+    public int getWorstCamperRank() {
+        return this.worstCamperRank;
+    }
+
+    /**
+     * Reads the class layout and the profiles' final choices from the layout
+     * creator, and empties every period.
+     */
+    private void readLayout() {
+        HashSet<ClassClass> eliminatedClasses = this.creator.getEliminatedClasses();
+        for (int c = 0; c < this.catalog.size(); c++) {
+            this.eliminated[c] = eliminatedClasses.contains(this.catalog.get(c));
+            this.numberPeriods[c] = 0;
+        }
+        ClassSlot[] slots = this.creator.getClassSlots();
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            Arrays.fill(this.offered[p], false);
+            Arrays.fill(this.sizes[p], 0);
+            for (ClassPeriod period : slots[p].getSlots()) {
+                int classId = this.classIds.get(period.getClass_());
+                this.offered[p][classId] = true;
+                this.numberPeriods[classId]++;
+            }
+        }
+        ArrayList<Camper> representatives = this.profiles.getRepresentatives();
+        for (int g = 0; g < representatives.size(); g++) {
+            ClassClass[] choices = representatives.get(g).getFinalChoices();
+            for (int i = 0; i < NUMBER_PERIODS; i++) {
+                this.finalChoices[g][i] = choices[i] == null ? NONE : this.classIds.get(choices[i]);
+            }
+        }
+    }
+
+    /**
+     * Enrolls cohorts in their required and double period classes, following
+     * {@link ScheduleCreator#addCampersToEssentialClasses()}.
+     */
+    private void addCohortsToEssentialClasses() {
+        ArrayList<Cohort> out = new ArrayList<Cohort>(this.cohorts.size() * 2);
+        for (Cohort cohort : this.cohorts) {
+            ArrayList<Cohort> parts = new ArrayList<Cohort>();
+            parts.add(cohort);
+            for (int choice : this.finalChoices[cohort.profile]) {
+                if (choice == NONE) {
+                    continue;
+                }
+                if (this.required[choice]) {
+                    ArrayList<Cohort> next = new ArrayList<Cohort>(parts.size() + 2);
+                    for (Cohort part : parts) {
+                        this.enrollEach(part, choice, next);
+                    }
+                    parts = next;
+                } else if (this.doublePeriod[choice]) {
+                    parts = this.enrollDoublePeriod(parts, choice);
+                }
+            }
+            out.addAll(parts);
+        }
+        this.cohorts = out;
+    }
+
+    /**
+     * Enrolls cohorts in both periods of a double period class. Campers are
+     * enrolled in each period in cohort order until the period is full.
+     *
+     * @param parts   the cohorts, in enrollment order
+     * @param classId the double period class
+     * @return the cohorts after enrollment, in enrollment order
+     */
+    private ArrayList<Cohort> enrollDoublePeriod(ArrayList<Cohort> parts, int classId) {
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (!this.offered[p][classId]) {
+                continue;
+            }
+            ArrayList<Cohort> next = new ArrayList<Cohort>(parts.size() + 1);
+            for (Cohort part : parts) {
+                if (!this.canEnroll(part, classId, p)) {
+                    next.add(part);
+                    continue;
+                }
+                int count = Math.min(part.count, this.capacity[classId] - this.sizes[p][classId]);
+                Cohort enrolled = new Cohort(part, count);
+                enrolled.enroll(classId, p);
+                this.sizes[p][classId] += count;
+                next.add(enrolled);
+                if (count < part.count) {
+                    next.add(new Cohort(part, part.count - count));
+                }
+            }
+            parts = next;
+        }
+        return parts;
+    }
+
+    /**
+     * Enrolls cohorts in their remaining classes in three passes, following
+     * {@link ScheduleCreator#addCampersToOtherClasses()}.
+     */
+    private void addCohortsToOtherClasses() {
+        for (int i = 0; i < 3; i++) {
+            ArrayList<Cohort> out = new ArrayList<Cohort>(this.cohorts.size() + 16);
+            for (Cohort cohort : this.cohorts) {
+                if (cohort.enrolled < 3) {
+                    this.enrollEach(cohort, NONE, out);
+                } else {
+                    out.add(cohort);
+                }
+            }
+            this.cohorts = out;
+        }
+    }
+
+    /**
+     * Enrolls the campers of a cohort one class each, as the engine would if
+     * they came one after another: campers making the same decision are enrolled
+     * together, and campers left without a class stay in the cohort.
+     *
+     * @param cohort        the cohort
+     * @param requiredClass the required class to enroll in, or {@code NONE} to
+     *                      choose a class for the cohort's next free period
+     * @param out           receives the resulting cohorts, in enrollment order
+     */
+    private void enrollEach(Cohort cohort, int requiredClass, ArrayList<Cohort> out) {
+        int remaining = cohort.count;
+        while (remaining > 0) {
+            int decision = this.decide(cohort, requiredClass);
+            if (decision == NONE) {
+                break;
+            }
+            int walks = this.decisionWalks;
+            int steps = this.decisionSteps;
+            boolean override = this.decisionOverride;
+            int count = this.countSameDecisions(cohort, requiredClass, decision, remaining);
+            int classId = decision / NUMBER_PERIODS;
+            int period = decision % NUMBER_PERIODS;
+            Cohort enrolled = new Cohort(cohort, count);
+            enrolled.enroll(classId, period);
+            this.sizes[period][classId] += count;
+            out.add(enrolled);
+            this.fallbackWalks += walks * count;
+            this.fallbackSteps += steps * count;
+            if (override) {
+                this.overrideEnrollments += count;
+            }
+            remaining -= count;
+        }
+        if (remaining > 0) {
+            out.add(remaining == cohort.count ? cohort : new Cohort(cohort, remaining));
+        }
+    }
+
+    /**
+     * Counts how many campers of a cohort in a row make the same decision, by
+     * galloping and then bisecting over how full the chosen period is.
+     *
+     * @param cohort        the cohort
+     * @param requiredClass the required class, or {@code NONE}
+     * @param decision      the decision of the first camper
+     * @param remaining     the number of campers left in the cohort
+     * @return the number of campers making the decision, at least 1
+     */
+    private int countSameDecisions(Cohort cohort, int requiredClass, int decision, int remaining) {
+        int same = 1;
+        int step = 1;
+        while (same < remaining) {
+            int probe = Math.min(remaining - 1, same - 1 + step);
+            if (this.decidesAfter(cohort, requiredClass, decision, probe)) {
+                same = probe + 1;
+                step *= 2;
+            } else {
+                int low = same - 1;
+                int high = probe;
+                while (high - low > 1) {
+                    int middle = (low + high) >>> 1;
+                    if (this.decidesAfter(cohort, requiredClass, decision, middle)) {
+                        low = middle;
+                    } else {
+                        high = middle;
+                    }
+                }
+                return low + 1;
+            }
+        }
+        return same;
+    }
+
+    /**
+     * Checks whether a camper would still make a decision after earlier campers
+     * had made it.
+     *
+     * @param cohort        the cohort
+     * @param requiredClass the required class, or {@code NONE}
+     * @param decision      the decision
+     * @param earlier       the number of earlier campers that made it
+     * @return true if the decision is unchanged
+     */
+    private boolean decidesAfter(Cohort cohort, int requiredClass, int decision, int earlier) {
+        int classId = decision / NUMBER_PERIODS;
+        int period = decision % NUMBER_PERIODS;
+        this.sizes[period][classId] += earlier;
+        int next = this.decide(cohort, requiredClass);
+        this.sizes[period][classId] -= earlier;
+        return next == decision;
+    }
+
+    /**
+     * Decides where the next camper of a cohort is enrolled.
+     *
+     * @param cohort        the cohort
+     * @param requiredClass the required class to enroll in, or {@code NONE}
+     * @return the class id times 3 plus the period index, or {@code NONE} if the
+     *         camper is not enrolled
+     */
+    private int decide(Cohort cohort, int requiredClass) {
+        this.decisionWalks = 0;
+        this.decisionSteps = 0;
+        this.decisionOverride = false;
+        if (requiredClass != NONE) {
+            int period = this.findLeastFullPeriod(requiredClass);
+            return period != NONE && this.canEnroll(cohort, requiredClass, period)
+                    ? requiredClass * NUMBER_PERIODS + period
+                    : NONE;
+        } else if (cohort.enrolled < 2) {
+            return this.decideRankedClass(cohort);
+        } else {
+            return this.decideLastPeriod(cohort);
+        }
+    }
+
+    /**
+     * Decides the class of a camper enrolled in fewer than two classes: the
+     * final choice offered in the fewest periods, in its least full period with
+     * room, or else the next ranked class that has one.
+     *
+     * @param cohort the cohort
+     * @return the decision, or {@code NONE}
+     */
+    private int decideRankedClass(Cohort cohort) {
+        int attempt = this.findClassFirstLowestAvailableSlots(cohort);
+        if (attempt == NONE) {
+            return NONE;
+        }
+        int leastFull = this.findLeastFullPeriod(attempt);
+        if (leastFull == NONE) {
+            return NONE;
+        }
+        while (!this.canEnroll(cohort, attempt, leastFull)) {
+            int periods = this.numberPeriods[attempt];
+            if (periods > 1) {
+                int secondLeastFull = this.findSecondLeastFullPeriod(attempt);
+                if (secondLeastFull != NONE && this.canEnroll(cohort, attempt, secondLeastFull)) {
+                    return attempt * NUMBER_PERIODS + secondLeastFull;
+                } else if (periods > 2) {
+                    int mostFull = this.findMostFullPeriod(attempt);
+                    if (mostFull != NONE && this.canEnroll(cohort, attempt, mostFull)) {
+                        return attempt * NUMBER_PERIODS + mostFull;
+                    }
+                }
+            }
+            this.decisionWalks++;
+            do {
+                int nextUp = this.findNextRankedClass(cohort.profile, attempt);
+                while (nextUp != NONE && (this.eliminated[nextUp] || this.isEnrolled(cohort, nextUp))) {
+                    this.decisionSteps++;
+                    nextUp = this.findNextRankedClass(cohort.profile, nextUp);
+                }
+                this.decisionSteps++;
+                attempt = nextUp;
+                leastFull = nextUp == NONE ? NONE : this.findLeastFullPeriod(attempt);
+            } while (leastFull == NONE && attempt != NONE);
+            if (attempt == NONE) {
+                return NONE;
+            }
+        }
+        return attempt * NUMBER_PERIODS + leastFull;
+    }
+
+    /**
+     * Decides the class of a camper enrolled in two classes: the best ranked open
+     * class in their free period, or the best ranked class over capacity if none
+     * is open.
+     *
+     * @param cohort the cohort
+     * @return the decision, or {@code NONE}
+     */
+    private int decideLastPeriod(Cohort cohort) {
+        int period = NONE;
+        for (int p = 0; p < NUMBER_PERIODS && period == NONE; p++) {
+            if (cohort.assigned[p] == CompactSchedule.NO_CLASS) {
+                period = p;
+            }
+        }
+        if (period == NONE) {
+            return NONE;
+        }
+        int best = this.findHighestRankedUnenrolledClass(cohort, period, true);
+        if (best == NONE) {
+            best = this.findHighestRankedUnenrolledClass(cohort, period, false);
+            this.decisionOverride = best != NONE;
+        }
+        return best == NONE ? NONE : best * NUMBER_PERIODS + period;
+    }
+
+    /**
+     * Finds the best ranked class offered in a period that is not required and
+     * the cohort is not enrolled in.
+     *
+     * @param cohort   the cohort
+     * @param period   the period index
+     * @param openOnly true to consider only classes with room
+     * @return the class id, or {@code NONE}
+     */
+    private int findHighestRankedUnenrolledClass(Cohort cohort, int period, boolean openOnly) {
+        int best = NONE;
+        int bestRank = Integer.MAX_VALUE;
+        for (int c = 0; c < this.catalog.size(); c++) {
+            if (this.offered[period][c] && !this.required[c]
+                    && (!openOnly || this.sizes[period][c] < this.capacity[c])) {
+                int rank = this.profiles.getRank(cohort.profile, c);
+                if (rank != Camper.NOT_RANKED && rank < bestRank && !this.isEnrolled(cohort, c)) {
+                    best = c;
+                    bestRank = rank;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the cohort's final choice offered in the fewest periods, among those
+     * that are not required, eliminated or already taken.
+     *
+     * @param cohort the cohort
+     * @return the class id, or {@code NONE}
+     */
+    private int findClassFirstLowestAvailableSlots(Cohort cohort) {
+        int lowestAvailable = NONE;
+        for (int c : this.finalChoices[cohort.profile]) {
+            if (c != NONE && !this.required[c] && !this.isEnrolled(cohort, c) && !this.eliminated[c]) {
+                if (this.numberPeriods[c] == 1) {
+                    return c;
+                }
+                if (lowestAvailable == NONE || this.numberPeriods[c] < this.numberPeriods[lowestAvailable]) {
+                    lowestAvailable = c;
+                }
+            }
+        }
+        return lowestAvailable;
+    }
+
+    /**
+     * Finds the next ranked class after a class that a profile can take.
+     *
+     * @param profile the profile index
+     * @param classId the class to start after
+     * @return the class id, or {@code NONE}
+     */
+    private int findNextRankedClass(int profile, int classId) {
+        int rank = this.profiles.getRank(profile, classId);
+        if (rank == Camper.NOT_RANKED) {
+            return NONE;
+        }
+        int[] choices = this.profiles.getChoices(profile);
+        for (; rank < choices.length; rank++) {
+            if (choices[rank] != NONE && this.profiles.canTake(profile, choices[rank])) {
+                return choices[rank];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds the least full period of a class, preferring earlier periods.
+     *
+     * @param classId the class id
+     * @return the period index, or {@code NONE}
+     */
+    private int findLeastFullPeriod(int classId) {
+        if (this.eliminated[classId]) {
+            return NONE;
+        }
+        int leastFull = NONE;
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (this.offered[p][classId]
+                    && (leastFull == NONE || this.sizes[p][classId] < this.sizes[leastFull][classId])) {
+                leastFull = p;
+            }
+        }
+        return leastFull;
+    }
+
+    /**
+     * Finds the second least full period of a class, with the tie-breaking of
+     * {@link ScheduleCreator#findSecondLeastFullPeriod(ClassClass)}.
+     *
+     * @param classId the class id
+     * @return the period index, or {@code NONE}
+     */
+    private int findSecondLeastFullPeriod(int classId) {
+        int leastFull = this.findLeastFullPeriod(classId);
+        if (leastFull == NONE) {
+            return NONE;
+        }
+        if (this.numberPeriods[classId] > 2) {
+            int first = leastFull == 0 ? 1 : 0;
+            int second = leastFull == 2 ? 1 : 2;
+            return this.sizes[first][classId] < this.sizes[second][classId] ? first : second;
+        }
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (p != leastFull && this.offered[p][classId]) {
+                return p;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds the most full period of a class, preferring earlier periods.
+     *
+     * @param classId the class id
+     * @return the period index, or {@code NONE}
+     */
+    private int findMostFullPeriod(int classId) {
+        if (this.eliminated[classId]) {
+            return NONE;
+        }
+        int mostFull = NONE;
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (this.offered[p][classId]
+                    && (mostFull == NONE || this.sizes[p][classId] > this.sizes[mostFull][classId])) {
+                mostFull = p;
+            }
+        }
+        return mostFull;
+    }
+
+    /**
+     * Checks whether the campers of a cohort can join a class period, with the
+     * checks of {@link ClassPeriod#addCamper(Camper)}.
+     *
+     * @param cohort  the cohort
+     * @param classId the class id
+     * @param period  the period index
+     * @return true if the period is free for the cohort and has room
+     */
+    private boolean canEnroll(Cohort cohort, int classId, int period) {
+        return cohort.assigned[period] == CompactSchedule.NO_CLASS && !this.isEnrolled(cohort, classId)
+                && this.sizes[period][classId] < this.capacity[classId];
+    }
+
+    /**
+     * Checks whether a cohort is enrolled in a class, with the double period rule
+     * of {@link Camper#isEnrolled(ClassClass)}.
+     *
+     * @param cohort  the cohort
+     * @param classId the class id
+     * @return true if the cohort is enrolled in the class
+     */
+    private boolean isEnrolled(Cohort cohort, int classId) {
+        boolean enrolledDoublePeriod = false;
+        int periods = 0;
+        for (int assigned : cohort.assigned) {
+            if (assigned != CompactSchedule.NO_CLASS) {
+                enrolledDoublePeriod |= this.doublePeriod[assigned];
+                if (assigned == classId) {
+                    periods++;
+                }
+            }
+        }
+        return enrolledDoublePeriod ? periods > 1 : periods > 0;
+    }
+
+    /**
+     * Scores the schedule from its counts, as
+     * {@link Schedule#calculateScheduleScore()} scores the expanded schedule.
+     *
+     * @return the score
+     */
+    private int calculateScore() {
+        int score = 0;
+        this.worstCamperRank = 0;
+        int unranked = this.catalog.size() + 1;
+        for (Cohort cohort : this.cohorts) {
+            int camperRank = 0;
+            int worstRank = 0;
+            for (int classId : cohort.assigned) {
+                if (classId == CompactSchedule.NO_CLASS) {
+                    worstRank = unranked;
+                } else if (this.required[classId]) {
+                    camperRank += 3;
+                } else {
+                    int rank = this.profiles.getRank(cohort.profile, classId);
+                    camperRank += rank;
+                    worstRank = Math.max(worstRank, rank == Camper.NOT_RANKED ? unranked : rank);
+                }
+            }
+            score += cohort.count * camperRank;
+            if (cohort.count > 0) {
+                this.worstCamperRank = Math.max(this.worstCamperRank, worstRank);
+            }
+        }
+        this.rankSum = score;
+        for (int c = 0; c < this.catalog.size(); c++) {
+            if (!this.eliminated[c]) {
+                int lowestEnrolled = Integer.MAX_VALUE;
+                int highestEnrolled = Integer.MIN_VALUE;
+                for (int p = 0; p < NUMBER_PERIODS; p++) {
+                    if (this.offered[p][c]) {
+                        lowestEnrolled = Math.min(lowestEnrolled, this.sizes[p][c]);
+                        highestEnrolled = Math.max(highestEnrolled, this.sizes[p][c]);
+                    }
+                }
+                score += this.capacity[c] * (highestEnrolled - lowestEnrolled);
+            }
+        }
+        this.balanceSpread = score - this.rankSum;
+        return score;
+    }
+
+    /**
+     * Expands the last attempt into a compact schedule, assigning the members of
+     * each profile to its cohorts in roster order.
+     *
+     * @param score the score returned by {@link #run()}
+     * @return the compact schedule, indexed by the roster this creator was built
+     *         with
+     */
+    public CompactSchedule toCompactSchedule(int score) {
+        int[][] layout = new int[NUMBER_PERIODS][];
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            int offeredCount = 0;
+            for (boolean isOffered : this.offered[p]) {
+                offeredCount += isOffered ? 1 : 0;
+            }
+            layout[p] = new int[offeredCount];
+            int i = 0;
+            for (int c = 0; c < this.catalog.size(); c++) {
+                if (this.offered[p][c]) {
+                    layout[p][i++] = c;
+                }
+            }
+        }
+        int[] assignments = new int[this.numberCampers * NUMBER_PERIODS];
+        Arrays.fill(assignments, CompactSchedule.NO_CLASS);
+        int[] nextMember = new int[this.profiles.size()];
+        for (Cohort cohort : this.cohorts) {
+            int[] members = this.profiles.getMembers(cohort.profile);
+            for (int i = 0; i < cohort.count; i++) {
+                int camper = members[nextMember[cohort.profile]++];
+                System.arraycopy(cohort.assigned, 0, assignments, camper * NUMBER_PERIODS, NUMBER_PERIODS);
+            }
+        }
+        return new CompactSchedule(layout, assignments, score);
+    }
+}
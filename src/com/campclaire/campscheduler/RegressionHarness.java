@@ -0,0 +1,680 @@
+package com.campclaire.campscheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Checks engine changes for performance and quality regressions. The full
+ * {@link ScheduleSearch} is run with fixed seeds over a fixed set of rosters:
+ * synthetic rosters from {@link RosterGenerator} and, optionally, anonymised
+ * copies of real rosters. For each roster the harness measures attempts per
+ * second, the time and attempt at which the final best schedule was found, the
+ * final score, and the bytes allocated per attempt.
+ *
+ * {@code --record} stores the measurements, the cases and the tolerances in a
+ * baseline JSON file. {@code --check} reruns the baseline's cases and prints
+ * each measurement next to its baseline, exiting with status 1 if any
+ * measurement is worse than its tolerance allows. Because searches are seeded,
+ * final scores and attempts to best are exact and any change in them is a
+ * change in the engine's behaviour; timings and allocation are compared within
+ * a relative tolerance. A case can run its searches with profile compression
+ * (see {@link ScheduleSearch#setProfileCompression(boolean)}), and synthetic
+ * cases can draw campers from a limited number of distinct rankings.
+ *
+ * Timings and allocation only compare on the machine and JVM they were
+ * recorded on. {@code --timings false} records scores and attempts to best
+ * alone, which any machine reproduces, and {@code --check} compares only the
+ * measurements a baseline holds. The baseline kept under {@code regression/}
+ * is recorded this way.
+ *
+ * <pre>
+ * RegressionHarness --record baseline.json [--attempts n] [--repeats n] [--seed n] [--rosters dir]
+ *                   [--profiles true] [--timings false]
+ * RegressionHarness --check baseline.json [--throughput-tolerance x] [--time-to-best-tolerance x]
+ *                   [--score-tolerance x] [--allocation-tolerance x]
+ * RegressionHarness --anonymise jobdir outdir
+ * </pre>
+ *
+ * A roster directory holds one subdirectory per roster laid out as a
+ * {@link SchedulerDaemon} job. {@code --anonymise} copies such a job with every
+ * camper renamed, keeping everything the engine reads.
+ */
+public class RegressionHarness {
+    /** The default number of attempts per search. */
+    public static final int DEFAULT_ATTEMPTS = 50;
+    /** The default number of measured searches per case, of which the median is kept. */
+    public static final int DEFAULT_REPEATS = 3;
+    /** The default allowed fractional drop in attempts per second. */
+    public static final double DEFAULT_THROUGHPUT_TOLERANCE = 0.15;
+    /** The default allowed fractional rise in time to best. */
+    public static final double DEFAULT_TIME_TO_BEST_TOLERANCE = 0.5;
+    /** The default allowed fractional rise in final score. */
+    public static final double DEFAULT_SCORE_TOLERANCE = 0;
+    /** The default allowed fractional rise in bytes allocated per attempt. */
+    public static final double DEFAULT_ALLOCATION_TOLERANCE = 0.10;
+    /** Time-to-best changes smaller than this are noise, whatever their ratio. */
+    private static final double TIME_TO_BEST_FLOOR_MILLIS = 50;
+    private static final int WARMUP_ATTEMPTS = 10;
+    private static final long WARMUP_NANOS = 2000000000L;
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * A roster to search and how to search it.
+     */
+    public static class Case {
+        private final String name;
+        private final String roster;
+        private final int numberCampers;
+        private final int numberClasses;
+        private final double popularitySkew;
+        private final int distinctRankings;
+        private final long seed;
+        private final int attempts;
+        private final boolean profiles;
+
+        /**
+         * Constructs a case.
+         *
+         * @param name           the case name
+         * @param roster         the job directory of a stored roster, or null for a
+         *                       synthetic roster
+         * @param numberCampers  the number of synthetic campers
+         * @param numberClasses  the number of synthetic classes
+         * @param popularitySkew   the Zipf exponent of synthetic class popularity
+         * @param distinctRankings the number of distinct synthetic rankings, or 0
+         *                         for a ranking per camper
+         * @param seed             the seed of the synthetic roster and the search
+         * @param attempts         the number of attempts per search
+         * @param profiles         true to search with profile compression
+         */
+        public Case(String name, String roster, int numberCampers, int numberClasses, double popularitySkew,
+                int distinctRankings, long seed, int attempts, boolean profiles) {
+            this.name = name;
+            this.roster = roster;
+            this.numberCampers = numberCampers;
+            this.numberClasses = numberClasses;
+            this.popularitySkew = popularitySkew;
+            this.distinctRankings = distinctRankings;
+            this.seed = seed;
+            this.attempts = attempts;
+            this.profiles = profiles;
+        }
+
+        /**
+         * Returns the case name.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Loads or generates the roster and makes its catalog the active class
+         * list.
+         *
+         * @param catalog receives the class catalog
+         * @return the campers
+         * @throws IOException if a stored roster cannot be read
+         */
+        ArrayList<Camper> load(ArrayList<ClassClass> catalog) throws IOException {
+            if (this.roster != null) {
+                return SchedulerDaemon.loadJob(Paths.get(this.roster), catalog);
+            }
+            RosterGenerator generator = new RosterGenerator(this.seed);
+            generator.setPopularitySkew(this.popularitySkew);
+            generator.setDistinctRankings(this.distinctRankings);
+            catalog.addAll(generator.generateCatalog(this.numberClasses, this.numberCampers));
+            return generator.generateCampers(catalog, this.numberCampers);
+        }
+
+        /**
+         * Constructs a search of the case.
+         *
+         * @param catalog  the class catalog
+         * @param roster   the campers
+         * @param attempts the number of attempts
+         * @return the search
+         */
+        ScheduleSearch newSearch(List<ClassClass> catalog, List<Camper> roster, int attempts) {
+            ScheduleSearch search = new ScheduleSearch(catalog, roster, attempts, this.seed);
+            search.setProfileCompression(this.profiles);
+            if (!this.profiles) {
+                // Built here so building the store is not counted as allocation per attempt
+                search.setCamperStore(new CamperStore(search.getCamperOrder(), catalog));
+            }
+            return search;
+        }
+
+        /**
+         * Writes the case to a baseline entry.
+         *
+         * @param node the entry
+         */
+        void writeTo(ObjectNode node) {
+            node.put("name", this.name);
+            if (this.roster != null) {
+                node.put("roster", this.roster);
+            } else {
+                node.put("campers", this.numberCampers);
+                node.put("classes", this.numberClasses);
+                node.put("zipf", this.popularitySkew);
+                if (this.distinctRankings > 0) {
+                    node.put("distinctRankings", this.distinctRankings);
+                }
+            }
+            node.put("seed", this.seed);
+            node.put("attempts", this.attempts);
+            if (this.profiles) {
+                node.put("profiles", true);
+            }
+        }
+
+        /**
+         * Reads a case from a baseline entry.
+         *
+         * @param node the entry
+         * @return the case
+         */
+        static Case readFrom(JsonNode node) {
+            return new Case(node.get("name").asText(), node.has("roster") ? node.get("roster").asText() : null,
+                    node.path("campers").asInt(), node.path("classes").asInt(), node.path("zipf").asDouble(),
+                    node.path("distinctRankings").asInt(), node.get("seed").asLong(), node.get("attempts").asInt(),
+                    node.path("profiles").asBoolean());
+        }
+    }
+
+    /**
+     * The measurements of one case.
+     */
+    public static class Result {
+        private final double attemptsPerSecond;
+        private final double timeToBestMillis;
+        private final int attemptsToBest;
+        private final int finalScore;
+        private final double bytesPerAttempt;
+
+        /**
+         * Constructs a result.
+         *
+         * @param attemptsPerSecond the search throughput
+         * @param timeToBestMillis  the time until the final best schedule was found
+         * @param attemptsToBest    the attempt that found the final best schedule
+         * @param finalScore        the score of the final best schedule
+         * @param bytesPerAttempt   the bytes allocated per attempt
+         */
+        Result(double attemptsPerSecond, double timeToBestMillis, int attemptsToBest, int finalScore,
+                double bytesPerAttempt) {
+            this.attemptsPerSecond = attemptsPerSecond;
+            this.timeToBestMillis = timeToBestMillis;
+            this.attemptsToBest = attemptsToBest;
+            this.finalScore = finalScore;
+            this.bytesPerAttempt = bytesPerAttempt;
+        }
+
+        /**
+         * Writes the result into a baseline entry.
+         *
+         * @param node    the entry
+         * @param timings true to write timings and allocation as well as the
+         *                score and attempts to best
+         */
+        void writeTo(ObjectNode node, boolean timings) {
+            if (timings) {
+                node.put("attemptsPerSecond", this.attemptsPerSecond);
+                node.put("timeToBestMillis", this.timeToBestMillis);
+            }
+            node.put("attemptsToBest", this.attemptsToBest);
+            node.put("finalScore", this.finalScore);
+            if (timings) {
+                node.put("bytesPerAttempt", this.bytesPerAttempt);
+            }
+        }
+
+        /**
+         * Reads a result from a baseline entry. Timings and allocation the
+         * entry does not hold are read as NaN.
+         *
+         * @param node the entry
+         * @return the result
+         */
+        static Result readFrom(JsonNode node) {
+            return new Result(node.path("attemptsPerSecond").asDouble(Double.NaN),
+                    node.path("timeToBestMillis").asDouble(Double.NaN), node.get("attemptsToBest").asInt(),
+                    node.get("finalScore").asInt(), node.path("bytesPerAttempt").asDouble(Double.NaN));
+        }
+    }
+
+    private final int repeats;
+    private final com.sun.management.ThreadMXBean threads;
+    private double throughputTolerance;
+    private double timeToBestTolerance;
+    private double scoreTolerance;
+    private double allocationTolerance;
+    private boolean timings;
+
+    /**
+     * Constructs a harness with the default tolerances.
+     *
+     * @param repeats the number of measured searches per case
+     */
+    public RegressionHarness(int repeats) {
+        this.repeats = repeats;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        this.throughputTolerance = DEFAULT_THROUGHPUT_TOLERANCE;
+        this.timeToBestTolerance = DEFAULT_TIME_TO_BEST_TOLERANCE;
+        this.scoreTolerance = DEFAULT_SCORE_TOLERANCE;
+        this.allocationTolerance = DEFAULT_ALLOCATION_TOLERANCE;
+        this.timings = true;
+    }
+
+    /**
+     * Sets the allowed fractional drop in attempts per second.
+     *
+     * @param tolerance the tolerance, such as 0.15 for 15%
+     */
+    public void setThroughputTolerance(double tolerance) {
+        this.throughputTolerance = tolerance;
+    }
+
+    /**
+     * Sets the allowed fractional rise in time to best.
+     *
+     * @param tolerance the tolerance
+     */
+    public void setTimeToBestTolerance(double tolerance) {
+        this.timeToBestTolerance = tolerance;
+    }
+
+    /**
+     * Sets the allowed fractional rise in final score.
+     *
+     * @param tolerance the tolerance
+     */
+    public void setScoreTolerance(double tolerance) {
+        this.scoreTolerance = tolerance;
+    }
+
+    /**
+     * Sets the allowed fractional rise in bytes allocated per attempt.
+     *
+     * @param tolerance the tolerance
+     */
+    public void setAllocationTolerance(double tolerance) {
+        this.allocationTolerance = tolerance;
+    }
+
+    /**
+     * Sets whether recorded baselines hold timings and allocation as well as
+     * scores and attempts to best.
+     *
+     * @param timings false to record only what any machine reproduces
+     */
+    public void setTimings(boolean timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * Returns the built-in synthetic cases. The last case draws its campers from
+     * 100 distinct rankings and always uses profile compression.
+     *
+     * @param seed     the base seed
+     * @param attempts the number of attempts per search
+     * @param profiles true to search the other cases with profile compression
+     * @return the cases
+     */
+    public static List<Case> syntheticCases(long seed, int attempts, boolean profiles) {
+        return List.of(new Case("synthetic-200x12", null, 200, 12, 1.0, 0, seed, attempts, profiles),
+                new Case("synthetic-1000x20", null, 1000, 20, 1.0, 0, seed + 1, attempts, profiles),
+                new Case("synthetic-1000x20-skewed", null, 1000, 20, 1.5, 0, seed + 2, attempts, profiles),
+                new Case("synthetic-2500x30", null, 2500, 30, 1.0, 0, seed + 3, attempts, profiles),
+                new Case("synthetic-10000x30-profiles", null, 10000, 30, 1.0, 100, seed + 4, attempts, true));
+    }
+
+    /**
+     * Returns a case for each roster in a directory, in name order.
+     *
+     * @param directory the directory holding one job directory per roster
+     * @param seed      the search seed
+     * @param attempts  the number of attempts per search
+     * @param profiles  true to search with profile compression
+     * @return the cases
+     * @throws IOException if the directory cannot be read
+     */
+    public static List<Case> rosterCases(Path directory, long seed, int attempts, boolean profiles)
+            throws IOException {
+        ArrayList<Case> out = new ArrayList<Case>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.filter(Files::isDirectory).sorted().forEach(job -> out.add(
+                    new Case("roster-" + job.getFileName(), job.toString(), 0, 0, 0, 0, seed, attempts, profiles)));
+        }
+        return out;
+    }
+
+    /**
+     * Measures a case: short warm-up searches for at least two seconds, then the
+     * configured number of searches, keeping the median of each timing.
+     *
+     * @param case_ the case
+     * @return the result
+     * @throws IOException if the roster cannot be loaded or the searches are
+     *                     not reproducible
+     */
+    public Result measure(Case case_) throws IOException {
+        ArrayList<ClassClass> catalog = new ArrayList<ClassClass>();
+        ArrayList<Camper> roster = case_.load(catalog);
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        do {
+            case_.newSearch(catalog, roster, Math.min(WARMUP_ATTEMPTS, case_.attempts)).run();
+        } while (System.nanoTime() < warmupEnd);
+
+        double[] attemptsPerSecond = new double[this.repeats];
+        double[] timeToBestMillis = new double[this.repeats];
+        double[] bytesPerAttempt = new double[this.repeats];
+        int attemptsToBest = -1;
+        int finalScore = -1;
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < this.repeats; i++) {
+            ScheduleSearch search = case_.newSearch(catalog, roster, case_.attempts);
+            long[] best = { Long.MAX_VALUE, 0, 0 };
+            long start = System.nanoTime();
+            search.setProgressListener((attempt, maxAttempts, schedule) -> {
+                if (schedule != null && schedule.getScore() < best[0]) {
+                    best[0] = schedule.getScore();
+                    best[1] = System.nanoTime() - start;
+                    best[2] = attempt;
+                }
+            });
+            long bytesBefore = this.threads.getThreadAllocatedBytes(thread);
+            CompactSchedule schedule = search.run();
+            long elapsed = System.nanoTime() - start;
+            long allocated = this.threads.getThreadAllocatedBytes(thread) - bytesBefore;
+            if (i > 0 && (schedule.getScore() != finalScore || best[2] != attemptsToBest)) {
+                throw new IOException("Case " + case_.name + " is not reproducible: score " + schedule.getScore()
+                        + " at attempt " + best[2] + " after score " + finalScore + " at attempt " + attemptsToBest);
+            }
+            finalScore = schedule.getScore();
+            attemptsToBest = (int) best[2];
+            attemptsPerSecond[i] = case_.attempts * 1e9 / elapsed;
+            timeToBestMillis[i] = best[1] / 1e6;
+            bytesPerAttempt[i] = (double) allocated / case_.attempts;
+        }
+        return new Result(median(attemptsPerSecond), median(timeToBestMillis), attemptsToBest, finalScore,
+                median(bytesPerAttempt));
+    }
+
+    /**
+     * Measures cases and writes them to a baseline file.
+     *
+     * @param cases    the cases
+     * @param baseline the baseline file
+     * @throws IOException if a case cannot be run or the file cannot be written
+     */
+    public void record(List<Case> cases, File baseline) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        ObjectNode root = mapper.createObjectNode();
+        root.put("version", FORMAT_VERSION);
+        root.put("java", System.getProperty("java.version"));
+        root.put("processors", Runtime.getRuntime().availableProcessors());
+        root.put("repeats", this.repeats);
+        ObjectNode tolerances = root.putObject("tolerances");
+        tolerances.put("throughput", this.throughputTolerance);
+        tolerances.put("timeToBest", this.timeToBestTolerance);
+        tolerances.put("score", this.scoreTolerance);
+        tolerances.put("allocation", this.allocationTolerance);
+        ArrayNode entries = root.putArray("cases");
+        for (Case case_ : cases) {
+            Result result = this.measure(case_);
+            System.out.println(String.format(Locale.ROOT,
+                    "%-28s %10.2f attempts/s %10.1f ms to best (attempt %d) score %d %12.0f B/attempt", case_.name,
+                    result.attemptsPerSecond, result.timeToBestMillis, result.attemptsToBest, result.finalScore,
+                    result.bytesPerAttempt));
+            ObjectNode entry = entries.addObject();
+            case_.writeTo(entry);
+            result.writeTo(entry, this.timings);
+        }
+        mapper.writeValue(baseline, root);
+    }
+
+    /**
+     * Reruns the cases of a baseline file and prints each measurement the file
+     * holds next to its baseline. Tolerances stored in the file replace the
+     * harness's own unless overridden afterwards.
+     *
+     * @param baseline the baseline file
+     * @return the number of regressions
+     * @throws IOException if the file cannot be read or a case cannot be run
+     */
+    public int check(File baseline) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(baseline);
+        if (root.path("version").asInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported baseline version in " + baseline);
+        }
+        System.out.println(String.format(Locale.ROOT, "%-28s %-18s %14s %14s %9s  %s", "Case", "Metric", "Baseline",
+                "Current", "Change", "Status"));
+        int regressions = 0;
+        for (JsonNode entry : root.get("cases")) {
+            Case case_ = Case.readFrom(entry);
+            Result base = Result.readFrom(entry);
+            Result current = this.measure(case_);
+            if (!Double.isNaN(base.attemptsPerSecond)) {
+                regressions += this.compare(case_.name, "attempts/sec", base.attemptsPerSecond,
+                        current.attemptsPerSecond, current.attemptsPerSecond < base.attemptsPerSecond
+                                * (1 - this.throughputTolerance));
+            }
+            if (!Double.isNaN(base.timeToBestMillis)) {
+                regressions += this.compare(case_.name, "time to best ms", base.timeToBestMillis,
+                        current.timeToBestMillis,
+                        current.timeToBestMillis > base.timeToBestMillis * (1 + this.timeToBestTolerance)
+                                && current.timeToBestMillis - base.timeToBestMillis > TIME_TO_BEST_FLOOR_MILLIS);
+            }
+            // Attempts to best only changes with the engine's behaviour, which is flagged but not failed
+            regressions += this.compare(case_.name, "attempts to best", base.attemptsToBest, current.attemptsToBest,
+                    false);
+            regressions += this.compare(case_.name, "final score", base.finalScore, current.finalScore,
+                    current.finalScore > base.finalScore * (1 + this.scoreTolerance));
+            if (!Double.isNaN(base.bytesPerAttempt)) {
+                regressions += this.compare(case_.name, "bytes/attempt", base.bytesPerAttempt,
+                        current.bytesPerAttempt,
+                        current.bytesPerAttempt > base.bytesPerAttempt * (1 + this.allocationTolerance));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Applies the tolerances stored in a baseline file.
+     *
+     * @param baseline the baseline file
+     * @throws IOException if the file cannot be read
+     */
+    public void loadTolerances(File baseline) throws IOException {
+        JsonNode tolerances = new ObjectMapper().readTree(baseline).path("tolerances");
+        this.throughputTolerance = tolerances.path("throughput").asDouble(this.throughputTolerance);
+        this.timeToBestTolerance = tolerances.path("timeToBest").asDouble(this.timeToBestTolerance);
+        this.scoreTolerance = tolerances.path("score").asDouble(this.scoreTolerance);
+        this.allocationTolerance = tolerances.path("allocation").asDouble(this.allocationTolerance);
+    }
+
+    /**
+     * Prints one line of the comparison.
+     *
+     * @param name      the case name
+     * @param metric    the metric name
+     * @param base      the baseline value
+     * @param current   the current value
+     * @param regressed true if the current value is outside the tolerance
+     * @return 1 if the metric regressed, otherwise 0
+     */
+    private int compare(String name, String metric, double base, double current, boolean regressed) {
+        String change = base == 0 ? "" : String.format(Locale.ROOT, "%+.1f%%", (current - base) * 100 / base);
+        String status = regressed ? "REGRESSED"
+                : metric.equals("attempts to best") && current != base ? "changed" : "ok";
+        System.out.println(String.format(Locale.ROOT, "%-28s %-18s %14.2f %14.2f %9s  %s", name, metric, base,
+                current, change, status));
+        return regressed ? 1 : 0;
+    }
+
+    /**
+     * Writes a copy of a job with every camper renamed "Camper N", so real
+     * rosters can be kept as regression cases. Ages, swim levels, rankings and
+     * the class list are kept unchanged.
+     *
+     * @param job    the job directory to copy
+     * @param target the directory to write classes.json and roster.json to
+     * @throws IOException if the job cannot be read or the copy written
+     */
+    public static void anonymise(Path job, Path target) throws IOException {
+        ArrayList<ClassClass> catalog = new ArrayList<ClassClass>();
+        ArrayList<Camper> roster = SchedulerDaemon.loadJob(job, catalog);
+        HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        for (int i = 0; i < catalog.size(); i++) {
+            ids.put(catalog.get(i).getTitle(), i);
+        }
+        Files.createDirectories(target);
+        RosterGenerator.writeCatalog(catalog, target.resolve("classes.json").toFile());
+        try (RosterGenerator.JsonRosterWriter writer = new RosterGenerator.JsonRosterWriter(
+                target.resolve("roster.json").toFile(), catalog)) {
+            for (int i = 0; i < roster.size(); i++) {
+                Camper camper = roster.get(i);
+                ClassClass[] choices = camper.getTotalClassChoices();
+                int[] rankedClassIds = new int[choices.length];
+                for (int rank = 0; rank < choices.length; rank++) {
+                    rankedClassIds[rank] = ids.get(choices[rank].getTitle());
+                }
+                writer.accept("Camper " + (i + 1), camper.getAge(), camper.getSwimLevel(), rankedClassIds);
+            }
+        }
+    }
+
+    /**
+     * Returns the median of some values.
+     *
+     * @param values the values, which are sorted in place
+     * @return the median
+     */
+    private static double median(double[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+
+    /**
+     * Records or checks a baseline from the command line.
+     *
+     * @param args the command-line options
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("--anonymise")) {
+            anonymise(Paths.get(args[1]), Paths.get(args[2]));
+            return;
+        }
+        String record = null;
+        String check = null;
+        String rosters = null;
+        int attempts = DEFAULT_ATTEMPTS;
+        int repeats = DEFAULT_REPEATS;
+        long seed = 1;
+        boolean profiles = false;
+        boolean timings = true;
+        LinkedHashMap<String, Double> tolerances = new LinkedHashMap<String, Double>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--record":
+                    record = value;
+                    break;
+                case "--check":
+                    check = value;
+                    break;
+                case "--rosters":
+                    rosters = value;
+                    break;
+                case "--attempts":
+                    attempts = Integer.parseInt(value);
+                    break;
+                case "--repeats":
+                    repeats = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--profiles":
+                    profiles = Boolean.parseBoolean(value);
+                    break;
+                case "--timings":
+                    timings = Boolean.parseBoolean(value);
+                    break;
+                case "--throughput-tolerance":
+                case "--time-to-best-tolerance":
+                case "--score-tolerance":
+                case "--allocation-tolerance":
+                    tolerances.put(args[i], Double.parseDouble(value));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if ((record == null) == (check == null)) {
+            System.err.println("Usage: RegressionHarness --record baseline.json | --check baseline.json [options]");
+            System.exit(2);
+        }
+
+        RegressionHarness harness = new RegressionHarness(repeats);
+        harness.setTimings(timings);
+        if (check != null) {
+            harness.loadTolerances(new File(check));
+        }
+        tolerances.forEach((option, tolerance) -> {
+            switch (option) {
+                case "--throughput-tolerance":
+                    harness.setThroughputTolerance(tolerance);
+                    break;
+                case "--time-to-best-tolerance":
+                    harness.setTimeToBestTolerance(tolerance);
+                    break;
+                case "--score-tolerance":
+                    harness.setScoreTolerance(tolerance);
+                    break;
+                default:
+                    harness.setAllocationTolerance(tolerance);
+            }
+        });
+        if (record != null) {
+            ArrayList<Case> cases = new ArrayList<Case>(syntheticCases(seed, attempts, profiles));
+            if (rosters != null) {
+                cases.addAll(rosterCases(Paths.get(rosters), seed, attempts, profiles));
+            }
+            harness.record(cases, new File(record));
+            System.out.println("Recorded " + cases.size() + " cases to " + record);
+            return;
+        }
+        int regressions = harness.check(new File(check));
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s) against " + check);
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + check);
+    }
+}
@@ -0,0 +1,608 @@
+package com.campclaire.campscheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Generates synthetic class catalogs and rosters for scale testing. Everything
+ * is derived from a seed, so the same settings always give the same files.
+ *
+ * Class popularity follows a Zipf distribution: the class of popularity rank k
+ * is weighted 1/k^s, and each camper ranks the classes in a weighted random
+ * order, so popular classes tend to be ranked near the top without every camper
+ * agreeing. A skew of 0 ranks classes uniformly at random. The shares of
+ * required, double-period, restricted-period, 10+, consecutive and swim-level
+ * classes, the density of concurrent-class restrictions, and the age and swim
+ * level mix of campers are all tunable. Campers can also be drawn from a fixed
+ * number of distinct rankings, giving rosters with many identical campers.
+ *
+ * Rosters are streamed to a {@link RosterImporter.CamperSink} one camper at a
+ * time, so a million-camper roster can be written as JSON or in the
+ * {@link BinaryRosterFormat} without being held in memory.
+ */
+public class RosterGenerator {
+    /** The default Zipf exponent of class popularity. */
+    public static final double DEFAULT_POPULARITY_SKEW = 1.0;
+    /** The default number of required classes. */
+    public static final int DEFAULT_REQUIRED_CLASSES = 1;
+    /** The default share of double-period classes. */
+    public static final double DEFAULT_DOUBLE_PERIOD_SHARE = 0.1;
+    /** The default share of classes restricted to some periods. */
+    public static final double DEFAULT_RESTRICTED_PERIOD_SHARE = 0.1;
+    /** The default share of 10+ classes. */
+    public static final double DEFAULT_10_PLUS_SHARE = 0.1;
+    /** The default share of classes that must be consecutive. */
+    public static final double DEFAULT_CONSECUTIVE_SHARE = 0.05;
+    /** The default share of classes that need a swim level. */
+    public static final double DEFAULT_SWIM_LEVEL_SHARE = 0.1;
+    /** The default chance that a pair of classes may not run in the same period. */
+    public static final double DEFAULT_CONCURRENT_DENSITY = 0.0;
+    /** The default share of campers aged 10 and over. */
+    public static final double DEFAULT_10_PLUS_CAMPER_SHARE = 0.5;
+    /** The default share of campers who need swim lessons. */
+    public static final double DEFAULT_SWIM_LESSON_SHARE = 0.3;
+    /** The default ratio of class seats to campers used to set cutoffs. */
+    public static final double DEFAULT_CAPACITY_SLACK = 1.5;
+    /** The smallest single period cutoff a generated class gets. */
+    private static final int MIN_CUTOFF = 5;
+    private static final int NUMBER_PERIODS = 3;
+    /** How many campers are generated between progress reports. */
+    private static final int PROGRESS_INTERVAL = 65536;
+    /** The low bits of a sort key that hold the class id. */
+    private static final long CLASS_ID_MASK = 0xFFFF;
+
+    private final long seed;
+    private double popularitySkew;
+    private int requiredClasses;
+    private double doublePeriodShare;
+    private double restrictedPeriodShare;
+    private double tenPlusShare;
+    private double consecutiveShare;
+    private double swimLevelShare;
+    private double concurrentDensity;
+    private double tenPlusCamperShare;
+    private double swimLessonShare;
+    private double capacitySlack;
+    private int distinctRankings;
+
+    /**
+     * Constructs a generator with the default settings.
+     *
+     * @param seed the seed every generated catalog and roster is derived from
+     */
+    public RosterGenerator(long seed) {
+        this.seed = seed;
+        this.popularitySkew = DEFAULT_POPULARITY_SKEW;
+        this.requiredClasses = DEFAULT_REQUIRED_CLASSES;
+        this.doublePeriodShare = DEFAULT_DOUBLE_PERIOD_SHARE;
+        this.restrictedPeriodShare = DEFAULT_RESTRICTED_PERIOD_SHARE;
+        this.tenPlusShare = DEFAULT_10_PLUS_SHARE;
+        this.consecutiveShare = DEFAULT_CONSECUTIVE_SHARE;
+        this.swimLevelShare = DEFAULT_SWIM_LEVEL_SHARE;
+        this.concurrentDensity = DEFAULT_CONCURRENT_DENSITY;
+        this.tenPlusCamperShare = DEFAULT_10_PLUS_CAMPER_SHARE;
+        this.swimLessonShare = DEFAULT_SWIM_LESSON_SHARE;
+        this.capacitySlack = DEFAULT_CAPACITY_SLACK;
+    }
+
+    /**
+     * Receives progress reports while a roster is generated.
+     */
+    public interface ProgressListener {
+        /**
+         * Reports generation progress.
+         *
+         * @param generated the number of campers generated so far
+         * @param total     the number of campers to generate
+         */
+        void progress(int generated, int total);
+    }
+
+    /**
+     * Sets the Zipf exponent of class popularity. 0 makes every class equally
+     * popular; larger values concentrate the top ranks on fewer classes.
+     *
+     * @param popularitySkew the exponent, at least 0
+     */
+    public void setPopularitySkew(double popularitySkew) {
+        this.popularitySkew = popularitySkew;
+    }
+
+    /**
+     * Sets the number of required classes. Required classes run in periods 2 and
+     * 3, like swim lessons.
+     *
+     * @param requiredClasses the number of required classes
+     */
+    public void setRequiredClasses(int requiredClasses) {
+        this.requiredClasses = requiredClasses;
+    }
+
+    /**
+     * Sets the share of classes, other than required classes, that span two
+     * periods.
+     *
+     * @param doublePeriodShare the share, from 0 to 1
+     */
+    public void setDoublePeriodShare(double doublePeriodShare) {
+        this.doublePeriodShare = doublePeriodShare;
+    }
+
+    /**
+     * Sets the share of classes, other than required classes, that may only run
+     * in some periods.
+     *
+     * @param restrictedPeriodShare the share, from 0 to 1
+     */
+    public void setRestrictedPeriodShare(double restrictedPeriodShare) {
+        this.restrictedPeriodShare = restrictedPeriodShare;
+    }
+
+    /**
+     * Sets the share of classes, other than required classes, that are for
+     * campers 10 and over.
+     *
+     * @param tenPlusShare the share, from 0 to 1
+     */
+    public void set10PlusShare(double tenPlusShare) {
+        this.tenPlusShare = tenPlusShare;
+    }
+
+    /**
+     * Sets the share of classes, other than required classes, whose periods must
+     * be consecutive.
+     *
+     * @param consecutiveShare the share, from 0 to 1
+     */
+    public void setConsecutiveShare(double consecutiveShare) {
+        this.consecutiveShare = consecutiveShare;
+    }
+
+    /**
+     * Sets the share of classes, other than required classes, that need a swim
+     * level.
+     *
+     * @param swimLevelShare the share, from 0 to 1
+     */
+    public void setSwimLevelShare(double swimLevelShare) {
+        this.swimLevelShare = swimLevelShare;
+    }
+
+    /**
+     * Sets the chance that any pair of classes may not run in the same period.
+     *
+     * @param concurrentDensity the chance, from 0 to 1
+     */
+    public void setConcurrentDensity(double concurrentDensity) {
+        this.concurrentDensity = concurrentDensity;
+    }
+
+    /**
+     * Sets the share of campers aged 10 to 15; the rest are 7 to 9.
+     *
+     * @param tenPlusCamperShare the share, from 0 to 1
+     */
+    public void set10PlusCamperShare(double tenPlusCamperShare) {
+        this.tenPlusCamperShare = tenPlusCamperShare;
+    }
+
+    /**
+     * Sets the share of campers with swim level 1 to 3, who need swim lessons;
+     * the rest are 4 to 6.
+     *
+     * @param swimLessonShare the share, from 0 to 1
+     */
+    public void setSwimLessonShare(double swimLessonShare) {
+        this.swimLessonShare = swimLessonShare;
+    }
+
+    /**
+     * Sets the ratio of class seats to campers that single period cutoffs are
+     * sized for. A slack of 1 gives exactly one seat per camper per period when
+     * every class runs in every period.
+     *
+     * @param capacitySlack the ratio, greater than 0
+     */
+    public void setCapacitySlack(double capacitySlack) {
+        this.capacitySlack = capacitySlack;
+    }
+
+    /**
+     * Limits campers to a number of distinct rankings, each camper taking one at
+     * random, as in a camp where campers sign up in friend groups.
+     *
+     * @param distinctRankings the number of distinct rankings, or 0 for a fresh
+     *                         ranking per camper
+     */
+    public void setDistinctRankings(int distinctRankings) {
+        this.distinctRankings = distinctRankings;
+    }
+
+    /**
+     * Generates a class catalog sized for a roster.
+     *
+     * @param numberClasses the number of classes
+     * @param numberCampers the number of campers the cutoffs are sized for
+     * @return the classes, titled "Class 1" onwards
+     */
+    public ArrayList<ClassClass> generateCatalog(int numberClasses, int numberCampers) {
+        Random random = new Random(this.seed);
+        int cutoff = Math.max(MIN_CUTOFF,
+                (int) Math.ceil(this.capacitySlack * numberCampers / Math.max(1, numberClasses)));
+        int required = Math.min(this.requiredClasses, numberClasses);
+        boolean[] doublePeriod = pick(numberClasses, required, this.doublePeriodShare, random);
+        boolean[] restrictedPeriod = pick(numberClasses, required, this.restrictedPeriodShare, random);
+        boolean[] tenPlus = pick(numberClasses, required, this.tenPlusShare, random);
+        boolean[] consecutive = pick(numberClasses, required, this.consecutiveShare, random);
+        boolean[] swimLevel = pick(numberClasses, required, this.swimLevelShare, random);
+
+        ArrayList<ClassClass> out = new ArrayList<ClassClass>(numberClasses);
+        for (int i = 0; i < numberClasses; i++) {
+            int[] periods;
+            if (i < required) {
+                periods = new int[] { 2, 3 };
+            } else if (!restrictedPeriod[i]) {
+                periods = new int[0];
+            } else if (doublePeriod[i]) {
+                // A restricted double-period class is offered in every allowed period, so allow exactly two
+                int first = 1 + random.nextInt(NUMBER_PERIODS - 1);
+                periods = new int[] { first, first + 1 };
+            } else if (random.nextBoolean()) {
+                periods = new int[] { 1 + random.nextInt(NUMBER_PERIODS) };
+            } else {
+                int skipped = 1 + random.nextInt(NUMBER_PERIODS);
+                periods = skipped == 1 ? new int[] { 2, 3 } : skipped == 2 ? new int[] { 1, 3 } : new int[] { 1, 2 };
+            }
+            out.add(new ClassClass("Class " + (i + 1), periods, doublePeriod[i], i < required, tenPlus[i],
+                    consecutive[i], swimLevel[i], cutoff));
+        }
+        for (int i = 0; i < numberClasses; i++) {
+            for (int j = i + 1; j < numberClasses; j++) {
+                if (random.nextDouble() < this.concurrentDensity) {
+                    out.get(i).addRestrictedConcurrentClass(out.get(j));
+                    out.get(j).addRestrictedConcurrentClass(out.get(i));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Generates a roster, handing each camper to a sink as it is made. Campers
+     * are named "Camper 1" onwards.
+     *
+     * @param catalog       the class catalog, in class id order, of at most 65536 classes
+     * @param numberCampers the number of campers
+     * @param sink          the sink to hand campers to
+     * @param listener      the listener to report progress to, or null
+     * @throws IOException if the sink cannot accept a camper
+     */
+    public void generateRoster(List<ClassClass> catalog, int numberCampers, RosterImporter.CamperSink sink,
+            ProgressListener listener) throws IOException {
+        int numberClasses = catalog.size();
+        // A separate stream, so the roster does not change when only catalog settings do
+        Random random = new Random(this.seed * 0x9E3779B97F4A7C15L + 1);
+        int[] byPopularity = new int[numberClasses];
+        for (int i = 0; i < numberClasses; i++) {
+            byPopularity[i] = i;
+        }
+        for (int i = numberClasses - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = byPopularity[i];
+            byPopularity[i] = byPopularity[j];
+            byPopularity[j] = swap;
+        }
+        double[] inverseWeights = new double[numberClasses];
+        for (int k = 0; k < numberClasses; k++) {
+            inverseWeights[byPopularity[k]] = Math.pow(k + 1, this.popularitySkew);
+        }
+
+        int[] rankings = new int[numberClasses];
+        long[] keys = new long[numberClasses];
+        int[][] pool = new int[this.distinctRankings][];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = new int[numberClasses];
+            drawRankings(random, inverseWeights, keys, pool[i]);
+        }
+        for (int n = 0; n < numberCampers; n++) {
+            int age = random.nextDouble() < this.tenPlusCamperShare ? 10 + random.nextInt(6) : 7 + random.nextInt(3);
+            int swimLevel = random.nextDouble() < this.swimLessonShare ? 1 + random.nextInt(3) : 4 + random.nextInt(3);
+            if (pool.length > 0) {
+                System.arraycopy(pool[random.nextInt(pool.length)], 0, rankings, 0, numberClasses);
+            } else {
+                drawRankings(random, inverseWeights, keys, rankings);
+            }
+            sink.accept("Camper " + (n + 1), age, swimLevel, rankings);
+            if (listener != null && (n + 1) % PROGRESS_INTERVAL == 0) {
+                listener.progress(n + 1, numberCampers);
+            }
+        }
+    }
+
+    /**
+     * Draws a weighted random order of the classes.
+     *
+     * @param random         the source of randomness
+     * @param inverseWeights the inverse popularity weight of each class
+     * @param keys           scratch space, one entry per class
+     * @param rankings       receives the class ids, most preferred first
+     */
+    private static void drawRankings(Random random, double[] inverseWeights, long[] keys, int[] rankings) {
+        // Weighted random order: sorting by Exp(1)/weight ascending draws without replacement by weight.
+        // Keys are positive, so their bits sort like the doubles; the low bits carry the class id.
+        for (int c = 0; c < keys.length; c++) {
+            double key = -Math.log(1 - random.nextDouble()) * inverseWeights[c];
+            keys[c] = (Double.doubleToRawLongBits(key) & ~CLASS_ID_MASK) | c;
+        }
+        Arrays.sort(keys);
+        for (int rank = 0; rank < keys.length; rank++) {
+            rankings[rank] = (int) (keys[rank] & CLASS_ID_MASK);
+        }
+    }
+
+    /**
+     * Generates a roster as camper objects. The catalog must be the active class
+     * list, since campers size their rankings from it.
+     *
+     * @param catalog       the active class list
+     * @param numberCampers the number of campers
+     * @return the campers
+     */
+    public ArrayList<Camper> generateCampers(List<ClassClass> catalog, int numberCampers) {
+        ArrayList<Camper> out = new ArrayList<Camper>(numberCampers);
+        try {
+            this.generateRoster(catalog, numberCampers, (name, age, swimLevel, rankedClassIds) -> {
+                ClassClass[] choices = new ClassClass[rankedClassIds.length];
+                for (int i = 0; i < choices.length; i++) {
+                    choices[i] = catalog.get(rankedClassIds[i]);
+                }
+                out.add(new Camper(age, name, swimLevel, choices));
+            }, null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out;
+    }
+
+    /**
+     * Writes a class catalog in the format written by "Save Classes".
+     *
+     * @param catalog the classes
+     * @param target  the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeCatalog(List<ClassClass> catalog, File target) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.writeValue(target, catalog);
+    }
+
+    /**
+     * Writes camper records as a JSON roster that {@link RosterImporter} reads.
+     * Choices are written as plain class titles to keep large rosters small.
+     */
+    public static class JsonRosterWriter implements RosterImporter.CamperSink, AutoCloseable {
+        private final JsonGenerator generator;
+        private final String[] titles;
+
+        /**
+         * Opens a writer.
+         *
+         * @param target  the file to write
+         * @param catalog the class catalog, in class id order
+         * @throws IOException if the file cannot be written
+         */
+        public JsonRosterWriter(File target, List<ClassClass> catalog) throws IOException {
+            this.generator = new ObjectMapper().getFactory().createGenerator(target, JsonEncoding.UTF8);
+            this.titles = new String[catalog.size()];
+            for (int i = 0; i < this.titles.length; i++) {
+                this.titles[i] = catalog.get(i).getTitle();
+            }
+            this.generator.writeStartArray();
+        }
+
+        /**
+         * Appends a camper record.
+         *
+         * @param name           the camper's name
+         * @param age            the camper's age
+         * @param swimLevel      the camper's swim level
+         * @param rankedClassIds the class id at each rank, best first
+         * @throws IOException if the record cannot be written
+         */
+        @Override
+        public void accept(String name, int age, int swimLevel, int[] rankedClassIds) throws IOException {
+            this.generator.writeStartObject();
+            this.generator.writeStringField("name", name);
+            this.generator.writeNumberField("age", age);
+            this.generator.writeNumberField("swimLevel", swimLevel);
+            this.generator.writeArrayFieldStart("totalClassChoices");
+            for (int classId : rankedClassIds) {
+                this.generator.writeString(this.titles[classId]);
+            }
+            this.generator.writeEndArray();
+            this.generator.writeEndObject();
+        }
+
+        /**
+         * Finishes the roster and closes the file.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                this.generator.writeEndArray();
+            } finally {
+                this.generator.close();
+            }
+        }
+    }
+
+    /**
+     * Picks a random subset of the classes after the required ones.
+     *
+     * @param numberClasses the number of classes
+     * @param required      the number of required classes, which are never picked
+     * @param share         the share of the other classes to pick
+     * @param random        the source of randomness
+     * @return whether each class was picked
+     */
+    private static boolean[] pick(int numberClasses, int required, double share, Random random) {
+        int candidates = numberClasses - required;
+        int count = Math.min(candidates, (int) Math.round(share * candidates));
+        int[] order = new int[candidates];
+        for (int i = 0; i < candidates; i++) {
+            order[i] = required + i;
+        }
+        boolean[] out = new boolean[numberClasses];
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(candidates - i);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+            out[order[i]] = true;
+        }
+        return out;
+    }
+
+    /**
+     * Generates a catalog and roster from the command line.
+     *
+     * <pre>
+     * --campers N --classes N --seed N --out DIR --format json|binary
+     * --zipf S --required N --double-period X --restricted-period X --10-plus X
+     * --consecutive X --swim-level X --concurrent X --10-plus-campers X
+     * --swim-lessons X --slack X --distinct-rankings N
+     * </pre>
+     *
+     * The catalog is written to DIR/classes.json and the roster to
+     * DIR/roster.json or DIR/roster.ccr, creating DIR if it does not exist.
+     *
+     * @param args the command-line options
+     * @throws IOException if a file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int numberCampers = 1000;
+        int numberClasses = 20;
+        long seed = 1;
+        String out = ".";
+        String format = "json";
+        ArrayList<String[]> settings = new ArrayList<String[]>();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--campers":
+                    numberCampers = Integer.parseInt(value);
+                    break;
+                case "--classes":
+                    numberClasses = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                case "--format":
+                    format = value;
+                    break;
+                default:
+                    settings.add(new String[] { args[i], value });
+            }
+            i++;
+        }
+        RosterGenerator generator = new RosterGenerator(seed);
+        for (String[] setting : settings) {
+            if (!generator.apply(setting[0], setting[1])) {
+                System.err.println("Unknown option: " + setting[0]);
+                System.exit(2);
+            }
+        }
+        if (!format.equals("json") && !format.equals("binary")) {
+            System.err.println("Unknown format: " + format);
+            System.exit(2);
+        }
+
+        ArrayList<ClassClass> catalog = generator.generateCatalog(numberClasses, numberCampers);
+        Files.createDirectories(Paths.get(out));
+        writeCatalog(catalog, new File(out, "classes.json"));
+        long start = System.nanoTime();
+        ProgressListener progress = (generated, total) -> System.out
+                .println("Generated " + generated + " of " + total + " campers");
+        if (format.equals("binary")) {
+            Path target = Paths.get(out, "roster.ccr");
+            try (BinaryRosterFormat.Writer writer = new BinaryRosterFormat.Writer(target, catalog)) {
+                generator.generateRoster(catalog, numberCampers, writer, progress);
+            }
+        } else {
+            try (JsonRosterWriter writer = new JsonRosterWriter(new File(out, "roster.json"), catalog)) {
+                generator.generateRoster(catalog, numberCampers, writer, progress);
+            }
+        }
+        System.out.println("Wrote " + numberClasses + " classes and " + numberCampers + " campers to " + out + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Applies a command-line setting.
+     *
+     * @param option the option name
+     * @param value  the option value
+     * @return false if the option is unknown
+     */
+    private boolean apply(String option, String value) {
+        switch (option) {
+            case "--zipf":
+                this.setPopularitySkew(Double.parseDouble(value));
+                return true;
+            case "--required":
+                this.setRequiredClasses(Integer.parseInt(value));
+                return true;
+            case "--double-period":
+                this.setDoublePeriodShare(Double.parseDouble(value));
+                return true;
+            case "--restricted-period":
+                this.setRestrictedPeriodShare(Double.parseDouble(value));
+                return true;
+            case "--10-plus":
+                this.set10PlusShare(Double.parseDouble(value));
+                return true;
+            case "--consecutive":
+                this.setConsecutiveShare(Double.parseDouble(value));
+                return true;
+            case "--swim-level":
+                this.setSwimLevelShare(Double.parseDouble(value));
+                return true;
+            case "--concurrent":
+                this.setConcurrentDensity(Double.parseDouble(value));
+                return true;
+            case "--10-plus-campers":
+                this.set10PlusCamperShare(Double.parseDouble(value));
+                return true;
+            case "--swim-lessons":
+                this.setSwimLessonShare(Double.parseDouble(value));
+                return true;
+            case "--slack":
+                this.setCapacitySlack(Double.parseDouble(value));
+                return true;
+            case "--distinct-rankings":
+                this.setDistinctRankings(Integer.parseInt(value));
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.campclaire.campscheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Imports a camper roster from JSON using Jackson's streaming parser. Unlike
+ * binding the whole file to a list of {@link Camper} objects, the importer
+ * reads one camper record at a time, validates it as it goes, and hands it to a
+ * {@link CamperSink} as dense class ids, so only a single record is ever held in
+ * memory and class objects are never duplicated per camper.
+ *
+ * The importer accepts the format written by "Save Roster": an array of camper
+ * objects with {@code name}, {@code age}, {@code swimLevel} and
+ * {@code totalClassChoices}, where each choice is either a class object with a
+ * {@code title} or a plain title string. All other fields are skipped.
+ */
+public class RosterImporter {
+    /** How many campers are read between progress reports. */
+    private static final int PROGRESS_INTERVAL = 256;
+
+    private final List<ClassClass> catalog;
+    private final HashMap<String, Integer> classIdsByTitle;
+    private final JsonFactory factory;
+    private ProgressListener progressListener;
+
+    /**
+     * Receives each camper record as it is read. The rankings array is reused
+     * between records, so a sink that keeps it must copy it.
+     */
+    public interface CamperSink {
+        /**
+         * Accepts a validated camper record.
+         *
+         * @param name           the camper's name
+         * @param age            the camper's age
+         * @param swimLevel      the camper's swim level
+         * @param rankedClassIds the class id at each rank, best first
+         * @throws IOException if the sink cannot accept the record
+         */
+        void accept(String name, int age, int swimLevel, int[] rankedClassIds) throws IOException;
+    }
+
+    /**
+     * Receives progress reports while a roster is imported.
+     */
+    public interface ProgressListener {
+        /**
+         * Reports import progress.
+         *
+         * @param bytesRead   the number of bytes consumed so far
+         * @param totalBytes  the total size of the file
+         * @param campersRead the number of campers read so far
+         */
+        void progress(long bytesRead, long totalBytes, int campersRead);
+    }
+
+    /**
+     * Constructs an importer that resolves class titles against the specified
+     * class catalog.
+     *
+     * @param catalog the class catalog, in class id order
+     */
+    public RosterImporter(List<ClassClass> catalog) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+        this.classIdsByTitle = new HashMap<String, Integer>(catalog.size() * 2);
+        for (int i = 0; i < catalog.size(); i++) {
+            this.classIdsByTitle.put(catalog.get(i).getTitle(), i);
+        }
+        this.factory = new JsonFactory();
+    }
+
+    /**
+     * Sets the listener notified of import progress.
+     *
+     * @param progressListener the listener, or null for none
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imports a roster file into a list of campers. The campers share the class
+     * objects of the catalog.
+     *
+     * @param rosterFile the roster file to import
+     * @return the imported campers, in file order
+     * @throws IOException if the file cannot be read or a record is invalid
+     */
+    public ArrayList<Camper> importCampers(File rosterFile) throws IOException {
+        ArrayList<Camper> out = new ArrayList<Camper>();
+        this.importRoster(rosterFile, (name, age, swimLevel, rankedClassIds) -> {
+            ClassClass[] choices = new ClassClass[rankedClassIds.length];
+            for (int i = 0; i < rankedClassIds.length; i++) {
+                choices[i] = this.catalog.get(rankedClassIds[i]);
+            }
+            out.add(new Camper(age, name, swimLevel, choices));
+        });
+        return out;
+    }
+
+    /**
+     * Streams a roster file into a sink, one camper at a time.
+     *
+     * @param rosterFile the roster file to import
+     * @param sink       the sink receiving each camper record
+     * @return the number of campers imported
+     * @throws IOException if the file cannot be read or a record is invalid
+     */
+    public int importRoster(File rosterFile, CamperSink sink) throws IOException {
+        long totalBytes = rosterFile.length();
+        int[] rankedClassIds = new int[this.catalog.size()];
+        boolean[] seen = new boolean[this.catalog.size()];
+        int count = 0;
+        try (JsonParser parser = this.factory.createParser(rosterFile)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Roster must be a JSON array of campers");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                this.readCamper(parser, count, rankedClassIds, seen, sink);
+                count++;
+                if (this.progressListener != null && count % PROGRESS_INTERVAL == 0) {
+                    this.progressListener.progress(parser.currentLocation().getByteOffset(), totalBytes, count);
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Expected a camper object");
+            }
+        }
+        if (this.progressListener != null) {
+            this.progressListener.progress(totalBytes, totalBytes, count);
+        }
+        return count;
+    }
+
+    /**
+     * Reads and validates a single camper object, then passes it to the sink.
+     *
+     * @param parser         the parser, positioned on the camper's start object
+     * @param index          the index of the camper in the roster
+     * @param rankedClassIds the reusable rankings buffer
+     * @param seen           the reusable duplicate-detection buffer
+     * @param sink           the sink receiving the camper
+     * @throws IOException if the record is invalid or cannot be read
+     */
+    private void readCamper(JsonParser parser, int index, int[] rankedClassIds, boolean[] seen, CamperSink sink)
+            throws IOException {
+        String name = null;
+        int age = -1;
+        int swimLevel = -1;
+        int numRanked = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "name":
+                    name = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                    break;
+                case "age":
+                    age = this.readInt(parser, value, index, "age");
+                    break;
+                case "swimLevel":
+                    swimLevel = this.readInt(parser, value, index, "swim level");
+                    break;
+                case "totalClassChoices":
+                    numRanked = this.readRankings(parser, value, index, rankedClassIds, seen);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (name == null || name.isEmpty()) {
+            throw new JsonParseException(parser, "Camper " + (index + 1) + " has no name");
+        }
+        if (age < 0) {
+            throw new JsonParseException(parser, "Camper \"" + name + "\" has no valid age");
+        }
+        if (swimLevel < 0) {
+            throw new JsonParseException(parser, "Camper \"" + name + "\" has no valid swim level");
+        }
+        if (numRanked != rankedClassIds.length) {
+            throw new JsonParseException(parser, "Camper \"" + name + "\" ranked " + Math.max(numRanked, 0)
+                    + " classes but there are " + rankedClassIds.length);
+        }
+        sink.accept(name, age, swimLevel, rankedClassIds);
+    }
+
+    /**
+     * Reads a camper's ranked class choices into the rankings buffer, rejecting
+     * unknown and duplicated classes.
+     *
+     * @param parser         the parser, positioned on the choices array
+     * @param value          the current token
+     * @param index          the index of the camper in the roster
+     * @param rankedClassIds the rankings buffer to fill
+     * @param seen           the duplicate-detection buffer
+     * @return the number of classes ranked
+     * @throws IOException if the choices are invalid or cannot be read
+     */
+    private int readRankings(JsonParser parser, JsonToken value, int index, int[] rankedClassIds, boolean[] seen)
+            throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Camper " + (index + 1) + " class choices must be an array");
+        }
+        Arrays.fill(seen, false);
+        int rank = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String title = null;
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                title = parser.getText();
+            } else if (parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("title".equals(field)) {
+                        title = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                throw new JsonParseException(parser, "Camper " + (index + 1) + " has an unranked class choice");
+            }
+            Integer classId = title == null ? null : this.classIdsByTitle.get(title);
+            if (classId == null) {
+                throw new JsonParseException(parser,
+                        "Camper " + (index + 1) + " ranked unknown class \"" + title + "\"");
+            }
+            if (rank >= rankedClassIds.length || seen[classId]) {
+                throw new JsonParseException(parser,
+                        "Camper " + (index + 1) + " ranked class \"" + title + "\" more than once");
+            }
+            seen[classId] = true;
+            rankedClassIds[rank++] = classId;
+        }
+        return rank;
+    }
+
+    /**
+     * Reads a non-negative integer field.
+     *
+     * @param parser the parser, positioned on the value
+     * @param value  the current token
+     * @param index  the index of the camper in the roster
+     * @param field  the description of the field, for error messages
+     * @return the integer value
+     * @throws IOException if the value is not a non-negative integer
+     */
+    private int readInt(JsonParser parser, JsonToken value, int index, String field) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Integer.parseInt(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                // fall through to the error below
+            }
+        }
+        throw new JsonParseException(parser, "Camper " + (index + 1) + " has an incorrectly formatted " + field);
+    }
+}
@@ -2,6 +2,7 @@ package com.campclaire.campscheduler;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,6 +15,7 @@ public class Schedule implements Comparable<Object> {
     private ArrayList<Camper> campers;
     private ClassSlot[] classSlots;
     private HashSet<ClassClass> eliminatedClasses;
+    private ArrayList<ClassClass> catalog;
     private int score;
 
     /**
@@ -23,14 +25,17 @@ public class Schedule implements Comparable<Object> {
      * @param campers            a list of campers involved in the schedule
      * @param classSlots         an array of ClassSlot objects representing the periods in the schedule
      * @param eliminatedClasses  a set of ClassClass objects that have been eliminated from the schedule
+     * @param catalog            the classes of the camp, eliminated or not
      */
-    public Schedule(ArrayList<Camper> campers, ClassSlot[] classSlots, HashSet<ClassClass> eliminatedClasses) {
+    public Schedule(ArrayList<Camper> campers, ClassSlot[] classSlots, HashSet<ClassClass> eliminatedClasses,
+            List<ClassClass> catalog) {
         this.campers = new ArrayList<Camper>(campers);
         this.classSlots = new ClassSlot[classSlots.length];
         for (int i = 0; i < classSlots.length; i++) {
             this.classSlots[i] = new ClassSlot(classSlots[i]);
         }
         this.eliminatedClasses = new HashSet<ClassClass>(eliminatedClasses);
+        this.catalog = new ArrayList<ClassClass>(catalog);
         this.score = calculateScheduleScore();
     }
 
@@ -86,6 +91,37 @@ public class Schedule implements Comparable<Object> {
         return new ArrayList<Camper>(this.campers);
     }
 
+    /**
+     * Returns a copy of the class slots of this schedule, one per period.
+     *
+     * @return a copy of the class slots
+     */
+    public ClassSlot[] getClassSlots() {
+        ClassSlot[] out = new ClassSlot[this.classSlots.length];
+        for (int i = 0; i < this.classSlots.length; i++) {
+            out[i] = new ClassSlot(this.classSlots[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Returns a copy of the set of classes eliminated from this schedule.
+     *
+     * @return a copy of the eliminated classes
+     */
+    public HashSet<ClassClass> getEliminatedClasses() {
+        return new HashSet<ClassClass>(this.eliminatedClasses);
+    }
+
+    /**
+     * Returns a copy of the classes of the camp the schedule was made for.
+     *
+     * @return a copy of the catalog
+     */
+    public ArrayList<ClassClass> getCatalog() {
+        return new ArrayList<ClassClass>(this.catalog);
+    }
+
     /**
      * Calculates the score of the schedule based on the preferences of the campers and the class enrollments.
      * Classes that are required by campers contribute more to the score.
@@ -93,7 +129,7 @@ public class Schedule implements Comparable<Object> {
      *
      * @return the calculated schedule score
      */
-    private int calculateScheduleScore() {
+    int calculateScheduleScore() {
         int score = 0;
         for (Camper camper : this.campers) {
             for (ClassPeriod classPeriod : camper.getSchedule()) {
@@ -106,7 +142,7 @@ public class Schedule implements Comparable<Object> {
                 }
             }
         }
-        for (ClassClass class_ : ScheduleDriver.getClassList()) {
+        for (ClassClass class_ : this.catalog) {
             if (!this.eliminatedClasses.contains(class_)) {
                 int lowestEnrolled = Integer.MAX_VALUE;
                 int highestEnrolled = Integer.MIN_VALUE;
@@ -130,6 +166,40 @@ public class Schedule implements Comparable<Object> {
         return score;
     }
 
+    /**
+     * Computes the ideal score of a roster: every camper gets the best ranked
+     * classes they can take, campers who need swim lessons get a required class,
+     * and every class is perfectly balanced across its periods. No schedule that
+     * fills every period with classes the campers can take scores lower, so the
+     * ideal is a lower bound for measuring how far a search is from optimal.
+     *
+     * @param campers the campers
+     * @param catalog the class catalog
+     * @return the ideal score
+     */
+    public static int idealScore(List<Camper> campers, List<ClassClass> catalog) {
+        boolean hasRequiredClass = catalog.stream().anyMatch(ClassClass::isRequired);
+        int score = 0;
+        for (Camper camper : campers) {
+            int periods = 3;
+            if (hasRequiredClass && camper.requiresSwimLessons()) {
+                score += 3;
+                periods--;
+            }
+            ClassClass[] choices = camper.getTotalClassChoices();
+            for (int rank = 1; rank <= choices.length && periods > 0; rank++) {
+                ClassClass class_ = choices[rank - 1];
+                if (class_ == null || class_.isRequired() || !camper.canTakeClass(class_)) {
+                    continue;
+                }
+                int taken = class_.isDoublePeriod() ? Math.min(2, periods) : 1;
+                score += taken * rank;
+                periods -= taken;
+            }
+        }
+        return score;
+    }
+
     /**
      * Finds and returns the camper with the worst class choice (i.e., the highest rank of choice)
      * along with the rank of that choice.
@@ -0,0 +1,167 @@
+package com.campclaire.campscheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * An on-disk cache of the best schedule found for a given set of inputs, keyed
+ * by {@link ScheduleFingerprint}. Entries are stored as {@link CompactSchedule}
+ * files under {@code ~/.cache/camp-scheduler/results} (or
+ * {@code $XDG_CACHE_HOME/camp-scheduler/results}) and evicted least recently used
+ * first once the cache holds more than {@link #DEFAULT_MAX_ENTRIES} entries.
+ *
+ * The last-modified time of each entry file doubles as its last-used time, so
+ * the cache needs no separate index and survives concurrent processes.
+ */
+public class ScheduleCache {
+    /** The default maximum number of cached schedules. */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final int MAGIC = 0x43435343; // "CCSC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".sched";
+
+    private final Path directory;
+    private final int maxEntries;
+
+    /**
+     * Constructs a cache in the default cache directory.
+     */
+    public ScheduleCache() {
+        this(defaultDirectory().resolve("results"), DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs a cache in the specified directory.
+     *
+     * @param directory  the directory holding cache entries
+     * @param maxEntries the maximum number of entries to retain
+     */
+    public ScheduleCache(Path directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the base cache directory for the scheduler, honoring
+     * {@code XDG_CACHE_HOME} when it is set.
+     *
+     * @return the base cache directory
+     */
+    public static Path defaultDirectory() {
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        Path base = xdg != null && !xdg.isEmpty() ? Paths.get(xdg)
+                : Paths.get(System.getProperty("user.home"), ".cache");
+        return base.resolve("camp-scheduler");
+    }
+
+    /**
+     * Looks up the cached schedule for a fingerprint, marking the entry as
+     * recently used.
+     *
+     * @param fingerprint the fingerprint of the inputs
+     * @return the cached schedule, or null if there is no usable entry
+     */
+    public CompactSchedule get(ScheduleFingerprint fingerprint) {
+        Path entry = this.entryPath(fingerprint);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(fingerprint.getKey())) {
+                return null;
+            }
+            CompactSchedule out = CompactSchedule.readFrom(in);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return out;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // A truncated or unreadable entry is treated as a miss and overwritten later
+            return null;
+        }
+    }
+
+    /**
+     * Stores the schedule for a fingerprint, replacing any existing entry, and
+     * evicts the least recently used entries if the cache is over capacity. The
+     * entry is written to a temporary file first so readers never observe a
+     * partially written entry.
+     *
+     * @param fingerprint the fingerprint of the inputs
+     * @param schedule    the schedule to cache
+     * @throws IOException if the entry cannot be written
+     */
+    public void put(ScheduleFingerprint fingerprint, CompactSchedule schedule) throws IOException {
+        Files.createDirectories(this.directory);
+        Path temp = Files.createTempFile(this.directory, fingerprint.getKey(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(fingerprint.getKey());
+                schedule.writeTo(out);
+            }
+            Files.move(temp, this.entryPath(fingerprint), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        this.evict();
+    }
+
+    /**
+     * Removes the least recently used entries until the cache holds at most the
+     * maximum number of entries.
+     *
+     * @throws IOException if the cache directory cannot be listed
+     */
+    private void evict() throws IOException {
+        ArrayList<Path> entries = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        }
+        if (entries.size() <= this.maxEntries) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(ScheduleCache::lastUsed));
+        for (int i = 0; i < entries.size() - this.maxEntries; i++) {
+            Files.deleteIfExists(entries.get(i));
+        }
+    }
+
+    /**
+     * Returns the last-used time of an entry, or zero if it cannot be read.
+     *
+     * @param entry the entry file
+     * @return the last-used time in milliseconds
+     */
+    private static long lastUsed(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the path of the entry for a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return the entry path
+     */
+    private Path entryPath(ScheduleFingerprint fingerprint) {
+        return this.directory.resolve(fingerprint.getKey() + SUFFIX);
+    }
+}
@@ -10,21 +10,31 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 public class ScheduleCreator {
 	private final int NUMBER_PERIODS = 3;
 	public static final int MAX_SCHEDULE_ATTEMPTS = 100000;
+	private final ArrayList<ClassClass> catalog;
 	private ArrayList<Camper> campers;
 	private HashMap<ClassClass, Integer> classCounts;
 	private HashMap<ClassClass, Integer> classPeriods;
 	private HashSet<ClassClass> eliminatedClasses;
 	private ClassSlot[] classSlots;
+	private SchedulerEvents.PhaseEvent phaseEvent;
+	private int fallbackWalks;
+	private int overrideEnrollments;
+	private Map<Camper, Integer> camperWeights;
+	private int numberCampers = -1;
 
 	/**
-	 * Default constructor that initializes an empty list of campers and class slots
-	 * for three periods.
+	 * Constructor that initializes an empty list of campers and class slots for
+	 * three periods.
+	 *
+	 * @param catalog the classes campers are scheduled into
 	 */
-	public ScheduleCreator() {
+	public ScheduleCreator(List<ClassClass> catalog) {
+		this.catalog = new ArrayList<ClassClass>(catalog);
 		this.campers = new ArrayList<Camper>();
 		this.classSlots = new ClassSlot[3];
 	}
@@ -32,9 +42,11 @@ public class ScheduleCreator {
 	/**
 	 * Constructor that initializes the list of campers with the provided list.
 	 *
+	 * @param catalog the classes campers are scheduled into
 	 * @param campers the list of campers to initialize
 	 */
-	public ScheduleCreator(ArrayList<Camper> campers) {
+	public ScheduleCreator(List<ClassClass> catalog, ArrayList<Camper> campers) {
+		this.catalog = new ArrayList<ClassClass>(catalog);
 		this.campers = new ArrayList<Camper>(campers);
 	}
 
@@ -94,7 +106,7 @@ public class ScheduleCreator {
 					}
 				}
 			}
-			camper.configureFinalChoices();
+			camper.configureFinalChoices(this.catalog);
 		}
 	}
 
@@ -106,16 +118,30 @@ public class ScheduleCreator {
 	public void initializeClassCount() {
 		HashMap<ClassClass, Integer> numTopThreeRankings = new HashMap<ClassClass, Integer>();
 		for (Camper camper : this.campers) {
+			int weight = this.camperWeights == null ? 1 : this.camperWeights.get(camper);
 			for (ClassClass class_ : camper.getFinalChoices()) {
 				if (class_ != null) {
 					if (!numTopThreeRankings.containsKey(class_)) {
-						numTopThreeRankings.put(class_, 1);
+						numTopThreeRankings.put(class_, weight);
 					} else {
-						numTopThreeRankings.put(class_, numTopThreeRankings.get(class_) + 1);
+						numTopThreeRankings.put(class_, numTopThreeRankings.get(class_) + weight);
 					}
 				}
 			}
 		}
+		this.eliminateUnpopularClasses(numTopThreeRankings);
+	}
+
+	/**
+	 * Eliminates the classes with fewer than five top-3 votes and keeps the
+	 * counts of the rest as the class count. The iteration order of the counts
+	 * decides how ties are broken when slots are filled, so they must have been
+	 * added in the order {@link #initializeClassCount()} adds them.
+	 *
+	 * @param numTopThreeRankings the number of top-3 votes for each class; the
+	 *                            eliminated classes are removed from it
+	 */
+	void eliminateUnpopularClasses(HashMap<ClassClass, Integer> numTopThreeRankings) {
 		this.eliminatedClasses = new HashSet<ClassClass>();
 		for (Iterator<ClassClass> iterator = numTopThreeRankings.keySet().iterator(); iterator.hasNext();) {
 			ClassClass class_ = iterator.next();
@@ -476,7 +502,7 @@ public class ScheduleCreator {
 			}
 		}
 		if (leastFull == null) {
-			System.out.println("PROBLEM");
+			SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.MISSING_CLASS_PERIOD, null, class_);
 		}
 		return leastFull;
 	}
@@ -493,7 +519,11 @@ public class ScheduleCreator {
 			return null;
 		}
 		ClassPeriod out = null;
-		int leastFullPeriod = this.findLeastFullPeriod(class_).getPeriod();
+		ClassPeriod leastFull = this.findLeastFullPeriod(class_);
+		if (leastFull == null) {
+			return null;
+		}
+		int leastFullPeriod = leastFull.getPeriod();
 		int numPeriods = this.classPeriods.get(class_);
 		if (numPeriods > 2) {
 			ClassPeriod[] others = new ClassPeriod[2];
@@ -548,7 +578,7 @@ public class ScheduleCreator {
 			}
 		}
 		if (moastFull == null) {
-			System.out.println("PROBLEM");
+			SchedulerDiagnostics.report(SchedulerDiagnostics.Condition.MISSING_CLASS_PERIOD, null, class_);
 		}
 		return moastFull;
 	}
@@ -563,7 +593,9 @@ public class ScheduleCreator {
 				if (choice != null) {
 					if (choice.isRequired()) {
 						ClassPeriod period = this.findLeastFullPeriod(choice);
-						period.addCamper(camper);
+						if (period != null) {
+							period.addCamper(camper);
+						}
 					} else if (choice.isDoublePeriod()) {
 						for (ClassSlot slot : this.classSlots) {
 							if (slot.containsClass(choice.getTitle())) {
@@ -598,29 +630,35 @@ public class ScheduleCreator {
 								int numPeriods = this.classPeriods.get(enrollAttempt);
 								if (numPeriods > 1) {
 									ClassPeriod secondLeastFull = this.findSecondLeastFullPeriod(enrollAttempt);
-									if (!secondLeastFull.addCamper(camper)) {
-										if (numPeriods > 2) {
-											ClassPeriod mostFull = this.findMostFullPeriod(enrollAttempt);
-											if (mostFull.addCamper(camper)) {
-												added = true;
-											}
-										}
-									} else {
+									if (secondLeastFull != null && secondLeastFull.addCamper(camper)) {
 										added = true;
+									} else if (numPeriods > 2) {
+										ClassPeriod mostFull = this.findMostFullPeriod(enrollAttempt);
+										if (mostFull != null && mostFull.addCamper(camper)) {
+											added = true;
+										}
 									}
 								}
 								if (added) {
 									break;
 								} else {
+									this.fallbackWalks++;
+									SchedulerMetrics.increment(SchedulerMetrics.Counter.FALLBACK_WALKS);
 									do {
 										ClassClass nextUp = camper.findNextRankedClass(enrollAttempt);
-										while (nextUp == null || this.eliminatedClasses.contains(nextUp)
-												|| camper.isEnrolled(nextUp)) {
+										while (nextUp != null && (this.eliminatedClasses.contains(nextUp)
+												|| camper.isEnrolled(nextUp))) {
+											SchedulerMetrics.increment(SchedulerMetrics.Counter.FALLBACK_STEPS);
 											nextUp = camper.findNextRankedClass(nextUp);
 										}
+										SchedulerMetrics.increment(SchedulerMetrics.Counter.FALLBACK_STEPS);
 										enrollAttempt = nextUp;
-										leastFull = this.findLeastFullPeriod(enrollAttempt);
-									} while (leastFull == null);
+										leastFull = nextUp == null ? null : this.findLeastFullPeriod(enrollAttempt);
+									} while (leastFull == null && enrollAttempt != null);
+									if (enrollAttempt == null) {
+										// Out of ranked classes; later passes fill the period over capacity
+										break;
+									}
 								}
 							}
 						}
@@ -635,6 +673,8 @@ public class ScheduleCreator {
 						ClassPeriod bestNotEnrolledOverride = camper.findHighestRankedUnenrolledClasssOverride(
 								this.classSlots[notEnrolled - 1]);
 						bestNotEnrolledOverride.addCamperOverride(camper);
+						this.overrideEnrollments++;
+						SchedulerMetrics.increment(SchedulerMetrics.Counter.OVERRIDE_ENROLLMENTS);
 					}
 				}
 			}
@@ -740,6 +780,34 @@ public class ScheduleCreator {
 		Collections.shuffle(campers);
 	}
 
+	/**
+	 * Randomly shuffles the list of campers using the specified source of
+	 * randomness, so the order can be reproduced.
+	 *
+	 * @param random the source of randomness
+	 */
+	public void shuffleCampers(Random random) {
+		Collections.shuffle(campers, random);
+	}
+
+	/**
+	 * Returns the campers in the order they will be enrolled.
+	 *
+	 * @return a copy of the list of campers
+	 */
+	public ArrayList<Camper> getCampers() {
+		return new ArrayList<Camper>(this.campers);
+	}
+
+	/**
+	 * Replaces the list of campers, setting the order they will be enrolled in.
+	 *
+	 * @param campers the campers, in enrollment order
+	 */
+	public void setCampers(List<Camper> campers) {
+		this.campers = new ArrayList<Camper>(campers);
+	}
+
 	/**
 	 * Clears the set of eliminated classes.
 	 */
@@ -760,8 +828,8 @@ public class ScheduleCreator {
 	 * Identifies classes that have been eliminated and adds them to the eliminated
 	 * classes set.
 	 */
-	private void findEliminatedClasses() {
-		for (ClassClass class_ : ScheduleDriver.getClassList()) {
+	public void findEliminatedClasses() {
+		for (ClassClass class_ : this.catalog) {
 			boolean presentInSlots = false;
 			for (ClassSlot classSlot : this.classSlots) {
 				for (ClassPeriod slot : classSlot.getSlots()) {
@@ -783,8 +851,8 @@ public class ScheduleCreator {
 	/**
 	 * Adjusts the counts of class periods based on the current schedule.
 	 */
-	private void adjustClassPeriodCounts() {
-		for (ClassClass class_ : ScheduleDriver.getClassList()) {
+	public void adjustClassPeriodCounts() {
+		for (ClassClass class_ : this.catalog) {
 			int classCount = 0;
 			if (!this.eliminatedClasses.contains(class_)) {
 				for (ClassSlot classSlot : this.classSlots) {
@@ -801,21 +869,194 @@ public class ScheduleCreator {
 
 	/**
 	 * Executes the scheduling process, filling class slots and enrolling campers.
+	 * Each step is timed into {@link SchedulerMetrics} when metrics are on and
+	 * recorded as a {@link SchedulerEvents.PhaseEvent} during flight recordings.
 	 *
 	 * @return the final schedule after processing all steps
 	 */
 	public Schedule run() {
+		long runStart = SchedulerMetrics.start();
+		long phaseStart = this.layOutClasses(runStart);
+		this.addCampersToEssentialClasses();
+		phaseStart = this.endPhase(SchedulerMetrics.Phase.ADD_CAMPERS_TO_ESSENTIAL_CLASSES, phaseStart);
+		this.addCampersToOtherClasses();
+		phaseStart = this.endPhase(SchedulerMetrics.Phase.ADD_CAMPERS_TO_OTHER_CLASSES, phaseStart);
+		Schedule schedule = new Schedule(this.campers, this.classSlots, this.eliminatedClasses, this.catalog);
+		this.endRun(phaseStart, runStart);
+		return schedule;
+	}
+
+	/**
+	 * Runs the phases of {@link #run()} that decide which classes are offered in
+	 * which periods, up to but not including enrollment. The counters of the
+	 * last run are reset.
+	 *
+	 * @param runStart the start time of the run from {@link SchedulerMetrics}
+	 * @return the start time of the next phase
+	 */
+	long layOutClasses(long runStart) {
+		this.fallbackWalks = 0;
+		this.overrideEnrollments = 0;
+		long phaseStart = runStart;
+		this.phaseEvent = SchedulerEvents.beginPhase();
 		this.findCamperChoices();
+		phaseStart = this.endPhase(SchedulerMetrics.Phase.FIND_CAMPER_CHOICES, phaseStart);
 		this.initializeClassCount();
+		phaseStart = this.endPhase(SchedulerMetrics.Phase.INITIALIZE_CLASS_COUNT, phaseStart);
 		this.findCamperChoices();
+		phaseStart = this.endPhase(SchedulerMetrics.Phase.FIND_CAMPER_CHOICES, phaseStart);
+		return this.layOutCountedClasses(phaseStart);
+	}
+
+	/**
+	 * Runs the phases of {@link #run()} that decide which classes are offered in
+	 * which periods from top-3 vote counts made outside this class, for an
+	 * engine that keeps campers' final choices itself. The counters of the last
+	 * run are reset.
+	 *
+	 * @param numTopThreeRankings the number of top-3 votes for each class, added
+	 *                            in the order {@link #initializeClassCount()}
+	 *                            would add them
+	 * @param runStart            the start time of the run from
+	 *                            {@link SchedulerMetrics}, which also times the
+	 *                            counting
+	 * @return the start time of the next phase
+	 */
+	long layOutClasses(HashMap<ClassClass, Integer> numTopThreeRankings, long runStart) {
+		this.fallbackWalks = 0;
+		this.overrideEnrollments = 0;
+		this.phaseEvent = SchedulerEvents.beginPhase();
+		this.eliminateUnpopularClasses(numTopThreeRankings);
+		long phaseStart = this.endPhase(SchedulerMetrics.Phase.INITIALIZE_CLASS_COUNT, runStart);
+		return this.layOutCountedClasses(phaseStart);
+	}
+
+	/**
+	 * Runs the phases of {@link #run()} from the number of periods of each class
+	 * up to but not including enrollment.
+	 *
+	 * @param phaseStart the start time of the first phase
+	 * @return the start time of the next phase
+	 */
+	private long layOutCountedClasses(long phaseStart) {
 		this.calculateNumberPeriods();
+		phaseStart = this.endPhase(SchedulerMetrics.Phase.CALCULATE_NUMBER_PERIODS, phaseStart);
 		this.initializeClassSlots();
+		phaseStart = this.endPhase(SchedulerMetrics.Phase.INITIALIZE_CLASS_SLOTS, phaseStart);
 		this.fillClassSlots();
+		phaseStart = this.endPhase(SchedulerMetrics.Phase.FILL_CLASS_SLOTS, phaseStart);
 		this.findEliminatedClasses();
 		this.adjustClassPeriodCounts();
-		this.addCampersToEssentialClasses();
-		this.addCampersToOtherClasses();
-		return new Schedule(this.campers, this.classSlots, this.eliminatedClasses);
+		SchedulerMetrics.add(SchedulerMetrics.Counter.ELIMINATED_CLASSES, this.eliminatedClasses.size());
+		return this.endPhase(SchedulerMetrics.Phase.FIND_ELIMINATED_CLASSES, phaseStart);
+	}
+
+	/**
+	 * Ends a phase of {@link #run()}: its time is recorded in the metrics and its
+	 * flight recorder event is committed, and the next phase is started.
+	 *
+	 * @param phase the phase that ended
+	 * @param start the start time of the phase from {@link SchedulerMetrics}
+	 * @return the start time of the next phase
+	 */
+	long endPhase(SchedulerMetrics.Phase phase, long start) {
+		SchedulerEvents.commitPhase(this.phaseEvent, phase, this.getNumberCampers());
+		this.phaseEvent = SchedulerEvents.beginPhase();
+		return SchedulerMetrics.lap(phase, start);
+	}
+
+	/**
+	 * Ends the scoring phase and the whole run.
+	 *
+	 * @param phaseStart the start time of the scoring phase
+	 * @param runStart   the start time of the run
+	 */
+	void endRun(long phaseStart, long runStart) {
+		SchedulerEvents.commitPhase(this.phaseEvent, SchedulerMetrics.Phase.SCORE, this.getNumberCampers());
+		this.phaseEvent = null;
+		SchedulerMetrics.lap(SchedulerMetrics.Phase.SCORE, phaseStart);
+		SchedulerMetrics.lap(SchedulerMetrics.Phase.RUN, runStart);
+	}
+
+	/**
+	 * Sets the number of campers phase events report, for an engine that
+	 * enrolls campers this creator does not hold.
+	 *
+	 * @param numberCampers the number of campers, or -1 to report this
+	 *                      creator's own campers
+	 */
+	void setNumberCampers(int numberCampers) {
+		this.numberCampers = numberCampers;
+	}
+
+	/**
+	 * Returns the number of campers phase events report.
+	 *
+	 * @return the number of campers
+	 */
+	private int getNumberCampers() {
+		return this.numberCampers < 0 ? this.campers.size() : this.numberCampers;
+	}
+
+	/**
+	 * Returns the class slots of the last run, one per period.
+	 *
+	 * @return the class slots, not copied
+	 */
+	ClassSlot[] getClassSlots() {
+		return this.classSlots;
+	}
+
+	/**
+	 * Returns the classes eliminated in the last run.
+	 *
+	 * @return the eliminated classes, not copied
+	 */
+	HashSet<ClassClass> getEliminatedClasses() {
+		return this.eliminatedClasses;
+	}
+
+	/**
+	 * Counts each camper as several campers when classes are counted, so one
+	 * camper can stand for a group of campers with identical rankings.
+	 *
+	 * @param camperWeights the number of campers each camper stands for, or null
+	 *                      to count each camper once
+	 */
+	void setCamperWeights(Map<Camper, Integer> camperWeights) {
+		this.camperWeights = camperWeights;
+	}
+
+	/**
+	 * Adds to the count of fallback walks and override enrollments of the current
+	 * run, for enrollment done outside this class.
+	 *
+	 * @param fallbackWalks       the number of fallback walks
+	 * @param overrideEnrollments the number of override enrollments
+	 */
+	void addEnrollmentCounts(int fallbackWalks, int overrideEnrollments) {
+		this.fallbackWalks += fallbackWalks;
+		this.overrideEnrollments += overrideEnrollments;
+	}
+
+	/**
+	 * Returns the number of times the last run had to walk down a camper's
+	 * rankings because their choice was full.
+	 *
+	 * @return the number of fallback walks
+	 */
+	public int getFallbackWalks() {
+		return this.fallbackWalks;
+	}
+
+	/**
+	 * Returns the number of campers the last run enrolled in a full class because
+	 * nothing else was open.
+	 *
+	 * @return the number of override enrollments
+	 */
+	public int getOverrideEnrollments() {
+		return this.overrideEnrollments;
 	}
 
 }
@@ -8,14 +8,17 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.event.*;
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -27,6 +30,8 @@ import com.fasterxml.jackson.databind.SerializationFeature;
  */
 public class ScheduleDriver extends JFrame {
 	private static final long serialVersionUID = 1L;
+	/** The seed of the camper shuffles of searches run from the GUI. */
+	private static final long SEARCH_SEED = 0;
 	private static ArrayList<ClassClass> classList;
 	private ArrayList<Camper> camperRoster;
 	private ArrayList<JTextField> classRankInputs;
@@ -38,6 +43,7 @@ public class ScheduleDriver extends JFrame {
 	private JTable camperTable;
 	private DefaultTableModel scheduleTableModel;
 	private JTable scheduleTable;
+	private Schedule bestSchedule;
 
 	/**
 	 * Constructs a new ScheduleDriver, setting up the GUI components and initializing
@@ -85,6 +91,9 @@ public class ScheduleDriver extends JFrame {
 		JButton calculateButton = new JButton("Calculate Schedule");
 		JButton readButton = new JButton("Import Roster");
 		JButton inputClassesButton = new JButton("Input Classes");
+		JButton exportButton = new JButton("Export Schedule");
+		JButton warmStartButton = new JButton("Warm Start");
+		JButton metricsButton = new JButton("Metrics");
 
 		// Add action listeners
 		addButton.addActionListener(e -> {
@@ -114,6 +123,12 @@ public class ScheduleDriver extends JFrame {
 
 		saveButton.addActionListener(e -> saveRoster());
 
+		exportButton.addActionListener(e -> exportSchedule());
+
+		warmStartButton.addActionListener(e -> warmStartSchedule());
+
+		metricsButton.addActionListener(e -> new MetricsView().setVisible(true));
+
 		calculateButton.addActionListener(e -> {
 			Thread thread = new Thread(() -> {
 				if (!camperRoster.isEmpty()) {
@@ -126,7 +141,7 @@ public class ScheduleDriver extends JFrame {
 		readButton.addActionListener(e -> {
 			JFileChooser fileChooser = new JFileChooser(new File("."));
 
-			FileNameExtensionFilter filter = new FileNameExtensionFilter("JSON Files", "json");
+			FileNameExtensionFilter filter = new FileNameExtensionFilter("Roster Files (JSON, CSV)", "json", "csv");
 			fileChooser.setFileFilter(filter);
 
 			int returnVal = fileChooser.showOpenDialog(null);
@@ -146,6 +161,7 @@ public class ScheduleDriver extends JFrame {
 				public void windowClosed(java.awt.event.WindowEvent windowEvent) {
 					try {
 						importClasses();
+						bestSchedule = null;
 						updateClassListInGUI();
 					} catch (IOException e) {
 						JOptionPane.showMessageDialog(ScheduleDriver.this, "Error importing classes.");
@@ -162,6 +178,9 @@ public class ScheduleDriver extends JFrame {
 		this.infoPanel.add(saveButton);
 		this.infoPanel.add(inputClassesButton);
 		this.infoPanel.add(calculateButton);
+		this.infoPanel.add(exportButton);
+		this.infoPanel.add(warmStartButton);
+		this.infoPanel.add(metricsButton);
 
 		// Create first table and scroll pane
 		String[] columnNames = { "Name", "Age", "Top Choices" };
@@ -276,7 +295,7 @@ public class ScheduleDriver extends JFrame {
 			this.swimField.setText("");
 			return;
 		}
-		Camper camper = new Camper(age, name, swimLevel);
+		Camper camper = new Camper(age, name, swimLevel, classList.size());
 		try {
 			if (!this.correctlyRankedClasses()) {
 				JOptionPane.showMessageDialog(ScheduleDriver.this, "One or more class ranks duplicated!");
@@ -289,11 +308,39 @@ public class ScheduleDriver extends JFrame {
 		for (Map.Entry<ClassClass, JTextField> entry : textFieldMap.entrySet()) {
 			camper.addClassChoice(entry.getKey(), Integer.parseInt(entry.getValue().getText().trim()));
 		}
-		camperRoster.add(camper);
 		clearInputs();
+		if (this.scheduleMatchesRoster()) {
+			// Fit the late arrival into the current schedule rather than re-solving
+			ScheduleEditor editor = new ScheduleEditor(this.bestSchedule);
+			editor.addCamper(camper);
+			displayBestSchedule(editor.getSchedule());
+			displayCamperList();
+			return;
+		}
+		camperRoster.add(camper);
 		displayCamperList();
 	}
 
+	/**
+	 * Checks whether the best schedule holds exactly the campers on the roster,
+	 * so that it can be edited in place of the roster.
+	 *
+	 * @return true if there is a best schedule and it matches the roster
+	 */
+	private boolean scheduleMatchesRoster() {
+		if (this.bestSchedule == null || this.bestSchedule.getCampers().size() != this.camperRoster.size()) {
+			return false;
+		}
+		Set<Camper> scheduled = Collections.newSetFromMap(new IdentityHashMap<Camper, Boolean>());
+		scheduled.addAll(this.bestSchedule.getCampers());
+		for (Camper camper : this.camperRoster) {
+			if (!scheduled.contains(camper)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Saves the current camper roster to a JSON file selected by the user.
 	 */
@@ -320,6 +367,91 @@ public class ScheduleDriver extends JFrame {
 		}
 	}
 
+	/**
+	 * Exports the best schedule to a directory selected by the user, writing
+	 * camper schedules, class rosters and a period summary in the chosen format.
+	 */
+	private void exportSchedule() {
+		if (this.bestSchedule == null) {
+			JOptionPane.showMessageDialog(this, "No schedule calculated yet!");
+			return;
+		}
+		ScheduleExporter.Format[] formats = ScheduleExporter.Format.values();
+		int choice = JOptionPane.showOptionDialog(this, "Export format:", "Export Schedule",
+				JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, formats, formats[0]);
+		if (choice < 0) {
+			return;
+		}
+
+		JFileChooser fileChooser = new JFileChooser(new File("."));
+		fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		fileChooser.setDialogTitle("Export Schedule To");
+
+		if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+			try {
+				new ScheduleExporter(this.bestSchedule).exportAll(fileChooser.getSelectedFile().toPath(),
+						formats[choice]);
+				JOptionPane.showMessageDialog(this, "Schedule exported!");
+			} catch (IOException e) {
+				e.printStackTrace();
+				JOptionPane.showMessageDialog(this, "Error exporting schedule.");
+			}
+		}
+	}
+
+	/**
+	 * Schedules the roster starting from a previously exported camper schedule
+	 * selected by the user. The saved schedule is mapped onto the current roster
+	 * and improved by local search instead of running a full search.
+	 */
+	private void warmStartSchedule() {
+		if (this.camperRoster.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "No campers to schedule!");
+			return;
+		}
+		JFileChooser fileChooser = new JFileChooser(new File("."));
+		fileChooser.setFileFilter(new FileNameExtensionFilter("Camper Schedules (JSON, CSV)", "json", "csv"));
+		fileChooser.setDialogTitle("Warm Start From");
+		if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+			return;
+		}
+		File savedSchedule = fileChooser.getSelectedFile();
+		WarmStart warmStart = new WarmStart(getClassList(), this.camperRoster);
+		SwingWorker<WorkingSchedule, Void> worker = new SwingWorker<WorkingSchedule, Void>() {
+			@Override
+			protected WorkingSchedule doInBackground() throws IOException {
+				WorkingSchedule schedule = warmStart.map(savedSchedule);
+				new LocalSearch(schedule, new Random()).anneal(
+						WarmStart.DEFAULT_ITERATIONS_PER_CAMPER * (long) schedule.getNumberCampers(),
+						WarmStart.DEFAULT_TIME_LIMIT_MILLIS);
+				return schedule;
+			}
+
+			@Override
+			protected void done() {
+				WorkingSchedule schedule;
+				try {
+					schedule = this.get();
+				} catch (InterruptedException | ExecutionException e) {
+					e.printStackTrace();
+					JOptionPane.showMessageDialog(ScheduleDriver.this,
+							"Error reading saved schedule: " + e.getCause().getMessage());
+					return;
+				}
+				System.out.println("Warm start: " + warmStart.getMatchedCampers() + " matched, "
+						+ warmStart.getAddedCampers() + " added, " + warmStart.getDroppedCampers() + " dropped");
+				displayBestSchedule(schedule.toCompactSchedule().expand(schedule.getCampers(), schedule.getCatalog()));
+			}
+		};
+		this.progressBar.setIndeterminate(true);
+		worker.addPropertyChangeListener(evt -> {
+			if ("state".equals(evt.getPropertyName()) && evt.getNewValue() == SwingWorker.StateValue.DONE) {
+				this.progressBar.setIndeterminate(false);
+			}
+		});
+		worker.execute();
+	}
+
 	/**
 	 * Imports the class list from a JSON file named "classes.json" and populates
 	 * the classList.
@@ -337,19 +469,91 @@ public class ScheduleDriver extends JFrame {
 	}
 
 	/**
-	 * Imports a camper roster from the specified JSON file.
+	 * Imports a camper roster from the specified JSON file. The file is streamed
+	 * in the background, one camper at a time, with progress shown in the
+	 * progress bar.
 	 *
 	 * @param rosterFile the file containing the camper roster to import
 	 */
 	private void importRoster(File rosterFile) {
-		ObjectMapper mapper = new ObjectMapper();
-		try {
-			camperRoster = mapper.readValue(rosterFile, new TypeReference<ArrayList<Camper>>() {
-			});
-			displayCamperList();
-		} catch (IOException e) {
-			e.printStackTrace();
+		if (rosterFile.getName().toLowerCase().endsWith(".csv")) {
+			importCsvRoster(rosterFile);
+			return;
 		}
+		RosterImporter importer = new RosterImporter(getClassList());
+		SwingWorker<ArrayList<Camper>, Integer> worker = new SwingWorker<ArrayList<Camper>, Integer>() {
+			@Override
+			protected ArrayList<Camper> doInBackground() throws IOException {
+				importer.setProgressListener((bytesRead, totalBytes, campersRead) -> this
+						.publish(totalBytes == 0 ? 100 : (int) (bytesRead * 100 / totalBytes)));
+				return importer.importCampers(rosterFile);
+			}
+
+			@Override
+			protected void process(List<Integer> chunks) {
+				progressBar.setValue(chunks.get(chunks.size() - 1));
+			}
+
+			@Override
+			protected void done() {
+				try {
+					camperRoster = this.get();
+					bestSchedule = null;
+					displayCamperList();
+				} catch (ExecutionException e) {
+					JOptionPane.showMessageDialog(ScheduleDriver.this,
+							"Error importing roster: " + e.getCause().getMessage());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		worker.execute();
+	}
+
+	/**
+	 * Imports a camper roster from a spreadsheet or form CSV export in the
+	 * background. Valid rows replace the roster; invalid rows are listed in a
+	 * single error report.
+	 *
+	 * @param csvFile the CSV file containing the camper roster to import
+	 */
+	private void importCsvRoster(File csvFile) {
+		CsvRosterImporter importer = new CsvRosterImporter(getClassList());
+		SwingWorker<CsvRosterImporter.Result, Void> worker = new SwingWorker<CsvRosterImporter.Result, Void>() {
+			@Override
+			protected CsvRosterImporter.Result doInBackground() throws IOException {
+				return importer.importRoster(csvFile.toPath());
+			}
+
+			@Override
+			protected void done() {
+				CsvRosterImporter.Result result;
+				try {
+					result = this.get();
+				} catch (ExecutionException e) {
+					JOptionPane.showMessageDialog(ScheduleDriver.this,
+							"Error importing roster: " + e.getCause().getMessage());
+					return;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				camperRoster = result.getCampers();
+				bestSchedule = null;
+				displayCamperList();
+				progressBar.setValue(100);
+				if (!result.getErrors().isEmpty()) {
+					JTextArea report = new JTextArea(result.getErrorReport(), 15, 60);
+					report.setEditable(false);
+					JOptionPane.showMessageDialog(ScheduleDriver.this, new JScrollPane(report),
+							result.getCampers().size() + " campers imported, " + result.getErrors().size()
+									+ " rows skipped",
+							JOptionPane.WARNING_MESSAGE);
+				}
+			}
+		};
+		worker.execute();
 	}
 
 	/**
@@ -374,6 +578,7 @@ public class ScheduleDriver extends JFrame {
 	 * Displays the campers' schedules in the schedule table, sorted by age.
 	 */
 	private void displayCamperSchedules() {
+		this.scheduleTableModel.setRowCount(0);
 		this.camperRoster.sort(new Comparator<Camper>() {
 			@Override
 			public int compare(Camper c1, Camper c2) {
@@ -394,35 +599,45 @@ public class ScheduleDriver extends JFrame {
 
 	/**
 	 * Executes the main scheduling algorithm, generating possible schedules and
-	 * updating the GUI with the best schedule found.
+	 * updating the GUI with the best schedule found. If an identical roster and
+	 * class list were scheduled before, the cached result is shown instead of
+	 * repeating the search. The search is checkpointed as it runs, so a search
+	 * that was interrupted continues where it left off. The search also keeps a
+	 * Pareto archive, and if it finds schedules that trade camper preferences
+	 * against period balance, the user chooses which to display. The cache
+	 * holds the schedule with the best score whichever is chosen. Searches run
+	 * from a fixed seed, so the cache key describes the search that was run.
 	 */
 	public void mainAlgorithm() {
-		ScheduleCreator creator = new ScheduleCreator(camperRoster);
-		ArrayList<Schedule> possibleSchedules = new ArrayList<Schedule>(ScheduleCreator.MAX_SCHEDULE_ATTEMPTS);
-		HashSet<Integer> possibleScheduleValues = new HashSet<Integer>();
-		SwingWorker<Void, Float> worker = new SwingWorker<Void, Float>() {
+		ArrayList<ClassClass> catalog = getClassList();
+		ScheduleSearch search = new ScheduleSearch(catalog, camperRoster, ScheduleCreator.MAX_SCHEDULE_ATTEMPTS,
+				SEARCH_SEED);
+		ScheduleFingerprint fingerprint = search.getFingerprint();
+		ArrayList<Camper> camperOrder = search.getCamperOrder();
+		ScheduleCache cache = new ScheduleCache();
+		CompactSchedule cached = cache.get(fingerprint);
+		if (cached != null) {
+			SwingUtilities.invokeLater(() -> displayBestSchedule(cached.expand(camperOrder, catalog)));
+			return;
+		}
+		search.setCheckpointFile(ScheduleSearch.defaultCheckpointFile(fingerprint));
+		search.setParetoArchive(true);
+		SwingWorker<CompactSchedule, Float> worker = new SwingWorker<CompactSchedule, Float>() {
 			@Override
-			protected Void doInBackground() {
+			protected CompactSchedule doInBackground() {
+				CompactSchedule best = null;
 				try {
-					BigDecimal maxAttempts = new BigDecimal(ScheduleCreator.MAX_SCHEDULE_ATTEMPTS);
-					for (int i = 0; i < maxAttempts.intValue(); i++) {
-						BigDecimal bigI = new BigDecimal(i);
-						float progressValue = bigI.divide(maxAttempts).floatValue();
-						this.publish(progressValue * 100);
-						Schedule possible = creator.run();
-						if (!possibleScheduleValues.contains(possible.getScore())) {
-							possibleSchedules.add(possible);
-						}
-						if (i < maxAttempts.intValue() - 1) {
-							creator.clearCamperScheduleAndFinalChoices();
-							creator.clearEliminatedClasses();
-							creator.shuffleCampers();
-						}
+					if (search.resume()) {
+						System.out.println("Resuming search at attempt " + search.getAttempt());
 					}
+					search.setProgressListener((attempt, maxAttempts, currentBest) -> {
+						this.publish(attempt * 100f / maxAttempts);
+					});
+					best = search.run();
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
-				return null;
+				return best;
 			}
 
 			@Override
@@ -433,29 +648,81 @@ public class ScheduleDriver extends JFrame {
 
 			@Override
 			protected void done() {
-				Collections.sort(possibleSchedules);
-				Schedule best = possibleSchedules.get(0);
-				System.out.println(best);
-				camperRoster.clear();
-				for (Camper camper : best.getCampers()) {
-					camperRoster.add(camper);
-					if (camper.enrolledInSameClassTwice()) {
-						System.out.println(camper.getName());
-					}
+				CompactSchedule best;
+				try {
+					best = this.get();
+				} catch (Exception e) {
+					e.printStackTrace();
+					return;
+				}
+				if (best == null) {
+					return;
+				}
+				try {
+					cache.put(fingerprint, best);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				System.out.println("Best schedule found by attempt " + best.getAttempt() + " of seed " + search.getSeed());
+				displayBestSchedule(chooseSchedule(search.getParetoArchive(), best).expand(camperOrder, catalog));
+				if (SchedulerMetrics.isEnabled()) {
+					System.out.print(SchedulerMetrics.format());
 				}
-				progressBar.setValue(100);
-				Collections.sort(camperRoster);
-				displayCamperSchedules();
 			}
 		};
-		worker.addPropertyChangeListener(evt -> {
-		    if ("state".equals(evt.getPropertyName())) {
-		        System.out.println("SwingWorker State: " + evt.getNewValue());
-		    }
-		});
 		worker.execute();
 	}
 
+	/**
+	 * Lets the user choose between the schedules of a Pareto archive, listed
+	 * by score with their rank sums, balance spreads and worst camper ranks.
+	 *
+	 * @param archive the archive of the search, or null if it kept none
+	 * @param best    the schedule with the best score, chosen by default
+	 * @return the schedule chosen, or the best one if the archive holds no
+	 *         alternative or the user cancels
+	 */
+	private CompactSchedule chooseSchedule(ParetoArchive archive, CompactSchedule best) {
+		if (archive == null || archive.size() < 2) {
+			return best;
+		}
+		int[] order = archive.orderBy(ParetoArchive.Objective.SCORE);
+		String[] choices = new String[order.length];
+		for (int i = 0; i < order.length; i++) {
+			choices[i] = archive.describe(order[i]);
+		}
+		Object choice = JOptionPane.showInputDialog(this,
+				"These schedules trade camper preferences against period balance. Lower is better.",
+				"Choose a schedule", JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+		for (int i = 0; i < choices.length; i++) {
+			if (choices[i].equals(choice)) {
+				return archive.getSchedules().get(order[i]);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Replaces the roster with the campers of the best schedule and displays
+	 * their schedules.
+	 *
+	 * @param best the best schedule found
+	 */
+	private void displayBestSchedule(Schedule best) {
+		this.bestSchedule = best;
+		System.out.println(best);
+		camperRoster.clear();
+		for (Camper camper : best.getCampers()) {
+			camperRoster.add(camper);
+			if (camper.enrolledInSameClassTwice()) {
+				System.out.println(camper.getName());
+			}
+		}
+		progressBar.setValue(100);
+		Collections.sort(camperRoster);
+		displayCamperSchedules();
+	}
+
 	/**
 	 * Checks if one or more inputs in the class rank fields are blank.
 	 *
@@ -501,6 +768,9 @@ public class ScheduleDriver extends JFrame {
 		JButton calculateButton = new JButton("Calculate Schedule");
 		JButton readButton = new JButton("Import Roster");
 		JButton inputClassesButton = new JButton("Input Classes");
+		JButton exportButton = new JButton("Export Schedule");
+		JButton warmStartButton = new JButton("Warm Start");
+		JButton metricsButton = new JButton("Metrics");
 
 		addButton.addActionListener(e -> {
 			if (nameField.getText().isEmpty() || ageField.getText().isEmpty() || swimField.getText().isEmpty()
@@ -529,6 +799,12 @@ public class ScheduleDriver extends JFrame {
 
 		saveButton.addActionListener(e -> saveRoster());
 
+		exportButton.addActionListener(e -> exportSchedule());
+
+		warmStartButton.addActionListener(e -> warmStartSchedule());
+
+		metricsButton.addActionListener(e -> new MetricsView().setVisible(true));
+
 		calculateButton.addActionListener(e -> {
 			Thread thread = new Thread(() -> {
 				if (!camperRoster.isEmpty()) {
@@ -541,7 +817,7 @@ public class ScheduleDriver extends JFrame {
 		readButton.addActionListener(e -> {
 			JFileChooser fileChooser = new JFileChooser(new File("."));
 
-			FileNameExtensionFilter filter = new FileNameExtensionFilter("JSON Files", "json");
+			FileNameExtensionFilter filter = new FileNameExtensionFilter("Roster Files (JSON, CSV)", "json", "csv");
 			fileChooser.setFileFilter(filter);
 
 			int returnVal = fileChooser.showOpenDialog(null);
@@ -561,6 +837,7 @@ public class ScheduleDriver extends JFrame {
 				public void windowClosed(java.awt.event.WindowEvent windowEvent) {
 					try {
 						importClasses();
+						bestSchedule = null;
 						updateClassListInGUI();
 					} catch (IOException e) {
 						JOptionPane.showMessageDialog(ScheduleDriver.this, "Error importing classes.");
@@ -577,6 +854,9 @@ public class ScheduleDriver extends JFrame {
 		this.infoPanel.add(saveButton);
 		this.infoPanel.add(inputClassesButton);
 		this.infoPanel.add(calculateButton);
+		this.infoPanel.add(exportButton);
+		this.infoPanel.add(warmStartButton);
+		this.infoPanel.add(metricsButton);
 
 		this.pack();
 		this.setLocationRelativeTo(null);
@@ -599,6 +879,15 @@ public class ScheduleDriver extends JFrame {
 		int selectedRow = camperTable.getSelectedRow();
 		if (selectedRow != -1) {
 			String selectedTitle = (String) camperTableModel.getValueAt(selectedRow, 0);
+			if (this.scheduleMatchesRoster()) {
+				ScheduleEditor editor = new ScheduleEditor(this.bestSchedule);
+				for (Camper camper : this.bestSchedule.getCampers()) {
+					if (camper.getName().equals(selectedTitle)) {
+						editor.removeCamper(camper);
+					}
+				}
+				displayBestSchedule(editor.getSchedule());
+			}
 			this.camperRoster.removeIf(c -> c.getName().equals(selectedTitle));
 			camperTableModel.removeRow(selectedRow);
 			JOptionPane.showMessageDialog(this, "Camper removed: " + selectedTitle);
@@ -610,9 +899,13 @@ public class ScheduleDriver extends JFrame {
 	/**
 	 * The main method to launch the ScheduleDriver application.
 	 *
-	 * @param args command-line arguments (not used)
+	 * @param args command-line arguments; {@code --metrics} collects engine metrics
+	 *             and logs them to standard output after each search
 	 */
 	public static void main(String[] args) {
+		if (List.of(args).contains("--metrics")) {
+			SchedulerMetrics.setEnabled(true);
+		}
 		try {
 			importClasses();
 		} catch (IOException e) {
@@ -0,0 +1,311 @@
+package com.campclaire.campscheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+
+/**
+ * Edits a finished schedule in place when campers arrive, leave or change their
+ * rankings, without re-running the search. Enrollments are changed through
+ * {@link ClassPeriod#addCamper(Camper)} and
+ * {@link ClassPeriod#removeCamper(Camper)}, followed by a bounded local repair
+ * that moves at most one other camper per affected period, so each edit takes
+ * milliseconds and leaves everyone else's schedule alone.
+ *
+ * Required and double-period enrollments of existing campers are never changed.
+ * Campers added by the editor are not placed in double-period classes.
+ */
+public class ScheduleEditor {
+    private static final int NUMBER_PERIODS = 3;
+
+    private final ArrayList<Camper> campers;
+    private final ClassSlot[] classSlots;
+    private final HashSet<ClassClass> eliminatedClasses;
+    private final ArrayList<ClassClass> catalog;
+    private final ArrayList<Camper> changedCampers;
+
+    /**
+     * Constructs an editor over a schedule. The schedule's class periods and
+     * campers are modified by the edits.
+     *
+     * @param schedule the schedule to edit
+     */
+    public ScheduleEditor(Schedule schedule) {
+        this.campers = schedule.getCampers();
+        this.classSlots = schedule.getClassSlots();
+        this.eliminatedClasses = schedule.getEliminatedClasses();
+        this.catalog = schedule.getCatalog();
+        this.changedCampers = new ArrayList<Camper>();
+    }
+
+    /**
+     * Returns the edited schedule, scored afresh.
+     *
+     * @return the schedule
+     */
+    public Schedule getSchedule() {
+        return new Schedule(this.campers, this.classSlots, this.eliminatedClasses, this.catalog);
+    }
+
+    /**
+     * Returns the other campers whose schedule changed in the last edit.
+     *
+     * @return a copy of the changed campers
+     */
+    public ArrayList<Camper> getChangedCampers() {
+        return new ArrayList<Camper>(this.changedCampers);
+    }
+
+    /**
+     * Adds a camper to the schedule. A camper who requires swim lessons is put in
+     * the least full period of a required class; every other period gets the
+     * camper's best ranked class with room, moving one camper out of a full class
+     * if that costs less than settling for a worse class.
+     *
+     * @param camper the camper to add
+     */
+    public void addCamper(Camper camper) {
+        this.changedCampers.clear();
+        camper.clearScheduleAndFinalChoices();
+        this.campers.add(camper);
+        this.fill(camper);
+    }
+
+    /**
+     * Removes a camper from the schedule. Each seat they free in a class is offered
+     * to the camper in the same period who would gain the most from taking it.
+     *
+     * @param camper the camper to remove
+     * @return true if the camper was in the schedule
+     */
+    public boolean removeCamper(Camper camper) {
+        this.changedCampers.clear();
+        if (!this.campers.removeIf(c -> c == camper)) {
+            return false;
+        }
+        for (ClassPeriod period : this.periodsOf(camper)) {
+            period.removeCamper(camper);
+            this.backfill(period);
+        }
+        return true;
+    }
+
+    /**
+     * Changes a camper's rankings and re-places them. Their required and
+     * double-period classes are kept; their other classes are given up and
+     * re-chosen under the new rankings, after which any seat they no longer use is
+     * back-filled.
+     *
+     * @param camper   the camper whose rankings changed
+     * @param rankings the classes in the camper's new order of preference
+     */
+    public void changeRankings(Camper camper, ClassClass[] rankings) {
+        this.changedCampers.clear();
+        for (int rank = 1; rank <= rankings.length; rank++) {
+            camper.addClassChoice(rankings[rank - 1], rank);
+        }
+        ArrayList<ClassPeriod> released = new ArrayList<ClassPeriod>();
+        for (ClassPeriod period : this.periodsOf(camper)) {
+            if (!isFixed(period.getClass_())) {
+                period.removeCamper(camper);
+                released.add(period);
+            }
+        }
+        this.fill(camper);
+        for (ClassPeriod period : released) {
+            if (!period.camperEnrolled(camper)) {
+                this.backfill(period);
+            }
+        }
+    }
+
+    /**
+     * Enrolls a camper in every period they have no class in.
+     *
+     * @param camper the camper to enroll
+     */
+    private void fill(Camper camper) {
+        if (camper.requiresSwimLessons() && !this.hasRequiredClass(camper)) {
+            ClassPeriod leastFull = null;
+            for (ClassSlot slot : this.classSlots) {
+                for (ClassPeriod period : slot.getSlots()) {
+                    if (period.getClass_().isRequired() && camper.canEnrollInClassPeriod(period)
+                            && (leastFull == null || period.getCapacity() < leastFull.getCapacity())) {
+                        leastFull = period;
+                    }
+                }
+            }
+            if (leastFull != null) {
+                leastFull.addCamperOverride(camper);
+            }
+        }
+        for (int p = 1; p <= NUMBER_PERIODS; p++) {
+            if (camper.classEnrolled(p) == null) {
+                this.fillPeriod(camper, p);
+            }
+        }
+    }
+
+    /**
+     * Enrolls a camper in a class during a period. The best ranked class with room
+     * is taken, unless moving one camper out of a full class the camper ranks
+     * higher into another class with room costs less. If every class is full and
+     * no one can be moved, the camper is enrolled over capacity in their best
+     * ranked class, as the engine does.
+     *
+     * @param camper the camper to enroll
+     * @param p      the period, from 1 to 3
+     */
+    private void fillPeriod(Camper camper, int p) {
+        ArrayList<ClassPeriod> candidates = new ArrayList<ClassPeriod>();
+        for (ClassPeriod period : this.classSlots[p - 1].getSlots()) {
+            if (this.canMoveInto(camper, period)) {
+                candidates.add(period);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        candidates.sort(Comparator.comparingInt(period -> camper.getRankOfChoice(period.getClass_())));
+
+        ClassPeriod open = null;
+        for (ClassPeriod period : candidates) {
+            if (period.open()) {
+                open = period;
+                break;
+            }
+        }
+        int bestCost = open == null ? Integer.MAX_VALUE : camper.getRankOfChoice(open.getClass_());
+        ClassPeriod bestFull = null;
+        Camper bestMoved = null;
+        ClassPeriod bestDestination = null;
+        for (ClassPeriod full : candidates) {
+            if (full.open()) {
+                continue;
+            }
+            int rank = camper.getRankOfChoice(full.getClass_());
+            if (rank >= bestCost) {
+                break;
+            }
+            for (Camper other : full.getRoster()) {
+                int otherRank = other.getRankOfChoice(full.getClass_());
+                for (ClassPeriod destination : this.classSlots[p - 1].getSlots()) {
+                    if (destination == full || !destination.open() || !this.canMoveInto(other, destination)) {
+                        continue;
+                    }
+                    int cost = rank + other.getRankOfChoice(destination.getClass_()) - otherRank;
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestFull = full;
+                        bestMoved = other;
+                        bestDestination = destination;
+                    }
+                }
+            }
+        }
+        if (bestFull != null) {
+            bestFull.removeCamper(bestMoved);
+            bestDestination.addCamper(bestMoved);
+            bestFull.addCamper(camper);
+            this.changedCampers.add(bestMoved);
+        } else if (open != null) {
+            open.addCamper(camper);
+        } else {
+            candidates.get(0).addCamperOverride(camper);
+        }
+    }
+
+    /**
+     * Offers a freed seat to the camper in the same period who ranks the class
+     * highest above the class they have, moving at most one camper.
+     *
+     * @param freed the class period with a free seat
+     */
+    private void backfill(ClassPeriod freed) {
+        if (isFixed(freed.getClass_()) || !freed.open()) {
+            return;
+        }
+        int bestGain = 0;
+        Camper best = null;
+        ClassPeriod bestSource = null;
+        for (ClassPeriod source : this.classSlots[freed.getPeriod() - 1].getSlots()) {
+            if (source == freed || isFixed(source.getClass_())) {
+                continue;
+            }
+            for (Camper other : source.getRoster()) {
+                if (!other.canTakeClass(freed.getClass_()) || other.isEnrolled(freed.getClass_())) {
+                    continue;
+                }
+                int gain = other.getRankOfChoice(source.getClass_()) - other.getRankOfChoice(freed.getClass_());
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    best = other;
+                    bestSource = source;
+                }
+            }
+        }
+        if (best != null) {
+            bestSource.removeCamper(best);
+            freed.addCamper(best);
+            this.changedCampers.add(best);
+        }
+    }
+
+    /**
+     * Checks whether a camper could be moved into a class period, ignoring
+     * capacity: the class is neither required nor double-period, the camper can
+     * take it and is not taking it already.
+     *
+     * @param camper the camper
+     * @param period the class period
+     * @return true if the camper could take the class period
+     */
+    private boolean canMoveInto(Camper camper, ClassPeriod period) {
+        ClassClass class_ = period.getClass_();
+        return !isFixed(class_) && camper.canTakeClass(class_) && !camper.isEnrolled(class_);
+    }
+
+    /**
+     * Checks whether a camper is enrolled in a required class.
+     *
+     * @param camper the camper
+     * @return true if the camper has a required class
+     */
+    private boolean hasRequiredClass(Camper camper) {
+        for (ClassPeriod period : camper.getSchedule()) {
+            if (period.getClass_().isRequired()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the class periods a camper is enrolled in, read from the period
+     * rosters.
+     *
+     * @param camper the camper
+     * @return the camper's class periods
+     */
+    private ArrayList<ClassPeriod> periodsOf(Camper camper) {
+        ArrayList<ClassPeriod> out = new ArrayList<ClassPeriod>(NUMBER_PERIODS);
+        for (ClassSlot slot : this.classSlots) {
+            for (ClassPeriod period : slot.getSlots()) {
+                if (period.camperEnrolled(camper)) {
+                    out.add(period);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Checks whether enrollments in a class are left alone by the editor.
+     *
+     * @param class_ the class
+     * @return true if the class is required or double-period
+     */
+    private static boolean isFixed(ClassClass class_) {
+        return class_.isRequired() || class_.isDoublePeriod();
+    }
+}
@@ -0,0 +1,439 @@
+package com.campclaire.campscheduler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Exports a {@link Schedule} as CSV, JSON or printable HTML. Three views are
+ * available: each camper's classes for periods 1 to 3, the roster of each class
+ * period, and a summary of each period's class slot.
+ *
+ * Rows are written to a buffered writer as they are produced, so the size of
+ * the output never has to fit in memory.
+ */
+public class ScheduleExporter {
+    private static final int NUMBER_PERIODS = 3;
+
+    /**
+     * The output formats supported by the exporter.
+     */
+    public enum Format {
+        CSV, JSON, HTML;
+
+        /**
+         * Returns the file extension for the format.
+         *
+         * @return the lower-case file extension
+         */
+        public String getExtension() {
+            return this.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * The views of a schedule the exporter can write.
+     */
+    public enum View {
+        /** One row per camper with their class in each period. */
+        CAMPERS("campers", "Camper Schedules"),
+        /** One roster per class period. */
+        CLASS_ROSTERS("class-rosters", "Class Rosters"),
+        /** One summary per period. */
+        PERIOD_SUMMARY("period-summary", "Period Summary");
+
+        private final String fileName;
+        private final String title;
+
+        /**
+         * Constructs a view.
+         *
+         * @param fileName the base file name used when exporting every view
+         * @param title    the human-readable title of the view
+         */
+        View(String fileName, String title) {
+            this.fileName = fileName;
+            this.title = title;
+        }
+
+        /**
+         * Returns the base file name used when exporting every view.
+         *
+         * @return the base file name
+         */
+        public String getFileName() {
+            return this.fileName;
+        }
+
+        /**
+         * Returns the human-readable title of the view.
+         *
+         * @return the title
+         */
+        public String getTitle() {
+            return this.title;
+        }
+    }
+
+    private final ArrayList<Camper> campers;
+    private final ArrayList<ArrayList<ClassPeriod>> periods;
+    private final IdentityHashMap<Camper, ClassClass[]> camperClasses;
+
+    /**
+     * Constructs an exporter for a schedule. Enrollments are read from the class
+     * period rosters of the schedule.
+     *
+     * @param schedule the schedule to export
+     */
+    public ScheduleExporter(Schedule schedule) {
+        this.campers = schedule.getCampers();
+        this.periods = new ArrayList<ArrayList<ClassPeriod>>(NUMBER_PERIODS);
+        this.camperClasses = new IdentityHashMap<Camper, ClassClass[]>(this.campers.size() * 2);
+        for (ClassSlot slot : schedule.getClassSlots()) {
+            ArrayList<ClassPeriod> offered = new ArrayList<ClassPeriod>(slot.getSlots());
+            offered.sort(Comparator.comparing(ClassPeriod::getTitle));
+            this.periods.add(offered);
+            for (ClassPeriod period : offered) {
+                for (Camper camper : period.getRoster()) {
+                    this.camperClasses.computeIfAbsent(camper, c -> new ClassClass[NUMBER_PERIODS])[period
+                            .getPeriod() - 1] = period.getClass_();
+                }
+            }
+        }
+    }
+
+    /**
+     * Exports every view to a directory, one file per view named after the view,
+     * e.g. {@code campers.csv}.
+     *
+     * @param directory the directory to write to
+     * @param format    the output format
+     * @throws IOException if a file cannot be written
+     */
+    public void exportAll(Path directory, Format format) throws IOException {
+        Files.createDirectories(directory);
+        for (View view : View.values()) {
+            this.export(directory.resolve(view.getFileName() + "." + format.getExtension()), format, view);
+        }
+    }
+
+    /**
+     * Exports a view to a file.
+     *
+     * @param file   the file to write
+     * @param format the output format
+     * @param view   the view to export
+     * @throws IOException if the file cannot be written
+     */
+    public void export(Path file, Format format, View view) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            this.export(out, format, view);
+        }
+    }
+
+    /**
+     * Exports a view to a writer. The writer is flushed but not closed.
+     *
+     * @param out    the writer to write to
+     * @param format the output format
+     * @param view   the view to export
+     * @throws IOException if the view cannot be written
+     */
+    public void export(Writer out, Format format, View view) throws IOException {
+        switch (format) {
+            case CSV:
+                this.writeCsv(out, view);
+                break;
+            case JSON:
+                this.writeJson(out, view);
+                break;
+            case HTML:
+                this.writeHtml(out, view);
+                break;
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes a view as CSV.
+     *
+     * @param out  the writer to write to
+     * @param view the view to write
+     * @throws IOException if the view cannot be written
+     */
+    private void writeCsv(Writer out, View view) throws IOException {
+        switch (view) {
+            case CAMPERS:
+                out.write("Name,Age,Period 1,Period 2,Period 3\n");
+                for (Camper camper : this.campers) {
+                    ClassClass[] classes = this.classesOf(camper);
+                    writeCsvField(out, camper.getName());
+                    out.write(',');
+                    out.write(Integer.toString(camper.getAge()));
+                    for (ClassClass class_ : classes) {
+                        out.write(',');
+                        writeCsvField(out, class_ == null ? "" : class_.getTitle());
+                    }
+                    out.write('\n');
+                }
+                break;
+            case CLASS_ROSTERS:
+                out.write("Period,Class,Name,Age\n");
+                for (ArrayList<ClassPeriod> offered : this.periods) {
+                    for (ClassPeriod period : offered) {
+                        for (Camper camper : period.getRoster()) {
+                            out.write(Integer.toString(period.getPeriod()));
+                            out.write(',');
+                            writeCsvField(out, period.getTitle());
+                            out.write(',');
+                            writeCsvField(out, camper.getName());
+                            out.write(',');
+                            out.write(Integer.toString(camper.getAge()));
+                            out.write('\n');
+                        }
+                    }
+                }
+                break;
+            case PERIOD_SUMMARY:
+                out.write("Period,Class,Enrolled,Single Period Cutoff\n");
+                for (ArrayList<ClassPeriod> offered : this.periods) {
+                    for (ClassPeriod period : offered) {
+                        out.write(Integer.toString(period.getPeriod()));
+                        out.write(',');
+                        writeCsvField(out, period.getTitle());
+                        out.write(',');
+                        out.write(Integer.toString(period.getCapacity()));
+                        out.write(',');
+                        out.write(Integer.toString(period.getClass_().getSinglePeriodCutoff()));
+                        out.write('\n');
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Writes a view as JSON.
+     *
+     * @param out  the writer to write to
+     * @param view the view to write
+     * @throws IOException if the view cannot be written
+     */
+    private void writeJson(Writer out, View view) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartArray();
+        switch (view) {
+            case CAMPERS:
+                for (Camper camper : this.campers) {
+                    generator.writeStartObject();
+                    generator.writeStringField("name", camper.getName());
+                    generator.writeNumberField("age", camper.getAge());
+                    ClassClass[] classes = this.classesOf(camper);
+                    for (int i = 0; i < NUMBER_PERIODS; i++) {
+                        generator.writeStringField("period" + (i + 1),
+                                classes[i] == null ? null : classes[i].getTitle());
+                    }
+                    generator.writeEndObject();
+                }
+                break;
+            case CLASS_ROSTERS:
+                for (ArrayList<ClassPeriod> offered : this.periods) {
+                    for (ClassPeriod period : offered) {
+                        generator.writeStartObject();
+                        generator.writeNumberField("period", period.getPeriod());
+                        generator.writeStringField("class", period.getTitle());
+                        generator.writeArrayFieldStart("campers");
+                        for (Camper camper : period.getRoster()) {
+                            generator.writeStartObject();
+                            generator.writeStringField("name", camper.getName());
+                            generator.writeNumberField("age", camper.getAge());
+                            generator.writeEndObject();
+                        }
+                        generator.writeEndArray();
+                        generator.writeEndObject();
+                    }
+                }
+                break;
+            case PERIOD_SUMMARY:
+                for (int i = 0; i < this.periods.size(); i++) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("period", i + 1);
+                    generator.writeNumberField("enrolled", this.enrolledIn(i));
+                    generator.writeArrayFieldStart("classes");
+                    for (ClassPeriod period : this.periods.get(i)) {
+                        generator.writeStartObject();
+                        generator.writeStringField("class", period.getTitle());
+                        generator.writeNumberField("enrolled", period.getCapacity());
+                        generator.writeNumberField("singlePeriodCutoff",
+                                period.getClass_().getSinglePeriodCutoff());
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                }
+                break;
+        }
+        generator.writeEndArray();
+        generator.close();
+    }
+
+    /**
+     * Writes a view as a printable HTML document.
+     *
+     * @param out  the writer to write to
+     * @param view the view to write
+     * @throws IOException if the view cannot be written
+     */
+    private void writeHtml(Writer out, View view) throws IOException {
+        out.write("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>");
+        out.write(view.getTitle());
+        out.write("</title>\n<style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:1em;"
+                + "page-break-inside:avoid}th,td{border:1px solid #999;padding:2px 6px;text-align:left}"
+                + "@media print{h2{page-break-before:always}h2:first-of-type{page-break-before:auto}}</style>"
+                + "</head><body>\n<h1>");
+        out.write(view.getTitle());
+        out.write("</h1>\n");
+        switch (view) {
+            case CAMPERS:
+                out.write("<table><tr><th>Name</th><th>Age</th><th>Period 1</th><th>Period 2</th>"
+                        + "<th>Period 3</th></tr>\n");
+                for (Camper camper : this.campers) {
+                    out.write("<tr><td>");
+                    writeHtmlText(out, camper.getName());
+                    out.write("</td><td>");
+                    out.write(Integer.toString(camper.getAge()));
+                    for (ClassClass class_ : this.classesOf(camper)) {
+                        out.write("</td><td>");
+                        writeHtmlText(out, class_ == null ? "" : class_.getTitle());
+                    }
+                    out.write("</td></tr>\n");
+                }
+                out.write("</table>\n");
+                break;
+            case CLASS_ROSTERS:
+                for (ArrayList<ClassPeriod> offered : this.periods) {
+                    for (ClassPeriod period : offered) {
+                        out.write("<h2>");
+                        writeHtmlText(out, period.getTitle());
+                        out.write(" &mdash; Period ");
+                        out.write(Integer.toString(period.getPeriod()));
+                        out.write("</h2>\n<table><tr><th>Name</th><th>Age</th></tr>\n");
+                        for (Camper camper : period.getRoster()) {
+                            out.write("<tr><td>");
+                            writeHtmlText(out, camper.getName());
+                            out.write("</td><td>");
+                            out.write(Integer.toString(camper.getAge()));
+                            out.write("</td></tr>\n");
+                        }
+                        out.write("</table>\n");
+                    }
+                }
+                break;
+            case PERIOD_SUMMARY:
+                for (int i = 0; i < this.periods.size(); i++) {
+                    out.write("<h2>Period ");
+                    out.write(Integer.toString(i + 1));
+                    out.write(" (");
+                    out.write(Integer.toString(this.enrolledIn(i)));
+                    out.write(" enrolled)</h2>\n<table><tr><th>Class</th><th>Enrolled</th>"
+                            + "<th>Single Period Cutoff</th></tr>\n");
+                    for (ClassPeriod period : this.periods.get(i)) {
+                        out.write("<tr><td>");
+                        writeHtmlText(out, period.getTitle());
+                        out.write("</td><td>");
+                        out.write(Integer.toString(period.getCapacity()));
+                        out.write("</td><td>");
+                        out.write(Integer.toString(period.getClass_().getSinglePeriodCutoff()));
+                        out.write("</td></tr>\n");
+                    }
+                    out.write("</table>\n");
+                }
+                break;
+        }
+        out.write("</body></html>\n");
+    }
+
+    /**
+     * Returns the class a camper attends in each period.
+     *
+     * @param camper the camper
+     * @return the classes for periods 1 to 3, null where the camper has none
+     */
+    private ClassClass[] classesOf(Camper camper) {
+        ClassClass[] classes = this.camperClasses.get(camper);
+        return classes == null ? new ClassClass[NUMBER_PERIODS] : classes;
+    }
+
+    /**
+     * Returns the number of campers enrolled in a period.
+     *
+     * @param periodIndex the zero-based period index
+     * @return the number of campers enrolled
+     */
+    private int enrolledIn(int periodIndex) {
+        int out = 0;
+        for (ClassPeriod period : this.periods.get(periodIndex)) {
+            out += period.getCapacity();
+        }
+        return out;
+    }
+
+    /**
+     * Writes a CSV field, quoting it if it contains a comma, quote or line break.
+     *
+     * @param out   the writer to write to
+     * @param value the field value
+     * @throws IOException if the field cannot be written
+     */
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            out.write(value);
+        } else {
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    /**
+     * Writes text with HTML special characters escaped.
+     *
+     * @param out  the writer to write to
+     * @param text the text to write
+     * @throws IOException if the text cannot be written
+     */
+    private static void writeHtmlText(Writer out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '"':
+                    out.write("&quot;");
+                    break;
+                default:
+                    out.write(c);
+            }
+        }
+    }
+}
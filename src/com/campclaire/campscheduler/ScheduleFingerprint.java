@@ -0,0 +1,173 @@
+package com.campclaire.campscheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Computes a content fingerprint over the normalised inputs of a scheduling
+ * run: the class catalog, every camper's rankings, age and swim level, and the
+ * search parameters. Two runs with the same fingerprint are guaranteed to search
+ * the same problem, so the result of one can be reused for the other.
+ *
+ * Campers are normalised into a canonical order (by age, swim level and
+ * rankings) so that re-sorting the roster in the GUI does not change the
+ * fingerprint. The same canonical order is used to index campers in a
+ * {@link CompactSchedule}.
+ */
+public class ScheduleFingerprint {
+    /** Bumped whenever the engine changes in a way that invalidates old results. */
+    public static final int ENGINE_VERSION = 1;
+
+    private final String key;
+    private final ArrayList<Camper> canonicalOrder;
+
+    /**
+     * Computes the fingerprint of the specified inputs.
+     *
+     * @param catalog  the class catalog, in class id order
+     * @param roster   the campers to schedule, in any order
+     * @param seed     the search seed
+     * @param attempts the number of schedule attempts the search will make
+     */
+    public ScheduleFingerprint(List<ClassClass> catalog, List<Camper> roster, long seed, int attempts) {
+        this.canonicalOrder = canonicalOrder(roster);
+        MessageDigest digest = newDigest();
+        StringBuffer buff = new StringBuffer();
+        buff.append("engine=").append(ENGINE_VERSION).append(";seed=").append(seed).append(";attempts=")
+                .append(attempts).append('\n');
+        for (ClassClass class_ : catalog) {
+            appendClass(buff, class_);
+            digest.update(buff.toString().getBytes(StandardCharsets.UTF_8));
+            buff.setLength(0);
+        }
+        for (Camper camper : this.canonicalOrder) {
+            appendCamper(buff, camper);
+            digest.update(buff.toString().getBytes(StandardCharsets.UTF_8));
+            buff.setLength(0);
+        }
+        this.key = toHex(digest.digest());
+    }
+
+    /**
+     * Returns the fingerprint as a lowercase hexadecimal string, suitable for use
+     * as a file name.
+     *
+     * @return the fingerprint key
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Returns the campers in the canonical order used by the fingerprint.
+     *
+     * @return a copy of the canonically ordered roster
+     */
+    public ArrayList<Camper> getCanonicalOrder() {
+        return new ArrayList<Camper>(this.canonicalOrder);
+    }
+
+    /**
+     * Returns the fingerprint key.
+     *
+     * @return the fingerprint key
+     */
+    @Override
+    public String toString() {
+        return this.key;
+    }
+
+    /**
+     * Sorts a copy of the roster into the canonical order: by age, then swim
+     * level, then rankings, with the name only used to break ties between
+     * otherwise identical campers.
+     *
+     * @param roster the roster to sort
+     * @return the canonically ordered roster
+     */
+    static ArrayList<Camper> canonicalOrder(List<Camper> roster) {
+        ArrayList<Camper> out = new ArrayList<Camper>(roster);
+        out.sort(Comparator.comparingInt(Camper::getAge).thenComparingInt(Camper::getSwimLevel)
+                .thenComparing(ScheduleFingerprint::rankingsString).thenComparing(Camper::getName));
+        return out;
+    }
+
+    /**
+     * Returns the camper's rankings as a single string of class titles in rank
+     * order.
+     *
+     * @param camper the camper
+     * @return the rankings string
+     */
+    private static String rankingsString(Camper camper) {
+        StringBuffer buff = new StringBuffer();
+        for (ClassClass class_ : camper.getTotalClassChoices()) {
+            buff.append(class_ == null ? "" : class_.getTitle()).append('\u0000');
+        }
+        return buff.toString();
+    }
+
+    /**
+     * Appends the normalised fields of a class to the buffer.
+     *
+     * @param buff   the buffer to append to
+     * @param class_ the class
+     */
+    private static void appendClass(StringBuffer buff, ClassClass class_) {
+        int[] restrictedPeriods = class_.getRestrictedPeriods() == null ? new int[0]
+                : class_.getRestrictedPeriods().clone();
+        Arrays.sort(restrictedPeriods);
+        ArrayList<String> concurrent = class_.getRestrictedConcurrentClasses();
+        concurrent.sort(null);
+        buff.append("class|").append(class_.getTitle()).append('|').append(Arrays.toString(restrictedPeriods))
+                .append('|').append(concurrent).append('|').append(class_.isDoublePeriod()).append('|')
+                .append(class_.isRequired()).append('|').append(class_.is10Plus()).append('|')
+                .append(class_.mustBeConsecutive()).append('|').append(class_.requiresSwimLevel()).append('|')
+                .append(class_.getSinglePeriodCutoff()).append('\n');
+    }
+
+    /**
+     * Appends the normalised fields of a camper to the buffer. The name is not
+     * part of the fingerprint.
+     *
+     * @param buff   the buffer to append to
+     * @param camper the camper
+     */
+    private static void appendCamper(StringBuffer buff, Camper camper) {
+        buff.append("camper|").append(camper.getAge()).append('|').append(camper.getSwimLevel()).append('|')
+                .append(rankingsString(camper)).append('\n');
+    }
+
+    /**
+     * Creates the SHA-256 digest used for fingerprints.
+     *
+     * @return a new message digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Converts bytes to a lowercase hexadecimal string.
+     *
+     * @param bytes the bytes to convert
+     * @return the hexadecimal string
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuffer out = new StringBuffer(bytes.length * 2);
+        for (byte b : bytes) {
+            out.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return out.toString();
+    }
+}
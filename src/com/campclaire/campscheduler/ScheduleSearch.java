@@ -0,0 +1,761 @@
+package com.campclaire.campscheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Runs the randomized schedule search: repeatedly runs the engine over shuffled
+ * camper orders and retains the best schedules found. Attempts are run by a
+ * {@link ColumnarScheduleCreator} over a {@link CamperStore}, which finds the
+ * same schedules as {@link ScheduleCreator} over the same camper order. A
+ * store ranks at most {@link CamperStore#MAX_CLASSES} classes; a search over a
+ * larger catalog compresses profiles instead (see
+ * {@link #setProfileCompression(boolean)}).
+ *
+ * Every attempt shuffles the campers with a {@link SplittableRandom} of its
+ * own, derived from the search's seed and the attempt's index alone, so
+ * threads making attempts never share a generator. Without adaptive ordering
+ * no attempt depends on another, so any attempt, and the schedule it found,
+ * can be reproduced directly from the seed and its index (see
+ * {@link #replayAttempt(int)}). With adaptive ordering an attempt's order also
+ * depends on what was learned from the attempts before it, so reproducing an
+ * attempt means making those again first.
+ *
+ * The search can periodically write a checkpoint holding everything needed to
+ * continue it (the seed, the attempt counter and the retained and archived
+ * schedules with the attempts that found them). A search resumed from a
+ * checkpoint produces exactly the same result as one that was never
+ * interrupted. Checkpoints are written to a temporary file and atomically moved
+ * into place, so a crash while writing never corrupts the last good checkpoint.
+ */
+public class ScheduleSearch {
+    /** The default number of best schedules retained. */
+    public static final int DEFAULT_TOP_K = 10;
+    /** The default number of schedules kept in the Pareto archive. */
+    public static final int DEFAULT_PARETO_CAPACITY = 20;
+    /** The default minimum time between checkpoints. */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 5000;
+    /**
+     * Checkpoints are spaced out to at least this many times the cost of the
+     * last one, keeping checkpointing under 1% of search time.
+     */
+    private static final int CHECKPOINT_COST_FACTOR = 100;
+    private static final int CHECKPOINT_MAGIC = 0x4343434B; // "CCCK"
+    private static final int CHECKPOINT_VERSION = 5;
+
+    private final ArrayList<ClassClass> catalog;
+    private final ScheduleFingerprint fingerprint;
+    private final ArrayList<Camper> camperOrder;
+    private final int maxAttempts;
+    private final int[] order;
+    private ColumnarScheduleCreator columnarCreator;
+    private ScheduleCreator creator;
+    private ProfileScheduleCreator profileCreator;
+    private ArrayList<Camper> profileOrder;
+    private AdaptiveOrdering adaptiveOrdering;
+    private TopKSchedules topSchedules;
+    private ParetoArchive paretoArchive;
+    private long seed;
+    // Published for monitoring threads; written once per attempt
+    private volatile int attempt;
+    private volatile CompactSchedule best;
+    private volatile long retainedBytes;
+    private int idealScore = -1;
+    private Path checkpointFile;
+    private long checkpointIntervalNanos;
+    private long checkpointNanos;
+    private long nextCheckpoint;
+    private ProgressListener progressListener;
+
+    /**
+     * Receives progress reports while a search runs.
+     */
+    public interface ProgressListener {
+        /**
+         * Reports that an attempt has finished.
+         *
+         * @param attempt     the number of attempts finished
+         * @param maxAttempts the total number of attempts
+         * @param best        the best schedule found so far
+         */
+        void progress(int attempt, int maxAttempts, CompactSchedule best);
+    }
+
+    /**
+     * Constructs a search over a roster from a seed drawn at random. The drawn
+     * seed is part of the search's fingerprint, so the search shares no cache
+     * entry or checkpoint with any other.
+     *
+     * @param catalog     the class catalog
+     * @param roster      the campers to schedule
+     * @param maxAttempts the number of schedule attempts to make
+     */
+    public ScheduleSearch(List<ClassClass> catalog, List<Camper> roster, int maxAttempts) {
+        this(catalog, roster, maxAttempts, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructs a reproducible search over a roster. Two searches with the same
+     * inputs and seed make the same attempts and find the same schedules.
+     *
+     * @param catalog     the class catalog
+     * @param roster      the campers to schedule
+     * @param maxAttempts the number of schedule attempts to make
+     * @param seed        the seed of the camper shuffles
+     */
+    public ScheduleSearch(List<ClassClass> catalog, List<Camper> roster, int maxAttempts, long seed) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+        this.fingerprint = new ScheduleFingerprint(this.catalog, roster, seed, maxAttempts);
+        this.camperOrder = this.fingerprint.getCanonicalOrder();
+        this.maxAttempts = maxAttempts;
+        this.order = new int[this.camperOrder.size()];
+        this.topSchedules = new TopKSchedules(DEFAULT_TOP_K);
+        this.seed = seed;
+        this.checkpointIntervalNanos = DEFAULT_CHECKPOINT_INTERVAL_MILLIS * 1000000L;
+    }
+
+    /**
+     * Returns the default checkpoint file for a search, under the scheduler's
+     * cache directory and named after the search's fingerprint.
+     *
+     * @param fingerprint the fingerprint of the search
+     * @return the checkpoint file
+     */
+    public static Path defaultCheckpointFile(ScheduleFingerprint fingerprint) {
+        return ScheduleCache.defaultDirectory().resolve("checkpoints").resolve(fingerprint.getKey() + ".ckpt");
+    }
+
+    /**
+     * Enables checkpointing to the specified file.
+     *
+     * @param checkpointFile the checkpoint file, or null to disable checkpointing
+     */
+    public void setCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Sets the minimum time between checkpoints.
+     *
+     * @param millis the minimum interval in milliseconds
+     */
+    public void setCheckpointInterval(long millis) {
+        this.checkpointIntervalNanos = millis * 1000000L;
+    }
+
+    /**
+     * Schedules identical campers together. Campers with the same rankings, age
+     * group and swim lesson needs are grouped into profiles and each attempt
+     * enrolls counts of campers per profile, so attempts cost time in the number
+     * of distinct profiles rather than campers. The search shuffles profiles
+     * instead of campers, so it finds different schedules than an uncompressed
+     * search with the same seed. Must be set before the search runs or resumes.
+     * A search over a catalog of more than {@link CamperStore#MAX_CLASSES}
+     * classes, or a roster whose rank matrices would exceed 2 GB, is always
+     * compressed, since uncompressed attempts run over a camper store.
+     *
+     * @param compressed true to schedule profiles, false to schedule campers
+     * @see ProfileScheduleCreator
+     */
+    public void setProfileCompression(boolean compressed) {
+        if (compressed) {
+            this.profileCreator = new ProfileScheduleCreator(this.catalog, this.camperOrder);
+            this.creator = this.profileCreator.getCreator();
+            this.profileOrder = this.creator.getCampers();
+        } else {
+            this.profileCreator = null;
+            this.profileOrder = null;
+            this.creator = this.columnarCreator == null ? null : this.columnarCreator.getCreator();
+        }
+    }
+
+    /**
+     * Chooses camper orders from how campers fared in earlier attempts instead
+     * of shuffling them uniformly: campers who got poor ranks, were left with
+     * an empty period, were enrolled over capacity or filled the fullest
+     * period of an unbalanced class are moved earlier in later attempts (see
+     * {@link AdaptiveOrdering}). Orders still depend only on the
+     * seed and the attempts before them, so the search stays reproducible.
+     * Applies to uncompressed searches; a compressed search keeps shuffling
+     * profiles uniformly. Must be set before the search runs or resumes.
+     *
+     * @param adaptive true to adapt camper orders, false to shuffle uniformly
+     */
+    public void setAdaptiveOrdering(boolean adaptive) {
+        this.adaptiveOrdering = adaptive ? new AdaptiveOrdering(this.camperOrder.size()) : null;
+    }
+
+    /**
+     * Checks whether the search adapts camper orders to earlier attempts.
+     *
+     * @return true if adaptive ordering is on
+     */
+    public boolean isAdaptiveOrdering() {
+        return this.adaptiveOrdering != null;
+    }
+
+    /**
+     * Keeps a {@link ParetoArchive} of the schedules no other schedule found
+     * beats on rank sum, balance spread and worst camper rank alike, besides
+     * the schedules with the best scores, so that one trading preferences
+     * against balance can be picked. The engines measure every attempt as
+     * they score it and only archived schedules are snapshotted, so keeping
+     * the archive costs the search little. Must be set before the search runs
+     * or resumes.
+     *
+     * @param archived true to keep a Pareto archive
+     * @see #getParetoArchive()
+     */
+    public void setParetoArchive(boolean archived) {
+        this.paretoArchive = archived ? new ParetoArchive(DEFAULT_PARETO_CAPACITY) : null;
+    }
+
+    /**
+     * Checks whether the search keeps a Pareto archive.
+     *
+     * @return true if the Pareto archive is on
+     */
+    public boolean isParetoArchive() {
+        return this.paretoArchive != null;
+    }
+
+    /**
+     * Returns the schedules archived so far for their trade-offs. Not safe to
+     * read while the search runs.
+     *
+     * @return the archive, or null if the search keeps none
+     * @see #setParetoArchive(boolean)
+     */
+    public ParetoArchive getParetoArchive() {
+        return this.paretoArchive;
+    }
+
+    /**
+     * Sets the camper store uncompressed attempts run over, for instance one kept
+     * off the heap or shared with searches of the same roster on other threads.
+     * Without one, a store on the heap is built when the search first runs or
+     * resumes. Must be set before the search runs or resumes.
+     *
+     * @param store a store built over {@link #getCamperOrder()}
+     * @throws IllegalArgumentException if the store holds other campers
+     */
+    public void setCamperStore(CamperStore store) {
+        if (store.size() != this.camperOrder.size()) {
+            throw new IllegalArgumentException(
+                    "Store holds " + store.size() + " campers, search has " + this.camperOrder.size());
+        }
+        for (int i = 0; i < this.camperOrder.size(); i++) {
+            if (store.getCamper(i) != this.camperOrder.get(i)) {
+                throw new IllegalArgumentException("Store is not built over this search's camper order");
+            }
+        }
+        this.columnarCreator = new ColumnarScheduleCreator(this.catalog, store);
+        if (this.profileCreator == null) {
+            this.creator = this.columnarCreator.getCreator();
+        }
+    }
+
+    /**
+     * Builds the engine of uncompressed attempts, if it has not been built. A
+     * roster too large for a {@link CamperStore} is scheduled with profile
+     * compression instead, which runs the reference {@link ScheduleCreator}.
+     */
+    private void prepareEngine() {
+        if (this.profileCreator == null && this.columnarCreator == null) {
+            if (CamperStore.fits(this.camperOrder, this.catalog)) {
+                this.setCamperStore(new CamperStore(this.camperOrder, this.catalog));
+            } else {
+                this.setProfileCompression(true);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the search schedules profiles rather than campers.
+     *
+     * @return true if profile compression is on
+     */
+    public boolean isProfileCompression() {
+        return this.profileCreator != null;
+    }
+
+    /**
+     * Sets the listener notified after every attempt.
+     *
+     * @param progressListener the listener, or null for none
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns the seed the search derives each attempt's camper shuffle from.
+     * An unseeded search draws one at random.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Returns the fingerprint of the search's inputs.
+     *
+     * @return the fingerprint
+     */
+    public ScheduleFingerprint getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Returns the camper order compact schedules of this search are indexed by.
+     *
+     * @return a copy of the camper order
+     */
+    public ArrayList<Camper> getCamperOrder() {
+        return new ArrayList<Camper>(this.camperOrder);
+    }
+
+    /**
+     * Returns the best schedules found so far.
+     *
+     * @return the retained schedules
+     */
+    public TopKSchedules getTopSchedules() {
+        return this.topSchedules;
+    }
+
+    /**
+     * Returns the number of attempts made so far. Safe to call from any thread
+     * while the search runs.
+     *
+     * @return the number of attempts
+     */
+    public int getAttempt() {
+        return this.attempt;
+    }
+
+    /**
+     * Returns the best schedule found so far. Safe to call from any thread while
+     * the search runs.
+     *
+     * @return the best schedule, or null if no attempt has finished
+     */
+    public CompactSchedule getBest() {
+        return this.best;
+    }
+
+    /**
+     * Returns the estimated heap occupied by the retained schedules. Safe to call
+     * from any thread while the search runs.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getRetainedBytes() {
+        return this.retainedBytes;
+    }
+
+    /**
+     * Returns the ideal score of the roster, a lower bound on what the search can
+     * find.
+     *
+     * @return the ideal score
+     * @see Schedule#idealScore(List, List)
+     */
+    public int getIdealScore() {
+        if (this.idealScore < 0) {
+            this.idealScore = Schedule.idealScore(this.camperOrder, this.catalog);
+        }
+        return this.idealScore;
+    }
+
+    /**
+     * Publishes the best retained schedule and the size of the retained
+     * schedules to monitoring threads.
+     */
+    private void publishTopSchedules() {
+        this.best = this.topSchedules.getBest();
+        this.retainedBytes = this.topSchedules.getRetainedBytes()
+                + (this.paretoArchive == null ? 0 : this.paretoArchive.getRetainedBytes());
+    }
+
+    /**
+     * Returns the total time spent writing checkpoints.
+     *
+     * @return the checkpoint time in nanoseconds
+     */
+    public long getCheckpointNanos() {
+        return this.checkpointNanos;
+    }
+
+    /**
+     * Returns the number of attempts the search makes in all.
+     *
+     * @return the number of attempts
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Checks whether the search has made all its attempts.
+     *
+     * @return true if no attempts remain
+     */
+    public boolean isDone() {
+        return this.attempt >= this.maxAttempts;
+    }
+
+    /**
+     * Runs the remaining attempts of the search, writing checkpoints if enabled.
+     * The checkpoint is deleted once the search completes. The search, sampled
+     * attempts and top schedule changes are recorded as {@link SchedulerEvents}.
+     *
+     * @return the best schedule found
+     * @throws IOException if a checkpoint cannot be written
+     */
+    public CompactSchedule run() throws IOException {
+        return this.runFor(Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs attempts of the search until the specified time has passed or no
+     * attempts remain, so that searches can take turns on shared threads. A
+     * search run in slices makes exactly the attempts of one run straight
+     * through; each slice is recorded as a search event of its own.
+     *
+     * @param nanos the time to run for, or {@link Long#MAX_VALUE} to run to the
+     *              end; at least one attempt is made if any remain
+     * @return the best schedule found so far
+     * @throws IOException if a checkpoint cannot be written
+     * @see #run()
+     */
+    public CompactSchedule runFor(long nanos) throws IOException {
+        this.prepareEngine();
+        long start = System.nanoTime();
+        if (this.nextCheckpoint == 0) {
+            this.nextCheckpoint = start + this.checkpointIntervalNanos;
+        }
+        SchedulerEvents.SearchEvent searchEvent = SchedulerEvents.beginSearch(this.camperOrder.size(),
+                this.catalog.size(), this.attempt);
+        while (this.attempt < this.maxAttempts) {
+            SchedulerEvents.AttemptEvent attemptEvent = SchedulerEvents.beginAttempt();
+            CompactSchedule best = this.topSchedules.getBest();
+            // Schedules are only snapshotted when they would be kept
+            int score = this.makeAttempt(this.attempt, this.adaptiveOrdering);
+            CompactSchedule snapshot = null;
+            boolean retained = false;
+            if (this.topSchedules.admits(score)) {
+                snapshot = this.snapshot(score).withAttempt(this.attempt);
+                retained = this.topSchedules.offer(snapshot);
+            }
+            boolean archived = this.paretoArchive != null && this.archive(score, snapshot);
+            SchedulerEvents.commitAttempt(attemptEvent, this.attempt, this.creator, score,
+                    this.getNumberEliminatedClasses(), retained);
+            this.clearAttempt();
+            if (retained) {
+                SchedulerEvents.improvement(this.attempt, score, best == null ? -1 : best.getScore());
+            }
+            if (retained || archived) {
+                this.publishTopSchedules();
+            }
+            this.attempt++;
+            if (this.progressListener != null) {
+                this.progressListener.progress(this.attempt, this.maxAttempts, this.topSchedules.getBest());
+            }
+            if (this.checkpointFile != null && this.attempt < this.maxAttempts) {
+                long now = System.nanoTime();
+                if (now >= this.nextCheckpoint) {
+                    this.writeCheckpoint();
+                    long cost = System.nanoTime() - now;
+                    this.checkpointNanos += cost;
+                    this.nextCheckpoint = now + Math.max(this.checkpointIntervalNanos, cost * CHECKPOINT_COST_FACTOR);
+                }
+            }
+            if (nanos != Long.MAX_VALUE && System.nanoTime() - start >= nanos) {
+                break;
+            }
+        }
+        CompactSchedule best = this.topSchedules.getBest();
+        SchedulerEvents.commitSearch(searchEvent, this.attempt, best == null ? -1 : best.getScore());
+        if (this.checkpointFile != null && this.isDone()) {
+            Files.deleteIfExists(this.checkpointFile);
+        }
+        return best;
+    }
+
+    /**
+     * Restores the search state from the checkpoint file, if one exists for this
+     * search's inputs.
+     *
+     * @return true if the search was restored from a checkpoint
+     * @throws IOException if the checkpoint exists but cannot be read
+     */
+    public boolean resume() throws IOException {
+        if (this.checkpointFile == null) {
+            return false;
+        }
+        this.prepareEngine();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(this.checkpointFile)))) {
+            if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION
+                    || !in.readUTF().equals(this.fingerprint.getKey())
+                    || in.readBoolean() != this.isProfileCompression()
+                    || in.readBoolean() != this.isAdaptiveOrdering()
+                    || in.readBoolean() != this.isParetoArchive()) {
+                return false;
+            }
+            AdaptiveOrdering adaptiveOrdering = null;
+            if (this.adaptiveOrdering != null) {
+                adaptiveOrdering = AdaptiveOrdering.readFrom(in, this.camperOrder.size());
+            }
+            long seed = in.readLong();
+            int attempt = in.readInt();
+            TopKSchedules topSchedules = new TopKSchedules(in.readInt());
+            int numberSchedules = in.readInt();
+            for (int i = 0; i < numberSchedules; i++) {
+                int foundAt = in.readInt();
+                topSchedules.offer(CompactSchedule.readFrom(in).withAttempt(foundAt));
+            }
+            ParetoArchive paretoArchive = null;
+            if (this.paretoArchive != null) {
+                paretoArchive = new ParetoArchive(in.readInt());
+                int numberArchived = in.readInt();
+                for (int i = 0; i < numberArchived; i++) {
+                    int foundAt = in.readInt();
+                    int rankSum = in.readInt();
+                    int balanceSpread = in.readInt();
+                    int worstCamperRank = in.readInt();
+                    paretoArchive.offer(CompactSchedule.readFrom(in).withAttempt(foundAt), rankSum, balanceSpread,
+                            worstCamperRank);
+                }
+            }
+
+            this.seed = seed;
+            this.attempt = attempt;
+            this.topSchedules = topSchedules;
+            if (adaptiveOrdering != null) {
+                this.adaptiveOrdering = adaptiveOrdering;
+            }
+            if (paretoArchive != null) {
+                this.paretoArchive = paretoArchive;
+            }
+            this.publishTopSchedules();
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the search state to the checkpoint file atomically.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private void writeCheckpoint() throws IOException {
+        Path directory = this.checkpointFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, this.checkpointFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeInt(CHECKPOINT_VERSION);
+                out.writeUTF(this.fingerprint.getKey());
+                out.writeBoolean(this.isProfileCompression());
+                out.writeBoolean(this.isAdaptiveOrdering());
+                out.writeBoolean(this.isParetoArchive());
+                if (this.adaptiveOrdering != null) {
+                    this.adaptiveOrdering.writeTo(out);
+                }
+                out.writeLong(this.seed);
+                out.writeInt(this.attempt);
+                out.writeInt(this.topSchedules.getCapacity());
+                out.writeInt(this.topSchedules.size());
+                for (CompactSchedule schedule : this.topSchedules.getSchedules()) {
+                    out.writeInt(schedule.getAttempt());
+                    schedule.writeTo(out);
+                }
+                if (this.paretoArchive != null) {
+                    ArrayList<CompactSchedule> archived = this.paretoArchive.getSchedules();
+                    out.writeInt(this.paretoArchive.getCapacity());
+                    out.writeInt(archived.size());
+                    for (int i = 0; i < archived.size(); i++) {
+                        out.writeInt(archived.get(i).getAttempt());
+                        out.writeInt(this.paretoArchive.getValue(i, ParetoArchive.Objective.RANK_SUM));
+                        out.writeInt(this.paretoArchive.getValue(i, ParetoArchive.Objective.BALANCE_SPREAD));
+                        out.writeInt(this.paretoArchive.getValue(i, ParetoArchive.Objective.WORST_CAMPER_RANK));
+                        archived.get(i).writeTo(out);
+                    }
+                }
+            }
+            Files.move(temp, this.checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Makes one attempt over its own shuffle of the campers or profiles,
+     * leaving its enrollments in the engine until {@link #clearAttempt()}.
+     *
+     * @param attempt  the attempt index
+     * @param ordering the adaptive ordering to draw the camper order from and
+     *                 teach the outcome, or null to shuffle uniformly
+     * @return the score of the schedule found
+     */
+    private int makeAttempt(int attempt, AdaptiveOrdering ordering) {
+        SplittableRandom random = attemptRandom(this.seed, attempt);
+        if (this.profileCreator != null) {
+            ArrayList<Camper> campers = new ArrayList<Camper>(this.profileOrder);
+            for (int i = campers.size(); i > 1; i--) {
+                Collections.swap(campers, i - 1, random.nextInt(i));
+            }
+            this.creator.setCampers(campers);
+            return this.profileCreator.run();
+        }
+        if (ordering != null) {
+            ordering.arrange(this.order, random);
+            int score = this.columnarCreator.run(this.order);
+            ordering.learn(this.columnarCreator, score);
+            return score;
+        }
+        shuffle(this.order, random);
+        return this.columnarCreator.run(this.order);
+    }
+
+    /**
+     * Fills an order with a uniform shuffle of the camper ids, as each
+     * uncompressed attempt without adaptive ordering draws it.
+     *
+     * @param order  receives the camper ids, in enrollment order
+     * @param random the attempt's generator
+     */
+    static void shuffle(int[] order, SplittableRandom random) {
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length; i > 1; i--) {
+            int j = random.nextInt(i);
+            int swap = order[i - 1];
+            order[i - 1] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the schedule the last attempt found.
+     *
+     * @param score the score of the schedule
+     * @return the snapshot
+     */
+    private CompactSchedule snapshot(int score) {
+        return this.profileCreator != null ? this.profileCreator.toCompactSchedule(score)
+                : this.columnarCreator.toCompactSchedule(score);
+    }
+
+    /**
+     * Offers the schedule the last attempt found to the Pareto archive,
+     * snapshotting it only if it is archived.
+     *
+     * @param score    the score of the schedule
+     * @param snapshot the snapshot already taken of it, or null if none was
+     * @return true if the schedule was archived
+     */
+    private boolean archive(int score, CompactSchedule snapshot) {
+        int rankSum = this.profileCreator != null ? this.profileCreator.getRankSum()
+                : this.columnarCreator.getRankSum();
+        int balanceSpread = this.profileCreator != null ? this.profileCreator.getBalanceSpread()
+                : this.columnarCreator.getBalanceSpread();
+        int worstCamperRank = this.profileCreator != null ? this.profileCreator.getWorstCamperRank()
+                : this.columnarCreator.getWorstCamperRank();
+        if (!this.paretoArchive.admits(rankSum, balanceSpread, worstCamperRank)) {
+            return false;
+        }
+        return this.paretoArchive.offer(snapshot != null ? snapshot : this.snapshot(score).withAttempt(this.attempt),
+                rankSum, balanceSpread, worstCamperRank);
+    }
+
+    /**
+     * Returns the number of classes the last attempt eliminated.
+     *
+     * @return the number of eliminated classes
+     */
+    private int getNumberEliminatedClasses() {
+        return this.profileCreator != null ? this.profileCreator.getNumberEliminatedClasses()
+                : this.columnarCreator.getNumberEliminatedClasses();
+    }
+
+    /**
+     * Clears what the last attempt left on the campers for the next one. The
+     * columnar engine clears its own state as each attempt starts.
+     */
+    private void clearAttempt() {
+        if (this.profileCreator != null) {
+            this.creator.clearCamperScheduleAndFinalChoices();
+            this.creator.clearEliminatedClasses();
+        }
+    }
+
+    /**
+     * Makes one attempt of the search again, for instance to debug how a
+     * retained schedule came about (see {@link CompactSchedule#getAttempt()}).
+     * The attempt draws the same shuffle and finds the same schedule as when
+     * the search made it, and the search's own progress is left untouched.
+     * Without adaptive ordering the attempt is made directly. With adaptive
+     * ordering an attempt's order depends on the priorities learned from the
+     * attempts before it, which are not kept per attempt, so attempts 0 to
+     * {@code attempt - 1} are made again first: replaying attempt N costs as
+     * much as the first N + 1 attempts of the search. Must not be called while
+     * the search runs.
+     *
+     * @param attempt the attempt index, from 0
+     * @return the schedule the attempt finds, whether or not the search kept it
+     * @throws IllegalArgumentException if the search makes no such attempt
+     */
+    public CompactSchedule replayAttempt(int attempt) {
+        if (attempt < 0 || attempt >= this.maxAttempts) {
+            throw new IllegalArgumentException(
+                    "Attempt " + attempt + " is outside the search's " + this.maxAttempts + " attempts");
+        }
+        this.prepareEngine();
+        AdaptiveOrdering ordering = null;
+        if (this.adaptiveOrdering != null && this.profileCreator == null) {
+            ordering = new AdaptiveOrdering(this.camperOrder.size());
+            for (int earlier = 0; earlier < attempt; earlier++) {
+                this.makeAttempt(earlier, ordering);
+            }
+        }
+        CompactSchedule schedule = this.snapshot(this.makeAttempt(attempt, ordering)).withAttempt(attempt);
+        this.clearAttempt();
+        return schedule;
+    }
+
+    /**
+     * Returns the generator an attempt shuffles with. Each attempt's seed is
+     * the search's seed and the attempt index mixed together with the
+     * SplitMix64 finalizer, so attempts get unrelated streams even for
+     * neighbouring indexes.
+     *
+     * @param seed    the search's seed
+     * @param attempt the attempt index
+     * @return a generator of the attempt's own
+     */
+    static SplittableRandom attemptRandom(long seed, int attempt) {
+        long z = seed + (attempt + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+}
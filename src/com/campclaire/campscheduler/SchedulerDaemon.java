@@ -0,0 +1,383 @@
+package com.campclaire.campscheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Runs the scheduler without the GUI as a long-lived service, taking jobs from
+ * a directory and exposing its progress through a {@link MetricsServer}.
+ *
+ * A job is a subdirectory of the jobs directory holding a {@code classes.json}
+ * class list and a roster named {@code roster.json}, {@code roster.csv} or
+ * {@code roster.ccr} (a binary roster carries its own class list). Jobs are run
+ * one at a time in name order as they appear; {@link BatchScheduler} schedules
+ * a directory of jobs side by side instead. The best schedule of a finished job is exported as CSV into
+ * the job's {@code schedule} directory and a {@code done} file is written; a
+ * job that cannot be run gets a {@code failed} file holding the error instead.
+ *
+ * With {@code --pick}, each job's search keeps a {@link ParetoArchive}. The
+ * schedule exported is then the archived one that is best on the objective
+ * picked, and every archived schedule's objectives are listed in the job's
+ * {@code pareto.csv}, to be replayed from its attempt if chosen instead.
+ *
+ * Besides the engine's own metrics, the service exports attempts made, attempts
+ * per second, the best and ideal scores of the running job and the gap between
+ * them, the number of jobs waiting, and the heap held by retained schedules.
+ *
+ * Usage: {@code SchedulerDaemon [--jobs dir] [--port n] [--attempts n]
+ * [--poll ms] [--profiles true] [--adaptive true] [--store heap|direct|mapped]
+ * [--pick score|rank_sum|balance_spread|worst_camper_rank]}.
+ */
+public class SchedulerDaemon implements MetricsServer.Source {
+    /** The default number of attempts per job. */
+    public static final int DEFAULT_ATTEMPTS = 1000;
+    /** The default time between scans of the jobs directory. */
+    public static final long DEFAULT_POLL_MILLIS = 2000;
+    private static final String DONE_MARKER = "done";
+    private static final String FAILED_MARKER = "failed";
+    private static final String[] ROSTER_FILES = { "roster.ccr", "roster.json", "roster.csv" };
+    private static final String STORE_FILE = "campers.tmp";
+    private static final String PARETO_FILE = "pareto.csv";
+
+    private final Path jobsDirectory;
+    private final int attempts;
+    private final long pollMillis;
+    private boolean profileCompression;
+    private boolean adaptiveOrdering;
+    private CamperStore.Storage storage = CamperStore.Storage.HEAP;
+    private ParetoArchive.Objective pick;
+    private volatile ScheduleSearch search;
+    private volatile int queueDepth;
+    private volatile long attemptsCompleted;
+    private volatile long jobsCompleted;
+    private volatile long jobsFailed;
+    private long lastRenderAttempts;
+    private long lastRenderNanos;
+
+    /**
+     * Constructs a service over a jobs directory.
+     *
+     * @param jobsDirectory the directory holding one subdirectory per job
+     * @param attempts      the number of attempts per job
+     * @param pollMillis    the time between scans of the jobs directory
+     */
+    public SchedulerDaemon(Path jobsDirectory, int attempts, long pollMillis) {
+        this.jobsDirectory = jobsDirectory;
+        this.attempts = attempts;
+        this.pollMillis = pollMillis;
+        this.lastRenderNanos = System.nanoTime();
+    }
+
+    /**
+     * Sets whether jobs are searched with profile compression.
+     *
+     * @param profileCompression true to schedule identical campers together
+     * @see ScheduleSearch#setProfileCompression(boolean)
+     */
+    public void setProfileCompression(boolean profileCompression) {
+        this.profileCompression = profileCompression;
+    }
+
+    /**
+     * Sets whether jobs are searched with adaptive camper ordering.
+     *
+     * @param adaptiveOrdering true to adapt camper orders to earlier attempts
+     * @see ScheduleSearch#setAdaptiveOrdering(boolean)
+     */
+    public void setAdaptiveOrdering(boolean adaptiveOrdering) {
+        this.adaptiveOrdering = adaptiveOrdering;
+    }
+
+    /**
+     * Sets where the campers of each job are stored while it is searched. A
+     * mapped store is backed by a scratch file in the job directory, removed
+     * once mapped.
+     *
+     * @param storage where to keep the camper store's rank matrices
+     * @see CamperStore#create(List, List, CamperStore.Storage, Path)
+     */
+    public void setStorage(CamperStore.Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Sets the objective each job's exported schedule is picked by from a
+     * Pareto archive of the job's schedules.
+     *
+     * @param pick the objective, or null to export the best-scoring schedule
+     *             without keeping an archive
+     * @see ScheduleSearch#setParetoArchive(boolean)
+     */
+    public void setPick(ParetoArchive.Objective pick) {
+        this.pick = pick;
+    }
+
+    /**
+     * Runs jobs as they appear, until the thread is interrupted.
+     *
+     * @throws IOException if the jobs directory cannot be read
+     */
+    public void serve() throws IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Path> pending = this.findPendingJobs();
+            this.queueDepth = pending.size();
+            if (pending.isEmpty()) {
+                try {
+                    Thread.sleep(this.pollMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                continue;
+            }
+            Path job = pending.get(0);
+            this.queueDepth = pending.size() - 1;
+            this.runJob(job);
+        }
+    }
+
+    /**
+     * Lists the jobs that have neither finished nor failed, in name order.
+     *
+     * @return the pending job directories
+     * @throws IOException if the jobs directory cannot be read
+     */
+    private List<Path> findPendingJobs() throws IOException {
+        ArrayList<Path> pending = new ArrayList<Path>();
+        try (Stream<Path> entries = Files.list(this.jobsDirectory)) {
+            entries.filter(Files::isDirectory).sorted().forEach(job -> {
+                if (!Files.exists(job.resolve(DONE_MARKER)) && !Files.exists(job.resolve(FAILED_MARKER))) {
+                    pending.add(job);
+                }
+            });
+        }
+        return pending;
+    }
+
+    /**
+     * Runs one job and marks it done or failed.
+     *
+     * @param job the job directory
+     */
+    private void runJob(Path job) {
+        System.out.println("Scheduling " + job.getFileName());
+        long start = System.nanoTime();
+        try {
+            ArrayList<ClassClass> catalog = new ArrayList<ClassClass>();
+            ArrayList<Camper> roster = loadJob(job, catalog);
+            ScheduleSearch search = new ScheduleSearch(catalog, roster, this.attempts);
+            search.setProfileCompression(this.profileCompression);
+            search.setAdaptiveOrdering(this.adaptiveOrdering);
+            search.setParetoArchive(this.pick != null);
+            if (!this.profileCompression && this.storage != CamperStore.Storage.HEAP
+                    && CamperStore.fits(search.getCamperOrder(), catalog)) {
+                search.setCamperStore(CamperStore.create(search.getCamperOrder(), catalog, this.storage,
+                        job.resolve(STORE_FILE)));
+            }
+            search.getIdealScore();
+            search.setProgressListener((attempt, maxAttempts, best) -> this.attemptsCompleted++);
+            this.search = search;
+            CompactSchedule best = search.run();
+            if (this.pick != null) {
+                writeFront(job.resolve(PARETO_FILE), search.getParetoArchive());
+                best = search.getParetoArchive().pick(this.pick);
+            }
+            new ScheduleExporter(best.expand(search.getCamperOrder(), catalog)).exportAll(job.resolve("schedule"),
+                    ScheduleExporter.Format.CSV);
+            // The seed and attempt are enough to replay the attempt that found the schedule
+            Files.write(job.resolve(DONE_MARKER), ("score " + best.getScore() + "\nseed " + search.getSeed()
+                    + "\nattempt " + best.getAttempt() + "\n").getBytes(StandardCharsets.UTF_8));
+            this.jobsCompleted++;
+            System.out.println("Finished " + job.getFileName() + " with score " + best.getScore() + " in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IOException | RuntimeException e) {
+            this.jobsFailed++;
+            System.err.println("Failed " + job.getFileName() + ": " + e);
+            StringWriter trace = new StringWriter();
+            e.printStackTrace(new PrintWriter(trace));
+            try {
+                Files.write(job.resolve(FAILED_MARKER), trace.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException markerError) {
+                System.err.println("Cannot mark " + job.getFileName() + " failed: " + markerError);
+            }
+        }
+    }
+
+    /**
+     * Lists the objectives of the archived schedules as CSV, best score first.
+     *
+     * @param file    the file to write
+     * @param archive the archive
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeFront(Path file, ParetoArchive archive) throws IOException {
+        ArrayList<CompactSchedule> schedules = archive.getSchedules();
+        StringBuffer out = new StringBuffer("attempt,score,rank_sum,balance_spread,worst_camper_rank\n");
+        for (int i : archive.orderBy(ParetoArchive.Objective.SCORE)) {
+            out.append(schedules.get(i).getAttempt());
+            for (ParetoArchive.Objective objective : ParetoArchive.Objective.values()) {
+                out.append(',').append(archive.getValue(i, objective));
+            }
+            out.append('\n');
+        }
+        Files.write(file, out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Loads a job's class list and roster.
+     *
+     * @param job     the job directory
+     * @param catalog receives the class list
+     * @return the campers
+     * @throws IOException if the job is missing a file or a file cannot be read
+     */
+    static ArrayList<Camper> loadJob(Path job, ArrayList<ClassClass> catalog) throws IOException {
+        Path rosterFile = null;
+        for (String name : ROSTER_FILES) {
+            if (Files.exists(job.resolve(name))) {
+                rosterFile = job.resolve(name);
+                break;
+            }
+        }
+        if (rosterFile == null) {
+            throw new IOException("No roster in " + job + ", expected one of " + Arrays.toString(ROSTER_FILES));
+        }
+        if (rosterFile.getFileName().toString().endsWith(".ccr")) {
+            MappedRoster mapped = MappedRoster.open(rosterFile);
+            catalog.addAll(mapped.getCatalog());
+            return mapped.toCampers();
+        }
+        catalog.addAll(BinaryRosterFormat.readCatalog(job.resolve("classes.json").toFile()));
+        if (rosterFile.getFileName().toString().endsWith(".csv")) {
+            CsvRosterImporter.Result result = new CsvRosterImporter(catalog).importRoster(rosterFile);
+            if (!result.getErrors().isEmpty()) {
+                throw new IOException("Roster has errors:\n" + result.getErrorReport());
+            }
+            return result.getCampers();
+        }
+        return new RosterImporter(catalog).importCampers(rosterFile.toFile());
+    }
+
+    /**
+     * Appends the service's own series to the metrics page.
+     *
+     * @param out the page being rendered
+     */
+    @Override
+    public void render(StringBuffer out) {
+        long now = System.nanoTime();
+        long attemptsCompleted = this.attemptsCompleted;
+        double rate = (attemptsCompleted - this.lastRenderAttempts) * 1e9 / Math.max(1, now - this.lastRenderNanos);
+        this.lastRenderAttempts = attemptsCompleted;
+        this.lastRenderNanos = now;
+
+        MetricsServer.header(out, "campscheduler_attempts_total", "counter", "Schedule attempts made");
+        MetricsServer.sample(out, "campscheduler_attempts_total", null, attemptsCompleted);
+        MetricsServer.header(out, "campscheduler_attempts_per_second", "gauge",
+                "Schedule attempts per second since the previous rendering");
+        MetricsServer.sample(out, "campscheduler_attempts_per_second", null, rate);
+        MetricsServer.header(out, "campscheduler_jobs_total", "counter", "Jobs finished, by outcome");
+        MetricsServer.sample(out, "campscheduler_jobs_total", "outcome=\"done\"", this.jobsCompleted);
+        MetricsServer.sample(out, "campscheduler_jobs_total", "outcome=\"failed\"", this.jobsFailed);
+        MetricsServer.header(out, "campscheduler_queue_depth", "gauge", "Jobs waiting to be scheduled");
+        MetricsServer.sample(out, "campscheduler_queue_depth", null, this.queueDepth);
+
+        ScheduleSearch search = this.search;
+        if (search == null) {
+            return;
+        }
+        CompactSchedule best = search.getBest();
+        int ideal = search.getIdealScore();
+        MetricsServer.header(out, "campscheduler_job_attempt", "gauge", "Attempts made on the current job");
+        MetricsServer.sample(out, "campscheduler_job_attempt", null, search.getAttempt());
+        MetricsServer.header(out, "campscheduler_ideal_score", "gauge",
+                "Lower bound on the score of the current job, with every camper in their best choices");
+        MetricsServer.sample(out, "campscheduler_ideal_score", null, ideal);
+        MetricsServer.header(out, "campscheduler_retained_schedule_bytes", "gauge",
+                "Estimated heap held by the current job's top schedules");
+        MetricsServer.sample(out, "campscheduler_retained_schedule_bytes", null, search.getRetainedBytes());
+        if (best != null) {
+            MetricsServer.header(out, "campscheduler_best_score", "gauge", "Best score of the current job");
+            MetricsServer.sample(out, "campscheduler_best_score", null, best.getScore());
+            MetricsServer.header(out, "campscheduler_optimality_gap_ratio", "gauge",
+                    "How far the best score is above the ideal score, as a fraction of the ideal score");
+            MetricsServer.sample(out, "campscheduler_optimality_gap_ratio", null,
+                    ideal <= 0 ? 0 : Math.max(0, best.getScore() - ideal) / (double) ideal);
+        }
+    }
+
+    /**
+     * Starts the service from the command line.
+     *
+     * @param args the command-line options
+     * @throws IOException if the metrics port cannot be bound or the jobs
+     *                     directory cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String jobs = "jobs";
+        int port = MetricsServer.DEFAULT_PORT;
+        int attempts = DEFAULT_ATTEMPTS;
+        long pollMillis = DEFAULT_POLL_MILLIS;
+        boolean profiles = false;
+        boolean adaptive = false;
+        CamperStore.Storage storage = CamperStore.Storage.HEAP;
+        ParetoArchive.Objective pick = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--jobs":
+                    jobs = args[i + 1];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--attempts":
+                    attempts = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--poll":
+                    pollMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--profiles":
+                    profiles = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--adaptive":
+                    adaptive = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--store":
+                    storage = CamperStore.Storage.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                    break;
+                case "--pick":
+                    pick = ParetoArchive.Objective.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        Path jobsDirectory = Paths.get(jobs);
+        if (!new File(jobs).isDirectory()) {
+            System.err.println("Not a directory: " + jobs);
+            System.exit(2);
+        }
+        SchedulerMetrics.setEnabled(true);
+        SchedulerDaemon daemon = new SchedulerDaemon(jobsDirectory, attempts, pollMillis);
+        daemon.setProfileCompression(profiles);
+        daemon.setAdaptiveOrdering(adaptive);
+        daemon.setStorage(storage);
+        daemon.setPick(pick);
+        try (MetricsServer server = new MetricsServer(port, MetricsServer.DEFAULT_RENDER_INTERVAL_MILLIS,
+                List.of(daemon))) {
+            System.out.println("Serving metrics at http://127.0.0.1:" + server.getPort() + "/metrics");
+            daemon.serve();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.campclaire.campscheduler;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the unusual conditions the engine works around. The engine used to
+ * print these to the console or throw exceptions for them. Now each one is
+ * reported here and the engine carries on with a return code: null for "no
+ * such class or period", {@link Camper#NOT_RANKED} for "not ranked".
+ *
+ * Counting is always on and lock-free. Optionally, a random sample of
+ * occurrences is kept as {@link Trace}s naming the camper and class involved.
+ * The newest {@value #TRACE_CAPACITY} traces are kept.
+ */
+public final class SchedulerDiagnostics {
+    /**
+     * The conditions that are counted.
+     */
+    public enum Condition {
+        /** A class had no period to enroll in, once printed as "PROBLEM". */
+        MISSING_CLASS_PERIOD("missingClassPeriod"),
+        /** A class was looked up in rankings that do not include it. */
+        RANK_NOT_FOUND("rankNotFound"),
+        /** A walk down a camper's rankings went past rank 10, once printed as "HMM". */
+        DEEP_RANK_WALK("deepRankWalk"),
+        /** A camper ran out of ranked classes they can take, once printed as "PROBLEMM". */
+        RANKS_EXHAUSTED("ranksExhausted");
+
+        private final String displayName;
+
+        /**
+         * Constructs a condition.
+         *
+         * @param displayName the name the condition is reported under
+         */
+        Condition(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * Returns the name the condition is reported under.
+         *
+         * @return the display name
+         */
+        public String getDisplayName() {
+            return this.displayName;
+        }
+    }
+
+    /**
+     * A sampled occurrence of a condition.
+     */
+    public static class Trace {
+        private final Condition condition;
+        private final String camper;
+        private final String class_;
+        private final String thread;
+        private final long timeMillis;
+
+        /**
+         * Constructs a trace.
+         *
+         * @param condition  the condition
+         * @param camper     the camper's name, or null
+         * @param class_     the class title, or null
+         * @param thread     the thread's name
+         * @param timeMillis the time of the occurrence
+         */
+        Trace(Condition condition, String camper, String class_, String thread, long timeMillis) {
+            this.condition = condition;
+            this.camper = camper;
+            this.class_ = class_;
+            this.thread = thread;
+            this.timeMillis = timeMillis;
+        }
+
+        /**
+         * Returns the condition.
+         *
+         * @return the condition
+         */
+        public Condition getCondition() {
+            return this.condition;
+        }
+
+        /**
+         * Returns the name of the camper involved.
+         *
+         * @return the camper's name, or null if no camper was involved
+         */
+        public String getCamper() {
+            return this.camper;
+        }
+
+        /**
+         * Returns the title of the class involved.
+         *
+         * @return the class title, or null if no class was involved
+         */
+        public String getClass_() {
+            return this.class_;
+        }
+
+        /**
+         * Returns the name of the thread the condition occurred on.
+         *
+         * @return the thread's name
+         */
+        public String getThread() {
+            return this.thread;
+        }
+
+        /**
+         * Returns when the condition occurred.
+         *
+         * @return the time in milliseconds since the epoch
+         */
+        public long getTimeMillis() {
+            return this.timeMillis;
+        }
+
+        /**
+         * Returns a one-line description of the trace.
+         *
+         * @return the description
+         */
+        @Override
+        public String toString() {
+            return this.condition.getDisplayName() + ": camper=" + this.camper + " class=" + this.class_
+                    + " thread=" + this.thread;
+        }
+    }
+
+    /** The number of most recent traces kept. */
+    public static final int TRACE_CAPACITY = 256;
+
+    private static final EnumMap<Condition, LongAdder> COUNTS = new EnumMap<Condition, LongAdder>(Condition.class);
+    private static final AtomicReferenceArray<Trace> TRACES = new AtomicReferenceArray<Trace>(TRACE_CAPACITY);
+    private static final AtomicLong TRACE_CURSOR = new AtomicLong();
+    private static volatile int traceSampleInterval;
+
+    static {
+        for (Condition condition : Condition.values()) {
+            COUNTS.put(condition, new LongAdder());
+        }
+    }
+
+    /**
+     * Prevents instantiation.
+     */
+    private SchedulerDiagnostics() {
+    }
+
+    /**
+     * Reports an occurrence of a condition.
+     *
+     * @param condition the condition
+     * @param camper    the camper involved, or null
+     * @param class_    the class involved, or null
+     */
+    public static void report(Condition condition, Camper camper, ClassClass class_) {
+        COUNTS.get(condition).increment();
+        int interval = traceSampleInterval;
+        if (interval > 0 && (interval == 1 || ThreadLocalRandom.current().nextInt(interval) == 0)) {
+            Trace trace = new Trace(condition, camper == null ? null : camper.getName(),
+                    class_ == null ? null : class_.getTitle(), Thread.currentThread().getName(),
+                    System.currentTimeMillis());
+            TRACES.set((int) (TRACE_CURSOR.getAndIncrement() % TRACE_CAPACITY), trace);
+        }
+    }
+
+    /**
+     * Returns the number of occurrences of a condition since the last reset.
+     *
+     * @param condition the condition
+     * @return the count
+     */
+    public static long getCount(Condition condition) {
+        return COUNTS.get(condition).sum();
+    }
+
+    /**
+     * Sets how often occurrences are traced: one in every {@code interval} on
+     * average, chosen at random. 0 turns tracing off, which is the default.
+     *
+     * @param interval the average number of occurrences per trace, or 0
+     */
+    public static void setTraceSampleInterval(int interval) {
+        traceSampleInterval = Math.max(0, interval);
+    }
+
+    /**
+     * Returns how often occurrences are traced.
+     *
+     * @return the average number of occurrences per trace, or 0 if tracing is off
+     */
+    public static int getTraceSampleInterval() {
+        return traceSampleInterval;
+    }
+
+    /**
+     * Returns the traces kept, oldest first.
+     *
+     * @return a copy of the traces
+     */
+    public static ArrayList<Trace> getTraces() {
+        long end = TRACE_CURSOR.get();
+        ArrayList<Trace> out = new ArrayList<Trace>(TRACE_CAPACITY);
+        for (long i = Math.max(0, end - TRACE_CAPACITY); i < end; i++) {
+            Trace trace = TRACES.get((int) (i % TRACE_CAPACITY));
+            if (trace != null) {
+                out.add(trace);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Clears every count and trace.
+     */
+    public static void reset() {
+        for (LongAdder count : COUNTS.values()) {
+            count.reset();
+        }
+        for (int i = 0; i < TRACE_CAPACITY; i++) {
+            TRACES.set(i, null);
+        }
+        TRACE_CURSOR.set(0);
+    }
+
+    /**
+     * Formats the counts as a plain-text table.
+     *
+     * @return the report
+     */
+    public static String format() {
+        StringBuffer out = new StringBuffer();
+        out.append(String.format(Locale.ROOT, "%-30s %9s%n", "Diagnostic", "Count"));
+        for (Condition condition : Condition.values()) {
+            out.append(String.format(Locale.ROOT, "%-30s %9d%n", condition.getDisplayName(), getCount(condition)));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,264 @@
+package com.campclaire.campscheduler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for scheduling activity, so searches can be lined
+ * up with GC pauses and CPU samples in a recording. All events are in the "Camp
+ * Scheduler" category:
+ *
+ * <ul>
+ * <li>{@code campscheduler.Search}: one schedule search, from first attempt to
+ * last</li>
+ * <li>{@code campscheduler.Phase}: one phase of a schedule attempt, recorded
+ * only when it takes at least 1 ms by default</li>
+ * <li>{@code campscheduler.Attempt}: one schedule attempt in every
+ * {@value #ATTEMPT_SAMPLE_INTERVAL}, plus every attempt that enters the top
+ * schedules, with its score, fallback walks and override enrollments</li>
+ * <li>{@code campscheduler.Improvement}: a schedule entering the top
+ * schedules</li>
+ * </ul>
+ *
+ * When no recording is running, or an event type is disabled, the events cost
+ * a flag check. Thresholds can be changed in a recording's settings as for any
+ * JDK event.
+ */
+public final class SchedulerEvents {
+    /** One attempt in this many is recorded even if it does not improve. */
+    public static final int ATTEMPT_SAMPLE_INTERVAL = 64;
+
+    /**
+     * Prevents instantiation.
+     */
+    private SchedulerEvents() {
+    }
+
+    /**
+     * A schedule search.
+     */
+    @Name("campscheduler.Search")
+    @Label("Schedule Search")
+    @Category("Camp Scheduler")
+    @Description("A search over schedule attempts")
+    @StackTrace(false)
+    public static class SearchEvent extends Event {
+        @Label("Campers")
+        int campers;
+
+        @Label("Classes")
+        int classes;
+
+        @Label("First Attempt")
+        @Description("The attempt the search started or resumed at")
+        int firstAttempt;
+
+        @Label("Attempts")
+        @Description("The attempt count when the search ended")
+        int attempts;
+
+        @Label("Best Score")
+        int bestScore;
+    }
+
+    /**
+     * A phase of a schedule attempt.
+     */
+    @Name("campscheduler.Phase")
+    @Label("Schedule Phase")
+    @Category("Camp Scheduler")
+    @Description("A phase of ScheduleCreator.run")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Campers")
+        int campers;
+    }
+
+    /**
+     * A sampled schedule attempt.
+     */
+    @Name("campscheduler.Attempt")
+    @Label("Schedule Attempt")
+    @Category("Camp Scheduler")
+    @Description("A sampled schedule attempt")
+    @StackTrace(false)
+    public static class AttemptEvent extends Event {
+        @Label("Attempt")
+        int attempt;
+
+        @Label("Score")
+        int score;
+
+        @Label("Fallback Walks")
+        @Description("Times a camper's choice was full and lower ranks were tried")
+        int fallbackWalks;
+
+        @Label("Override Enrollments")
+        @Description("Campers enrolled in a full class because nothing else was open")
+        int overrideEnrollments;
+
+        @Label("Eliminated Classes")
+        int eliminatedClasses;
+    }
+
+    /**
+     * A schedule entering the top schedules of a search.
+     */
+    @Name("campscheduler.Improvement")
+    @Label("Top Schedule Improvement")
+    @Category("Camp Scheduler")
+    @Description("A schedule entered the top schedules of a search")
+    @StackTrace(false)
+    public static class ImprovementEvent extends Event {
+        @Label("Attempt")
+        int attempt;
+
+        @Label("Score")
+        int score;
+
+        @Label("Previous Best")
+        @Description("The best score before this schedule, or -1 if there was none")
+        int previousBest;
+
+        @Label("New Best")
+        boolean newBest;
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @return the event timing the phase
+     */
+    static PhaseEvent beginPhase() {
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a phase and records it if it passes the threshold.
+     *
+     * @param event   the event returned by {@link #beginPhase()}
+     * @param phase   the phase that ended
+     * @param campers the number of campers scheduled
+     */
+    static void commitPhase(PhaseEvent event, SchedulerMetrics.Phase phase, int campers) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase.getDisplayName();
+            event.campers = campers;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing a search.
+     *
+     * @param campers      the number of campers
+     * @param classes      the number of classes
+     * @param firstAttempt the attempt the search starts at
+     * @return the event timing the search
+     */
+    static SearchEvent beginSearch(int campers, int classes, int firstAttempt) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        event.campers = campers;
+        event.classes = classes;
+        event.firstAttempt = firstAttempt;
+        return event;
+    }
+
+    /**
+     * Ends a search and records it.
+     *
+     * @param event     the event returned by {@link #beginSearch(int, int, int)}
+     * @param attempts  the attempt count when the search ended
+     * @param bestScore the best score found, or -1 if none
+     */
+    static void commitSearch(SearchEvent event, int attempts, int bestScore) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.attempts = attempts;
+            event.bestScore = bestScore;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing an attempt.
+     *
+     * @return the event timing the attempt
+     */
+    static AttemptEvent beginAttempt() {
+        AttemptEvent event = new AttemptEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends an attempt and records it if it is sampled or entered the top
+     * schedules.
+     *
+     * @param event    the event returned by {@link #beginAttempt()}
+     * @param attempt  the attempt number
+     * @param creator  the creator that ran the attempt
+     * @param schedule the schedule it produced
+     * @param retained true if the schedule entered the top schedules
+     */
+    static void commitAttempt(AttemptEvent event, int attempt, ScheduleCreator creator, Schedule schedule,
+            boolean retained) {
+        commitAttempt(event, attempt, creator, schedule.getScore(), schedule.getEliminatedClasses().size(),
+                retained);
+    }
+
+    /**
+     * Ends an attempt that was scored without building a {@link Schedule} and
+     * records it if it is sampled or entered the top schedules.
+     *
+     * @param event             the event returned by {@link #beginAttempt()}
+     * @param attempt           the attempt number
+     * @param creator           the creator that laid out the attempt
+     * @param score             the score of the attempt
+     * @param eliminatedClasses the number of classes eliminated
+     * @param retained          true if the schedule entered the top schedules
+     */
+    static void commitAttempt(AttemptEvent event, int attempt, ScheduleCreator creator, int score,
+            int eliminatedClasses, boolean retained) {
+        event.end();
+        if ((retained || attempt % ATTEMPT_SAMPLE_INTERVAL == 0) && event.shouldCommit()) {
+            event.attempt = attempt;
+            event.score = score;
+            event.fallbackWalks = creator.getFallbackWalks();
+            event.overrideEnrollments = creator.getOverrideEnrollments();
+            event.eliminatedClasses = eliminatedClasses;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a schedule entering the top schedules.
+     *
+     * @param attempt      the attempt that produced it
+     * @param score        its score
+     * @param previousBest the best score before it, or -1 if there was none
+     */
+    static void improvement(int attempt, int score, int previousBest) {
+        ImprovementEvent event = new ImprovementEvent();
+        if (event.shouldCommit()) {
+            event.attempt = attempt;
+            event.score = score;
+            event.previousBest = previousBest;
+            event.newBest = previousBest < 0 || score < previousBest;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.campclaire.campscheduler;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timings and counters from the scheduling engine. Each phase of
+ * {@link ScheduleCreator#run()} is timed into a {@link LatencyHistogram}, and
+ * the conditions the engine works around are counted. Everything is shared by
+ * all threads and aggregated without locks. Rarer conditions are always counted
+ * by {@link SchedulerDiagnostics} and included in {@link #format()}.
+ *
+ * Metrics are off until {@link #setEnabled(boolean)} turns them on. While off,
+ * timers do not read the clock and counters are not touched, so the engine
+ * pays for one field read per phase.
+ */
+public final class SchedulerMetrics {
+    /**
+     * The timed phases of a schedule attempt.
+     */
+    public enum Phase {
+        FIND_CAMPER_CHOICES("findCamperChoices"),
+        INITIALIZE_CLASS_COUNT("initializeClassCount"),
+        CALCULATE_NUMBER_PERIODS("calculateNumberPeriods"),
+        INITIALIZE_CLASS_SLOTS("initializeClassSlots"),
+        FILL_CLASS_SLOTS("fillClassSlots"),
+        FIND_ELIMINATED_CLASSES("findEliminatedClasses"),
+        ADD_CAMPERS_TO_ESSENTIAL_CLASSES("addCampersToEssentialClasses"),
+        ADD_CAMPERS_TO_OTHER_CLASSES("addCampersToOtherClasses"),
+        SCORE("score"),
+        RUN("run");
+
+        private final String displayName;
+
+        /**
+         * Constructs a phase.
+         *
+         * @param displayName the name the phase is reported under
+         */
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * Returns the name the phase is reported under.
+         *
+         * @return the display name
+         */
+        public String getDisplayName() {
+            return this.displayName;
+        }
+    }
+
+    /**
+     * The counted engine conditions.
+     */
+    public enum Counter {
+        /** A camper's first choice for a period was full and lower ranks were walked. */
+        FALLBACK_WALKS("fallbackWalks",
+                "Times a camper's first choice for a period was full and lower ranks were walked"),
+        /** A class stepped past during a fallback walk. */
+        FALLBACK_STEPS("fallbackSteps", "Classes stepped past during fallback walks down camper rankings"),
+        /** A camper was enrolled in a full class because nothing else was open. */
+        OVERRIDE_ENROLLMENTS("overrideEnrollments",
+                "Campers enrolled in a full class because no other class was open in the period"),
+        /** A class was eliminated for lack of interest or room. */
+        ELIMINATED_CLASSES("eliminatedClasses", "Classes dropped from an attempt for lack of interest or room");
+
+        private final String displayName;
+        private final String description;
+
+        /**
+         * Constructs a counter.
+         *
+         * @param displayName the name the counter is reported under
+         * @param description what the counter counts, for metric help text
+         */
+        Counter(String displayName, String description) {
+            this.displayName = displayName;
+            this.description = description;
+        }
+
+        /**
+         * Returns the name the counter is reported under.
+         *
+         * @return the display name
+         */
+        public String getDisplayName() {
+            return this.displayName;
+        }
+
+        /**
+         * Returns what the counter counts, in a sentence fragment.
+         *
+         * @return the description
+         */
+        public String getDescription() {
+            return this.description;
+        }
+    }
+
+    private static volatile boolean enabled;
+    private static final EnumMap<Phase, LatencyHistogram> TIMERS = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+    private static final EnumMap<Counter, LongAdder> COUNTERS = new EnumMap<Counter, LongAdder>(Counter.class);
+
+    static {
+        for (Phase phase : Phase.values()) {
+            TIMERS.put(phase, new LatencyHistogram());
+        }
+        for (Counter counter : Counter.values()) {
+            COUNTERS.put(counter, new LongAdder());
+        }
+    }
+
+    /**
+     * Prevents instantiation.
+     */
+    private SchedulerMetrics() {
+    }
+
+    /**
+     * Checks whether metrics are being collected.
+     *
+     * @return true if metrics are on
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns metrics collection on or off. Values already collected are kept.
+     *
+     * @param on true to collect metrics
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Clears every timer and counter.
+     */
+    public static void reset() {
+        for (LatencyHistogram timer : TIMERS.values()) {
+            timer.reset();
+        }
+        for (LongAdder counter : COUNTERS.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @return the start time to pass to {@link #lap(Phase, long)}, or 0 if
+     *         metrics are off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since a start time against a phase and starts the next
+     * phase, so consecutive phases read the clock once each.
+     *
+     * @param phase the phase that just finished
+     * @param start the value returned by {@link #start()} or the previous lap
+     * @return the start time of the next phase, or 0 if the phase was not timed
+     */
+    public static long lap(Phase phase, long start) {
+        if (start == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        TIMERS.get(phase).record(now - start);
+        return now;
+    }
+
+    /**
+     * Counts one occurrence of a condition.
+     *
+     * @param counter the condition
+     */
+    public static void increment(Counter counter) {
+        if (enabled) {
+            COUNTERS.get(counter).increment();
+        }
+    }
+
+    /**
+     * Counts several occurrences of a condition.
+     *
+     * @param counter the condition
+     * @param amount  the number of occurrences
+     */
+    public static void add(Counter counter, long amount) {
+        if (enabled) {
+            COUNTERS.get(counter).add(amount);
+        }
+    }
+
+    /**
+     * Returns the current value of a counter.
+     *
+     * @param counter the condition
+     * @return the number of occurrences since the last reset
+     */
+    public static long getCount(Counter counter) {
+        return COUNTERS.get(counter).sum();
+    }
+
+    /**
+     * Returns a copy of a phase's timings, in nanoseconds.
+     *
+     * @param phase the phase
+     * @return the snapshot
+     */
+    public static LatencyHistogram.Snapshot getTimings(Phase phase) {
+        return TIMERS.get(phase).snapshot();
+    }
+
+    /**
+     * Formats the timers, counters and diagnostic counts as plain-text tables,
+     * with times in milliseconds.
+     *
+     * @return the report
+     */
+    public static String format() {
+        StringBuffer out = new StringBuffer();
+        out.append(String.format(Locale.ROOT, "%-30s %9s %10s %10s %10s %10s %10s%n", "Phase", "Count", "Mean ms",
+                "p50 ms", "p90 ms", "p99 ms", "Max ms"));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram.Snapshot timings = getTimings(phase);
+            out.append(String.format(Locale.ROOT, "%-30s %9d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    phase.getDisplayName(), timings.getCount(), timings.getMean() / 1e6,
+                    timings.getValueAtPercentile(50) / 1e6, timings.getValueAtPercentile(90) / 1e6,
+                    timings.getValueAtPercentile(99) / 1e6, timings.getMax() / 1e6));
+        }
+        out.append(String.format(Locale.ROOT, "%n%-30s %9s%n", "Counter", "Count"));
+        for (Counter counter : Counter.values()) {
+            out.append(String.format(Locale.ROOT, "%-30s %9d%n", counter.getDisplayName(), getCount(counter)));
+        }
+        out.append(String.format(Locale.ROOT, "%n")).append(SchedulerDiagnostics.format());
+        return out.toString();
+    }
+}
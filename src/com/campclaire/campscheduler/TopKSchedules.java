@@ -0,0 +1,141 @@
+package com.campclaire.campscheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retains the best {@code k} schedules found by a search as compact snapshots,
+ * best (lowest score) first. Only one schedule is kept per score, and a
+ * schedule is only snapshotted once it is known to make the cut, so offering a
+ * schedule that does not is cheap.
+ */
+public class TopKSchedules {
+    private final int capacity;
+    private final ArrayList<CompactSchedule> schedules;
+
+    /**
+     * Constructs an empty retainer.
+     *
+     * @param capacity the maximum number of schedules to retain
+     */
+    public TopKSchedules(int capacity) {
+        this.capacity = capacity;
+        this.schedules = new ArrayList<CompactSchedule>(capacity + 1);
+    }
+
+    /**
+     * Checks whether a schedule with the specified score would be retained.
+     *
+     * @param score the score to check
+     * @return true if a schedule with this score would be retained
+     */
+    public boolean admits(int score) {
+        int index = this.indexOf(score);
+        if (index < this.schedules.size() && this.schedules.get(index).getScore() == score) {
+            return false;
+        }
+        return index < this.capacity;
+    }
+
+    /**
+     * Offers a schedule, snapshotting and retaining it if it is among the best.
+     *
+     * @param schedule the schedule to offer
+     * @param campers  the camper order used to snapshot campers
+     * @param catalog  the class catalog used to snapshot classes
+     * @return true if the schedule was retained
+     */
+    public boolean offer(Schedule schedule, List<Camper> campers, List<ClassClass> catalog) {
+        if (!this.admits(schedule.getScore())) {
+            return false;
+        }
+        return this.offer(CompactSchedule.of(schedule, campers, catalog));
+    }
+
+    /**
+     * Offers a snapshot, retaining it if it is among the best.
+     *
+     * @param schedule the snapshot to offer
+     * @return true if the snapshot was retained
+     */
+    public boolean offer(CompactSchedule schedule) {
+        if (!this.admits(schedule.getScore())) {
+            return false;
+        }
+        this.schedules.add(this.indexOf(schedule.getScore()), schedule);
+        if (this.schedules.size() > this.capacity) {
+            this.schedules.remove(this.schedules.size() - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the best schedule retained.
+     *
+     * @return the best schedule, or null if none has been retained
+     */
+    public CompactSchedule getBest() {
+        return this.schedules.isEmpty() ? null : this.schedules.get(0);
+    }
+
+    /**
+     * Returns the retained schedules, best first.
+     *
+     * @return a copy of the retained schedules
+     */
+    public ArrayList<CompactSchedule> getSchedules() {
+        return new ArrayList<CompactSchedule>(this.schedules);
+    }
+
+    /**
+     * Returns the maximum number of schedules retained.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of schedules retained.
+     *
+     * @return the number of schedules
+     */
+    public int size() {
+        return this.schedules.size();
+    }
+
+    /**
+     * Finds the position a schedule with the specified score would take.
+     *
+     * @param score the score
+     * @return the index of the first retained schedule with a score not lower
+     */
+    private int indexOf(int score) {
+        int low = 0;
+        int high = this.schedules.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.schedules.get(mid).getScore() < score) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Estimates the heap occupied by the retained schedules.
+     *
+     * @return the estimated size in bytes
+     * @see CompactSchedule#getRetainedBytes()
+     */
+    public long getRetainedBytes() {
+        long bytes = 0;
+        for (CompactSchedule schedule : this.schedules) {
+            bytes += schedule.getRetainedBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,285 @@
+package com.campclaire.campscheduler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Seeds a schedule search from a previously exported schedule. The camper view
+ * written by {@link ScheduleExporter} (CSV or JSON) is mapped onto the current
+ * roster and catalog: campers are matched by name and age and classes by title.
+ * The periods each class was offered in are kept and matched campers keep the
+ * classes they had. Added campers, and campers with a class that is no longer
+ * valid, are repaired into the schedule before {@link LocalSearch}
+ * re-converges it.
+ */
+public class WarmStart {
+    /** The default number of local search steps per camper after a warm start. */
+    public static final int DEFAULT_ITERATIONS_PER_CAMPER = 2000;
+    /** The default time limit of local search after a warm start. */
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 5000;
+    private static final int NUMBER_PERIODS = WorkingSchedule.NUMBER_PERIODS;
+
+    private final ArrayList<ClassClass> catalog;
+    private final ArrayList<Camper> roster;
+    private int matchedCampers;
+    private int addedCampers;
+    private int droppedCampers;
+
+    /**
+     * Constructs a warm start for the current roster and catalog.
+     *
+     * @param catalog the current class catalog
+     * @param roster  the current campers
+     */
+    public WarmStart(List<ClassClass> catalog, List<Camper> roster) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+        this.roster = new ArrayList<Camper>(roster);
+    }
+
+    /**
+     * A camper's row of a saved schedule.
+     */
+    private static class SavedCamper {
+        private final String name;
+        private final int age;
+        private final String[] classes;
+
+        /**
+         * Constructs a saved row.
+         *
+         * @param name    the camper's name
+         * @param age     the camper's age
+         * @param classes the class title in each period, or null for none
+         */
+        SavedCamper(String name, int age, String[] classes) {
+            this.name = name;
+            this.age = age;
+            this.classes = classes;
+        }
+    }
+
+    /**
+     * Maps a saved schedule onto the current roster, repairing campers who were
+     * added or whose classes are no longer valid.
+     *
+     * @param savedSchedule a camper view exported as CSV or JSON
+     * @return the mapped schedule, indexed by the current roster order
+     * @throws IOException if the file cannot be read or is not a camper view
+     */
+    public WorkingSchedule map(File savedSchedule) throws IOException {
+        ArrayList<SavedCamper> saved = savedSchedule.getName().toLowerCase(Locale.ROOT).endsWith(".csv")
+                ? readCsv(savedSchedule)
+                : readJson(savedSchedule);
+
+        HashMap<String, Integer> classIds = new HashMap<String, Integer>();
+        for (int c = 0; c < this.catalog.size(); c++) {
+            classIds.put(this.catalog.get(c).getTitle(), c);
+        }
+        boolean[][] offered = new boolean[NUMBER_PERIODS][this.catalog.size()];
+        for (SavedCamper camper : saved) {
+            for (int p = 0; p < NUMBER_PERIODS; p++) {
+                Integer classId = camper.classes[p] == null ? null : classIds.get(camper.classes[p]);
+                if (classId != null) {
+                    offered[p][classId] = true;
+                }
+            }
+        }
+        int[][] layout = new int[NUMBER_PERIODS][];
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            ArrayList<Integer> ids = new ArrayList<Integer>();
+            for (int c = 0; c < this.catalog.size(); c++) {
+                if (offered[p][c]) {
+                    ids.add(c);
+                }
+            }
+            layout[p] = ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+        WorkingSchedule schedule = new WorkingSchedule(this.catalog, this.roster, layout);
+
+        HashMap<String, ArrayDeque<Integer>> campersByKey = new HashMap<String, ArrayDeque<Integer>>();
+        for (int i = 0; i < this.roster.size(); i++) {
+            Camper camper = this.roster.get(i);
+            campersByKey.computeIfAbsent(key(camper.getName(), camper.getAge()), k -> new ArrayDeque<Integer>())
+                    .add(i);
+        }
+        // Campers kept unchanged are left as they were, empty periods included
+        boolean[] unchanged = new boolean[this.roster.size()];
+        this.matchedCampers = 0;
+        this.droppedCampers = 0;
+        for (SavedCamper savedCamper : saved) {
+            ArrayDeque<Integer> candidates = campersByKey.get(key(savedCamper.name, savedCamper.age));
+            if (candidates == null || candidates.isEmpty()) {
+                this.droppedCampers++;
+                continue;
+            }
+            int camper = candidates.poll();
+            this.matchedCampers++;
+            unchanged[camper] = true;
+            for (int p = 1; p <= NUMBER_PERIODS; p++) {
+                String title = savedCamper.classes[p - 1];
+                if (title == null) {
+                    continue;
+                }
+                Integer classId = classIds.get(title);
+                if (classId != null && this.isValid(schedule, camper, p, classId)) {
+                    schedule.assign(camper, p, classId);
+                } else {
+                    unchanged[camper] = false;
+                }
+            }
+        }
+        this.addedCampers = this.roster.size() - this.matchedCampers;
+        for (int i = 0; i < this.roster.size(); i++) {
+            if (!unchanged[i]) {
+                schedule.repair(i);
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * Returns the number of campers of the last mapped schedule that were found
+     * in the current roster.
+     *
+     * @return the number of matched campers
+     */
+    public int getMatchedCampers() {
+        return this.matchedCampers;
+    }
+
+    /**
+     * Returns the number of campers of the current roster that were not in the
+     * last mapped schedule.
+     *
+     * @return the number of added campers
+     */
+    public int getAddedCampers() {
+        return this.addedCampers;
+    }
+
+    /**
+     * Returns the number of campers of the last mapped schedule that are no
+     * longer in the roster.
+     *
+     * @return the number of dropped campers
+     */
+    public int getDroppedCampers() {
+        return this.droppedCampers;
+    }
+
+    /**
+     * Checks whether a saved assignment is still valid: the camper can take the
+     * class and is not already taking it, except for the second period of a
+     * double-period class.
+     *
+     * @param schedule the schedule being built
+     * @param camper   the camper index
+     * @param period   the period, from 1 to 3
+     * @param classId  the class id
+     * @return true if the assignment can be kept
+     */
+    private boolean isValid(WorkingSchedule schedule, int camper, int period, int classId) {
+        ClassClass class_ = this.catalog.get(classId);
+        if (!this.roster.get(camper).canTakeClass(class_)) {
+            return false;
+        }
+        if (class_.isDoublePeriod()) {
+            return true;
+        }
+        for (int q = 1; q <= NUMBER_PERIODS; q++) {
+            if (q != period && schedule.getAssignment(camper, q) == classId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the key campers are matched by.
+     *
+     * @param name the camper's name
+     * @param age  the camper's age
+     * @return the matching key
+     */
+    private static String key(String name, int age) {
+        return name.trim().toLowerCase(Locale.ROOT) + '\u0000' + age;
+    }
+
+    /**
+     * Reads a camper view exported as CSV.
+     *
+     * @param file the file to read
+     * @return the saved campers
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    private static ArrayList<SavedCamper> readCsv(File file) throws IOException {
+        ArrayList<SavedCamper> out = new ArrayList<SavedCamper>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null || !header.startsWith("Name,Age,Period 1")) {
+                throw new IOException("Not a camper schedule export: " + file.getName());
+            }
+            String line;
+            int row = 1;
+            while ((line = in.readLine()) != null) {
+                row++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                ArrayList<String> fields = CsvRosterImporter.splitLine(line);
+                if (fields == null || fields.size() < 2 + NUMBER_PERIODS) {
+                    throw new IOException("Malformed row " + row + " in " + file.getName());
+                }
+                String[] classes = new String[NUMBER_PERIODS];
+                for (int p = 0; p < NUMBER_PERIODS; p++) {
+                    String title = fields.get(2 + p).trim();
+                    classes[p] = title.isEmpty() ? null : title;
+                }
+                try {
+                    out.add(new SavedCamper(fields.get(0), Integer.parseInt(fields.get(1).trim()), classes));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid age on row " + row + " in " + file.getName(), e);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Reads a camper view exported as JSON.
+     *
+     * @param file the file to read
+     * @return the saved campers
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    private static ArrayList<SavedCamper> readJson(File file) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(file);
+        if (root == null || !root.isArray()) {
+            throw new IOException("Not a camper schedule export: " + file.getName());
+        }
+        ArrayList<SavedCamper> out = new ArrayList<SavedCamper>(root.size());
+        for (JsonNode node : root) {
+            if (!node.hasNonNull("name") || !node.path("age").isInt()) {
+                throw new IOException("Not a camper schedule export: " + file.getName());
+            }
+            String[] classes = new String[NUMBER_PERIODS];
+            for (int p = 0; p < NUMBER_PERIODS; p++) {
+                JsonNode title = node.get("period" + (p + 1));
+                classes[p] = title == null || title.isNull() ? null : title.asText();
+            }
+            out.add(new SavedCamper(node.get("name").asText(), node.get("age").asInt(), classes));
+        }
+        return out;
+    }
+}
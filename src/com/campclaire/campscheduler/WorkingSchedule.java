@@ -0,0 +1,546 @@
+package com.campclaire.campscheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A mutable schedule over a fixed class layout, held in primitive arrays so
+ * local search can evaluate and apply single-camper moves cheaply. The score is
+ * the same as {@link Schedule#getScore()} of the expanded schedule and is kept
+ * up to date incrementally: a move only re-scores the camper and classes it
+ * touches.
+ *
+ * Periods are numbered from 1 to 3 and classes are identified by their index in
+ * the class catalog, as in {@link CompactSchedule}. Required and double-period
+ * classes are treated as fixed: moves never take campers into or out of them.
+ */
+public class WorkingSchedule {
+    /** The number of periods in a day. */
+    public static final int NUMBER_PERIODS = 3;
+    /** Marks a period in which a camper has no class. */
+    public static final int NO_CLASS = CompactSchedule.NO_CLASS;
+
+    private final ArrayList<ClassClass> catalog;
+    private final int numberClasses;
+    private final int[] cutoffs;
+    private final boolean[] fixed;
+    private final boolean[] requiredClasses;
+    private final boolean[] offered;
+    private final int[][] offeredIds;
+    private final int[] enrolled;
+    private ArrayList<Camper> campers;
+    private int[] costs;
+    private boolean[] eligible;
+    private int[] assignments;
+    private int preferenceScore;
+    private int balanceScore;
+
+    /**
+     * Constructs a schedule with no campers enrolled.
+     *
+     * @param catalog the class catalog
+     * @param campers the campers, whose indices identify them
+     * @param layout  the class ids offered in each of the three periods
+     */
+    public WorkingSchedule(List<ClassClass> catalog, List<Camper> campers, int[][] layout) {
+        this.catalog = new ArrayList<ClassClass>(catalog);
+        this.numberClasses = catalog.size();
+        this.cutoffs = new int[this.numberClasses];
+        this.fixed = new boolean[this.numberClasses];
+        this.requiredClasses = new boolean[this.numberClasses];
+        for (int c = 0; c < this.numberClasses; c++) {
+            ClassClass class_ = catalog.get(c);
+            this.cutoffs[c] = class_.getSinglePeriodCutoff();
+            this.requiredClasses[c] = class_.isRequired();
+            this.fixed[c] = class_.isRequired() || class_.isDoublePeriod();
+        }
+        this.offered = new boolean[NUMBER_PERIODS * this.numberClasses];
+        this.offeredIds = new int[NUMBER_PERIODS][];
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            this.offeredIds[p] = layout[p].clone();
+            for (int classId : layout[p]) {
+                this.offered[p * this.numberClasses + classId] = true;
+            }
+        }
+        this.enrolled = new int[NUMBER_PERIODS * this.numberClasses];
+        this.campers = new ArrayList<Camper>(campers.size());
+        this.costs = new int[0];
+        this.eligible = new boolean[0];
+        this.assignments = new int[0];
+        for (Camper camper : campers) {
+            this.addCamper(camper);
+        }
+        this.balanceScore = this.calculateBalanceScore();
+    }
+
+    /**
+     * Constructs a working copy of a compact schedule.
+     *
+     * @param schedule the compact schedule
+     * @param campers  the camper order the schedule was taken with
+     * @param catalog  the class catalog the schedule was taken with
+     * @return the working schedule
+     */
+    public static WorkingSchedule of(CompactSchedule schedule, List<Camper> campers, List<ClassClass> catalog) {
+        int[][] layout = new int[NUMBER_PERIODS][];
+        for (int p = 1; p <= NUMBER_PERIODS; p++) {
+            layout[p - 1] = schedule.getLayout(p);
+        }
+        WorkingSchedule out = new WorkingSchedule(catalog, campers, layout);
+        for (int i = 0; i < campers.size(); i++) {
+            for (int p = 1; p <= NUMBER_PERIODS; p++) {
+                out.assign(i, p, schedule.getAssignment(i, p));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Adds a camper with no classes assigned.
+     *
+     * @param camper the camper to add
+     * @return the index of the new camper
+     */
+    public int addCamper(Camper camper) {
+        int index = this.campers.size();
+        if (this.assignments.length < (index + 1) * NUMBER_PERIODS) {
+            int capacity = Math.max(16, index * 2);
+            this.costs = Arrays.copyOf(this.costs, capacity * this.numberClasses);
+            this.eligible = Arrays.copyOf(this.eligible, capacity * this.numberClasses);
+            this.assignments = Arrays.copyOf(this.assignments, capacity * NUMBER_PERIODS);
+        }
+        this.campers.add(camper);
+        for (int c = 0; c < this.numberClasses; c++) {
+            ClassClass class_ = this.catalog.get(c);
+            this.costs[index * this.numberClasses + c] = class_.isRequired() ? 3 : camper.getRankOfChoice(class_);
+            this.eligible[index * this.numberClasses + c] = camper.canTakeClass(class_);
+        }
+        Arrays.fill(this.assignments, index * NUMBER_PERIODS, (index + 1) * NUMBER_PERIODS, NO_CLASS);
+        return index;
+    }
+
+    /**
+     * Removes a camper, freeing their classes. The last camper takes the index of
+     * the removed one.
+     *
+     * @param camper the index of the camper to remove
+     * @return the camper that was removed
+     */
+    public Camper removeCamper(int camper) {
+        for (int p = 1; p <= NUMBER_PERIODS; p++) {
+            this.assign(camper, p, NO_CLASS);
+        }
+        int last = this.campers.size() - 1;
+        if (camper != last) {
+            System.arraycopy(this.costs, last * this.numberClasses, this.costs, camper * this.numberClasses,
+                    this.numberClasses);
+            System.arraycopy(this.eligible, last * this.numberClasses, this.eligible, camper * this.numberClasses,
+                    this.numberClasses);
+            System.arraycopy(this.assignments, last * NUMBER_PERIODS, this.assignments, camper * NUMBER_PERIODS,
+                    NUMBER_PERIODS);
+        }
+        Camper removed = this.campers.get(camper);
+        this.campers.set(camper, this.campers.get(last));
+        this.campers.remove(last);
+        return removed;
+    }
+
+    /**
+     * Returns the score of the schedule, lower being better.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return this.preferenceScore + this.balanceScore;
+    }
+
+    /**
+     * Returns the class catalog.
+     *
+     * @return a copy of the catalog
+     */
+    public ArrayList<ClassClass> getCatalog() {
+        return new ArrayList<ClassClass>(this.catalog);
+    }
+
+    /**
+     * Returns the campers, in index order.
+     *
+     * @return a copy of the campers
+     */
+    public ArrayList<Camper> getCampers() {
+        return new ArrayList<Camper>(this.campers);
+    }
+
+    /**
+     * Returns the number of campers.
+     *
+     * @return the number of campers
+     */
+    public int getNumberCampers() {
+        return this.campers.size();
+    }
+
+    /**
+     * Returns the number of classes in the catalog.
+     *
+     * @return the number of classes
+     */
+    public int getNumberClasses() {
+        return this.numberClasses;
+    }
+
+    /**
+     * Returns the class ids offered during a period.
+     *
+     * @param period the period, from 1 to 3
+     * @return the class ids offered; must not be modified
+     */
+    int[] getOffered(int period) {
+        return this.offeredIds[period - 1];
+    }
+
+    /**
+     * Checks whether a class is offered during a period.
+     *
+     * @param period  the period, from 1 to 3
+     * @param classId the class id
+     * @return true if the class is offered
+     */
+    public boolean isOffered(int period, int classId) {
+        return this.offered[(period - 1) * this.numberClasses + classId];
+    }
+
+    /**
+     * Returns the number of campers enrolled in a class during a period.
+     *
+     * @param period  the period, from 1 to 3
+     * @param classId the class id
+     * @return the number of campers enrolled
+     */
+    public int getEnrolled(int period, int classId) {
+        return this.enrolled[(period - 1) * this.numberClasses + classId];
+    }
+
+    /**
+     * Returns the class a camper is assigned to during a period.
+     *
+     * @param camper the camper index
+     * @param period the period, from 1 to 3
+     * @return the class id, or {@link #NO_CLASS}
+     */
+    public int getAssignment(int camper, int period) {
+        return this.assignments[camper * NUMBER_PERIODS + period - 1];
+    }
+
+    /**
+     * Returns what a camper assigned to a class contributes to the score: 3 for a
+     * required class and the camper's rank of the class otherwise.
+     *
+     * @param camper  the camper index
+     * @param classId the class id
+     * @return the cost of the assignment
+     */
+    public int getCost(int camper, int classId) {
+        return this.costs[camper * this.numberClasses + classId];
+    }
+
+    /**
+     * Checks whether a camper's class during a period may be changed by a move,
+     * which is the case for any assigned class that is neither required nor
+     * double-period.
+     *
+     * @param camper the camper index
+     * @param period the period, from 1 to 3
+     * @return true if the assignment may be moved
+     */
+    public boolean isMovable(int camper, int period) {
+        int classId = this.getAssignment(camper, period);
+        return classId != NO_CLASS && !this.fixed[classId];
+    }
+
+    /**
+     * Checks whether a camper could be moved into a class during a period: the
+     * class is offered then, is neither required nor double-period, the camper
+     * can take it and is not taking it in another period.
+     *
+     * @param camper  the camper index
+     * @param period  the period, from 1 to 3
+     * @param classId the class id
+     * @return true if the camper could take the class
+     */
+    public boolean canTake(int camper, int period, int classId) {
+        if (!this.isOffered(period, classId) || this.fixed[classId]
+                || !this.eligible[camper * this.numberClasses + classId]) {
+            return false;
+        }
+        for (int q = 1; q <= NUMBER_PERIODS; q++) {
+            if (q != period && this.getAssignment(camper, q) == classId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a class has room for another camper during a period.
+     *
+     * @param period  the period, from 1 to 3
+     * @param classId the class id
+     * @return true if enrollment is below the class's single period cutoff
+     */
+    public boolean hasRoom(int period, int classId) {
+        return this.getEnrolled(period, classId) < this.cutoffs[classId];
+    }
+
+    /**
+     * Assigns a camper to a class during a period, replacing any class they had.
+     * No constraints are checked.
+     *
+     * @param camper  the camper index
+     * @param period  the period, from 1 to 3
+     * @param classId the class id, or {@link #NO_CLASS}
+     */
+    public void assign(int camper, int period, int classId) {
+        int slot = camper * NUMBER_PERIODS + period - 1;
+        int previous = this.assignments[slot];
+        if (previous == classId) {
+            return;
+        }
+        if (previous != NO_CLASS) {
+            this.preferenceScore -= this.getCost(camper, previous);
+            this.changeEnrollment(period, previous, -1);
+        }
+        this.assignments[slot] = classId;
+        if (classId != NO_CLASS) {
+            this.preferenceScore += this.getCost(camper, classId);
+            this.changeEnrollment(period, classId, 1);
+        }
+    }
+
+    /**
+     * Returns the change in score if a camper were moved to another class during
+     * a period. The schedule is left unchanged.
+     *
+     * @param camper  the camper index
+     * @param period  the period, from 1 to 3
+     * @param classId the class to move to
+     * @return the change in score
+     */
+    public int moveDelta(int camper, int period, int classId) {
+        int previous = this.getAssignment(camper, period);
+        if (previous == classId) {
+            return 0;
+        }
+        int delta = 0;
+        int balanceBefore = 0;
+        if (previous != NO_CLASS) {
+            delta -= this.getCost(camper, previous);
+            balanceBefore += this.balanceOf(previous);
+        }
+        if (classId != NO_CLASS) {
+            delta += this.getCost(camper, classId);
+            balanceBefore += this.balanceOf(classId);
+        }
+        int p = (period - 1) * this.numberClasses;
+        if (previous != NO_CLASS) {
+            this.enrolled[p + previous]--;
+        }
+        if (classId != NO_CLASS) {
+            this.enrolled[p + classId]++;
+        }
+        int balanceAfter = (previous != NO_CLASS ? this.balanceOf(previous) : 0)
+                + (classId != NO_CLASS ? this.balanceOf(classId) : 0);
+        if (previous != NO_CLASS) {
+            this.enrolled[p + previous]++;
+        }
+        if (classId != NO_CLASS) {
+            this.enrolled[p + classId]--;
+        }
+        return delta + balanceAfter - balanceBefore;
+    }
+
+    /**
+     * Returns the change in score if two campers exchanged their classes during a
+     * period. Enrollments do not change, so only preferences are affected.
+     *
+     * @param camper the first camper index
+     * @param other  the second camper index
+     * @param period the period, from 1 to 3
+     * @return the change in score
+     */
+    public int swapDelta(int camper, int other, int period) {
+        int a = this.getAssignment(camper, period);
+        int b = this.getAssignment(other, period);
+        return this.getCost(camper, b) - this.getCost(camper, a) + this.getCost(other, a) - this.getCost(other, b);
+    }
+
+    /**
+     * Exchanges two campers' classes during a period. No constraints are checked.
+     *
+     * @param camper the first camper index
+     * @param other  the second camper index
+     * @param period the period, from 1 to 3
+     */
+    public void swap(int camper, int other, int period) {
+        int a = this.getAssignment(camper, period);
+        int b = this.getAssignment(other, period);
+        this.assign(camper, period, b);
+        this.assign(other, period, a);
+    }
+
+    /**
+     * Fills any period in which a camper has no class. A camper who requires swim
+     * lessons is first given a required class if they have none, in its least
+     * full period; remaining periods get the class that raises the score least,
+     * preferring classes with room.
+     *
+     * @param camper the camper index
+     */
+    public void repair(int camper) {
+        if (this.campers.get(camper).requiresSwimLessons() && !this.hasRequiredClass(camper)) {
+            int bestPeriod = 0;
+            int bestClass = NO_CLASS;
+            for (int p = 1; p <= NUMBER_PERIODS; p++) {
+                if (this.getAssignment(camper, p) != NO_CLASS) {
+                    continue;
+                }
+                for (int classId : this.getOffered(p)) {
+                    if (this.requiredClasses[classId] && (bestClass == NO_CLASS
+                            || this.getEnrolled(p, classId) < this.getEnrolled(bestPeriod, bestClass))) {
+                        bestPeriod = p;
+                        bestClass = classId;
+                    }
+                }
+            }
+            if (bestClass != NO_CLASS) {
+                this.assign(camper, bestPeriod, bestClass);
+            }
+        }
+        for (int p = 1; p <= NUMBER_PERIODS; p++) {
+            if (this.getAssignment(camper, p) != NO_CLASS) {
+                continue;
+            }
+            int best = NO_CLASS;
+            int bestDelta = Integer.MAX_VALUE;
+            boolean bestHasRoom = false;
+            for (int classId : this.getOffered(p)) {
+                if (!this.canTake(camper, p, classId)) {
+                    continue;
+                }
+                boolean room = this.hasRoom(p, classId);
+                int delta = this.moveDelta(camper, p, classId);
+                if ((room && !bestHasRoom) || (room == bestHasRoom && delta < bestDelta)) {
+                    best = classId;
+                    bestDelta = delta;
+                    bestHasRoom = room;
+                }
+            }
+            if (best != NO_CLASS) {
+                this.assign(camper, p, best);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the assignments, to be restored later with
+     * {@link #restoreAssignments(int[])}.
+     *
+     * @return a copy of the assignments
+     */
+    public int[] copyAssignments() {
+        return Arrays.copyOf(this.assignments, this.campers.size() * NUMBER_PERIODS);
+    }
+
+    /**
+     * Restores assignments previously copied with {@link #copyAssignments()}.
+     *
+     * @param saved the saved assignments
+     */
+    public void restoreAssignments(int[] saved) {
+        for (int i = 0; i < saved.length; i++) {
+            if (this.assignments[i] != saved[i]) {
+                this.assign(i / NUMBER_PERIODS, i % NUMBER_PERIODS + 1, saved[i]);
+            }
+        }
+    }
+
+    /**
+     * Takes a compact snapshot of the schedule, indexed by the current camper
+     * order.
+     *
+     * @return the compact schedule
+     */
+    public CompactSchedule toCompactSchedule() {
+        int[][] layout = new int[NUMBER_PERIODS][];
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            layout[p] = this.offeredIds[p].clone();
+            Arrays.sort(layout[p]);
+        }
+        return new CompactSchedule(layout, this.copyAssignments(), this.getScore());
+    }
+
+    /**
+     * Checks whether a camper is assigned to a required class in any period.
+     *
+     * @param camper the camper index
+     * @return true if the camper has a required class
+     */
+    private boolean hasRequiredClass(int camper) {
+        for (int p = 1; p <= NUMBER_PERIODS; p++) {
+            int classId = this.getAssignment(camper, p);
+            if (classId != NO_CLASS && this.requiredClasses[classId]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Changes the enrollment of a class during a period, updating the balance
+     * part of the score.
+     *
+     * @param period  the period, from 1 to 3
+     * @param classId the class id
+     * @param change  the change in enrollment
+     */
+    private void changeEnrollment(int period, int classId, int change) {
+        this.balanceScore -= this.balanceOf(classId);
+        this.enrolled[(period - 1) * this.numberClasses + classId] += change;
+        this.balanceScore += this.balanceOf(classId);
+    }
+
+    /**
+     * Returns a class's contribution to the balance part of the score: its single
+     * period cutoff times the spread between its most and least enrolled periods.
+     *
+     * @param classId the class id
+     * @return the balance penalty of the class
+     */
+    private int balanceOf(int classId) {
+        int lowest = Integer.MAX_VALUE;
+        int highest = Integer.MIN_VALUE;
+        for (int p = 0; p < NUMBER_PERIODS; p++) {
+            if (this.offered[p * this.numberClasses + classId]) {
+                int count = this.enrolled[p * this.numberClasses + classId];
+                lowest = Math.min(lowest, count);
+                highest = Math.max(highest, count);
+            }
+        }
+        return highest < lowest ? 0 : this.cutoffs[classId] * (highest - lowest);
+    }
+
+    /**
+     * Calculates the balance part of the score from scratch.
+     *
+     * @return the balance penalty of all classes
+     */
+    private int calculateBalanceScore() {
+        int out = 0;
+        for (int c = 0; c < this.numberClasses; c++) {
+            out += this.balanceOf(c);
+        }
+        return out;
+    }
+}